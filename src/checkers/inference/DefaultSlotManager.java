@@ -6,7 +6,6 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.BugInCF;
 
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -21,8 +20,6 @@ import javax.lang.model.type.TypeMirror;
 
 import checkers.inference.model.LubVariableSlot;
 
-import com.sun.tools.javac.util.Pair;
-
 import checkers.inference.model.AnnotationLocation;
 import checkers.inference.model.ArithmeticVariableSlot;
 import checkers.inference.model.CombVariableSlot;
@@ -33,6 +30,8 @@ import checkers.inference.model.Slot;
 import checkers.inference.model.SourceVariableSlot;
 import checkers.inference.model.VariableSlot;
 import checkers.inference.qual.VarAnnot;
+import checkers.inference.util.LongIntHashMap;
+import checkers.inference.util.SlotStore;
 
 /**
  * The default implementation of SlotManager.
@@ -49,13 +48,11 @@ public class DefaultSlotManager implements SlotManager {
     private int nextId = 1;
 
     /**
-     * A map for storing all the slots encountered by this slot manager. Key is
-     * an {@link Integer}, representing a slot id. Value is a
-     * {@link Slot} that corresponds to this slot id. Note that
-     * ConstantSlots are also stored in this map, since ConstantSlot is subclass
-     * of Slot.
+     * A store of all the slots encountered by this slot manager, indexed by
+     * slot id. Note that ConstantSlots are also stored in it, since
+     * ConstantSlot is subclass of Slot.
      */
-    private final Map<Integer, Slot> slots;
+    private final SlotStore slots;
 
     /**
      * A map of {@link AnnotationMirror} to {@link Integer} for caching
@@ -73,21 +70,24 @@ public class DefaultSlotManager implements SlotManager {
     private final Map<AnnotationLocation, Integer> locationCache;
 
     /**
-     * A map of {@link Pair} of {@link Slot} to {@link Integer} for
-     * caching ExistentialVariableSlot. Each ExistentialVariableSlot can be
-     * uniquely identified by its potential and alternative VariablesSlots.
-     * {@link Integer} is the id of the corresponding ExistentialVariableSlot
+     * A map from the ids of a pair of slots, packed into one long by
+     * {@link LongIntHashMap#pack(int, int)}, to the id of the
+     * ExistentialVariableSlot they uniquely identify: its potential and
+     * alternative VariablesSlots.
+     */
+    private final LongIntHashMap existentialSlotPairCache;
+
+    /**
+     * A map from the packed ids of a receiver slot and a declared slot to the
+     * id of the CombVariableSlot they uniquely identify.
      */
-    private final Map<Pair<Slot, Slot>, Integer> existentialSlotPairCache;
+    private final LongIntHashMap combSlotPairCache;
 
     /**
-     * A map of {@link Pair} of {@link Slot} to {@link Integer} for caching
-     * CombVariableSlot. Each combination of receiver slot and declared slot
-     * uniquely identifies a CombVariableSlot. {@link Integer} is the id of the
-     * corresponding CombVariableSlott
+     * A map from the packed ids of two ingredient slots to the id of the
+     * LubVariableSlot they uniquely identify.
      */
-    private final Map<Pair<Slot, Slot>, Integer> combSlotPairCache;
-    private final Map<Pair<Slot, Slot>, Integer> lubSlotPairCache;
+    private final LongIntHashMap lubSlotPairCache;
 
     /**
      * A map of {@link AnnotationLocation} to {@link Integer} for caching
@@ -106,7 +106,7 @@ public class DefaultSlotManager implements SlotManager {
         this.processingEnvironment = processingEnvironment;
         // sort the qualifiers so that they are always assigned the same varId
         this.realQualifiers = sortAnnotationClasses(realQualifiers);
-        slots = new LinkedHashMap<>();
+        slots = new SlotStore();
 
         AnnotationBuilder builder = new AnnotationBuilder(processingEnvironment, VarAnnot.class);
         builder.setValue("value", -1 );
@@ -115,9 +115,9 @@ public class DefaultSlotManager implements SlotManager {
         // Construct empty caches
         constantCache = AnnotationUtils.createAnnotationMap();
         locationCache = new LinkedHashMap<>();
-        existentialSlotPairCache = new LinkedHashMap<>();
-        combSlotPairCache = new LinkedHashMap<>();
-        lubSlotPairCache = new LinkedHashMap<>();
+        existentialSlotPairCache = new LongIntHashMap();
+        combSlotPairCache = new LongIntHashMap();
+        lubSlotPairCache = new LongIntHashMap();
         arithmeticSlotCache = new LinkedHashMap<>();
 
         if (storeConstants) {
@@ -159,7 +159,7 @@ public class DefaultSlotManager implements SlotManager {
     }
 
     private void addToSlots(final Slot slot) {
-        slots.put(slot.getId(), slot);
+        slots.add(slot);
     }
 
     /**
@@ -255,39 +255,32 @@ public class DefaultSlotManager implements SlotManager {
 
     /**
      * @inheritDoc
+     *
+     * The returned list is a read-only view, no slots are copied.
      */
     @Override
     public List<Slot> getSlots() {
-        return new ArrayList<Slot>(this.slots.values());
+        return slots.getSlots();
     }
 
-    // Sometimes, I miss scala.
     /**
      * @inheritDoc
+     *
+     * The returned list is a read-only view, no slots are copied.
      */
     @Override
     public List<VariableSlot> getVariableSlots() {
-        List<VariableSlot> varSlots = new ArrayList<>();
-        for (Slot slot : slots.values()) {
-            if (slot instanceof VariableSlot) {
-                varSlots.add((VariableSlot) slot);
-            }
-        }
-        return varSlots;
+        return slots.getVariableSlots();
     }
 
     /**
      * @inheritDoc
+     *
+     * The returned list is a read-only view, no slots are copied.
      */
     @Override
     public List<ConstantSlot> getConstantSlots() {
-        List<ConstantSlot> constants = new ArrayList<>();
-        for (Slot slot : slots.values()) {
-            if (slot instanceof ConstantSlot) {
-                constants.add((ConstantSlot) slot);
-            }
-        }
-        return constants;
+        return slots.getConstantSlots();
     }
 
     @Override
@@ -361,9 +354,9 @@ public class DefaultSlotManager implements SlotManager {
     @Override
     public CombVariableSlot createCombVariableSlot(Slot receiver, Slot declared) {
         CombVariableSlot combVariableSlot;
-        Pair<Slot, Slot> pair = new Pair<>(receiver, declared);
-        if (combSlotPairCache.containsKey(pair)) {
-            int id = combSlotPairCache.get(pair);
+        long pair = LongIntHashMap.pack(receiver.getId(), declared.getId());
+        int id = combSlotPairCache.get(pair, 0);
+        if (id != 0) {
             combVariableSlot = (CombVariableSlot) getSlot(id);
         } else {
             combVariableSlot = new CombVariableSlot(nextId(), null, receiver, declared);
@@ -377,9 +370,9 @@ public class DefaultSlotManager implements SlotManager {
     public LubVariableSlot createLubVariableSlot(Slot left, Slot right) {
         // Order of two ingredient slots doesn't matter, but for simplicity, we still use pair.
         LubVariableSlot lubVariableSlot;
-        Pair<Slot, Slot> pair = new Pair<>(left, right);
-        if (lubSlotPairCache.containsKey(pair)) {
-            int id = lubSlotPairCache.get(pair);
+        long pair = LongIntHashMap.pack(left.getId(), right.getId());
+        int id = lubSlotPairCache.get(pair, 0);
+        if (id != 0) {
             lubVariableSlot = (LubVariableSlot) getSlot(id);
         } else {
             // We need a non-null location in the future for better debugging outputs
@@ -393,9 +386,9 @@ public class DefaultSlotManager implements SlotManager {
     @Override
     public ExistentialVariableSlot createExistentialVariableSlot(Slot potentialSlot, Slot alternativeSlot) {
         ExistentialVariableSlot existentialVariableSlot;
-        Pair<Slot, Slot> pair = new Pair<>(potentialSlot, alternativeSlot);
-        if (existentialSlotPairCache.containsKey(pair)) {
-            int id = existentialSlotPairCache.get(pair);
+        long pair = LongIntHashMap.pack(potentialSlot.getId(), alternativeSlot.getId());
+        int id = existentialSlotPairCache.get(pair, 0);
+        if (id != 0) {
             existentialVariableSlot = (ExistentialVariableSlot) getSlot(id);
         } else {
             existentialVariableSlot = new ExistentialVariableSlot(nextId(), potentialSlot, alternativeSlot);
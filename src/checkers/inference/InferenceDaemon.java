@@ -0,0 +1,191 @@
+package checkers.inference;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.checkerframework.javacutil.UserError;
+
+import checkers.inference.InferenceOptions.InitStatus;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * InferenceDaemon runs the inference step of many InferenceLauncher invocations in one long
+ * running JVM, instead of starting a new JVM with InferenceMain for each of them.
+ *
+ * The daemon only saves the startup of a JVM per run: classes are loaded and compiled by the JIT
+ * once, and processes kept by an {@link checkers.inference.solver.util.ExternalSolverPool} live
+ * as long as the daemon. Everything else is rebuilt for each request. The checker, its type
+ * factories and its parsed stub files are created by the javac run of a request, and the
+ * Checker Framework cannot reuse them in another javac run. The qualifier hierarchy and the
+ * lattice encodings of the solvers are built from them, so they are rebuilt too. Each request is
+ * run on a fresh InferenceMain from {@link InferenceMain#resetInstance()}, so slots and
+ * constraints of earlier runs are never seen by later ones.
+ *
+ * Start the daemon with {@code --mode DAEMON [--daemonPort port]}, then run the launcher with
+ * {@code --daemonPort port} to send its inference step to the daemon. The jaif file and the
+ * source files of a request are passed as absolute paths; other relative paths, e.g. in javac
+ * options, are resolved against the working directory of the daemon.
+ *
+ * Protocol: a client connects to the daemon on the loopback interface and sends the arguments of
+ * InferenceMain, one per line, followed by an empty line. All source files of a request are
+ * compiled and solved together as one batch. The daemon answers with diagnostic lines, followed by
+ * a line {@value #EXIT_PREFIX}{@code <status>}, and closes the connection. A request consisting
+ * of the single argument {@value #SHUTDOWN} stops the daemon. Requests are served one at a time,
+ * as InferenceMain is a singleton.
+ */
+public class InferenceDaemon {
+
+    public static final int DEFAULT_PORT = 24142;
+
+    public static final String SHUTDOWN = "--shutdown";
+
+    /**
+     * Prefix of the last line of a response, which carries the exit status of the request.
+     */
+    public static final String EXIT_PREFIX = "#inference-daemon-exit ";
+
+    private static final Logger logger = Logger.getLogger(InferenceDaemon.class.getName());
+
+    private final ServerSocket serverSocket;
+
+    public InferenceDaemon(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Inference daemon listening on port " + serverSocket.getLocalPort());
+            new InferenceDaemon(serverSocket).serve();
+        } catch (IOException e) {
+            throw new UserError("Could not run the inference daemon on port " + port + ": " + e.getMessage());
+        }
+        System.out.println("Inference daemon stopped");
+    }
+
+    /**
+     * Serves requests until a shutdown request is received.
+     */
+    public void serve() throws IOException {
+        int served = 0;
+        while (true) {
+            try (Socket socket = serverSocket.accept()) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+
+                List<String> args = readRequest(in);
+                if (args.size() == 1 && args.get(0).equals(SHUTDOWN)) {
+                    out.println(EXIT_PREFIX + 0);
+                    return;
+                }
+
+                long start = System.currentTimeMillis();
+                int status = runRequest(args, out);
+                served++;
+                logger.info("Request " + served + " finished with status " + status + " in "
+                        + (System.currentTimeMillis() - start) + "ms");
+                out.println(EXIT_PREFIX + status);
+
+            } catch (IOException e) {
+                logger.warning("Lost connection to inference client: " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<String> readRequest(BufferedReader in) throws IOException {
+        List<String> args = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            args.add(line);
+        }
+        return args;
+    }
+
+    /**
+     * Runs InferenceMain with the given arguments.
+     *
+     * @return the exit status: 0 on success, 1 if the arguments are invalid or there is no
+     * solution, 2 if inference crashed, or the status of the {@link InferenceExitException} that
+     * stopped the run, e.g. 1 if javac failed
+     */
+    private int runRequest(List<String> args, PrintWriter out) {
+        InferenceOptions.reset();
+        InitStatus initStatus = InferenceOptions.init(args.toArray(new String[args.size()]), false);
+        if (!initStatus.errors.isEmpty()) {
+            for (String error : initStatus.errors) {
+                out.println(error);
+            }
+            return 1;
+        }
+
+        Statistics.clearStatistics();
+        InferenceMain inferenceMain = InferenceMain.resetInstance();
+
+        try {
+            if (!inferenceMain.infer()) {
+                out.println("No solution.");
+                return 1;
+            }
+            return 0;
+        } catch (InferenceExitException e) {
+            out.println(e.getMessage());
+            return e.getStatus();
+        } catch (RuntimeException | AssertionError e) {
+            // Keep the daemon alive, the next request starts from a fresh InferenceMain.
+            e.printStackTrace(out);
+            return 2;
+        }
+    }
+
+    /**
+     * Sends an inference request to the daemon listening on the given port and prints its
+     * response.
+     *
+     * @param args the arguments of InferenceMain
+     * @param out the stream to print the response to
+     * @return the exit status of the request
+     */
+    public static int sendRequest(int port, List<String> args, PrintStream out) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            for (String arg : args) {
+                if (arg.isEmpty() || arg.indexOf('\n') >= 0 || arg.indexOf('\r') >= 0) {
+                    throw new UserError("Cannot send argument \"" + arg + "\" to the inference daemon.");
+                }
+                writer.write(arg);
+                writer.write('\n');
+            }
+            writer.write('\n');
+            writer.flush();
+
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(EXIT_PREFIX)) {
+                    return Integer.parseInt(line.substring(EXIT_PREFIX.length()));
+                }
+                out.println(line);
+            }
+            out.println("The inference daemon closed the connection without an exit status.");
+            return 1;
+
+        } catch (IOException e) {
+            throw new UserError("Could not reach the inference daemon on port " + port + ": " + e.getMessage());
+        }
+    }
+}
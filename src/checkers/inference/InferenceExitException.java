@@ -0,0 +1,32 @@
+package checkers.inference;
+
+/**
+ * Thrown to stop an inference run that cannot continue, e.g. because javac failed or the checker
+ * or solver class cannot be instantiated, instead of exiting the JVM.
+ *
+ * {@link InferenceMain#run()} exits the JVM with the status of the exception. The
+ * {@link InferenceDaemon} reports the message and the status to its client and keeps serving.
+ */
+public class InferenceExitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public InferenceExitException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public InferenceExitException(int status, String message, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
+    /**
+     * Returns the exit status of the run.
+     */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -84,6 +84,10 @@ public class InferenceLauncher {
                 List<String> updatedJavaFiles =  insertJaif();
                 typecheck(updatedJavaFiles.toArray(new String[updatedJavaFiles.size()]));
                 break;
+
+            case DAEMON:
+                startDaemon();
+                break;
         }
     }
 
@@ -101,7 +105,10 @@ public class InferenceLauncher {
         ROUNDTRIP,
 
         /** run inference, insert the result back into source code, and typecheck*/
-        ROUNDTRIP_TYPECHECK
+        ROUNDTRIP_TYPECHECK,
+
+        /** run an inference daemon that serves the inference step of other launchers, see InferenceDaemon*/
+        DAEMON
     }
 
     public static void main(String [] args) {
@@ -151,10 +158,72 @@ public class InferenceLauncher {
     /**
      * Infers annotations for the set of source files found in InferenceOptions.java
      * This method creates a process that runs InferenceMain on the same options
-     * in InferenceOptions but excluding those that do not apply to the inference step
+     * in InferenceOptions but excluding those that do not apply to the inference step.
+     * If --daemonPort is given, the inference step is sent to a running InferenceDaemon instead.
      */
     public void infer() {
         printStep("Inferring", outStream);
+
+        int result;
+        if (InferenceOptions.daemonPort != null) {
+            List<String> inferenceArgs = getInferenceMainArgs(true);
+            if (InferenceOptions.printCommands) {
+                outStream.println("Sending infer request to daemon on port " + InferenceOptions.daemonPort + ":");
+                outStream.println(SystemUtil.join(" ", inferenceArgs));
+            }
+            result = InferenceDaemon.sendRequest(InferenceOptions.daemonPort, inferenceArgs, outStream);
+
+        } else {
+            List<String> argList = getInferenceJvmArgs();
+            argList.add("checkers.inference.InferenceMain");
+            argList.addAll(getInferenceMainArgs(false));
+
+            if (InferenceOptions.printCommands) {
+                outStream.println("Running infer command:");
+                outStream.println(SystemUtil.join(" ", argList));
+            }
+
+            result = ExecUtil.execute(argList.toArray(new String[argList.size()]), outStream, System.err);
+        }
+        outStream.flush();
+        errStream.flush();
+
+        reportStatus("Inference", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+    }
+
+    /**
+     * Starts an InferenceDaemon in a JVM set up like the one of the inference step, and waits
+     * until the daemon is shut down.
+     */
+    public void startDaemon() {
+        printStep("Running inference daemon", outStream);
+
+        List<String> argList = getInferenceJvmArgs();
+        argList.add("checkers.inference.InferenceDaemon");
+        if (InferenceOptions.daemonPort != null) {
+            argList.add(String.valueOf(InferenceOptions.daemonPort));
+        }
+
+        if (InferenceOptions.printCommands) {
+            outStream.println("Running daemon command:");
+            outStream.println(SystemUtil.join(" ", argList));
+        }
+
+        int result = ExecUtil.execute(argList.toArray(new String[argList.size()]), outStream, System.err);
+        outStream.flush();
+        errStream.flush();
+
+        reportStatus("Inference daemon", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+    }
+
+    /**
+     * Returns the command line of a JVM that can run InferenceMain, up to but excluding the main class.
+     */
+    private List<String> getInferenceJvmArgs() {
         final String java = getJavaCommand(System.getProperty("java.home"), outStream);
         List<String> argList = new LinkedList<>();
         argList.add(java);
@@ -176,12 +245,27 @@ public class InferenceLauncher {
                 Arrays.asList(
                         "-ea", "-ea:checkers.inference...",
                         // TODO: enable assertions.
-                        "-da:org.checkerframework.framework.flow...",
-                        "checkers.inference.InferenceMain",
-                        "--checker", InferenceOptions.checker)
+                        "-da:org.checkerframework.framework.flow...")
         );
+        return argList;
+    }
 
-        addIfNotNull("--jaifFile", InferenceOptions.jaifFile, argList);
+    /**
+     * Returns the arguments of InferenceMain for the inference step.
+     *
+     * @param absolutePaths whether to make the paths of the jaif file and the source files
+     *                      absolute, for a daemon that may run in another directory
+     */
+    private List<String> getInferenceMainArgs(boolean absolutePaths) {
+        List<String> argList = new LinkedList<>();
+        argList.add("--checker");
+        argList.add(InferenceOptions.checker);
+
+        String jaifFile = InferenceOptions.jaifFile;
+        if (absolutePaths && jaifFile != null) {
+            jaifFile = new File(jaifFile).getAbsolutePath();
+        }
+        addIfNotNull("--jaifFile", jaifFile, argList);
         addIfNotNull("--logLevel", InferenceOptions.logLevel, argList);
         addIfNotNull("--solver", InferenceOptions.solver, argList);
         addIfNotNull("--solverArgs", InferenceOptions.solverArgs, argList);
@@ -201,20 +285,10 @@ public class InferenceLauncher {
         removeXmArgs(argList, preJavacOptsSize, argList.size());
 
         // TODO: NEED TO HANDLE JDK
-        argList.addAll(Arrays.asList(InferenceOptions.javaFiles));
-
-        if (InferenceOptions.printCommands) {
-            outStream.println("Running infer command:");
-            outStream.println(SystemUtil.join(" ", argList));
+        for (String javaFile : InferenceOptions.javaFiles) {
+            argList.add(absolutePaths ? new File(javaFile).getAbsolutePath() : javaFile);
         }
-
-        int result = ExecUtil.execute(argList.toArray(new String[argList.size()]), outStream, System.err);
-        outStream.flush();
-        errStream.flush();
-
-        reportStatus("Inference", result, outStream);
-        outStream.flush();
-        exitOnNonZeroStatus(result);
+        return argList;
     }
 
     public static String getJavaCommand(final String javaHome, final PrintStream out) {
@@ -104,6 +104,9 @@ public class InferenceMain {
 
     private ResultHandler resultHandler;
 
+    // The failure to create the real checker, which is thrown again once javac returned.
+    private InferenceExitException checkerFailure;
+
     public void setResultHandler(ResultHandler resultHandler) {
         this.resultHandler = resultHandler;
     }
@@ -135,9 +138,30 @@ public class InferenceMain {
     }
 
     /**
-     * Kick off the inference process.
+     * Kick off the inference process. This is the command line entry point: it exits the JVM
+     * with status 1 if there is no solution, or with the status of an
+     * {@link InferenceExitException} that stopped the run.
      */
     public void run() {
+        try {
+            if (!infer()) {
+                logger.info("No solution, exiting...");
+                System.exit(1);
+            }
+        } catch (InferenceExitException e) {
+            System.exit(e.getStatus());
+        }
+    }
+
+    /**
+     * Generate and solve the constraints, and write the jaif file if there is a solution.
+     * Unlike {@link #run()}, this never exits the JVM, so it can be used by a long running
+     * process such as {@link InferenceDaemon}.
+     *
+     * @return false if the solver found no solution
+     * @throws InferenceExitException if the run cannot continue, e.g. javac failed
+     */
+    public boolean infer() {
         logger.finer("Starting InferenceMain");
 
         // Start up javac
@@ -146,10 +170,10 @@ public class InferenceMain {
         // solverResult = null covers case when debug solver is used, but in this case
         // shouldn't exit
         if (solverResult != null && !solverResult.hasSolution()) {
-            logger.info("No solution, exiting...");
-            System.exit(1);
+            return false;
         }
         writeJaif();
+        return true;
     }
 
     /**
@@ -195,6 +219,10 @@ public class InferenceMain {
         boolean success = CheckerFrameworkUtil.invokeCheckerFramework(checkerFrameworkArgs.toArray(new String[checkerFrameworkArgs.size()]),
                 new PrintWriter(javacoutput, true));
 
+        if (checkerFailure != null) {
+            // javac reports the exception of the annotation processor as a failed compilation.
+            throw checkerFailure;
+        }
         resultHandler.handleCompilerResult(success, javacoutput.toString());
     }
 
@@ -306,9 +334,11 @@ public class InferenceMain {
                 realChecker.initChecker();
                 logger.finer(String.format("Created real checker: %s", realChecker));
             } catch (Throwable e) {
-              logger.log(Level.SEVERE, "Error instantiating checker class \"" + InferenceOptions.checker + "\".", e);
-              System.exit(5);
-          }
+                String message = "Error instantiating checker class \"" + InferenceOptions.checker + "\".";
+                logger.log(Level.SEVERE, message, e);
+                checkerFailure = new InferenceExitException(5, message, e);
+                throw checkerFailure;
+            }
         }
         return realChecker;
     }
@@ -354,9 +384,9 @@ public class InferenceMain {
             logger.finer("Created solver: " + solver);
             return solver;
         } catch (Throwable e) {
-            logger.log(Level.SEVERE, "Error instantiating solver class \"" + InferenceOptions.solver + "\".", e);
-            System.exit(5);
-            return null; // Dead code
+            String message = "Error instantiating solver class \"" + InferenceOptions.solver + "\".";
+            logger.log(Level.SEVERE, message, e);
+            throw new InferenceExitException(5, message, e);
         }
     }
 
@@ -457,7 +487,7 @@ public class InferenceMain {
             if (!success) {
                 logger.severe("Error return code from javac! Quitting.");
                 logger.info(javacOutStr);
-                System.exit(1);
+                throw new InferenceExitException(1, "Error return code from javac!\n" + javacOutStr);
             }
         }
     }
@@ -2,13 +2,16 @@ package checkers.inference;
 
 
 import org.checkerframework.framework.util.CheckerMain;
+import org.checkerframework.javacutil.BugInCF;
 import org.checkerframework.javacutil.SystemUtil;
 
 import interning.InterningChecker;
 
 import java.io.File;
+import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -43,7 +46,7 @@ public class InferenceOptions {
     @OptionGroup("General Options")
 
     // TODO: The mode variable should be an enum rather than a string.
-    @Option(value = "-m Modes of operation: TYPECHECK, INFER, ROUNDTRIP, ROUNDTRIP_TYPECHECK")
+    @Option(value = "-m Modes of operation: TYPECHECK, INFER, ROUNDTRIP, ROUNDTRIP_TYPECHECK, DAEMON")
     public static String mode;
 
     @Option("Should we log certain exceptions rather than crash")
@@ -85,6 +88,9 @@ public class InferenceOptions {
     @Option("The JSON file to which constraints should be dumped.  This field is mutually exclusive with solver.")
     public static String jsonFile;
 
+    @Option("Port of the inference daemon. In DAEMON mode the daemon listens on it, otherwise the inference step is sent to it.")
+    public static Integer daemonPort;
+
     // ------------------------------------------------------
     @OptionGroup("Annotation File Utilities options")
 
@@ -128,11 +134,44 @@ public class InferenceOptions {
     public static List<String> javacOptions;
     public static String [] javaFiles;
 
+    /**
+     * The values of the command-line options before any arguments are parsed, see {@link #reset()}.
+     */
+    private static final Map<Field, Object> optionDefaults = new HashMap<>();
+    static {
+        for (Field field : InferenceOptions.class.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Option.class)) {
+                try {
+                    optionDefaults.put(field, field.get(null));
+                } catch (IllegalAccessException e) {
+                    throw new BugInCF("Cannot read option " + field.getName(), e);
+                }
+            }
+        }
+    }
+
     public static File pathToThisJar = new File(CheckerMain.findPathTo(InferenceOptions.class, true));
     public static File checkersInferenceDir = pathToThisJar.getParentFile().getParentFile();
     public static File distDir = new File(checkersInferenceDir, "dist");
     public static File checkerJar = new File(distDir, "checker.jar");
 
+    /**
+     * Restores all options to their values before any call to {@link #init(String[], boolean)},
+     * so that a long running process, e.g. the InferenceDaemon, can parse the arguments of the
+     * next run.
+     */
+    public static void reset() {
+        for (Map.Entry<Field, Object> entry : optionDefaults.entrySet()) {
+            try {
+                entry.getKey().set(null, entry.getValue());
+            } catch (IllegalAccessException e) {
+                throw new BugInCF("Cannot reset option " + entry.getKey().getName(), e);
+            }
+        }
+        javacOptions = null;
+        javaFiles = null;
+    }
+
     public static InitStatus init(String [] args, boolean requireMode) {
         List<String> errors = new ArrayList<>();
         Options options = new Options("inference [options]", InferenceOptions.class);
@@ -169,7 +208,8 @@ public class InferenceOptions {
             }
         }
 
-        if (checker == null) {
+        // The daemon runs whichever checker each request names.
+        if (checker == null && !Mode.DAEMON.name().equalsIgnoreCase(mode)) {
             errors.add("You must specify exactly one checker using --checker");
         }
 
@@ -186,12 +226,12 @@ public class InferenceOptions {
                 modeEnum = Mode.valueOf(InferenceOptions.mode);
 
             } catch (IllegalArgumentException iexc) {
-                System.out.println("Could not recognize mode: " + InferenceOptions.mode + "\n"
+                errors.add("Could not recognize mode: " + InferenceOptions.mode + "\n"
                         + "valid modes: " + SystemUtil.join(", ", Mode.values()));
-                System.exit(1);
+                return new InitStatus(options, errors, help);
             }
 
-            if (modeEnum != Mode.TYPECHECK) {
+            if (modeEnum != Mode.TYPECHECK && modeEnum != Mode.DAEMON) {
                 if (solver == null) {
                     if (jsonFile != null) {
                         solver = JsonSerializerSolver.class.getCanonicalName();
@@ -190,7 +190,8 @@ public interface SlotManager {
     Slot getSlot(AnnotatedTypeMirror atm);
 
     /**
-     * Return all slots collected by this SlotManager
+     * Return all slots collected by this SlotManager. The returned list may be a
+     * read-only view that reflects slots created later, callers must not modify it.
      * @return a list of slots
      */
     List<Slot> getSlots();
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -58,8 +59,7 @@ public class SolutionJaifUpdater {
             System.exit(1);
         }
 
-        String solvedJsonStr = readFile(solvedJson);
-        JsonDeserializer solvedDeserializer = new JsonDeserializer(null, solvedJsonStr);
+        JsonDeserializer solvedDeserializer = streamFile(solvedJson);
 
         Map<String, Boolean> existentialValues = getExistentialValues(originalJson, solvedDeserializer);
         Map<String, String> solvedValues = getSolvedValues(solvedDeserializer, topAnnotation, botAnnotation);
@@ -110,8 +110,7 @@ public class SolutionJaifUpdater {
     }
 
     private static final Map<String, Boolean> getExistentialValues(String originalJsonFilename, JsonDeserializer solvedDeserializer) throws IOException, ParseException {
-        String json = readFile(originalJsonFilename);
-        JsonDeserializer deserializer = new JsonDeserializer(null, json);
+        JsonDeserializer deserializer = streamFile(originalJsonFilename);
         List<String> allPotentialVariables = deserializer.getPotentialVariables();
         Set<String> enabledVars = solvedDeserializer.getEnabledVars();
 
@@ -134,6 +133,15 @@ public class SolutionJaifUpdater {
         return results;
     }
 
+    /**
+     * Reads the sections of the given json file, without keeping its constraints in memory.
+     */
+    private static JsonDeserializer streamFile(String path) throws IOException, ParseException {
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), Charset.defaultCharset())) {
+            return new JsonDeserializer(null, reader, null);
+        }
+    }
+
     static String readFile(String path) throws IOException {
         byte[] encoded = Files.readAllBytes(Paths.get(path));
         return new String(encoded, Charset.defaultCharset());
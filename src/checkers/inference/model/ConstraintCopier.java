@@ -0,0 +1,137 @@
+package checkers.inference.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * ConstraintCopier copies constraints, replacing each slot by the slot a mapping gives for it.
+ * Copies keep the location of the original constraint, and are normalized like newly created
+ * constraints.
+ *
+ * It is used to rewrite constraints on merged variables, see
+ * {@link ConstraintManager#copyConstraint(Constraint, Function)}.
+ */
+class ConstraintCopier implements Serializer<Slot, Constraint> {
+
+    private final Function<Slot, Slot> slotMapping;
+    private final QualifierHierarchy realQualHierarchy;
+
+    ConstraintCopier(Function<Slot, Slot> slotMapping, QualifierHierarchy realQualHierarchy) {
+        this.slotMapping = slotMapping;
+        this.realQualHierarchy = realQualHierarchy;
+    }
+
+    private Slot map(Slot slot) {
+        Slot mapped = slotMapping.apply(slot);
+        if (mapped == null) {
+            throw new BugInCF("No slot to copy " + slot + " to.");
+        }
+        return mapped;
+    }
+
+    private List<Constraint> copyAll(Iterable<Constraint> constraints) {
+        List<Constraint> copies = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            copies.add(constraint.serialize(this));
+        }
+        return copies;
+    }
+
+    @Override
+    public Constraint serialize(SubtypeConstraint constraint) {
+        return SubtypeConstraint.create(map(constraint.getSubtype()), map(constraint.getSupertype()),
+                constraint.getLocation(), realQualHierarchy);
+    }
+
+    @Override
+    public Constraint serialize(EqualityConstraint constraint) {
+        return EqualityConstraint.create(map(constraint.getFirst()), map(constraint.getSecond()),
+                constraint.getLocation());
+    }
+
+    @Override
+    public Constraint serialize(ExistentialConstraint constraint) {
+        return ExistentialConstraint.create(map(constraint.getPotentialVariable()),
+                copyAll(constraint.potentialConstraints()), copyAll(constraint.getAlternateConstraints()),
+                constraint.getLocation());
+    }
+
+    @Override
+    public Constraint serialize(InequalityConstraint constraint) {
+        return InequalityConstraint.create(map(constraint.getFirst()), map(constraint.getSecond()),
+                constraint.getLocation());
+    }
+
+    @Override
+    public Constraint serialize(ComparableConstraint comparableConstraint) {
+        return ComparableConstraint.create(map(comparableConstraint.getFirst()),
+                map(comparableConstraint.getSecond()), comparableConstraint.getLocation(), realQualHierarchy);
+    }
+
+    @Override
+    public Constraint serialize(CombineConstraint combineConstraint) {
+        return CombineConstraint.create(map(combineConstraint.getTarget()), map(combineConstraint.getDeclared()),
+                (CombVariableSlot) map(combineConstraint.getResult()), combineConstraint.getLocation());
+    }
+
+    @Override
+    public Constraint serialize(PreferenceConstraint preferenceConstraint) {
+        return PreferenceConstraint.create((VariableSlot) map(preferenceConstraint.getVariable()),
+                (ConstantSlot) map(preferenceConstraint.getGoal()), preferenceConstraint.getWeight(),
+                preferenceConstraint.getLocation());
+    }
+
+    @Override
+    public Constraint serialize(ImplicationConstraint implicationConstraint) {
+        return ImplicationConstraint.create(copyAll(implicationConstraint.getAssumptions()),
+                implicationConstraint.getConclusion().serialize(this), implicationConstraint.getLocation());
+    }
+
+    @Override
+    public Constraint serialize(ArithmeticConstraint arithmeticConstraint) {
+        return ArithmeticConstraint.create(arithmeticConstraint.getOperation(),
+                map(arithmeticConstraint.getLeftOperand()), map(arithmeticConstraint.getRightOperand()),
+                (ArithmeticVariableSlot) map(arithmeticConstraint.getResult()), arithmeticConstraint.getLocation());
+    }
+
+    // Slots are mapped, not copied.
+
+    @Override
+    public Slot serialize(SourceVariableSlot slot) {
+        return map(slot);
+    }
+
+    @Override
+    public Slot serialize(ConstantSlot slot) {
+        return map(slot);
+    }
+
+    @Override
+    public Slot serialize(ExistentialVariableSlot slot) {
+        return map(slot);
+    }
+
+    @Override
+    public Slot serialize(RefinementVariableSlot slot) {
+        return map(slot);
+    }
+
+    @Override
+    public Slot serialize(CombVariableSlot slot) {
+        return map(slot);
+    }
+
+    @Override
+    public Slot serialize(LubVariableSlot slot) {
+        return map(slot);
+    }
+
+    @Override
+    public Slot serialize(ArithmeticVariableSlot slot) {
+        return map(slot);
+    }
+}
@@ -0,0 +1,67 @@
+package checkers.inference.model;
+
+import java.util.List;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import checkers.inference.model.ArithmeticConstraint.ArithmeticOperationKind;
+
+/**
+ * ConstraintFactory creates constraints that are not added to a ConstraintManager, e.g. those
+ * read back from a constraint file, without interning them in a {@link ConstraintStore}.
+ *
+ * The create methods normalize constraints like those of {@link ConstraintManager}, and give
+ * every constraint the location of this factory.
+ */
+public class ConstraintFactory {
+
+    private final QualifierHierarchy realQualHierarchy;
+    private final AnnotationLocation location;
+
+    /**
+     * @param realQualHierarchy the hierarchy used to normalize subtype and comparable
+     *     constraints between constants, or null if the constraints to create do not have any
+     */
+    public ConstraintFactory(QualifierHierarchy realQualHierarchy, AnnotationLocation location) {
+        this.realQualHierarchy = realQualHierarchy;
+        this.location = location;
+    }
+
+    public Constraint createSubtypeConstraint(Slot subtype, Slot supertype) {
+        return SubtypeConstraint.create(subtype, supertype, location, realQualHierarchy);
+    }
+
+    public Constraint createEqualityConstraint(Slot first, Slot second) {
+        return EqualityConstraint.create(first, second, location);
+    }
+
+    public Constraint createInequalityConstraint(Slot first, Slot second) {
+        return InequalityConstraint.create(first, second, location);
+    }
+
+    public Constraint createComparableConstraint(Slot first, Slot second) {
+        return ComparableConstraint.create(first, second, location, realQualHierarchy);
+    }
+
+    public CombineConstraint createCombineConstraint(Slot target, Slot decl, CombVariableSlot result) {
+        return CombineConstraint.create(target, decl, result, location);
+    }
+
+    public PreferenceConstraint createPreferenceConstraint(VariableSlot variable, ConstantSlot goal, int weight) {
+        return PreferenceConstraint.create(variable, goal, weight, location);
+    }
+
+    public ExistentialConstraint createExistentialConstraint(Slot slot,
+            List<Constraint> ifExistsConstraints, List<Constraint> ifNotExistsConstraints) {
+        return ExistentialConstraint.create(slot, ifExistsConstraints, ifNotExistsConstraints, location);
+    }
+
+    public Constraint createImplicationConstraint(List<Constraint> assumptions, Constraint conclusion) {
+        return ImplicationConstraint.create(assumptions, conclusion, location);
+    }
+
+    public ArithmeticConstraint createArithmeticConstraint(ArithmeticOperationKind operation,
+            Slot leftOperand, Slot rightOperand, ArithmeticVariableSlot result) {
+        return ArithmeticConstraint.create(operation, leftOperand, rightOperand, result, location);
+    }
+}
@@ -0,0 +1,22 @@
+package checkers.inference.model;
+
+/**
+ * Listener notified by {@link ConstraintManager} whenever a constraint is added to the
+ * constraint set.
+ *
+ * This lets consumers of constraints, e.g. a graph builder or a CNF encoder, process constraints
+ * while the InferenceVisitor is still generating them, instead of waiting for the full constraint
+ * set at the end of type-checking.
+ *
+ * @see ConstraintManager#addConstraintListener(ConstraintListener)
+ */
+public interface ConstraintListener {
+
+    /**
+     * Called once for each distinct constraint, the first time it is added.
+     * Adding an equal constraint again does not trigger another notification.
+     *
+     * @param constraint the canonical instance of the added constraint
+     */
+    void constraintAdded(Constraint constraint);
+}
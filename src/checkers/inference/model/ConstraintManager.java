@@ -1,8 +1,9 @@
 package checkers.inference.model;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.VisitorState;
@@ -10,10 +11,18 @@ import org.checkerframework.javacutil.BugInCF;
 import checkers.inference.InferenceAnnotatedTypeFactory;
 import checkers.inference.VariableAnnotator;
 import checkers.inference.model.ArithmeticConstraint.ArithmeticOperationKind;
+import checkers.inference.model.ConstraintStore.BinaryKind;
 
 /**
  * Constraint manager holds constraints that are generated by InferenceVisitor.
  *
+ * Added constraints are interned by a {@link ConstraintStore}: all createXXXConstraint methods
+ * return the canonical instance of a constraint that has already been added, so repeatedly
+ * generating the same constraint (e.g. on repeated visits of a generic method call) does not
+ * keep duplicate objects alive. Constraints that are never added are not kept by the store.
+ * {@link ConstraintListener}s registered with this manager are notified of each distinct
+ * constraint as soon as it is first added.
+ *
  * @author mcarthur
  *
  */
@@ -21,7 +30,9 @@ public class ConstraintManager {
 
     private boolean ignoreConstraints = false;
 
-    private final Set<Constraint> constraints = new HashSet<Constraint>();
+    private final ConstraintStore constraintStore = new ConstraintStore();
+
+    private final List<ConstraintListener> listeners = new ArrayList<>();
 
     private InferenceAnnotatedTypeFactory inferenceTypeFactory;
 
@@ -38,8 +49,29 @@ public class ConstraintManager {
         this.checker = inferenceTypeFactory.getContext().getChecker();
     }
 
+    /**
+     * Returns a read-only view of all added constraints, in the order they were first added.
+     */
     public Set<Constraint> getConstraints() {
-        return constraints;
+        return constraintStore.getAddedConstraints();
+    }
+
+    /**
+     * Returns the store interning all constraints added to this manager.
+     */
+    public ConstraintStore getConstraintStore() {
+        return constraintStore;
+    }
+
+    /**
+     * Registers a listener that is notified of every distinct constraint added from now on.
+     */
+    public void addConstraintListener(ConstraintListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeConstraintListener(ConstraintListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -56,7 +88,12 @@ public class ConstraintManager {
                 throw new BugInCF(
                         "An AlwaysFalseConstraint is being added to the constraint set.");
             } else if (!(constraint instanceof AlwaysTrueConstraint)) {
-                constraints.add(constraint);
+                Constraint added = constraintStore.add(constraint);
+                if (added != null) {
+                    for (ConstraintListener listener : listeners) {
+                        listener.constraintAdded(added);
+                    }
+                }
             }
         }
     }
@@ -74,6 +111,16 @@ public class ConstraintManager {
         }
     }
 
+    /**
+     * Creates a copy of the given constraint with every slot replaced by the slot the given
+     * mapping returns for it, without adding it to the constraint set. The copy keeps the
+     * location of the given constraint, and is normalized, so it may be an
+     * {@link AlwaysTrueConstraint} or {@link AlwaysFalseConstraint}.
+     */
+    public Constraint copyConstraint(Constraint constraint, Function<Slot, Slot> slotMapping) {
+        return constraint.serialize(new ConstraintCopier(slotMapping, realQualHierarchy));
+    }
+
     public void startIgnoringConstraints() {
         ignoreConstraints = true;
     }
@@ -90,8 +137,12 @@ public class ConstraintManager {
      * {@link AlwaysTrueConstraint}, {@link AlwaysFalseConstraint}, or {@link EqualityConstraint}.
      */
     public Constraint createSubtypeConstraint(Slot subtype, Slot supertype) {
-        return SubtypeConstraint.create(subtype, supertype, getCurrentLocation(),
-                realQualHierarchy);
+        Constraint interned = lookup(BinaryKind.SUBTYPE, subtype, supertype);
+        if (interned != null) {
+            return interned;
+        }
+        return constraintStore.canonicalize(SubtypeConstraint.create(subtype, supertype, getCurrentLocation(),
+                realQualHierarchy));
     }
 
     /**
@@ -99,7 +150,11 @@ public class ConstraintManager {
      * {@link AlwaysTrueConstraint} or {@link AlwaysFalseConstraint}.
      */
     public Constraint createEqualityConstraint(Slot first, Slot second) {
-        return EqualityConstraint.create(first, second, getCurrentLocation());
+        Constraint interned = lookup(BinaryKind.EQUALITY, first, second);
+        if (interned != null) {
+            return interned;
+        }
+        return constraintStore.canonicalize(EqualityConstraint.create(first, second, getCurrentLocation()));
     }
 
     /**
@@ -107,7 +162,11 @@ public class ConstraintManager {
      * {@link AlwaysTrueConstraint} or {@link AlwaysFalseConstraint}.
      */
     public Constraint createInequalityConstraint(Slot first, Slot second) {
-        return InequalityConstraint.create(first, second, getCurrentLocation());
+        Constraint interned = lookup(BinaryKind.INEQUALITY, first, second);
+        if (interned != null) {
+            return interned;
+        }
+        return constraintStore.canonicalize(InequalityConstraint.create(first, second, getCurrentLocation()));
     }
 
     /**
@@ -115,14 +174,20 @@ public class ConstraintManager {
      * {@link AlwaysTrueConstraint} or {@link AlwaysFalseConstraint}.
      */
     public Constraint createComparableConstraint(Slot first, Slot second) {
-        return ComparableConstraint.create(first, second, getCurrentLocation(), realQualHierarchy);
+        Constraint interned = lookup(BinaryKind.COMPARABLE, first, second);
+        if (interned != null) {
+            return interned;
+        }
+        return constraintStore.canonicalize(ComparableConstraint.create(first, second, getCurrentLocation(),
+                realQualHierarchy));
     }
 
     /**
      * Creates a {@link CombineConstraint} between the three slots.
      */
     public CombineConstraint createCombineConstraint(Slot target, Slot decl, CombVariableSlot result) {
-        return CombineConstraint.create(target, decl, result, getCurrentLocation());
+        return (CombineConstraint) constraintStore.canonicalize(
+                CombineConstraint.create(target, decl, result, getCurrentLocation()));
     }
 
     /**
@@ -130,7 +195,8 @@ public class ConstraintManager {
      */
     public PreferenceConstraint createPreferenceConstraint(VariableSlot variable, ConstantSlot goal,
             int weight) {
-        return PreferenceConstraint.create(variable, goal, weight, getCurrentLocation());
+        return (PreferenceConstraint) constraintStore.canonicalize(
+                PreferenceConstraint.create(variable, goal, weight, getCurrentLocation()));
     }
 
     /**
@@ -143,7 +209,7 @@ public class ConstraintManager {
     }
 
     public Constraint createImplicationConstraint(List<Constraint> assumptions, Constraint conclusion) {
-        return ImplicationConstraint.create(assumptions, conclusion, getCurrentLocation());
+        return constraintStore.canonicalize(ImplicationConstraint.create(assumptions, conclusion, getCurrentLocation()));
     }
 
     /**
@@ -151,13 +217,26 @@ public class ConstraintManager {
      */
     public ArithmeticConstraint createArithmeticConstraint(ArithmeticOperationKind operation,
             Slot leftOperand, Slot rightOperand, ArithmeticVariableSlot result) {
-        return ArithmeticConstraint.create(operation, leftOperand, rightOperand, result,
-                getCurrentLocation());
+        return (ArithmeticConstraint) constraintStore.canonicalize(ArithmeticConstraint.create(operation,
+                leftOperand, rightOperand, result, getCurrentLocation()));
+    }
+
+    /**
+     * Returns the canonical binary constraint between the given slots if it has been added
+     * before. Null slots are left to the create methods to report.
+     */
+    private Constraint lookup(BinaryKind kind, Slot first, Slot second) {
+        if (first == null || second == null) {
+            return null;
+        }
+        return constraintStore.lookup(kind, first, second);
     }
 
     // TODO: give location directly in Constraint.create() methods
     private AnnotationLocation getCurrentLocation() {
-        if (visitorState.getPath() != null) {
+        // Constraints are also created outside of type checking, e.g. when a constraint file
+        // is read back, before init is called.
+        if (visitorState != null && visitorState.getPath() != null) {
             return VariableAnnotator.treeToLocation(inferenceTypeFactory,
                     visitorState.getPath().getLeaf());
         } else {
@@ -0,0 +1,225 @@
+package checkers.inference.model;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import checkers.inference.util.LongIntHashMap;
+
+/**
+ * ConstraintStore interns the constraints added to the constraint set of a
+ * {@link ConstraintManager}.
+ *
+ * Every added constraint is mapped to one canonical instance. Binary constraints, the vast majority,
+ * are keyed by their kind and the ids of their two slots, and stored column-wise per kind: one
+ * int array of first slot ids, one of second slot ids, and one array of canonical instances. For
+ * the symmetric kinds (equality, inequality and comparable) the two ids are ordered, so that
+ * {@code a == b} and {@code b == a} share one entry. All other constraints are interned by
+ * {@link Object#equals(Object)}.
+ *
+ * Only added constraints are stored. Constraints that are created but never added, e.g. the
+ * assumptions of an {@link ImplicationConstraint}, are not kept alive by the store; creating one
+ * that equals an added constraint returns the canonical instance instead.
+ */
+public class ConstraintStore {
+
+    /**
+     * Kinds of binary constraints stored in columns.
+     */
+    public enum BinaryKind {
+        SUBTYPE(false),
+        EQUALITY(true),
+        INEQUALITY(true),
+        COMPARABLE(true);
+
+        /**
+         * Whether the order of the two slots is irrelevant.
+         */
+        public final boolean symmetric;
+
+        BinaryKind(boolean symmetric) {
+            this.symmetric = symmetric;
+        }
+
+        /**
+         * Returns the kind of the given constraint, or null if it is not stored in columns.
+         */
+        public static BinaryKind of(Constraint constraint) {
+            if (constraint instanceof SubtypeConstraint) {
+                return SUBTYPE;
+            } else if (constraint instanceof EqualityConstraint) {
+                return EQUALITY;
+            } else if (constraint instanceof InequalityConstraint) {
+                return INEQUALITY;
+            } else if (constraint instanceof ComparableConstraint) {
+                return COMPARABLE;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Columnar storage of the binary constraints of one kind.
+     */
+    private static class BinaryColumns {
+        private final LongIntHashMap index = new LongIntHashMap();
+        private int[] firstIds = new int[16];
+        private int[] secondIds = new int[16];
+        private Constraint[] instances = new Constraint[16];
+        private int size;
+
+        private int append(int firstId, int secondId, Constraint constraint) {
+            if (size == instances.length) {
+                int capacity = size * 2;
+                firstIds = Arrays.copyOf(firstIds, capacity);
+                secondIds = Arrays.copyOf(secondIds, capacity);
+                instances = Arrays.copyOf(instances, capacity);
+            }
+            firstIds[size] = firstId;
+            secondIds[size] = secondId;
+            instances[size] = constraint;
+            return size++;
+        }
+    }
+
+    private final Map<BinaryKind, BinaryColumns> binaryColumns = new EnumMap<>(BinaryKind.class);
+
+    /**
+     * Canonical instances of the added non-binary constraints.
+     */
+    private final Map<Constraint, Constraint> otherConstraints = new HashMap<>();
+
+    /**
+     * All added constraints in insertion order.
+     */
+    private final List<Constraint> addedConstraints = new ArrayList<>();
+
+    private final Set<Constraint> addedView = new AddedConstraintsView();
+
+    public ConstraintStore() {
+        for (BinaryKind kind : BinaryKind.values()) {
+            binaryColumns.put(kind, new BinaryColumns());
+        }
+    }
+
+    /**
+     * Returns the canonical binary constraint of the given kind between the given slots, or null
+     * if no such constraint has been added. This lets callers skip creating a new instance.
+     */
+    public Constraint lookup(BinaryKind kind, Slot first, Slot second) {
+        BinaryColumns columns = binaryColumns.get(kind);
+        int index = columns.index.get(key(kind, first.getId(), second.getId()), -1);
+        return index < 0 ? null : columns.instances[index];
+    }
+
+    /**
+     * Returns the canonical instance of the given constraint if an equal constraint has been
+     * added, and the given constraint otherwise. The given constraint is not stored.
+     */
+    public Constraint canonicalize(Constraint constraint) {
+        BinaryKind kind = BinaryKind.of(constraint);
+        if (kind != null) {
+            BinaryConstraint binary = (BinaryConstraint) constraint;
+            Constraint canonical = lookup(kind, binary.getFirst(), binary.getSecond());
+            return canonical != null ? canonical : constraint;
+        }
+
+        Constraint canonical = otherConstraints.get(constraint);
+        return canonical != null ? canonical : constraint;
+    }
+
+    /**
+     * Adds the given constraint to the constraint set, and makes it the canonical instance of
+     * its equal constraints.
+     *
+     * @return the given constraint if it was not added before, or null if an equal constraint
+     * has already been added
+     */
+    public Constraint add(Constraint constraint) {
+        BinaryKind kind = BinaryKind.of(constraint);
+        if (kind != null) {
+            BinaryConstraint binary = (BinaryConstraint) constraint;
+            BinaryColumns columns = binaryColumns.get(kind);
+            int firstId = binary.getFirst().getId();
+            int secondId = binary.getSecond().getId();
+            long key = key(kind, firstId, secondId);
+            if (columns.index.get(key, -1) >= 0) {
+                return null;
+            }
+            columns.index.put(key, columns.append(firstId, secondId, constraint));
+        } else if (otherConstraints.putIfAbsent(constraint, constraint) != null) {
+            return null;
+        }
+
+        addedConstraints.add(constraint);
+        return constraint;
+    }
+
+    /**
+     * Returns whether an equal constraint has been added to the constraint set.
+     */
+    public boolean isAdded(Constraint constraint) {
+        BinaryKind kind = BinaryKind.of(constraint);
+        if (kind != null) {
+            BinaryConstraint binary = (BinaryConstraint) constraint;
+            return lookup(kind, binary.getFirst(), binary.getSecond()) != null;
+        }
+
+        return otherConstraints.containsKey(constraint);
+    }
+
+    /**
+     * Returns a read-only view of the added constraints, in insertion order.
+     */
+    public Set<Constraint> getAddedConstraints() {
+        return addedView;
+    }
+
+    /**
+     * Returns the number of added binary constraints of the given kind. Together with
+     * {@link #getFirstSlotId} and {@link #getSecondSlotId} this gives access to the columns
+     * without touching the constraint objects.
+     */
+    public int getNumberOfBinaryConstraints(BinaryKind kind) {
+        return binaryColumns.get(kind).size;
+    }
+
+    public int getFirstSlotId(BinaryKind kind, int index) {
+        return binaryColumns.get(kind).firstIds[index];
+    }
+
+    public int getSecondSlotId(BinaryKind kind, int index) {
+        return binaryColumns.get(kind).secondIds[index];
+    }
+
+    private static long key(BinaryKind kind, int firstId, int secondId) {
+        if (kind.symmetric && firstId > secondId) {
+            return LongIntHashMap.pack(secondId, firstId);
+        }
+        return LongIntHashMap.pack(firstId, secondId);
+    }
+
+    private class AddedConstraintsView extends AbstractSet<Constraint> {
+        @Override
+        public Iterator<Constraint> iterator() {
+            return Collections.unmodifiableList(addedConstraints).iterator();
+        }
+
+        @Override
+        public int size() {
+            return addedConstraints.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Constraint && isAdded((Constraint) o);
+        }
+    }
+}
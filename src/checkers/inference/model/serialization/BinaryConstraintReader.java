@@ -0,0 +1,380 @@
+package checkers.inference.model.serialization;
+
+import static checkers.inference.model.serialization.BinaryConstraintWriter.ARITHMETIC;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.COMBINE;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.COMPARABLE;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.CONSTRAINT_RECORD_INTS;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.EQUALITY;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.EXISTENTIAL;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.IMPLICATION;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.INEQUALITY;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.MAGIC;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.PREFERENCE;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.SLOT_RECORD_INTS;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.SUBTYPE;
+import static checkers.inference.model.serialization.BinaryConstraintWriter.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import com.sun.source.tree.Tree;
+
+import scenelib.annotations.io.ASTPath;
+import scenelib.annotations.io.ASTRecord;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.AnnotationLocation.AstPathLocation;
+import checkers.inference.model.AnnotationLocation.ClassDeclLocation;
+import checkers.inference.model.ArithmeticConstraint.ArithmeticOperationKind;
+import checkers.inference.model.ArithmeticVariableSlot;
+import checkers.inference.model.CombVariableSlot;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintFactory;
+import checkers.inference.model.ExistentialVariableSlot;
+import checkers.inference.model.LubVariableSlot;
+import checkers.inference.model.RefinementVariableSlot;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.util.LongIntHashMap;
+
+/**
+ * BinaryConstraintReader reads a constraint file written by {@link BinaryConstraintWriter}.
+ *
+ * The file is memory mapped and only its header and string table are decoded when it is opened.
+ * Slots and constraints are created from their fixed-width records when they are first accessed,
+ * through the lists returned by {@link #getSlots()} and {@link #getConstraints()}, so a consumer
+ * that streams over the constraints never holds the whole constraint set in memory. Slots are
+ * cached once created, as constraints share them; constraints are created anew on every access,
+ * by a {@link ConstraintFactory}, so they are not interned and are dropped once the consumer is
+ * done with them.
+ *
+ * Only arithmetic variable slots and arithmetic constraints, which cannot be created without
+ * one, get their location back; as in {@link JsonDeserializer}, all other slots and constraints
+ * are created without a location. Locations are decoded when the file is opened, and AST path
+ * locations have no compilation unit. Files larger than 2GB cannot be mapped.
+ */
+public class BinaryConstraintReader {
+
+    private static final int INT_BYTES = Integer.BYTES;
+
+    private final AnnotationMirrorSerializer annotationSerializer;
+    private final QualifierHierarchy realQualHierarchy;
+    private final ConstraintFactory constraintFactory;
+    private final MappedByteBuffer buffer;
+
+    private final String[] strings;
+
+    private final int slotCount;
+    private final int slotsOffset;
+    private final int constraintCount;
+    private final int constraintsOffset;
+    private final int nestedCount;
+    private final int nestedOffset;
+    private final int listsLength;
+    private final int listsOffset;
+
+    private final AnnotationLocation[] locations;
+
+    /** Maps slot ids to the index of their record. */
+    private final LongIntHashMap slotRecords;
+    private final Slot[] slots;
+
+    /**
+     * @param realQualHierarchy the hierarchy used to normalize the constraints read, see
+     *     {@link ConstraintFactory#ConstraintFactory(QualifierHierarchy, AnnotationLocation)}
+     */
+    public BinaryConstraintReader(File file, AnnotationMirrorSerializer annotationSerializer,
+            QualifierHierarchy realQualHierarchy) throws IOException {
+        this.annotationSerializer = annotationSerializer;
+        this.realQualHierarchy = realQualHierarchy;
+        this.constraintFactory = new ConstraintFactory(realQualHierarchy, AnnotationLocation.MISSING_LOCATION);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Constraint file too large to map: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a binary constraint file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported binary constraint file version " + version
+                        + ", expected " + VERSION + ": " + file);
+            }
+
+            strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+
+            slotCount = buffer.getInt();
+            slotsOffset = buffer.position();
+            constraintCount = buffer.getInt(skipRecords(slotsOffset, slotCount, SLOT_RECORD_INTS));
+            constraintsOffset = skipRecords(slotsOffset, slotCount, SLOT_RECORD_INTS) + INT_BYTES;
+            int nestedCountOffset = skipRecords(constraintsOffset, constraintCount, CONSTRAINT_RECORD_INTS);
+            nestedCount = buffer.getInt(nestedCountOffset);
+            nestedOffset = nestedCountOffset + INT_BYTES;
+            int listsLengthOffset = skipRecords(nestedOffset, nestedCount, CONSTRAINT_RECORD_INTS);
+            listsLength = buffer.getInt(listsLengthOffset);
+            listsOffset = listsLengthOffset + INT_BYTES;
+
+            int locationsCountOffset = listsOffset + listsLength * INT_BYTES;
+            if (listsLength < 0 || locationsCountOffset > buffer.limit()) {
+                throw new IllegalArgumentException("Truncated binary constraint file: " + file);
+            }
+            buffer.position(locationsCountOffset);
+            locations = new AnnotationLocation[buffer.getInt()];
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = readLocation();
+            }
+            if (buffer.position() != buffer.limit()) {
+                throw new IllegalArgumentException("Corrupt binary constraint file: " + file);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated binary constraint file: " + file, e);
+        }
+
+        slotRecords = new LongIntHashMap(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slotRecords.put(slotInt(i, 1), i);
+        }
+        slots = new Slot[slotCount];
+    }
+
+    /**
+     * Reads a string at the current position of the buffer, or null.
+     */
+    private String readString() {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a location at the current position of the buffer.
+     */
+    private AnnotationLocation readLocation() {
+        int kindOrdinal = buffer.getInt();
+        AnnotationLocation.Kind[] kinds = AnnotationLocation.Kind.values();
+        if (kindOrdinal < 0 || kindOrdinal >= kinds.length) {
+            throw new IllegalArgumentException("Unknown location kind " + kindOrdinal);
+        }
+        switch (kinds[kindOrdinal]) {
+            case CLASS_DECL:
+                return new ClassDeclLocation(readString());
+            case AST_PATH:
+                String className = readString();
+                String methodName = readString();
+                String varName = readString();
+                int entryCount = buffer.getInt();
+                if (entryCount < 0) {
+                    throw new IllegalArgumentException("Invalid AST path length " + entryCount);
+                }
+                Tree.Kind[] treeKinds = Tree.Kind.values();
+                ASTPath astPath = ASTPath.empty();
+                for (int i = 0; i < entryCount; i++) {
+                    int treeKind = buffer.getInt();
+                    if (treeKind < 0 || treeKind >= treeKinds.length) {
+                        throw new IllegalArgumentException("Unknown tree kind " + treeKind);
+                    }
+                    String childSelector = readString();
+                    int argument = buffer.getInt();
+                    astPath = astPath.extend(argument < 0
+                            ? new ASTPath.ASTEntry(treeKinds[treeKind], childSelector)
+                            : new ASTPath.ASTEntry(treeKinds[treeKind], childSelector, argument));
+                }
+                return new AstPathLocation(new ASTRecord(null, className, methodName, varName, astPath));
+            default:
+                return AnnotationLocation.MISSING_LOCATION;
+        }
+    }
+
+    private AnnotationLocation getLocation(int index) {
+        if (index < 0 || index >= locations.length) {
+            throw new IllegalArgumentException("Location " + index + " out of range");
+        }
+        return locations[index];
+    }
+
+    private static int skipRecords(int offset, int count, int recordInts) {
+        return offset + count * recordInts * INT_BYTES;
+    }
+
+    /**
+     * Returns the slots of the file, in the order they were written.
+     */
+    public List<Slot> getSlots() {
+        return new AbstractList<Slot>() {
+            @Override
+            public Slot get(int index) {
+                if (index < 0 || index >= slotCount) {
+                    throw new IndexOutOfBoundsException("Slot " + index + " of " + slotCount);
+                }
+                return slotAt(index);
+            }
+
+            @Override
+            public int size() {
+                return slotCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the top-level constraints of the file, in the order they were written.
+     */
+    public List<Constraint> getConstraints() {
+        return new AbstractList<Constraint>() {
+            @Override
+            public Constraint get(int index) {
+                if (index < 0 || index >= constraintCount) {
+                    throw new IndexOutOfBoundsException("Constraint " + index + " of " + constraintCount);
+                }
+                return readConstraint(constraintsOffset, index);
+            }
+
+            @Override
+            public int size() {
+                return constraintCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the slot with the given id.
+     */
+    public Slot getSlot(int id) {
+        int index = slotRecords.get(id, -1);
+        if (index < 0) {
+            throw new IllegalArgumentException("Constraint file refers to unknown slot " + id);
+        }
+        return slotAt(index);
+    }
+
+    private int slotInt(int index, int field) {
+        return buffer.getInt(slotsOffset + (index * SLOT_RECORD_INTS + field) * INT_BYTES);
+    }
+
+    private Slot slotAt(int index) {
+        Slot slot = slots[index];
+        if (slot == null) {
+            slot = readSlot(index);
+            slots[index] = slot;
+        }
+        return slot;
+    }
+
+    private Slot readSlot(int index) {
+        int kindOrdinal = slotInt(index, 0);
+        int id = slotInt(index, 1);
+        int a = slotInt(index, 2);
+        int b = slotInt(index, 3);
+        Slot.Kind[] kinds = Slot.Kind.values();
+        if (kindOrdinal < 0 || kindOrdinal >= kinds.length) {
+            throw new IllegalArgumentException("Unknown slot kind " + kindOrdinal + " of slot " + id);
+        }
+
+        final AnnotationLocation location = AnnotationLocation.MISSING_LOCATION;
+        switch (kinds[kindOrdinal]) {
+            case VARIABLE:
+                return new SourceVariableSlot(id, location, null, a != 0);
+            case CONSTANT:
+                AnnotationMirror value = annotationSerializer.deserialize(strings[a]);
+                return new ConstantSlot(id, value);
+            case REFINEMENT_VARIABLE:
+                return new RefinementVariableSlot(id, location, getSlot(a));
+            case EXISTENTIAL_VARIABLE:
+                return new ExistentialVariableSlot(id, getSlot(a), getSlot(b));
+            case COMB_VARIABLE:
+                return new CombVariableSlot(id, location, getSlot(a), getSlot(b));
+            case ARITHMETIC_VARIABLE:
+                return new ArithmeticVariableSlot(id, getLocation(a));
+            case LUB_VARIABLE:
+                return new LubVariableSlot(id, location, getSlot(a), getSlot(b));
+            default:
+                throw new IllegalArgumentException("Unknown slot kind " + kindOrdinal + " of slot " + id);
+        }
+    }
+
+    private Constraint readConstraint(int sectionOffset, int index) {
+        int recordOffset = sectionOffset + index * CONSTRAINT_RECORD_INTS * INT_BYTES;
+        int kind = buffer.getInt(recordOffset);
+        int a = buffer.getInt(recordOffset + INT_BYTES);
+        int b = buffer.getInt(recordOffset + 2 * INT_BYTES);
+        int c = buffer.getInt(recordOffset + 3 * INT_BYTES);
+        int d = buffer.getInt(recordOffset + 4 * INT_BYTES);
+        int location = buffer.getInt(recordOffset + 5 * INT_BYTES);
+
+        switch (kind) {
+            case SUBTYPE:
+                return constraintFactory.createSubtypeConstraint(getSlot(a), getSlot(b));
+            case EQUALITY:
+                return constraintFactory.createEqualityConstraint(getSlot(a), getSlot(b));
+            case INEQUALITY:
+                return constraintFactory.createInequalityConstraint(getSlot(a), getSlot(b));
+            case COMPARABLE:
+                return constraintFactory.createComparableConstraint(getSlot(a), getSlot(b));
+            case COMBINE:
+                return constraintFactory.createCombineConstraint(getSlot(a), getSlot(b),
+                        (CombVariableSlot) getSlot(c));
+            case PREFERENCE:
+                return constraintFactory.createPreferenceConstraint((VariableSlot) getSlot(a),
+                        (ConstantSlot) getSlot(b), c);
+            case EXISTENTIAL:
+                return constraintFactory.createExistentialConstraint(getSlot(a), readList(b), readList(c));
+            case IMPLICATION:
+                return constraintFactory.createImplicationConstraint(readList(a), readConstraint(nestedOffset, b));
+            case ARITHMETIC:
+                ArithmeticOperationKind[] operations = ArithmeticOperationKind.values();
+                if (a < 0 || a >= operations.length) {
+                    throw new IllegalArgumentException("Unknown arithmetic operation " + a);
+                }
+                return new ConstraintFactory(realQualHierarchy, getLocation(location))
+                        .createArithmeticConstraint(operations[a], getSlot(b), getSlot(c),
+                                (ArithmeticVariableSlot) getSlot(d));
+            default:
+                throw new IllegalArgumentException("Unknown constraint kind " + kind);
+        }
+    }
+
+    /**
+     * Creates the nested constraints of the list at the given offset of the list section.
+     */
+    private List<Constraint> readList(int offset) {
+        if (offset < 0 || offset >= listsLength) {
+            throw new IllegalArgumentException("Constraint list " + offset + " out of range");
+        }
+        int length = buffer.getInt(listsOffset + offset * INT_BYTES);
+        List<Constraint> constraints = new ArrayList<>(length);
+        for (int i = 1; i <= length; i++) {
+            int index = buffer.getInt(listsOffset + (offset + i) * INT_BYTES);
+            if (index < 0 || index >= nestedCount) {
+                throw new IllegalArgumentException("Nested constraint " + index + " out of range");
+            }
+            constraints.add(readConstraint(nestedOffset, index));
+        }
+        return constraints;
+    }
+}
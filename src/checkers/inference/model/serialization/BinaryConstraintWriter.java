@@ -0,0 +1,423 @@
+package checkers.inference.model.serialization;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import scenelib.annotations.io.ASTPath;
+import scenelib.annotations.io.ASTRecord;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.AnnotationLocation.AstPathLocation;
+import checkers.inference.model.AnnotationLocation.ClassDeclLocation;
+import checkers.inference.model.ArithmeticConstraint;
+import checkers.inference.model.ArithmeticVariableSlot;
+import checkers.inference.model.CombVariableSlot;
+import checkers.inference.model.CombineConstraint;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.ExistentialVariableSlot;
+import checkers.inference.model.ImplicationConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.LubVariableSlot;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.RefinementVariableSlot;
+import checkers.inference.model.Serializer;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.model.SubtypeConstraint;
+
+/**
+ * BinaryConstraintWriter writes slots and constraints to a compact binary file, which
+ * {@link BinaryConstraintReader} reads back.
+ *
+ * All values are big-endian 32-bit ints. The file consists of:
+ *
+ * <pre>
+ * header:       MAGIC VERSION
+ * strings:      count, then for each string: byte length, UTF-8 bytes
+ * slots:        count, then fixed-width records: kind id a b
+ * constraints:  count, then fixed-width records: kind a b c d location
+ * nested:       count, then constraint records of constraints nested in other constraints
+ * lists:        count, then ints; a list is its length followed by nested record indices
+ * locations:    count, then for each location: kind, then its strings (byte length, UTF-8
+ *               bytes, or -1 for null); an AST path ends with its entry count, then for each
+ *               entry: tree kind, child selector string, argument or -1
+ * </pre>
+ *
+ * Annotation values of constant slots are stored once in the string table, as serialized by the
+ * given {@link AnnotationMirrorSerializer}. Slot operands are slot ids. The slot kind is the
+ * ordinal of {@link Slot.Kind}; the operands of each slot and constraint kind are documented at
+ * the serialize method writing it.
+ *
+ * Locations are only stored where a slot or constraint cannot be created without one, i.e. for
+ * arithmetic variable slots and arithmetic constraints, and are referred to by their index in
+ * the location section. The location kind is the ordinal of {@link AnnotationLocation.Kind}; a
+ * class declaration location has its class name as string, an AST path location the class,
+ * method and variable name and the AST path of its {@link ASTRecord}. The compilation unit of
+ * an AST path location is not stored.
+ *
+ * Slots and top-level constraints are streamed to the file as they are serialized; only the
+ * string table, the rare nested constraints and the locations are built in memory first.
+ */
+public class BinaryConstraintWriter implements Serializer<Integer, Integer> {
+
+    public static final int MAGIC = 0x43464943; // "CFIC"
+    public static final int VERSION = 2;
+
+    public static final int SLOT_RECORD_INTS = 4;
+    public static final int CONSTRAINT_RECORD_INTS = 6;
+
+    public static final int SUBTYPE = 0;
+    public static final int EQUALITY = 1;
+    public static final int INEQUALITY = 2;
+    public static final int COMPARABLE = 3;
+    public static final int COMBINE = 4;
+    public static final int PREFERENCE = 5;
+    public static final int EXISTENTIAL = 6;
+    public static final int IMPLICATION = 7;
+    public static final int ARITHMETIC = 8;
+
+    private final AnnotationMirrorSerializer annotationSerializer;
+
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * The stream constraint records are currently written to: the file for top-level
+     * constraints, {@link #nestedRecords} while writing the children of a constraint.
+     */
+    private DataOutputStream records;
+    private int recordCount;
+
+    private DataOutputStream nestedRecords;
+    private int nestedCount;
+    private final List<Integer> lists = new ArrayList<>();
+
+    private final Map<AnnotationLocation, Integer> locationIndices = new HashMap<>();
+    private final List<AnnotationLocation> locations = new ArrayList<>();
+
+    public BinaryConstraintWriter(AnnotationMirrorSerializer annotationSerializer) {
+        this.annotationSerializer = annotationSerializer;
+    }
+
+    /**
+     * Writes the given slots and constraints to the given file.
+     */
+    public void write(File file, Collection<Slot> slots, Collection<Constraint> constraints) throws IOException {
+        strings.clear();
+        stringIndices.clear();
+        lists.clear();
+        locationIndices.clear();
+        locations.clear();
+        for (Slot slot : slots) {
+            if (slot instanceof ConstantSlot) {
+                intern(annotationSerializer.serialize(((ConstantSlot) slot).getValue()));
+            }
+        }
+
+        ByteArrayOutputStream nestedBytes = new ByteArrayOutputStream();
+        nestedRecords = new DataOutputStream(nestedBytes);
+        nestedCount = 0;
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                writeString(out, string);
+            }
+
+            out.writeInt(slots.size());
+            for (Slot slot : slots) {
+                writeSlot(out, slot);
+            }
+
+            out.writeInt(constraints.size());
+            records = out;
+            recordCount = 0;
+            for (Constraint constraint : constraints) {
+                constraint.serialize(this);
+            }
+
+            out.writeInt(nestedCount);
+            nestedBytes.writeTo(out);
+
+            out.writeInt(lists.size());
+            for (int value : lists) {
+                out.writeInt(value);
+            }
+
+            out.writeInt(locations.size());
+            for (AnnotationLocation location : locations) {
+                writeLocation(out, location);
+            }
+        } finally {
+            records = null;
+            nestedRecords = null;
+        }
+    }
+
+    private int intern(String string) {
+        return stringIndices.computeIfAbsent(string, s -> {
+            strings.add(s);
+            return strings.size() - 1;
+        });
+    }
+
+    private int addLocation(AnnotationLocation location) {
+        return locationIndices.computeIfAbsent(location, l -> {
+            locations.add(l);
+            return locations.size() - 1;
+        });
+    }
+
+    private static void writeLocation(DataOutputStream out, AnnotationLocation location) throws IOException {
+        out.writeInt(location.getKind().ordinal());
+        switch (location.getKind()) {
+            case CLASS_DECL:
+                writeString(out, ((ClassDeclLocation) location).getFullyQualifiedClassName());
+                break;
+            case AST_PATH:
+                ASTRecord astRecord = ((AstPathLocation) location).getAstRecord();
+                writeString(out, astRecord.className);
+                writeString(out, astRecord.methodName);
+                writeString(out, astRecord.varName);
+                // The entries of the path, as ASTPath.parse does not read back its toString.
+                out.writeInt(astRecord.astPath.size());
+                for (ASTPath.ASTEntry entry : astRecord.astPath) {
+                    out.writeInt(entry.getTreeKind().ordinal());
+                    writeString(out, entry.getChildSelector());
+                    out.writeInt(entry.hasArgument() ? entry.getArgument() : -1);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeSlot(DataOutputStream out, Slot slot) throws IOException {
+        int a = 0;
+        int b = 0;
+        if (slot instanceof ConstantSlot) {
+            // a: string index of the value
+            a = intern(annotationSerializer.serialize(((ConstantSlot) slot).getValue()));
+        } else if (slot instanceof SourceVariableSlot) {
+            // a: 1 if insertable
+            a = slot.isInsertable() ? 1 : 0;
+        } else if (slot instanceof RefinementVariableSlot) {
+            // a: refined slot
+            a = ((RefinementVariableSlot) slot).getRefined().getId();
+        } else if (slot instanceof CombVariableSlot) {
+            a = ((CombVariableSlot) slot).getFirst().getId();
+            b = ((CombVariableSlot) slot).getSecond().getId();
+        } else if (slot instanceof LubVariableSlot) {
+            a = ((LubVariableSlot) slot).getLeft().getId();
+            b = ((LubVariableSlot) slot).getRight().getId();
+        } else if (slot instanceof ExistentialVariableSlot) {
+            a = ((ExistentialVariableSlot) slot).getPotentialSlot().getId();
+            b = ((ExistentialVariableSlot) slot).getAlternativeSlot().getId();
+        } else if (slot instanceof ArithmeticVariableSlot) {
+            // a: location
+            a = addLocation(((ArithmeticVariableSlot) slot).getLocation());
+        }
+        out.writeInt(slot.getKind().ordinal());
+        out.writeInt(slot.getId());
+        out.writeInt(a);
+        out.writeInt(b);
+    }
+
+    /**
+     * Writes a constraint record to the current record stream.
+     *
+     * @return the index of the record in its section
+     */
+    private int writeRecord(int kind, int a, int b, int c, int d) {
+        return writeRecord(kind, a, b, c, d, 0);
+    }
+
+    private int writeRecord(int kind, int a, int b, int c, int d, int location) {
+        try {
+            records.writeInt(kind);
+            records.writeInt(a);
+            records.writeInt(b);
+            records.writeInt(c);
+            records.writeInt(d);
+            records.writeInt(location);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write constraint record", e);
+        }
+        return records == nestedRecords ? nestedCount++ : recordCount++;
+    }
+
+    /**
+     * Writes the given constraints as nested records, and a list of their indices.
+     *
+     * @return the offset of the list in the list section
+     */
+    private int writeList(Collection<Constraint> constraints) {
+        int[] indices = new int[constraints.size()];
+        int i = 0;
+        for (Constraint constraint : constraints) {
+            indices[i++] = writeNested(constraint);
+        }
+        int offset = lists.size();
+        lists.add(indices.length);
+        for (int index : indices) {
+            lists.add(index);
+        }
+        return offset;
+    }
+
+    private int writeNested(Constraint constraint) {
+        DataOutputStream outer = records;
+        records = nestedRecords;
+        try {
+            return constraint.serialize(this);
+        } finally {
+            records = outer;
+        }
+    }
+
+    /**
+     * a: subtype, b: supertype
+     */
+    @Override
+    public Integer serialize(SubtypeConstraint constraint) {
+        return writeRecord(SUBTYPE, constraint.getSubtype().getId(), constraint.getSupertype().getId(), 0, 0);
+    }
+
+    /**
+     * a: first, b: second
+     */
+    @Override
+    public Integer serialize(EqualityConstraint constraint) {
+        return writeRecord(EQUALITY, constraint.getFirst().getId(), constraint.getSecond().getId(), 0, 0);
+    }
+
+    /**
+     * a: potential variable, b: list of potential constraints, c: list of alternate constraints
+     */
+    @Override
+    public Integer serialize(ExistentialConstraint constraint) {
+        int potentialList = writeList(constraint.potentialConstraints());
+        int alternateList = writeList(constraint.getAlternateConstraints());
+        return writeRecord(EXISTENTIAL, constraint.getPotentialVariable().getId(), potentialList, alternateList, 0);
+    }
+
+    /**
+     * a: first, b: second
+     */
+    @Override
+    public Integer serialize(InequalityConstraint constraint) {
+        return writeRecord(INEQUALITY, constraint.getFirst().getId(), constraint.getSecond().getId(), 0, 0);
+    }
+
+    /**
+     * a: first, b: second
+     */
+    @Override
+    public Integer serialize(ComparableConstraint comparableConstraint) {
+        return writeRecord(COMPARABLE, comparableConstraint.getFirst().getId(),
+                comparableConstraint.getSecond().getId(), 0, 0);
+    }
+
+    /**
+     * a: target, b: declared, c: result
+     */
+    @Override
+    public Integer serialize(CombineConstraint combineConstraint) {
+        return writeRecord(COMBINE, combineConstraint.getTarget().getId(), combineConstraint.getDeclared().getId(),
+                combineConstraint.getResult().getId(), 0);
+    }
+
+    /**
+     * a: variable, b: goal, c: weight
+     */
+    @Override
+    public Integer serialize(PreferenceConstraint preferenceConstraint) {
+        return writeRecord(PREFERENCE, preferenceConstraint.getVariable().getId(),
+                preferenceConstraint.getGoal().getId(), preferenceConstraint.getWeight(), 0);
+    }
+
+    /**
+     * a: list of assumptions, b: nested record of the conclusion
+     */
+    @Override
+    public Integer serialize(ImplicationConstraint implicationConstraint) {
+        int assumptionList = writeList(implicationConstraint.getAssumptions());
+        int conclusion = writeNested(implicationConstraint.getConclusion());
+        return writeRecord(IMPLICATION, assumptionList, conclusion, 0, 0);
+    }
+
+    /**
+     * a: operation ordinal, b: left operand, c: right operand, d: result, location: location
+     */
+    @Override
+    public Integer serialize(ArithmeticConstraint arithmeticConstraint) {
+        return writeRecord(ARITHMETIC, arithmeticConstraint.getOperation().ordinal(),
+                arithmeticConstraint.getLeftOperand().getId(), arithmeticConstraint.getRightOperand().getId(),
+                arithmeticConstraint.getResult().getId(), addLocation(arithmeticConstraint.getLocation()));
+    }
+
+    // Slots are referred to by id; their records are written by writeSlot.
+
+    @Override
+    public Integer serialize(SourceVariableSlot slot) {
+        return slot.getId();
+    }
+
+    @Override
+    public Integer serialize(ConstantSlot slot) {
+        return slot.getId();
+    }
+
+    @Override
+    public Integer serialize(ExistentialVariableSlot slot) {
+        return slot.getId();
+    }
+
+    @Override
+    public Integer serialize(RefinementVariableSlot slot) {
+        return slot.getId();
+    }
+
+    @Override
+    public Integer serialize(CombVariableSlot slot) {
+        return slot.getId();
+    }
+
+    @Override
+    public Integer serialize(LubVariableSlot slot) {
+        return slot.getId();
+    }
+
+    @Override
+    public Integer serialize(ArithmeticVariableSlot slot) {
+        return slot.getId();
+    }
+}
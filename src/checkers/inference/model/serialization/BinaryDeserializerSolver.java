@@ -0,0 +1,75 @@
+package checkers.inference.model.serialization;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.UserError;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceResult;
+import checkers.inference.InferenceSolver;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+
+/**
+ * InferenceSolver that solves the constraints of a file written by {@link BinarySerializerSolver}
+ * instead of the generated ones, with the InferenceSolver given by the {@code backend} solver
+ * argument. All other solver arguments are passed on to that solver.
+ *
+ * This lets a constraint set be saved once and then solved repeatedly, e.g. to compare solvers
+ * or solver options on it. The slot ids of the result are those of the file, so a jaif file
+ * written from it only matches a run over the same sources as the run that wrote the file.
+ */
+public class BinaryDeserializerSolver implements InferenceSolver {
+
+    private static final String FILE_KEY = "constraint-file";
+    private static final String DEFAULT_FILE = "./constraints.bin";
+    private static final String BACKEND_KEY = "backend";
+
+    @Override
+    public InferenceResult solve(
+            Map<String, String> configuration,
+            Collection<Slot> slots,
+            Collection<Constraint> constraints,
+            QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment) {
+
+        AnnotationMirror top = qualHierarchy.getTopAnnotations().iterator().next();
+        AnnotationMirror bottom = qualHierarchy.getBottomAnnotations().iterator().next();
+        SimpleAnnotationMirrorSerializer annotationSerializer = new SimpleAnnotationMirrorSerializer(top, bottom);
+
+        String inFile = configuration.containsKey(FILE_KEY) ?
+                configuration.get(FILE_KEY)
+                : DEFAULT_FILE;
+        BinaryConstraintReader reader;
+        try {
+            reader = new BinaryConstraintReader(new File(inFile), annotationSerializer, qualHierarchy);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new UserError("Could not read constraint file " + inFile + ": " + e.getMessage());
+        }
+
+        Map<String, String> backendConfiguration = new HashMap<>(configuration);
+        backendConfiguration.remove(FILE_KEY);
+        return createBackend(backendConfiguration.remove(BACKEND_KEY)).solve(backendConfiguration,
+                reader.getSlots(), reader.getConstraints(), qualHierarchy, processingEnvironment);
+    }
+
+    private static InferenceSolver createBackend(String className) {
+        if (className == null) {
+            throw new UserError("BinaryDeserializerSolver needs the solver argument " + BACKEND_KEY
+                    + "=<InferenceSolver class>.");
+        }
+        try {
+            return (InferenceSolver) Class.forName(className, true, ClassLoader.getSystemClassLoader())
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new UserError("Could not instantiate backend solver " + className + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package checkers.inference.model.serialization;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.UserError;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceResult;
+import checkers.inference.InferenceSolver;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+
+/**
+ * InferenceSolver that serializes constraints to a file in the binary format of
+ * {@link BinaryConstraintWriter}, which {@link BinaryDeserializerSolver} solves.
+ */
+public class BinarySerializerSolver implements InferenceSolver {
+
+    private static final String FILE_KEY = "constraint-file";
+    private static final String DEFAULT_FILE = "./constraints.bin";
+
+    @Override
+    public InferenceResult solve(
+            Map<String, String> configuration,
+            Collection<Slot> slots,
+            Collection<Constraint> constraints,
+            QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment) {
+
+        AnnotationMirror top = qualHierarchy.getTopAnnotations().iterator().next();
+        AnnotationMirror bottom = qualHierarchy.getBottomAnnotations().iterator().next();
+        SimpleAnnotationMirrorSerializer annotationSerializer = new SimpleAnnotationMirrorSerializer(top, bottom);
+
+        String outFile = configuration.containsKey(FILE_KEY) ?
+                configuration.get(FILE_KEY)
+                : DEFAULT_FILE;
+        try {
+            new BinaryConstraintWriter(annotationSerializer).write(new File(outFile), slots, constraints);
+        } catch (IOException e) {
+            throw new UserError("Could not write constraint file " + outFile + ": " + e.getMessage());
+        }
+
+        return null;
+    }
+}
@@ -1,6 +1,11 @@
 package checkers.inference.model.serialization;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -8,11 +13,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.lang.model.element.AnnotationMirror;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
@@ -48,6 +55,13 @@ import static checkers.inference.model.serialization.JsonSerializer.VAR_PREFIX;
  *
  * The format of the json constraint file is documented in JsonSerializer.java.
  *
+ * The file is read in a single pass by a streaming parser. The constraints of the top-level
+ * constraints array are handled one at a time as they are parsed: potential variables are
+ * collected from them, and then they are either kept in the json tree, for the String
+ * constructor, or converted to Constraints and passed to a consumer, for the Reader constructor.
+ * In the latter case only the other sections of the file, e.g. the variables section, are kept in
+ * memory, and {@link #parseConstraints()} cannot be used.
+ *
  * TODO: Support nested constraints
  *
  * @author mcarthur
@@ -63,14 +77,57 @@ public class JsonDeserializer {
 
     private ConstraintManager constraintManager;
 
+    private final Set<String> potentialVariables = new LinkedHashSet<>();
+
+    /** Whether the constraints were passed to a consumer instead of kept in {@link #root}. */
+    private final boolean streamed;
+
     public JsonDeserializer(AnnotationMirrorSerializer annotationSerializer, String json) throws ParseException {
         this.annotationSerializer = annotationSerializer;
-        JSONParser parser = new JSONParser();
-        this.root = (JSONObject) parser.parse(json);
         this.constraintManager = InferenceMain.getInstance().getConstraintManager();
+        this.streamed = false;
+        try {
+            this.root = parse(new StringReader(json), null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read json string", e);
+        }
+    }
+
+    /**
+     * Reads the json constraint file from the given reader, passing each top-level constraint to
+     * the given consumer as soon as it is parsed.
+     *
+     * @param constraintConsumer the consumer of the constraints, or null to skip them, e.g. when
+     * only the variables section or the potential variables are needed
+     */
+    public JsonDeserializer(AnnotationMirrorSerializer annotationSerializer, Reader json,
+            Consumer<Constraint> constraintConsumer) throws IOException, ParseException {
+        this.annotationSerializer = annotationSerializer;
+        this.constraintManager = InferenceMain.getInstance().getConstraintManager();
+        this.streamed = true;
+        this.root = parse(json, constraintConsumer);
+    }
+
+    /**
+     * Parses the json constraint file in a single pass.
+     *
+     * @param constraintConsumer the consumer of the top-level constraints, or null to skip them;
+     * unused if the constraints are kept in the returned tree
+     * @return the json tree of the file, without the top-level constraints if streamed
+     */
+    private JSONObject parse(Reader json, Consumer<Constraint> constraintConsumer) throws IOException, ParseException {
+        StreamingHandler handler = new StreamingHandler(constraintConsumer);
+        new JSONParser().parse(json, handler);
+        if (!(handler.result instanceof JSONObject)) {
+            throw new IllegalArgumentException("Parse error: expected a json object but found: " + handler.result);
+        }
+        return (JSONObject) handler.result;
     }
 
     public List<Constraint> parseConstraints() throws ParseException {
+        if (streamed) {
+            throw new IllegalStateException("The constraints of a streamed json file were passed to its consumer.");
+        }
         JSONArray constraints = (JSONArray) root.get(CONSTRAINTS_KEY);
         List<Constraint> results = jsonArrayToConstraints(constraints);
         return results;
@@ -80,86 +137,86 @@ public class JsonDeserializer {
         List<Constraint> results = new LinkedList<Constraint>();
 
         for (Object obj: jsonConstraints) {
-            if (obj instanceof String) {
-                String constraintStr = (String) obj;
-                String[] parts = constraintStr.trim().split(" ");
-                if (parts.length != 3) {
-                    throw new IllegalArgumentException("Parse error: could not parse constraint: " + obj);
-                } else if (!SUBTYPE_STR.equals(parts[1])) {
-                    throw new IllegalArgumentException("Parse error: found unexpected constraint operation: " + obj);
-                }
-                Slot sub = parseSlot(parts[0]);
-                Slot sup = parseSlot(parts[2]);
-                results.add(constraintManager.createSubtypeConstraint(sub, sup));
-            } else if (obj instanceof JSONObject) {
-                JSONObject constraint = (JSONObject) obj;
-                String constraintType = (String) constraint.get(CONSTRAINT_KEY);
-                if (SUBTYPE_CONSTRAINT_KEY.equals(constraintType)) {
-                    Slot lhs = parseSlot((String) constraint.get(SUBTYPE_SUPER_KEY));
-                    Slot rhs = parseSlot((String) constraint.get(SUBTYPE_SUB_KEY));
-                    results.add(constraintManager.createSubtypeConstraint(rhs, lhs));
-                } else if (EQUALITY_CONSTRAINT_KEY.equals(constraintType)) {
-                    Slot lhs = parseSlot((String) constraint.get(EQUALITY_LHS));
-                    Slot rhs = parseSlot((String) constraint.get(EQUALITY_RHS));
-                    results.add(constraintManager.createEqualityConstraint(lhs, rhs));
-                } else if (INEQUALITY_CONSTRAINT_KEY.equals(constraintType)) {
-                    Slot lhs = parseSlot((String) constraint.get(INEQUALITY_LHS));
-                    Slot rhs = parseSlot((String) constraint.get(INEQUALITY_RHS));
-                    results.add(constraintManager.createInequalityConstraint(lhs, rhs));
-                } else if (COMP_CONSTRAINT_KEY.equals(constraintType)) {
-                    Slot lhs = parseSlot((String) constraint.get(INEQUALITY_LHS));
-                    Slot rhs = parseSlot((String) constraint.get(INEQUALITY_RHS));
-                    results.add(constraintManager.createComparableConstraint(lhs, rhs));
-                } else if (EXISTENTIAL_CONSTRAINT_KEY.equals(constraintType)) {
-                    Slot potential = parseSlot((String) constraint.get(EXISTENTIAL_ID));
-                    List<Constraint> thenConstraints =
-                            jsonArrayToConstraints((JSONArray) constraint.get(EXISTENTIAL_THEN));
-                    List<Constraint> elseConstraints =
-                            jsonArrayToConstraints((JSONArray) constraint.get(EXISTENTIAL_ELSE));
-                    results.add(constraintManager.createExistentialConstraint(potential,
-                            thenConstraints, elseConstraints));
-                }  else {
-                    throw new IllegalArgumentException("Parse error: unknown constraint type: " + obj);
-                }
-                // TODO: map.get, enabled_check, selection_check
-            } else {
-                throw new IllegalArgumentException("Parse error: unexpected json value: " + obj);
-            }
+            results.add(jsonToConstraint(obj));
         }
         return results;
     }
 
-    public List<String> getPotentialVariables() {
-        Set<String> potentialVars = findPotentialVars((JSONArray) root.get(CONSTRAINTS_KEY), new LinkedHashSet<String>());
-        return new ArrayList<>(potentialVars);
-
+    private Constraint jsonToConstraint(Object obj) {
+        if (obj instanceof String) {
+            String constraintStr = (String) obj;
+            String[] parts = constraintStr.trim().split(" ");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Parse error: could not parse constraint: " + obj);
+            } else if (!SUBTYPE_STR.equals(parts[1])) {
+                throw new IllegalArgumentException("Parse error: found unexpected constraint operation: " + obj);
+            }
+            Slot sub = parseSlot(parts[0]);
+            Slot sup = parseSlot(parts[2]);
+            return constraintManager.createSubtypeConstraint(sub, sup);
+        } else if (obj instanceof JSONObject) {
+            JSONObject constraint = (JSONObject) obj;
+            String constraintType = (String) constraint.get(CONSTRAINT_KEY);
+            if (SUBTYPE_CONSTRAINT_KEY.equals(constraintType)) {
+                Slot lhs = parseSlot((String) constraint.get(SUBTYPE_SUPER_KEY));
+                Slot rhs = parseSlot((String) constraint.get(SUBTYPE_SUB_KEY));
+                return constraintManager.createSubtypeConstraint(rhs, lhs);
+            } else if (EQUALITY_CONSTRAINT_KEY.equals(constraintType)) {
+                Slot lhs = parseSlot((String) constraint.get(EQUALITY_LHS));
+                Slot rhs = parseSlot((String) constraint.get(EQUALITY_RHS));
+                return constraintManager.createEqualityConstraint(lhs, rhs);
+            } else if (INEQUALITY_CONSTRAINT_KEY.equals(constraintType)) {
+                Slot lhs = parseSlot((String) constraint.get(INEQUALITY_LHS));
+                Slot rhs = parseSlot((String) constraint.get(INEQUALITY_RHS));
+                return constraintManager.createInequalityConstraint(lhs, rhs);
+            } else if (COMP_CONSTRAINT_KEY.equals(constraintType)) {
+                Slot lhs = parseSlot((String) constraint.get(INEQUALITY_LHS));
+                Slot rhs = parseSlot((String) constraint.get(INEQUALITY_RHS));
+                return constraintManager.createComparableConstraint(lhs, rhs);
+            } else if (EXISTENTIAL_CONSTRAINT_KEY.equals(constraintType)) {
+                Slot potential = parseSlot((String) constraint.get(EXISTENTIAL_ID));
+                List<Constraint> thenConstraints =
+                        jsonArrayToConstraints((JSONArray) constraint.get(EXISTENTIAL_THEN));
+                List<Constraint> elseConstraints =
+                        jsonArrayToConstraints((JSONArray) constraint.get(EXISTENTIAL_ELSE));
+                return constraintManager.createExistentialConstraint(potential,
+                        thenConstraints, elseConstraints);
+            }  else {
+                throw new IllegalArgumentException("Parse error: unknown constraint type: " + obj);
+            }
+            // TODO: map.get, enabled_check, selection_check
+        } else {
+            throw new IllegalArgumentException("Parse error: unexpected json value: " + obj);
+        }
     }
 
-    private Set<String> findPotentialVars(JSONArray constraints, Set<String> potentialVariableIds) {
+    public List<String> getPotentialVariables() {
+        return new ArrayList<>(potentialVariables);
+    }
 
-        for (Object jsonObj : constraints) {
-            if (jsonObj instanceof JSONObject) {
-                JSONObject constraint = (JSONObject) jsonObj;
+    private void findPotentialVars(Object jsonObj, Set<String> potentialVariableIds) {
+        if (jsonObj instanceof JSONObject) {
+            JSONObject constraint = (JSONObject) jsonObj;
 
-                String constraintType = (String) constraint.get(CONSTRAINT_KEY);
-                if (constraintType.equals(EXISTENTIAL_CONSTRAINT_KEY)) {
-                    Slot potential = parseSlot((String) constraint.get(EXISTENTIAL_ID));
-                    potentialVariableIds.add(String.valueOf(potential.getId()));
+            String constraintType = (String) constraint.get(CONSTRAINT_KEY);
+            if (EXISTENTIAL_CONSTRAINT_KEY.equals(constraintType)) {
+                potentialVariableIds.add(parseVariableId((String) constraint.get(EXISTENTIAL_ID)));
 
-                    Object thenConstraints = constraint.get(EXISTENTIAL_THEN);
-                    if (thenConstraints != null && thenConstraints instanceof JSONArray) {
-                        findPotentialVars((JSONArray) thenConstraints, potentialVariableIds);
+                Object thenConstraints = constraint.get(EXISTENTIAL_THEN);
+                if (thenConstraints instanceof JSONArray) {
+                    for (Object thenConstraint : (JSONArray) thenConstraints) {
+                        findPotentialVars(thenConstraint, potentialVariableIds);
                     }
+                }
 
-                    Object elseConstraints = constraint.get(EXISTENTIAL_ELSE);
-                    if (elseConstraints != null && elseConstraints instanceof JSONArray) {
-                        findPotentialVars((JSONArray) elseConstraints, potentialVariableIds);
+                Object elseConstraints = constraint.get(EXISTENTIAL_ELSE);
+                if (elseConstraints instanceof JSONArray) {
+                    for (Object elseConstraint : (JSONArray) elseConstraints) {
+                        findPotentialVars(elseConstraint, potentialVariableIds);
                     }
                 }
             }
         }
-
-        return potentialVariableIds;
     }
 
     public Set<String> getEnabledVars() {
@@ -212,4 +269,117 @@ public class JsonDeserializer {
             return InferenceMain.getInstance().getSlotManager().createConstantSlot(value);
         }
     }
+
+    private String parseVariableId(String slot) {
+        if (slot == null || !slot.startsWith(VAR_PREFIX)) {
+            throw new IllegalArgumentException("Parse error: expected a variable but found: " + slot);
+        }
+        return String.valueOf(Integer.valueOf(slot.split(":")[1]));
+    }
+
+    /**
+     * ContentHandler that builds the json tree of a constraint file, except that each element of
+     * the top-level constraints array is handed to {@link #constraintParsed(Object)} as soon as
+     * it is complete.
+     */
+    private class StreamingHandler implements ContentHandler {
+
+        private final Consumer<Constraint> constraintConsumer;
+
+        /** The open json objects and arrays, innermost first. */
+        private final Deque<Object> containers = new ArrayDeque<>();
+        /** The keys of the open object entries, innermost first. */
+        private final Deque<String> keys = new ArrayDeque<>();
+
+        private Object result;
+
+        StreamingHandler(Consumer<Constraint> constraintConsumer) {
+            this.constraintConsumer = constraintConsumer;
+        }
+
+        @Override
+        public void startJSON() {
+            containers.clear();
+            keys.clear();
+            result = null;
+        }
+
+        @Override
+        public void endJSON() {
+        }
+
+        @Override
+        public boolean startObject() {
+            containers.push(new JSONObject());
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            add(containers.pop());
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            keys.push(key);
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            keys.pop();
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            containers.push(new JSONArray());
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            add(containers.pop());
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            add(value);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object value) {
+            Object container = containers.peek();
+            if (container == null) {
+                result = value;
+            } else if (container instanceof JSONArray) {
+                if (containers.size() == 2 && CONSTRAINTS_KEY.equals(keys.peek())
+                        && !constraintParsed(value)) {
+                    return;
+                }
+                ((JSONArray) container).add(value);
+            } else {
+                ((JSONObject) container).put(keys.peek(), value);
+            }
+        }
+
+        /**
+         * Handles a top-level constraint.
+         *
+         * @return whether to keep the constraint in the json tree
+         */
+        private boolean constraintParsed(Object jsonConstraint) {
+            findPotentialVars(jsonConstraint, potentialVariables);
+            if (!streamed) {
+                return true;
+            }
+            if (constraintConsumer != null) {
+                constraintConsumer.accept(jsonToConstraint(jsonConstraint));
+            }
+            return false;
+        }
+    }
 }
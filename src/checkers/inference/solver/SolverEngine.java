@@ -14,10 +14,12 @@ import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.SolverFactory;
 import checkers.inference.solver.backend.maxsat.MaxSatSolver;
+import checkers.inference.solver.frontend.ConstraintSimplifier;
 import checkers.inference.solver.frontend.Lattice;
 import checkers.inference.solver.frontend.LatticeBuilder;
 import checkers.inference.solver.strategy.PlainSolvingStrategy;
 import checkers.inference.solver.strategy.SolvingStrategy;
+import checkers.inference.solver.strategy.TimeBoundedSolver;
 import checkers.inference.solver.util.NameUtils;
 import checkers.inference.solver.util.PrintUtils;
 import checkers.inference.solver.util.SolverArg;
@@ -41,6 +43,7 @@ public class SolverEngine implements InferenceSolver {
     protected boolean collectStatistics;
     protected boolean writeSolutions;
     protected boolean noAppend;
+    protected boolean simplifyConstraints;
     protected String strategyName;
     protected String solverName;
 
@@ -68,18 +71,43 @@ public class SolverEngine implements InferenceSolver {
         /**
          * whether to write statistics & solutions in append mode or not
          */
-        noAppend;
+        noAppend,
+
+        /**
+         * whether to simplify the constraints with a {@link ConstraintSimplifier} before solving
+         */
+        simplifyConstraints,
+
+        /**
+         * time budget of solving in milliseconds, split across the components by their size;
+         * components that run out of time get default annotations, see {@link TimeBoundedSolver}
+         */
+        timeBudget;
     }
 
-    private final String BACKEND_PACKAGE_PATH = SolverFactory.class.getPackage().getName();
+    private static final String BACKEND_PACKAGE_PATH = SolverFactory.class.getPackage().getName();
     private final String STRATEGY_PACKAGE_NAME = SolvingStrategy.class.getPackage().getName();
 
     protected SolverFactory createSolverFactory() {
-        final String solverPackageName = BACKEND_PACKAGE_PATH + "." + solverName.toLowerCase();
-        final String solverFactoryClassName = solverName + "SolverFactory";
+        return loadSolverFactory(solverName);
+    }
+
+    /**
+     * Reflectively creates the solver factory of the given solver name, following the naming
+     * convention described in {@link SolverFactory}. A name containing a dot is taken as the
+     * fully qualified name of the solver factory class instead.
+     */
+    public static SolverFactory loadSolverFactory(String solverName) {
+        final String solverFactoryClassName;
+        if (solverName.contains(".")) {
+            solverFactoryClassName = solverName;
+        } else {
+            solverFactoryClassName = BACKEND_PACKAGE_PATH + "." + solverName.toLowerCase() + "."
+                    + solverName + "SolverFactory";
+        }
 
         try {
-            Class<?> SolverFactoryClass = Class.forName(solverPackageName + "." + solverFactoryClassName);
+            Class<?> SolverFactoryClass = Class.forName(solverFactoryClassName);
             return (SolverFactory) SolverFactoryClass.getConstructor().newInstance();
         } catch (Exception e) {
             throw new BugInCF("Exceptions happen when creating the solver factory for " + solverName, e);
@@ -113,8 +141,29 @@ public class SolverEngine implements InferenceSolver {
 
         //TODO: Add solve timing statistic.
         Lattice lattice = new LatticeBuilder().buildLattice(qualHierarchy, slots);
+        // Solvers may run on other threads, which must not query the qualifier hierarchy, so the
+        // whole lattice is computed here, on the thread of the type checker.
+        long precomputeStart = System.currentTimeMillis();
+        lattice.getEncoding().precompute();
+        Statistics.addOrIncrementEntry("lattice_precompute_time(ms)",
+                System.currentTimeMillis() - precomputeStart);
+        int timeBudget = solverEnvironment.getIntArg(SolverEngineArg.timeBudget, 0);
+        if (timeBudget > 0) {
+            solverEnvironment.startTimeBudget(timeBudget);
+        }
         SolvingStrategy solvingStrategy = createSolvingStrategy();
-        InferenceResult inferenceResult = solvingStrategy.solve(solverEnvironment, slots, constraints, lattice);
+        InferenceResult inferenceResult;
+        if (simplifyConstraints) {
+            ConstraintSimplifier simplifier = new ConstraintSimplifier(lattice);
+            simplifier.simplify(slots, constraints);
+            inferenceResult = solvingStrategy.solve(solverEnvironment, simplifier.getSlots(),
+                    simplifier.getConstraints(), lattice);
+            if (inferenceResult != null) {
+                inferenceResult = simplifier.expand(inferenceResult);
+            }
+        } else {
+            inferenceResult = solvingStrategy.solve(solverEnvironment, slots, constraints, lattice);
+        }
 
         if (inferenceResult == null) {
             throw new BugInCF("InferenceResult should never be null, but null result detected!");
@@ -162,6 +211,7 @@ public class SolverEngine implements InferenceSolver {
         this.collectStatistics = solverEnvironment.getBoolArg(SolverEngineArg.collectStatistics);
         this.writeSolutions = solverEnvironment.getBoolArg(SolverEngineArg.writeSolutions);
         this.noAppend = solverEnvironment.getBoolArg(SolverEngineArg.noAppend);
+        this.simplifyConstraints = solverEnvironment.getBoolArg(SolverEngineArg.simplifyConstraints);
 
         // Sanitize the configuration if it needs.
         sanitizeSolverEngineArgs();
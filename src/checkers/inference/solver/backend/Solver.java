@@ -100,12 +100,46 @@ public abstract class Solver<T extends FormatTranslator<?, ?, ?>> {
      */
     public abstract Collection<Constraint> explainUnsatisfiable();
 
+    /**
+     * Returns whether the last {@link #solve()} returned null because the underlying solver
+     * reported the constraints as unsatisfiable.
+     *
+     * Some backends also return null when the underlying solver failed. Their null result is not
+     * conclusive, which is what the default implementation reports, so that e.g. a
+     * {@link checkers.inference.solver.strategy.PortfolioSolver} keeps waiting for another solver.
+     */
+    public boolean isUnsatisfiable() {
+        return false;
+    }
+
+    /**
+     * Asks a running {@link #solve()} to stop as soon as possible. This is called from another
+     * thread, e.g. when several solvers race on the same constraints and one of them has already
+     * answered. After this call, {@link #solve()} may return early or throw, and its result must
+     * be discarded.
+     *
+     * The default implementation does nothing. External solver processes started through
+     * {@link checkers.inference.solver.util.ExternalSolverUtils} are killed when the solving
+     * thread is interrupted, so only backends that search in-process need to override this.
+     */
+    public void interrupt() {
+        // Intentionally empty.
+    }
+
     /**
      * Calls formatTranslator to convert constraints into the corresponding encoding
      * form. See {@link checkers.inference.solver.backend.maxsat.MaxSatSolver#encodeAllConstraints()}} for an example.
      */
     protected abstract void encodeAllConstraints();
 
+    /**
+     * Returns the constraints this solver is responsible for solving. Solving strategies
+     * use the size of this collection to estimate the cost of a solve.
+     */
+    public Collection<Constraint> getConstraints() {
+        return constraints;
+    }
+
     /**
      * Get slot id from variable slot.
      *
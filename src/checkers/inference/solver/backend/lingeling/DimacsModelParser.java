@@ -0,0 +1,99 @@
+package checkers.inference.solver.backend.lingeling;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * DimacsModelParser reads the output of a SAT solver in the DIMACS competition format, i.e. a
+ * status line {@code s SATISFIABLE} followed by {@code v} lines listing the literals of the model.
+ *
+ * The output is scanned character by character into an int array, without splitting it into
+ * line and token strings, as the model of a large component has hundreds of thousands of
+ * literals.
+ */
+final class DimacsModelParser {
+
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    private DimacsModelParser() {
+    }
+
+    /**
+     * Parses the solver output from the given reader.
+     *
+     * @param reader the solver output
+     * @param relevantVariables the variables to return if true in the model
+     * @return the variables of relevantVariables that are true in the model, in the order the
+     * solver printed them, or null if the solver reported that the formula is unsatisfiable
+     */
+    static int[] parse(Reader reader, BitSet relevantVariables) throws IOException {
+        int[] result = new int[relevantVariables.cardinality()];
+        int size = 0;
+
+        char[] buffer = new char[BUFFER_SIZE];
+        char lineType = '\n';
+        StringBuilder status = null;
+        int value = 0;
+        boolean negative = false;
+        boolean inNumber = false;
+
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (lineType == '\n') {
+                    // c is the first character of a line
+                    lineType = c;
+                    if (c == 's') {
+                        status = new StringBuilder();
+                    }
+                    continue;
+                }
+
+                if (lineType == 'v' && c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    inNumber = true;
+                } else if (lineType == 'v' && c == '-') {
+                    negative = true;
+                } else {
+                    if (inNumber && !negative && relevantVariables.get(value)) {
+                        if (size == result.length) {
+                            result = Arrays.copyOf(result, size * 2 + 1);
+                        }
+                        result[size++] = value;
+                    }
+                    value = 0;
+                    negative = false;
+                    inNumber = false;
+
+                    if (lineType == 's' && c != '\n') {
+                        status.append(c);
+                    }
+                }
+
+                if (c == '\n') {
+                    lineType = '\n';
+                }
+            }
+        }
+        if (inNumber && !negative && relevantVariables.get(value)) {
+            if (size == result.length) {
+                result = Arrays.copyOf(result, size + 1);
+            }
+            result[size++] = value;
+        }
+
+        String verdict = status == null ? "" : status.toString().trim();
+        if (verdict.equals("UNSATISFIABLE")) {
+            return null;
+        }
+        if (!verdict.equals("SATISFIABLE")) {
+            throw new BugInCF("SAT solver did not answer, status: \"" + verdict + "\"");
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
@@ -1,26 +1,24 @@
 package checkers.inference.solver.backend.lingeling;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.lang.model.element.AnnotationMirror;
 
-import org.sat4j.core.VecInt;
+import org.checkerframework.javacutil.BugInCF;
 
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.maxsat.MaxSatFormatTranslator;
 import checkers.inference.solver.backend.maxsat.MaxSatSolver;
 import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.ExternalSolverPool;
 import checkers.inference.solver.util.ExternalSolverUtils;
+import checkers.inference.solver.util.SolverArg;
 import checkers.inference.solver.util.SolverEnvironment;
 import checkers.inference.solver.util.Statistics;
 
@@ -28,19 +26,34 @@ import checkers.inference.solver.util.Statistics;
  * LingelingSolver is also a MaxSatSolver but it calls Lingeling SAT solver to solve the clauses. It
  * doesn't support soft constraint.
  *
+ * The clauses are piped to lingeling processes of an {@link ExternalSolverPool}, which are
+ * started ahead of time, so several components can be solved in parallel without temporary
+ * files.
+ *
  * @author jianchu
  *
  */
 public class LingelingSolver extends MaxSatSolver {
 
+    enum LingelingSolverArg implements SolverArg {
+        /**
+         * Number of lingeling processes kept started, which is also the number of components
+         * solved by lingeling at the same time. Defaults to the number of available processors.
+         */
+        lingelingProcesses;
+    }
+
     // Ensure the path to Lingeling binary executable file has been added into $PATH.
-    private final String lingeling = "lingeling";
+    private static final String[] lingelingCommand = { "lingeling" };
+
+    // Exit status of lingeling, and SAT competition solvers in general, for each verdict.
+    private static final int SATISFIABLE_EXIT_STATUS = 10;
+    private static final int UNSATISFIABLE_EXIT_STATUS = 20;
 
     // record cnf integers in clauses. lingeling solver give the answer for all
     // the integers from 1 to the largest one. Some of them may be not in the
     // clauses.
-    private Set<Integer> variableSet = new HashSet<Integer>();
-    private static AtomicInteger nth = new AtomicInteger(0);
+    private final BitSet variableSet = new BitSet();
     private long serializationStart;
     private long serializationEnd;
 
@@ -59,18 +72,19 @@ public class LingelingSolver extends MaxSatSolver {
         encodeWellFormednessRestriction();
         this.serializationEnd = System.currentTimeMillis();
 
-        buildCNFInput();
         collectVals();
         recordData();
-        int localNth = nth.incrementAndGet();
-        writeCNFInput("cnfdata" + localNth + ".txt");
+        if (shouldOutputCNF()) {
+            writeCNFInput();
+        }
 
         this.solvingStart = System.currentTimeMillis();
-        int[] resultArray = getSolverOutput(localNth);
-        // TODO What's the value of resultArray if there is no solution? Need to adapt this to
-        // changes in the PR: https://github.com/opprop/checker-framework-inference/pull/128
-        // , i.e. set solutions to null if there is no solution
-        solutions = decode(resultArray);
+        int[] resultArray = getSolverOutput();
+        if (resultArray != null) {
+            solutions = decode(resultArray);
+        } else {
+            markUnsatisfiable();
+        }
         this.solvingEnd = System.currentTimeMillis();
 
         long solvingTime = solvingEnd - solvingStart;
@@ -83,43 +97,41 @@ public class LingelingSolver extends MaxSatSolver {
     }
 
     /**
-     * Create Lingeling process, and read output and error.
+     * Pipes the clauses to a Lingeling process, and reads output and error.
      *
-     * @param localNth
-     * @return and int array, which stores truth assignment for CNF predicate.
+     * @return the true variables of the model, or null if lingeling reported that the clauses
+     * are unsatisfiable.
+     * @throws BugInCF if lingeling failed, i.e. it gave no verdict, or its exit status does not
+     * match the verdict
      */
-    private int[] getSolverOutput(int localNth) {
-        String[] command = { lingeling,
-                CNFData.getAbsolutePath() + "/cnfdata" + localNth + ".txt" };
-
-        final List<Integer> resultList = new ArrayList<Integer>();
-        ExternalSolverUtils.runExternalSolver(command, stdOut -> parseStdOut(stdOut, resultList),
+    private int[] getSolverOutput() {
+        int processes = solverEnvironment.getIntArg(LingelingSolverArg.lingelingProcesses,
+                Runtime.getRuntime().availableProcessors());
+        ExternalSolverPool pool = ExternalSolverPool.getPool(lingelingCommand, processes);
+
+        final AtomicReference<int[]> result = new AtomicReference<>();
+        final AtomicBoolean answered = new AtomicBoolean(false);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        int exitStatus = pool.run(this::writeCNFInput,
+                stdOut -> {
+                    // Exceptions of this handler thread are not propagated, so keep them.
+                    try {
+                        result.set(DimacsModelParser.parse(stdOut, variableSet));
+                        answered.set(true);
+                    } catch (IOException | RuntimeException e) {
+                        failure.set(e);
+                    }
+                },
                 stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr));
 
-        // Java 8 style of List<Integer> to int[] conversion
-        return resultList.stream().mapToInt(Integer::intValue).toArray();
-    }
-
-    private void parseStdOut(BufferedReader stdOut, List<Integer> resultList) {
-        String line;
-
-        try {
-            while ((line = stdOut.readLine()) != null) {
-                if (line.charAt(0) == 'v') {
-                    for (String retval : line.split(" ")) {
-                        if (!retval.equals("") && !retval.equals(" ") && !retval.equals("\n")
-                                && !retval.equals("v")) {
-                            int val = Integer.parseInt(retval);
-                            if (variableSet.contains(Math.abs(val))) {
-                                resultList.add(val);
-                            }
-                        }
-                    }
-                }
-            }
-        } catch (NumberFormatException | IOException e) {
-            e.printStackTrace();
+        if (failure.get() != null) {
+            throw new BugInCF("Failed to read the output of lingeling, exit status " + exitStatus, failure.get());
+        }
+        int expectedStatus = result.get() == null ? UNSATISFIABLE_EXIT_STATUS : SATISFIABLE_EXIT_STATUS;
+        if (!answered.get() || exitStatus != expectedStatus) {
+            throw new BugInCF("Lingeling failed with exit status " + exitStatus);
         }
+        return result.get();
     }
 
     /**
@@ -128,24 +140,12 @@ public class LingelingSolver extends MaxSatSolver {
      * that we really care about.
      */
     private void collectVals() {
-        for (VecInt clause : this.hardClauses) {
-            int[] clauseArray = clause.toArray();
-            for (int i = 0; i < clauseArray.length; i++) {
-                variableSet.add(Math.abs(clauseArray[i]));
-            }
-        }
-    }
-
-    @Override
-    protected boolean shouldOutputCNF() {
-        // We need the CNF output to pass to Lingeling
-        // and so we unconditionally signal we want CNF output.
-        return true;
+        hardClauses.collectVariables(variableSet);
     }
 
     private void recordData() {
         int totalClauses = hardClauses.size() + softClauses.size();
-        int totalVariable = variableSet.size();
+        int totalVariable = variableSet.cardinality();
         Statistics.addOrIncrementEntry("cnf_clause_size", totalClauses);
         Statistics.addOrIncrementEntry("cnf_variable_size", totalVariable);
     }
@@ -0,0 +1,204 @@
+package checkers.inference.solver.backend.logiql;
+
+import static checkers.inference.solver.backend.logiql.datalog.Rule.var;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import checkers.inference.solver.backend.logiql.datalog.DatalogEngine;
+import checkers.inference.solver.backend.logiql.datalog.Relation;
+import checkers.inference.solver.backend.logiql.datalog.Rule;
+import checkers.inference.solver.backend.logiql.datalog.Rule.Atom;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.frontend.LatticeEncoding;
+import checkers.inference.solver.util.NameUtils;
+
+/**
+ * LogiQLDatalogEvaluator solves the LogiQL data of {@link LogiQLFormatTranslator} in memory with a
+ * {@link DatalogEngine}, instead of running LogicBlox on the files of LogiQLPredicateGenerator.
+ *
+ * The rules are those of {@link LogiQLPredicateGenerator}, with the boolean predicates
+ * {@code isQ[v] = true} and {@code isQ[v] = false} of each qualifier Q stored as the tuples
+ * (v, index of Q) of the relations isTrue and isFalse, so one rule stands for the rules of all
+ * qualifiers. Constants are the qualifier indices of the {@link LatticeEncoding} of the lattice.
+ *
+ * A variable is decoded to the qualifier it is derived true for, and to top otherwise, as by
+ * {@link DecodingTool}. If a variable is derived both true and false for a qualifier, which
+ * violates the functional predicates of the LogiQL encoding, the constraints are unsatisfiable.
+ */
+public class LogiQLDatalogEvaluator {
+
+    private static final Pattern FACT = Pattern.compile("^\\s*\\+(\\w+)\\(([^)]*)\\)");
+    private static final Pattern VARIABLE_NAME = Pattern.compile("hasvariableName\\[(\\w+)\\]\\s*=\\s*(\\d+)");
+    private static final Pattern CONSTANT_NAME = Pattern.compile("hasconstantName\\[(\\w+)\\]\\s*=\\s*\"([^\"]*)\"");
+
+    private static final String[] CONSTRAINT_PREDICATES = {
+            "equalityConstraint", "equalityConstraintContainsConstant",
+            "inequalityConstraint", "inequalityConstraintContainsConstant",
+            "subtypeConstraint", "subtypeConstraintLeftConstant", "subtypeConstraintRightConstant",
+            "comparableConstraint", "comparableConstraintContainsConstant" };
+
+    private final Lattice lattice;
+    private final LatticeEncoding encoding;
+    private final Map<String, Integer> qualifierIndices = new HashMap<>();
+    private final DatalogEngine engine;
+
+    private final Relation isTrue;
+    private final Relation isFalse;
+
+    public LogiQLDatalogEvaluator(Lattice lattice, int parallelism) {
+        this.lattice = lattice;
+        this.encoding = lattice.getEncoding();
+        for (int i = 0; i < encoding.size(); i++) {
+            qualifierIndices.put(NameUtils.getSimpleName(encoding.getQualifier(i)), i);
+        }
+        this.engine = new DatalogEngine(parallelism);
+        for (String predicate : CONSTRAINT_PREDICATES) {
+            engine.relation(predicate, 2);
+        }
+        this.isTrue = engine.relation("isTrue", 2);
+        this.isFalse = engine.relation("isFalse", 2);
+        addLatticeFacts();
+        addRules();
+    }
+
+    /**
+     * Adds the facts of the qualifier pairs the rules refer to.
+     */
+    private void addLatticeFacts() {
+        Relation strictSubtype = engine.relation("strictSubtype", 2);
+        Relation incomparable = engine.relation("incomparable", 2);
+        Relation distinct = engine.relation("distinct", 2);
+        for (int sup = 0; sup < encoding.size(); sup++) {
+            for (int sub : encoding.getSubtypes(sup)) {
+                if (sub != sup) {
+                    engine.addFact(strictSubtype, sub, sup);
+                }
+            }
+            for (int other : encoding.getIncomparables(sup)) {
+                engine.addFact(incomparable, sup, other);
+            }
+            for (int other = 0; other < encoding.size(); other++) {
+                if (other != sup) {
+                    engine.addFact(distinct, sup, other);
+                }
+            }
+        }
+    }
+
+    private void addRules() {
+        final int v1 = var(0), v2 = var(1), q = var(2), p = var(3);
+        final int top = encoding.getTop();
+        final int bottom = encoding.getBottom();
+
+        // Basic encoding: a variable has at most one qualifier.
+        addRule(new Atom(isFalse, v1, q), atom("isTrue", v1, p), atom("distinct", q, p));
+
+        // Equality constraint
+        addRule(new Atom(isTrue, v2, q), atom("equalityConstraint", v1, v2), atom("isTrue", v1, q));
+        addRule(new Atom(isTrue, v2, q), atom("equalityConstraintContainsConstant", q, v2));
+
+        // Inequality constraint
+        addRule(new Atom(isFalse, v2, q), atom("inequalityConstraint", v1, v2), atom("isTrue", v1, q));
+        addRule(new Atom(isFalse, v2, q), atom("inequalityConstraintContainsConstant", q, v2));
+
+        // Subtype constraint
+        addRule(new Atom(isTrue, v2, top), atom("subtypeConstraint", v1, v2), atom("isTrue", v1, top));
+        addRule(new Atom(isTrue, v2, top), atom("subtypeConstraintLeftConstant", top, v2));
+        addRule(new Atom(isTrue, v1, bottom), atom("subtypeConstraint", v1, v2), atom("isTrue", v2, bottom));
+        addRule(new Atom(isTrue, v1, bottom), atom("subtypeConstraintRightConstant", v1, bottom));
+        addRule(new Atom(isFalse, v2, q), atom("subtypeConstraint", v1, v2), atom("isTrue", v1, p),
+                atom("strictSubtype", q, p));
+        addRule(new Atom(isFalse, v2, q), atom("subtypeConstraintLeftConstant", p, v2), atom("strictSubtype", q, p));
+        addRule(new Atom(isFalse, v1, p), atom("subtypeConstraintRightConstant", v1, q), atom("strictSubtype", q, p));
+
+        // Comparable constraint
+        addRule(new Atom(isFalse, v1, p), atom("subtypeConstraintRightConstant", v1, q), atom("incomparable", q, p));
+    }
+
+    private Atom atom(String predicate, int... terms) {
+        return new Atom(engine.relation(predicate, 2), terms);
+    }
+
+    private void addRule(Atom head, Atom... body) {
+        engine.addRule(new Rule(head, body));
+    }
+
+    /**
+     * Adds the fact of a constraint serialized by {@link LogiQLFormatTranslator}. Returns false
+     * if the serialized constraint is not a fact, i.e. it is the contradictory constraint.
+     */
+    public boolean addConstraint(String serializedConstraint) {
+        if (serializedConstraint.isEmpty()) {
+            return true;
+        }
+        Matcher fact = FACT.matcher(serializedConstraint);
+        if (!fact.find()) {
+            return false;
+        }
+
+        Map<String, Integer> values = new HashMap<>();
+        Matcher variable = VARIABLE_NAME.matcher(serializedConstraint);
+        while (variable.find()) {
+            values.put(variable.group(1), Integer.parseInt(variable.group(2)));
+        }
+        Matcher constant = CONSTANT_NAME.matcher(serializedConstraint);
+        while (constant.find()) {
+            Integer index = qualifierIndices.get(constant.group(2));
+            if (index == null) {
+                // No rule mentions qualifiers outside the lattice, so the fact has no effect.
+                return true;
+            }
+            values.put(constant.group(1), index);
+        }
+
+        String[] arguments = fact.group(2).split(",");
+        int[] tuple = new int[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            Integer value = values.get(arguments[i].trim());
+            if (value == null) {
+                throw new BugInCF("No name for " + arguments[i].trim() + " in LogiQL data: " + serializedConstraint);
+            }
+            tuple[i] = value;
+        }
+        engine.addFact(engine.relation(fact.group(1), tuple.length), tuple);
+        return true;
+    }
+
+    /**
+     * Evaluates the rules over the facts added so far, and returns the qualifier of each of the
+     * given variables, or null if the facts are contradictory.
+     */
+    public Map<Integer, AnnotationMirror> solve(Collection<Integer> varSlotIds) {
+        engine.run();
+
+        for (int[] tuple : isFalse.getTuples()) {
+            if (isTrue.contains(tuple)) {
+                return null;
+            }
+        }
+
+        Map<Integer, AnnotationMirror> result = new HashMap<>();
+        for (Integer varSlotId : varSlotIds) {
+            result.put(varSlotId, lattice.top);
+        }
+        for (int[] tuple : isTrue.getTuples()) {
+            result.put(tuple[0], encoding.getQualifier(tuple[1]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of evaluation rounds of the last call to {@link #solve(Collection)}.
+     */
+    public int getRounds() {
+        return engine.getRounds();
+    }
+}
@@ -3,8 +3,10 @@ package checkers.inference.solver.backend.logiql;
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -15,6 +17,7 @@ import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.Solver;
 import checkers.inference.solver.frontend.Lattice;
 import checkers.inference.solver.util.NameUtils;
+import checkers.inference.solver.util.SolverArg;
 import checkers.inference.solver.util.SolverEnvironment;
 import checkers.inference.solver.util.Statistics;
 
@@ -24,12 +27,29 @@ import checkers.inference.solver.util.Statistics;
  * it calls LogicBloxRunner that runs logicblox to solve the LogiQL, and reads
  * the output. Finally the output will be sent to DecodingTool and get decoded.
  *
+ * Unless {@link LogiQLSolverArg#useLogicBlox} is set, the LogiQL data is instead evaluated
+ * in memory by a {@link LogiQLDatalogEvaluator}, without files or external processes.
+ *
  * @author jianchu
  *
  */
 public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
 
+    enum LogiQLSolverArg implements SolverArg {
+        /**
+         * Whether to solve the LogiQL encoding with LogicBlox, which must be installed, instead
+         * of the in-memory Datalog evaluator.
+         */
+        useLogicBlox,
+
+        /**
+         * Number of threads the in-memory Datalog evaluator evaluates rules with. Defaults to 1.
+         */
+        datalogThreads;
+    }
+
     private final StringBuilder logiQLText = new StringBuilder();
+    private final List<String> serializedConstraints = new ArrayList<>();
     private final File logiqldata = new File(new File("").getAbsolutePath() + "/logiqldata");
     private static AtomicInteger nth = new AtomicInteger(0);
     private long serializationStart;
@@ -40,11 +60,16 @@ public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
             Collection<Constraint> constraints, LogiQLFormatTranslator formatTranslator, Lattice lattice) {
         super(solverEnvironment, slots, constraints, formatTranslator,
                 lattice);
-        logiqldata.mkdir();
+        if (solverEnvironment.getBoolArg(LogiQLSolverArg.useLogicBlox)) {
+            logiqldata.mkdir();
+        }
     }
 
     @Override
     public Map<Integer, AnnotationMirror> solve() {
+        if (!solverEnvironment.getBoolArg(LogiQLSolverArg.useLogicBlox)) {
+            return solveInMemory();
+        }
         int localNth = nth.incrementAndGet();
         String logiqldataPath = logiqldata.getAbsolutePath();
         Map<Integer, AnnotationMirror> result = new HashMap<>();
@@ -61,6 +86,9 @@ public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
         this.serializationEnd = System.currentTimeMillis();
         Statistics.addOrIncrementEntry("logiql_serialization_time(ms)",
                 (serializationEnd - serializationStart));
+        for (String serializedConstraint : serializedConstraints) {
+            logiQLText.append(serializedConstraint);
+        }
         addVariables();
         addConstants();
         writeLogiQLData(logiqldataPath, localNth);
@@ -78,6 +106,29 @@ public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
         return result;
     }
 
+    private Map<Integer, AnnotationMirror> solveInMemory() {
+        this.serializationStart = System.currentTimeMillis();
+        this.encodeAllConstraints();
+        LogiQLDatalogEvaluator evaluator = new LogiQLDatalogEvaluator(lattice,
+                solverEnvironment.getIntArg(LogiQLSolverArg.datalogThreads, 1));
+        for (String serializedConstraint : serializedConstraints) {
+            if (!evaluator.addConstraint(serializedConstraint)) {
+                return null;
+            }
+        }
+        this.serializationEnd = System.currentTimeMillis();
+        Statistics.addOrIncrementEntry("logiql_serialization_time(ms)",
+                (serializationEnd - serializationStart));
+        Statistics.addOrIncrementEntry("logiql_data_size", serializedConstraints.size());
+
+        this.solvingStart = System.currentTimeMillis();
+        Map<Integer, AnnotationMirror> result = evaluator.solve(varSlotIds);
+        this.solvingEnd = System.currentTimeMillis();
+        Statistics.addOrIncrementEntry("logiql_solving_time(ms)", (solvingEnd - solvingStart));
+        Statistics.addOrIncrementEntry("logiql_datalog_rounds", evaluator.getRounds());
+        return result;
+    }
+
     @Override
     public Collection<Constraint> explainUnsatisfiable() {
         return new HashSet<>();// Doesn't support right now
@@ -89,7 +140,7 @@ public class LogiQLSolver extends Solver<LogiQLFormatTranslator> {
             collectVarSlots(constraint);
             String serializedConstrant = constraint.serialize(formatTranslator);
             if (serializedConstrant != null) {
-                logiQLText.append(serializedConstrant);
+                serializedConstraints.add(serializedConstrant);
             }
         }
     }
@@ -0,0 +1,247 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import checkers.inference.solver.backend.logiql.datalog.Rule.Atom;
+
+/**
+ * DatalogEngine evaluates positive Datalog programs in memory, bottom-up with semi-naive
+ * evaluation:
+ *
+ * 1. Evaluate every rule once over all facts.
+ * 2. In each following round, only evaluate the rules with a body atom whose relation got new
+ *    tuples in the previous round, joining that atom with only the new tuples and the other atoms
+ *    with all tuples.
+ * 3. Stop when a round derives no new tuple.
+ *
+ * Body atoms are joined left to right, after the atom scanning the new tuples, with hash index
+ * lookups on the columns bound so far, see {@link Relation}. The rule evaluations of one round
+ * only read the relations, so they run in parallel; their results are added once the round is
+ * over.
+ */
+public class DatalogEngine {
+
+    private final Map<String, Relation> relations = new LinkedHashMap<>();
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    private final int parallelism;
+
+    private int rounds;
+
+    /**
+     * Creates an engine evaluating the rules of a round with the given number of threads.
+     */
+    public DatalogEngine(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Returns the relation with the given name, creating it if it does not exist yet.
+     */
+    public Relation relation(String name, int arity) {
+        Relation relation = relations.computeIfAbsent(name, key -> new Relation(name, arity));
+        if (relation.getArity() != arity) {
+            throw new IllegalArgumentException("Predicate " + name + " already has arity " + relation.getArity());
+        }
+        return relation;
+    }
+
+    public Collection<Relation> getRelations() {
+        return Collections.unmodifiableCollection(relations.values());
+    }
+
+    public void addFact(Relation relation, int... tuple) {
+        relation.add(tuple);
+    }
+
+    public void addRule(Rule rule) {
+        rules.add(rule);
+    }
+
+    /**
+     * Returns the number of rounds of the last call to {@link #run()}.
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Derives all tuples of the rules from the facts added so far.
+     */
+    public void run() {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            List<Evaluation> evaluations = new ArrayList<>();
+            for (Rule rule : rules) {
+                evaluations.add(new Evaluation(rule, -1, null));
+            }
+            rounds = 0;
+            while (!evaluations.isEmpty()) {
+                rounds++;
+                Map<Relation, List<int[]>> delta = addAll(evaluate(pool, evaluations));
+
+                evaluations = new ArrayList<>();
+                for (Rule rule : rules) {
+                    for (int i = 0; i < rule.body.length; i++) {
+                        List<int[]> newTuples = delta.get(rule.body[i].relation);
+                        if (newTuples != null) {
+                            evaluations.add(new Evaluation(rule, i, newTuples));
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private List<Evaluation> evaluate(ForkJoinPool pool, List<Evaluation> evaluations) {
+        if (pool == null || evaluations.size() == 1) {
+            evaluations.forEach(Evaluation::evaluate);
+            return evaluations;
+        }
+        try {
+            pool.submit(() -> evaluations.parallelStream().forEach(Evaluation::evaluate)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BugInCF("Interrupted while evaluating Datalog rules.", e);
+        } catch (ExecutionException e) {
+            throw new BugInCF("Exception while evaluating Datalog rules.", e.getCause());
+        }
+        return evaluations;
+    }
+
+    /**
+     * Adds the head tuples of one round to their relations, and returns the tuples that were
+     * new, by relation.
+     */
+    private static Map<Relation, List<int[]>> addAll(List<Evaluation> evaluations) {
+        Map<Relation, List<int[]>> delta = new HashMap<>();
+        for (Evaluation evaluation : evaluations) {
+            Relation relation = evaluation.rule.head.relation;
+            for (int[] tuple : evaluation.derived) {
+                if (relation.add(tuple)) {
+                    delta.computeIfAbsent(relation, key -> new ArrayList<>()).add(tuple);
+                }
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * One evaluation of a rule in a round, with one body atom restricted to the tuples new in the
+     * previous round, or with all atoms over all tuples in the first round.
+     */
+    private static final class Evaluation {
+        private final Rule rule;
+
+        /**
+         * The body atoms in join order.
+         */
+        private final Atom[] order;
+
+        /**
+         * The new tuples of the first atom of {@link #order}, or null to join all its tuples.
+         */
+        private final List<int[]> newTuples;
+
+        private final int[] binding;
+        private final boolean[] bound;
+        private final List<int[]> derived = new ArrayList<>();
+
+        Evaluation(Rule rule, int deltaAtom, List<int[]> newTuples) {
+            this.rule = rule;
+            this.newTuples = newTuples;
+            this.order = new Atom[rule.body.length];
+            int next = 0;
+            if (deltaAtom >= 0) {
+                order[next++] = rule.body[deltaAtom];
+            }
+            for (int i = 0; i < rule.body.length; i++) {
+                if (i != deltaAtom) {
+                    order[next++] = rule.body[i];
+                }
+            }
+            this.binding = new int[rule.numVariables];
+            this.bound = new boolean[rule.numVariables];
+        }
+
+        void evaluate() {
+            join(0);
+        }
+
+        private void join(int step) {
+            if (step == order.length) {
+                derived.add(instantiate(rule.head));
+                return;
+            }
+            Atom atom = order[step];
+            int[] terms = atom.terms;
+
+            List<int[]> candidates;
+            if (step == 0 && newTuples != null) {
+                candidates = newTuples;
+            } else {
+                int columns = 0;
+                int count = 0;
+                int[] values = new int[terms.length];
+                for (int column = 0; column < terms.length; column++) {
+                    int term = terms[column];
+                    if (term >= 0 || bound[-term - 1]) {
+                        columns |= 1 << column;
+                        values[count++] = term >= 0 ? term : binding[-term - 1];
+                    }
+                }
+                candidates = atom.relation.lookup(columns, count == values.length ? values
+                        : Arrays.copyOf(values, count));
+            }
+
+            int[] newlyBound = new int[terms.length];
+            for (int[] tuple : candidates) {
+                int newlyBoundCount = 0;
+                boolean matches = true;
+                for (int column = 0; column < terms.length && matches; column++) {
+                    int term = terms[column];
+                    if (term >= 0) {
+                        matches = tuple[column] == term;
+                    } else if (bound[-term - 1]) {
+                        matches = binding[-term - 1] == tuple[column];
+                    } else {
+                        bound[-term - 1] = true;
+                        binding[-term - 1] = tuple[column];
+                        newlyBound[newlyBoundCount++] = -term - 1;
+                    }
+                }
+                if (matches) {
+                    join(step + 1);
+                }
+                for (int i = 0; i < newlyBoundCount; i++) {
+                    bound[newlyBound[i]] = false;
+                }
+            }
+        }
+
+        private int[] instantiate(Atom head) {
+            int[] tuple = new int[head.terms.length];
+            for (int column = 0; column < tuple.length; column++) {
+                int term = head.terms[column];
+                tuple[column] = term >= 0 ? term : binding[-term - 1];
+            }
+            return tuple;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Relation is the set of tuples of one predicate of a {@link DatalogEngine}.
+ *
+ * Tuples are int arrays of the arity of the relation. Lookups by the values of some columns use
+ * hash indexes, one per set of bound columns, which are built the first time they are needed and
+ * kept up to date as tuples are added. Lookups may run from several threads at once, as long as
+ * no tuple is added at the same time.
+ */
+public final class Relation {
+
+    private final String name;
+
+    private final int arity;
+
+    private final Set<Key> tupleSet = new HashSet<>();
+
+    private final List<int[]> tuples = new ArrayList<>();
+
+    /**
+     * The indexes of this relation, by the bit mask of their columns.
+     */
+    private final Map<Integer, Map<Key, List<int[]>>> indexes = new ConcurrentHashMap<>();
+
+    Relation(String name, int arity) {
+        if (arity < 1 || arity > 31) {
+            throw new IllegalArgumentException("Unsupported arity " + arity + " of predicate " + name);
+        }
+        this.name = name;
+        this.arity = arity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    public int size() {
+        return tuples.size();
+    }
+
+    /**
+     * Returns whether this relation contains the given tuple.
+     */
+    public boolean contains(int... tuple) {
+        return tupleSet.contains(new Key(tuple));
+    }
+
+    /**
+     * Returns all tuples of this relation. The returned tuples must not be modified.
+     */
+    public List<int[]> getTuples() {
+        return Collections.unmodifiableList(tuples);
+    }
+
+    /**
+     * Adds the given tuple and returns whether it was not in this relation yet.
+     */
+    boolean add(int[] tuple) {
+        if (tuple.length != arity) {
+            throw new IllegalArgumentException("Tuple " + Arrays.toString(tuple) + " does not have the arity of "
+                    + name + ".");
+        }
+        if (!tupleSet.add(new Key(tuple))) {
+            return false;
+        }
+        tuples.add(tuple);
+        for (Map.Entry<Integer, Map<Key, List<int[]>>> index : indexes.entrySet()) {
+            index.getValue().computeIfAbsent(project(tuple, index.getKey()), key -> new ArrayList<>()).add(tuple);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tuples whose columns in the given bit mask have the given values, in column
+     * order. A mask of 0 returns all tuples.
+     */
+    List<int[]> lookup(int columns, int[] values) {
+        if (columns == 0) {
+            return tuples;
+        }
+        Map<Key, List<int[]>> index = indexes.computeIfAbsent(columns, this::buildIndex);
+        List<int[]> result = index.get(new Key(values));
+        return result == null ? Collections.<int[]>emptyList() : result;
+    }
+
+    private Map<Key, List<int[]>> buildIndex(int columns) {
+        Map<Key, List<int[]>> index = new HashMap<>();
+        for (int[] tuple : tuples) {
+            index.computeIfAbsent(project(tuple, columns), key -> new ArrayList<>()).add(tuple);
+        }
+        return index;
+    }
+
+    private static Key project(int[] tuple, int columns) {
+        int[] values = new int[Integer.bitCount(columns)];
+        int next = 0;
+        for (int column = 0; column < tuple.length; column++) {
+            if ((columns & (1 << column)) != 0) {
+                values[next++] = tuple[column];
+            }
+        }
+        return new Key(values);
+    }
+
+    @Override
+    public String toString() {
+        return name + "/" + arity + " (" + tuples.size() + " tuples)";
+    }
+
+    /**
+     * Wraps an int array with value equality, for hashing tuples and index keys.
+     */
+    private static final class Key {
+        private final int[] values;
+        private final int hash;
+
+        Key(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(values, ((Key) other).values);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import java.util.Arrays;
+
+/**
+ * A Datalog rule {@code head <- body_1, ..., body_n} of a {@link DatalogEngine}, without
+ * negation.
+ *
+ * The terms of an atom are ints: non-negative terms are constants, and negative terms are the
+ * rule variables created by {@link #var(int)}. Every variable of the head must occur in the body.
+ */
+public final class Rule {
+
+    /**
+     * An atom {@code relation(term_1, ..., term_k)} of a rule.
+     */
+    public static final class Atom {
+        final Relation relation;
+        final int[] terms;
+
+        public Atom(Relation relation, int... terms) {
+            if (terms.length != relation.getArity()) {
+                throw new IllegalArgumentException("Atom " + Arrays.toString(terms) + " does not have the arity of "
+                        + relation.getName() + ".");
+            }
+            this.relation = relation;
+            this.terms = terms;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(relation.getName()).append('(');
+            for (int i = 0; i < terms.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(terms[i] < 0 ? "x" + (-terms[i] - 1) : String.valueOf(terms[i]));
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    final Atom head;
+    final Atom[] body;
+
+    /**
+     * The number of distinct variables of this rule, which are numbered from 0.
+     */
+    final int numVariables;
+
+    public Rule(Atom head, Atom... body) {
+        if (body.length == 0) {
+            throw new IllegalArgumentException("Rule " + head + " has an empty body.");
+        }
+        this.head = head;
+        this.body = body;
+
+        int max = -1;
+        boolean[] inBody = new boolean[64];
+        for (Atom atom : body) {
+            for (int term : atom.terms) {
+                if (term < 0) {
+                    int variable = -term - 1;
+                    if (variable >= inBody.length) {
+                        inBody = Arrays.copyOf(inBody, variable * 2);
+                    }
+                    inBody[variable] = true;
+                    max = Math.max(max, variable);
+                }
+            }
+        }
+        for (int term : head.terms) {
+            if (term < 0 && (-term - 1 > max || !inBody[-term - 1])) {
+                throw new IllegalArgumentException("Head variable of " + this + " does not occur in its body.");
+            }
+        }
+        this.numVariables = max + 1;
+    }
+
+    /**
+     * Returns the term of the rule variable with the given number.
+     */
+    public static int var(int number) {
+        return -number - 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(head.toString()).append(" <- ");
+        for (int i = 0; i < body.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(body[i]);
+        }
+        return sb.append('.').toString();
+    }
+}
@@ -0,0 +1,166 @@
+package checkers.inference.solver.backend.maxsat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.IVecInt;
+
+/**
+ * ClauseArena stores CNF clauses in flat int arrays: the literals of all clauses one after
+ * another, and the offset of the first literal of each clause.
+ *
+ * Compared to a list of {@link VecInt}, this needs two allocations for the whole clause set
+ * instead of several per clause, and iterating over all literals is a linear scan of one array.
+ * The arena can be cleared and filled again without releasing its buffers.
+ *
+ * Solvers are fed straight from the arena with {@link #copyTo(int, IVecInt)}: sat4j copies the
+ * literals of every clause it is given into its own clause object, so one scratch vector can be
+ * reused for all clauses instead of materializing a copy of each clause.
+ *
+ * @see MaxSatSolver
+ */
+public class ClauseArena {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] literals;
+    private int numberOfLiterals;
+
+    /**
+     * offsets[i] is the index in {@link #literals} of the first literal of clause i.
+     * offsets[numberOfClauses] is always {@link #numberOfLiterals}.
+     */
+    private int[] offsets;
+    private int numberOfClauses;
+
+    public ClauseArena() {
+        literals = new int[DEFAULT_CAPACITY * 2];
+        offsets = new int[DEFAULT_CAPACITY + 1];
+    }
+
+    /**
+     * Appends a clause with the given literals.
+     *
+     * @return the index of the new clause
+     */
+    public int add(int... clause) {
+        return add(clause, clause.length);
+    }
+
+    /**
+     * Appends a clause with the literals of the given vector.
+     *
+     * @return the index of the new clause
+     */
+    public int add(IVecInt clause) {
+        ensureLiteralCapacity(clause.size());
+        for (int i = 0; i < clause.size(); i++) {
+            literals[numberOfLiterals++] = clause.get(i);
+        }
+        return endClause();
+    }
+
+    private int add(int[] clause, int length) {
+        ensureLiteralCapacity(length);
+        System.arraycopy(clause, 0, literals, numberOfLiterals, length);
+        numberOfLiterals += length;
+        return endClause();
+    }
+
+    private int endClause() {
+        if (numberOfClauses + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[++numberOfClauses] = numberOfLiterals;
+        return numberOfClauses - 1;
+    }
+
+    private void ensureLiteralCapacity(int extra) {
+        if (numberOfLiterals + extra > literals.length) {
+            literals = Arrays.copyOf(literals, Math.max(literals.length * 2, numberOfLiterals + extra));
+        }
+    }
+
+    public int size() {
+        return numberOfClauses;
+    }
+
+    public boolean isEmpty() {
+        return numberOfClauses == 0;
+    }
+
+    public int clauseLength(int clause) {
+        return offsets[clause + 1] - offsets[clause];
+    }
+
+    public int literal(int clause, int index) {
+        return literals[offsets[clause] + index];
+    }
+
+    /**
+     * Replaces the content of the given vector by the literals of the given clause, and returns
+     * the vector. The vector does not share its array with the arena, so a solver may modify it,
+     * e.g. by adding a selector literal, but it must not keep it after adding the clause.
+     */
+    public IVecInt copyTo(int clause, IVecInt target) {
+        target.clear();
+        target.ensure(clauseLength(clause) + 1);
+        for (int i = offsets[clause]; i < offsets[clause + 1]; i++) {
+            target.unsafePush(literals[i]);
+        }
+        return target;
+    }
+
+    /**
+     * Sets the bit of the variable of every literal in this arena.
+     */
+    public void collectVariables(BitSet variables) {
+        for (int i = 0; i < numberOfLiterals; i++) {
+            variables.set(Math.abs(literals[i]));
+        }
+    }
+
+    /**
+     * Writes all clauses in DIMACS format, one clause per line terminated by 0. The problem line
+     * is not written.
+     */
+    public void writeDimacs(Writer writer) throws IOException {
+        for (int clause = 0; clause < numberOfClauses; clause++) {
+            for (int i = offsets[clause]; i < offsets[clause + 1]; i++) {
+                writer.write(Integer.toString(literals[i]));
+                writer.write(' ');
+            }
+            writer.write("0\n");
+        }
+    }
+
+    /**
+     * Removes all clauses but keeps the buffers for reuse.
+     */
+    public void clear() {
+        numberOfLiterals = 0;
+        numberOfClauses = 0;
+    }
+
+    /**
+     * Removes all clauses and releases the buffers.
+     */
+    public void release() {
+        clear();
+        literals = new int[DEFAULT_CAPACITY * 2];
+        offsets = new int[DEFAULT_CAPACITY + 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int clause = 0; clause < numberOfClauses; clause++) {
+            sb.append(Arrays.toString(Arrays.copyOfRange(literals, offsets[clause], offsets[clause + 1])));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,319 @@
+package checkers.inference.solver.backend.maxsat;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * CoreGuidedMaxSat solves weighted partial MaxSAT problems with the OLL algorithm, on top of the
+ * assumption interface of a sat4j solver that already holds the hard clauses:
+ *
+ * 1. Each soft clause is satisfied under an assumption literal: the literal itself for unit
+ *    clauses, and the negation of a new blocking variable added to the clause otherwise.
+ * 2. Solve under the assumptions of the current stratum, i.e. with at least the current weight.
+ *    If they are unsatisfiable, sat4j returns a core of assumptions that cannot all hold. The
+ *    minimum weight of the core is added to the lower bound and subtracted from the weights of
+ *    its assumptions, and a cardinality constraint allowing at most one of them to be violated
+ *    becomes a new soft constraint with that weight. When such a constraint is in a core itself,
+ *    the constraint allowing one more violation is added.
+ * 3. If they are satisfiable, the model is a candidate solution, and the next stratum also
+ *    assumes the lighter soft clauses. Once all of them are assumed, the model is optimal.
+ *
+ * Every model found along the way satisfies the hard clauses, so when the time budget runs out
+ * or the solver is interrupted, the best model so far is returned. The time budget only bounds
+ * the optimization: the first model, of the hard clauses alone, is searched for until it is
+ * found or the solver is interrupted, so there always is a model to fall back to.
+ */
+final class CoreGuidedMaxSat {
+
+    /**
+     * The deadline of the search for the first model, which only an interrupt stops.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final IPBSolver solver;
+
+    /**
+     * The number of variables of the problem, which the returned model is restricted to.
+     */
+    private final int numberOfVariables;
+
+    private final List<int[]> softClauses = new ArrayList<>();
+    private final List<Long> softClauseWeights = new ArrayList<>();
+
+    /**
+     * The remaining weight of each assumption.
+     */
+    private final Map<Integer, Long> assumptionWeights = new LinkedHashMap<>();
+
+    /**
+     * The cardinality constraint of each assumption that bounds the number of violated
+     * assumptions of a core.
+     */
+    private final Map<Integer, Cardinality> cardinalities = new HashMap<>();
+
+    private int[] bestModel;
+    private long bestCost = Long.MAX_VALUE;
+    private long lowerBound;
+    private boolean optimal;
+    private int cores;
+    private volatile boolean interrupted;
+
+    CoreGuidedMaxSat(IPBSolver solver, int numberOfVariables) {
+        this.solver = solver;
+        this.numberOfVariables = numberOfVariables;
+    }
+
+    void addSoftClause(long weight, IVecInt clause) throws ContradictionException {
+        if (weight <= 0) {
+            return;
+        }
+        int[] literals = toArray(clause);
+        softClauses.add(literals);
+        softClauseWeights.add(weight);
+
+        int assumption;
+        if (literals.length == 1) {
+            assumption = literals[0];
+        } else {
+            int blocking = solver.nextFreeVarId(true);
+            IVecInt blocked = new VecInt(literals);
+            blocked.push(blocking);
+            solver.addClause(blocked);
+            assumption = -blocking;
+        }
+        assumptionWeights.merge(assumption, weight, Long::sum);
+    }
+
+    /**
+     * Searches an optimal model for at most the given time, and returns the best model found,
+     * restricted to the variables of the problem. Returns null if the hard clauses are
+     * unsatisfiable, and then {@link #isOptimal()} is true, or if the search was interrupted
+     * before finding any model.
+     */
+    int[] solve(long timeoutMs) {
+        try {
+            if (!isSatisfiable(new VecInt(), NO_DEADLINE)) {
+                optimal = true;
+                return null;
+            }
+            final long deadline = System.currentTimeMillis() + timeoutMs;
+            updateBest(solver.model());
+
+            long stratum = maxWeightBelow(Long.MAX_VALUE);
+            while (bestCost > lowerBound) {
+                IVecInt assumptions = new VecInt();
+                IVecInt complementary = null;
+                for (Map.Entry<Integer, Long> entry : assumptionWeights.entrySet()) {
+                    if (entry.getValue() >= stratum) {
+                        int assumption = entry.getKey();
+                        assumptions.push(assumption);
+                        Long negated = assumptionWeights.get(-assumption);
+                        if (negated != null && negated >= stratum) {
+                            complementary = new VecInt(new int[] { assumption, -assumption });
+                        }
+                    }
+                }
+
+                if (complementary != null) {
+                    // sat4j does not explain conflicts between the assumptions themselves.
+                    relax(complementary);
+                } else if (isSatisfiable(assumptions, deadline)) {
+                    updateBest(solver.model());
+                    stratum = maxWeightBelow(stratum);
+                    if (stratum == 0) {
+                        // Every soft constraint is assumed.
+                        break;
+                    }
+                } else {
+                    relax(solver.unsatExplanation());
+                }
+            }
+            optimal = true;
+        } catch (TimeoutException e) {
+            // Out of time: return the best model so far.
+        } catch (ContradictionException e) {
+            throw new BugInCF("Relaxing a core made the hard clauses unsatisfiable.", e);
+        }
+        return bestModel;
+    }
+
+    private boolean isSatisfiable(IVecInt assumptions, long deadline) throws TimeoutException {
+        long remaining = deadline == NO_DEADLINE ? Integer.MAX_VALUE : deadline - System.currentTimeMillis();
+        if (remaining <= 0 || interrupted) {
+            throw new TimeoutException();
+        }
+        solver.setTimeoutMs(remaining);
+        return solver.isSatisfiable(assumptions);
+    }
+
+    /**
+     * Returns the largest weight of an assumption below the given bound, or 0 if there is none.
+     */
+    private long maxWeightBelow(long bound) {
+        long result = 0;
+        for (long weight : assumptionWeights.values()) {
+            if (weight < bound && weight > result) {
+                result = weight;
+            }
+        }
+        return result;
+    }
+
+    private void relax(IVecInt explanation) throws ContradictionException {
+        Set<Integer> core = new LinkedHashSet<>();
+        if (explanation != null) {
+            for (int i = 0; i < explanation.size(); i++) {
+                int literal = explanation.get(i);
+                if (assumptionWeights.containsKey(literal)) {
+                    core.add(literal);
+                } else if (assumptionWeights.containsKey(-literal)) {
+                    core.add(-literal);
+                }
+            }
+        }
+        if (core.isEmpty()) {
+            throw new BugInCF("Empty core although the hard clauses are satisfiable.");
+        }
+        cores++;
+
+        long minWeight = Long.MAX_VALUE;
+        for (int assumption : core) {
+            minWeight = Math.min(minWeight, assumptionWeights.get(assumption));
+        }
+        lowerBound += minWeight;
+
+        for (int assumption : core) {
+            long weight = assumptionWeights.get(assumption) - minWeight;
+            if (weight == 0) {
+                assumptionWeights.remove(assumption);
+            } else {
+                assumptionWeights.put(assumption, weight);
+            }
+            Cardinality cardinality = cardinalities.get(assumption);
+            if (cardinality != null && cardinality.bound + 1 < cardinality.violations.length) {
+                addCardinality(cardinality.violations, cardinality.bound + 1, minWeight);
+            }
+        }
+
+        if (core.size() > 1) {
+            int[] violations = new int[core.size()];
+            int next = 0;
+            for (int assumption : core) {
+                violations[next++] = -assumption;
+            }
+            addCardinality(violations, 1, minWeight);
+        }
+    }
+
+    /**
+     * Adds a soft constraint with the given weight that at most {@code bound} of the given
+     * literals are true.
+     */
+    private void addCardinality(int[] violations, int bound, long weight) throws ContradictionException {
+        // With the output o false, the constraint is sum(violations) <= bound.
+        int output = solver.nextFreeVarId(true);
+        IVecInt literals = new VecInt(violations.length + 1);
+        IVecInt coefficients = new VecInt(violations.length + 1);
+        for (int violation : violations) {
+            literals.push(violation);
+            coefficients.push(1);
+        }
+        literals.push(-output);
+        coefficients.push(violations.length);
+        solver.addAtMost(literals, coefficients, bound + violations.length);
+
+        assumptionWeights.merge(-output, weight, Long::sum);
+        cardinalities.put(-output, new Cardinality(violations, bound));
+    }
+
+    private void updateBest(int[] model) {
+        BitSet trueVariables = new BitSet();
+        for (int literal : model) {
+            if (literal > 0) {
+                trueVariables.set(literal);
+            }
+        }
+
+        long cost = 0;
+        for (int i = 0; i < softClauses.size(); i++) {
+            boolean satisfied = false;
+            for (int literal : softClauses.get(i)) {
+                if (trueVariables.get(Math.abs(literal)) == literal > 0) {
+                    satisfied = true;
+                    break;
+                }
+            }
+            if (!satisfied) {
+                cost += softClauseWeights.get(i);
+            }
+        }
+
+        if (bestModel == null || cost < bestCost) {
+            bestCost = cost;
+            IVecInt restricted = new VecInt();
+            for (int literal : model) {
+                if (Math.abs(literal) <= numberOfVariables) {
+                    restricted.push(literal);
+                }
+            }
+            bestModel = toArray(restricted);
+        }
+    }
+
+    private static int[] toArray(IVecInt vector) {
+        int[] result = new int[vector.size()];
+        vector.copyTo(result);
+        return result;
+    }
+
+    /**
+     * Stops the search, which then returns the best model so far. Used together with
+     * {@link IPBSolver#expireTimeout()} to also stop the running SAT call.
+     */
+    void interrupt() {
+        interrupted = true;
+    }
+
+    /**
+     * Returns whether the last model returned by {@link #solve(long)} is proven optimal, or, if
+     * it returned null, whether the hard clauses are proven unsatisfiable.
+     */
+    boolean isOptimal() {
+        return optimal;
+    }
+
+    long getCost() {
+        return bestCost;
+    }
+
+    long getLowerBound() {
+        return lowerBound;
+    }
+
+    int getCores() {
+        return cores;
+    }
+
+    private static final class Cardinality {
+        final int[] violations;
+        final int bound;
+
+        Cardinality(int[] violations, int bound) {
+            this.violations = violations;
+            this.bound = bound;
+        }
+    }
+}
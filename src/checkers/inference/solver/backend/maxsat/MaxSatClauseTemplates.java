@@ -0,0 +1,187 @@
+package checkers.inference.solver.backend.maxsat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.sat4j.core.VecInt;
+
+import checkers.inference.solver.frontend.LatticeEncoding;
+
+/**
+ * MaxSatClauseTemplates holds the MaxSAT encoding of binary constraints for one lattice, with the
+ * slot ids left open.
+ *
+ * The clauses a binary constraint is encoded to only depend on the lattice, the kind of the
+ * constraint, the {@link checkers.inference.solver.backend.encoder.SlotSlotCombo} of its slots
+ * and the values of constant slots. So they are computed once per lattice as templates, and
+ * encoding a constraint only instantiates a template with the ids of its slots.
+ *
+ * A template is an array of clauses. A literal {@code l} of a template refers to qualifier
+ * {@code (|l| - 1) % numTypes} of the first slot if {@code (|l| - 1) / numTypes} is 0, and of the
+ * second slot otherwise; its sign is the sign of the instantiated literal. Templates of
+ * constraints between a variable and a constant are indexed by the constant's qualifier and
+ * only refer to the variable, as the first slot.
+ *
+ * Templates are shared by every format translator of a lattice, see {@link #of(LatticeEncoding)}.
+ */
+public final class MaxSatClauseTemplates {
+
+    private static final Map<LatticeEncoding, MaxSatClauseTemplates> cache = new WeakHashMap<>();
+
+    private static final int FIRST = 0;
+    private static final int SECOND = 1;
+
+    private final int numTypes;
+
+    private final int[][] subtypeVariableVariable;
+    private final int[][][] subtypeVariableConstant;
+    private final int[][][] subtypeConstantVariable;
+    private final int[][] equalityVariableVariable;
+    private final int[][] inequalityVariableVariable;
+    private final int[][] comparableVariableVariable;
+    private final int[][][] comparableVariableConstant;
+
+    /**
+     * Returns the templates of the given lattice encoding, computing them on first use.
+     */
+    public static MaxSatClauseTemplates of(LatticeEncoding encoding) {
+        synchronized (cache) {
+            return cache.computeIfAbsent(encoding, MaxSatClauseTemplates::new);
+        }
+    }
+
+    private MaxSatClauseTemplates(LatticeEncoding encoding) {
+        numTypes = encoding.size();
+        final int top = encoding.getTop();
+        final int bottom = encoding.getBottom();
+
+        // if we know subtype, supertype is one of its supertypes;
+        // if we know supertype, subtype is one of its subtypes.
+        List<int[]> clauses = new ArrayList<>();
+        for (int type = 0; type < numTypes; type++) {
+            if (type != top) {
+                clauses.add(maybe(type, FIRST, SECOND, encoding.getSupertypes(type)));
+            }
+            if (type != bottom) {
+                clauses.add(maybe(type, SECOND, FIRST, encoding.getSubtypes(type)));
+            }
+        }
+        // if subtype is top, then supertype is top.
+        clauses.add(new int[] { -literal(FIRST, top), literal(SECOND, top) });
+        // if supertype is bottom, then subtype is bottom.
+        clauses.add(new int[] { -literal(SECOND, bottom), literal(FIRST, bottom) });
+        subtypeVariableVariable = clauses.toArray(new int[clauses.size()][]);
+
+        subtypeVariableConstant = new int[numTypes][][];
+        subtypeConstantVariable = new int[numTypes][][];
+        comparableVariableConstant = new int[numTypes][][];
+        for (int constant = 0; constant < numTypes; constant++) {
+            // For subtype constraint, if supertype is constant slot, then the subtype
+            // cannot be the super type of supertype, same for subtype
+            subtypeVariableConstant[constant] = constant == bottom
+                    ? new int[][] { { literal(FIRST, bottom) } }
+                    : mustNotBe(constant, encoding.getSupertypes(constant), encoding.getIncomparables(constant));
+            subtypeConstantVariable[constant] = constant == top
+                    ? new int[][] { { literal(FIRST, top) } }
+                    : mustNotBe(constant, encoding.getSubtypes(constant), encoding.getIncomparables(constant));
+            comparableVariableConstant[constant] = mustNotBe(constant, encoding.getIncomparables(constant));
+        }
+
+        // a <=> b which is the same as (!a v b) & (!b v a)
+        equalityVariableVariable = new int[numTypes * 2][];
+        // a <=> !b which is the same as (!a v !b) & (b v a)
+        inequalityVariableVariable = new int[numTypes * 2][];
+        for (int type = 0; type < numTypes; type++) {
+            equalityVariableVariable[2 * type] = new int[] { -literal(FIRST, type), literal(SECOND, type) };
+            equalityVariableVariable[2 * type + 1] = new int[] { -literal(SECOND, type), literal(FIRST, type) };
+            inequalityVariableVariable[2 * type] = new int[] { -literal(FIRST, type), -literal(SECOND, type) };
+            inequalityVariableVariable[2 * type + 1] = new int[] { literal(SECOND, type), literal(FIRST, type) };
+        }
+
+        clauses.clear();
+        for (int type = 0; type < numTypes; type++) {
+            for (int notComparable : encoding.getIncomparables(type)) {
+                clauses.add(new int[] { -literal(FIRST, type), -literal(SECOND, notComparable),
+                        literal(SECOND, notComparable), literal(FIRST, type) });
+            }
+        }
+        comparableVariableVariable = clauses.toArray(new int[clauses.size()][]);
+    }
+
+    private int literal(int side, int type) {
+        return side * numTypes + type + 1;
+    }
+
+    private int[] maybe(int type, int known, int unknown, int[] maybeSet) {
+        int[] clause = new int[maybeSet.length + 1];
+        clause[0] = -literal(known, type);
+        for (int i = 0; i < maybeSet.length; i++) {
+            clause[i + 1] = literal(unknown, maybeSet[i]);
+        }
+        return clause;
+    }
+
+    /**
+     * Returns unit clauses that forbid every qualifier of the given sets except the constant.
+     */
+    private int[][] mustNotBe(int constant, int[]... sets) {
+        List<int[]> clauses = new ArrayList<>();
+        for (int[] set : sets) {
+            for (int type : set) {
+                if (type != constant) {
+                    clauses.add(new int[] { -literal(FIRST, type) });
+                }
+            }
+        }
+        return clauses.toArray(new int[clauses.size()][]);
+    }
+
+    /**
+     * Instantiates the given template with the given slot ids.
+     */
+    public VecInt[] instantiate(int[][] template, int firstSlotId, int secondSlotId) {
+        VecInt[] result = new VecInt[template.length];
+        for (int c = 0; c < template.length; c++) {
+            int[] clause = template[c];
+            int[] literals = new int[clause.length];
+            for (int i = 0; i < clause.length; i++) {
+                int entry = Math.abs(clause[i]) - 1;
+                int slotId = entry < numTypes ? firstSlotId : secondSlotId;
+                int variable = (slotId - 1) * numTypes + entry % numTypes + 1;
+                literals[i] = clause[i] < 0 ? -variable : variable;
+            }
+            result[c] = new VecInt(literals);
+        }
+        return result;
+    }
+
+    public int[][] getSubtypeVariableVariable() {
+        return subtypeVariableVariable;
+    }
+
+    public int[][] getSubtypeVariableConstant(int constant) {
+        return subtypeVariableConstant[constant];
+    }
+
+    public int[][] getSubtypeConstantVariable(int constant) {
+        return subtypeConstantVariable[constant];
+    }
+
+    public int[][] getEqualityVariableVariable() {
+        return equalityVariableVariable;
+    }
+
+    public int[][] getInequalityVariableVariable() {
+        return inequalityVariableVariable;
+    }
+
+    public int[][] getComparableVariableVariable() {
+        return comparableVariableVariable;
+    }
+
+    public int[][] getComparableVariableConstant(int constant) {
+        return comparableVariableConstant[constant];
+    }
+}
@@ -1,9 +1,5 @@
 package checkers.inference.solver.backend.maxsat;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import javax.annotation.processing.ProcessingEnvironment;
@@ -12,7 +8,6 @@ import javax.lang.model.element.AnnotationMirror;
 import checkers.inference.solver.backend.AbstractFormatTranslator;
 import checkers.inference.solver.backend.encoder.ConstraintEncoderFactory;
 import checkers.inference.solver.backend.maxsat.encoder.MaxSATConstraintEncoderFactory;
-import org.checkerframework.javacutil.AnnotationUtils;
 import org.sat4j.core.VecInt;
 
 import checkers.inference.solver.frontend.Lattice;
@@ -40,19 +35,9 @@ public class MaxSatFormatTranslator extends AbstractFormatTranslator<VecInt[], V
 
     public MaxSatFormatTranslator(Lattice lattice) {
         super(lattice);
-        // Initialize mappings between type and int.
-        Map<AnnotationMirror, Integer>typeToIntRes = AnnotationUtils.createAnnotationMap();
-        Map<Integer, AnnotationMirror> intToTypeRes = new HashMap<Integer, AnnotationMirror>();
-
-        int curInt = 0;
-        for (AnnotationMirror type : lattice.allTypes) {
-            typeToIntRes.put(type, curInt);
-            intToTypeRes.put(curInt, type);
-            curInt ++;
-        }
-
-        typeToInt = Collections.unmodifiableMap(typeToIntRes);
-        intToType = Collections.unmodifiableMap(intToTypeRes);
+        // Mappings between type and int are shared by all translators of the lattice.
+        typeToInt = lattice.getEncoding().getIndexMap();
+        intToType = lattice.getEncoding().getQualifierMap();
         finishInitializingEncoders();
     }
 
@@ -66,19 +51,17 @@ public class MaxSatFormatTranslator extends AbstractFormatTranslator<VecInt[], V
      * can be true.
      *
      */
-    public void generateWellFormednessClauses(List<VecInt> wellFormednessClauses, Integer varSlotId) {
+    public void generateWellFormednessClauses(ClauseArena wellFormednessClauses, Integer varSlotId) {
         int[] leastOneIsTrue = new int[lattice.numTypes];
-        for (Integer i : intToType.keySet()) {
-            leastOneIsTrue[i] = MathUtils.mapIdToMatrixEntry(varSlotId, i.intValue(), lattice);
+        for (int i = 0; i < lattice.numTypes; i++) {
+            leastOneIsTrue[i] = MathUtils.mapIdToMatrixEntry(varSlotId, i, lattice);
         }
-        wellFormednessClauses.add(VectorUtils.asVec(leastOneIsTrue));
-        List<Integer> varList = new ArrayList<Integer>(intToType.keySet());
-        for (int i = 0; i < varList.size(); i++) {
-            for (int j = i + 1; j < varList.size(); j++) {
-                VecInt vecInt = new VecInt(2);
-                vecInt.push(-MathUtils.mapIdToMatrixEntry(varSlotId, varList.get(i), lattice));
-                vecInt.push(-MathUtils.mapIdToMatrixEntry(varSlotId, varList.get(j), lattice));
-                wellFormednessClauses.add(vecInt);
+        wellFormednessClauses.add(leastOneIsTrue);
+        for (int i = 0; i < lattice.numTypes; i++) {
+            for (int j = i + 1; j < lattice.numTypes; j++) {
+                wellFormednessClauses.add(
+                        -MathUtils.mapIdToMatrixEntry(varSlotId, i, lattice),
+                        -MathUtils.mapIdToMatrixEntry(varSlotId, j, lattice));
             }
         }
     }
@@ -1,11 +1,16 @@
 package checkers.inference.solver.backend.maxsat;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -13,12 +18,16 @@ import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 
 import org.checkerframework.javacutil.BugInCF;
+import org.checkerframework.javacutil.UserError;
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.SolverFactory;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
 import org.sat4j.pb.IPBSolver;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.IConstr;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
 import org.sat4j.tools.xplain.DeletionStrategy;
 import org.sat4j.tools.xplain.Xplain;
 
@@ -29,8 +38,8 @@ import checkers.inference.model.PreferenceConstraint;
 import checkers.inference.model.Slot;
 import checkers.inference.solver.backend.Solver;
 import checkers.inference.solver.frontend.Lattice;
-import checkers.inference.solver.util.FileUtils;
 import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverDumps;
 import checkers.inference.solver.util.SolverEnvironment;
 import checkers.inference.solver.util.Statistics;
 
@@ -38,6 +47,15 @@ import checkers.inference.solver.util.Statistics;
  * MaxSatSolver calls MaxSatFormatTranslator that converts constraint into a list of
  * VecInt, then invoke Sat4j lib to solve the clauses, and decode the result.
  *
+ * The encoded clauses are kept in {@link ClauseArena}s rather than in lists of VecInt. The hard
+ * clauses stay in their arena after solving when there is no solution, so that the
+ * unsatisfiable constraint explainer does not need to encode the constraints again.
+ *
+ * Preference constraints are soft clauses weighted by the weight of the constraint. They are
+ * optimized either by sat4j's linear search, or with {@code maxsatAlgorithm=coreGuided} by
+ * {@link CoreGuidedMaxSat}, which returns the best solution found so far when the time budget
+ * runs out.
+ *
  * @author jianchu
  *
  */
@@ -45,18 +63,52 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
 
     protected enum MaxSatSolverArg implements SolverArg {
         /**
-         * Whether should print the CNF formulas.
+         * Whether should dump the CNF formulas, see {@link SolverDumps}.
          */
-        outputCNF;
+        outputCNF,
+
+        /**
+         * The MaxSAT algorithm: {@code linear} for the linear search of sat4j (the default), or
+         * {@code coreGuided} for {@link CoreGuidedMaxSat}.
+         */
+        maxsatAlgorithm,
+
+        /**
+         * Time budget of one solve in milliseconds. Defaults to 1000000.
+         */
+        maxsatTimeout;
     }
 
+    private static final int DEFAULT_TIMEOUT_MS = 1000000;
+
     protected final SlotManager slotManager;
-    protected final List<VecInt> hardClauses = new LinkedList<>();
-    private List<VecInt> wellFormednessClauses = new LinkedList<>();
-    protected final List<VecInt> softClauses = new LinkedList<>();
+    protected final ClauseArena hardClauses = new ClauseArena();
+    private final ClauseArena wellFormednessClauses = new ClauseArena();
+    protected final ClauseArena softClauses = new ClauseArena();
+    /**
+     * The weight of each soft clause, indexed by clause.
+     */
+    private final List<Integer> softClauseWeights = new ArrayList<>();
+    /**
+     * The constraint each hard clause was encoded from, indexed by clause.
+     */
+    private final List<Constraint> hardClauseConstraints = new ArrayList<>();
     private MaxSATUnsatisfiableConstraintExplainer unsatisfiableConstraintExplainer;
+    /**
+     * The sat4j solver of a running {@link #solve()}, kept to support {@link #interrupt()}.
+     */
+    private volatile ISolver runningSolver;
+    /**
+     * The core-guided search of a running {@link #solve()}, if any.
+     */
+    private volatile CoreGuidedMaxSat runningMaxSat;
+    /**
+     * Set by {@link #interrupt()}. The solving thread checks it after publishing
+     * {@link #runningSolver} and {@link #runningMaxSat}, so an interrupt that arrives before
+     * they are set, e.g. during encoding, is not lost.
+     */
+    private volatile boolean interrupted;
     protected final File CNFData = new File(new File("").getAbsolutePath() + "/cnfData");
-    protected StringBuilder CNFInput = new StringBuilder();
 
     private long serializationStart;
     private long serializationEnd;
@@ -68,18 +120,12 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
         super(solverEnvironment, slots, constraints, formatTranslator,
                 lattice);
         this.slotManager = InferenceMain.getInstance().getSlotManager();
-
-        if (shouldOutputCNF()) {
-            CNFData.mkdir();
-        }
     }
 
     @Override
     public Map<Integer, AnnotationMirror> solve() {
 
         Map<Integer, AnnotationMirror> solutions = null;
-        final WeightedMaxSatDecorator solver = new WeightedMaxSatDecorator(
-                org.sat4j.pb.SolverFactory.newBoth());
 
         this.serializationStart = System.currentTimeMillis();
         // Serialization step:
@@ -88,19 +134,13 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
         this.serializationEnd = System.currentTimeMillis();
 
         if (shouldOutputCNF()) {
-            buildCNFInput();
             writeCNFInput();
         }
         // printClauses();
-        configureSatSolver(solver);
+        final boolean coreGuided = isCoreGuided();
 
         try {
-            addClausesToSolver(solver);
-            cleanUpClauses();
-
-            this.solvingStart = System.currentTimeMillis();
-            boolean isSatisfiable = solver.isSatisfiable();
-            this.solvingEnd = System.currentTimeMillis();
+            int[] model = coreGuided ? solveCoreGuided() : solveLinear();
 
             long solvingTime = solvingEnd - solvingStart;
             long serializationTime = serializationEnd - serializationStart;
@@ -108,25 +148,136 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
             Statistics.addOrIncrementEntry("sat_serialization_time(ms)", serializationTime);
             Statistics.addOrIncrementEntry("sat_solving_time(ms)", solvingTime);
 
-            if (isSatisfiable) {
-                solutions = decode(solver.model());
+            if (model != null) {
+                solutions = decode(model);
+                cleanUpClauses();
             } else {
-                System.out.println("Not solvable!");
-                // Lazily initialize unsatisfiableConstraintExplainer when there is no solution
-                unsatisfiableConstraintExplainer = new MaxSATUnsatisfiableConstraintExplainer();
+                InferenceMain.getInstance().logger.info("Not solvable!");
+                markUnsatisfiable();
             }
 
         } catch (ContradictionException e) {
             InferenceMain.getInstance().logger.warning("Contradiction exception: ");
             // This case indicates that constraints are not solvable, too. This is normal so continue
             // execution and let solver strategy to explain why there is no solution
-            unsatisfiableConstraintExplainer = new MaxSATUnsatisfiableConstraintExplainer();
+            markUnsatisfiable();
         } catch (Exception e) {
             throw new BugInCF("Unexpected error occurred!", e);
+        } finally {
+            runningSolver = null;
+            runningMaxSat = null;
         }
         return solutions;
     }
 
+    private boolean isCoreGuided() {
+        String algorithm = solverEnvironment.getArg(MaxSatSolverArg.maxsatAlgorithm);
+        if (algorithm == null || algorithm.isEmpty() || algorithm.equals("linear")) {
+            return false;
+        }
+        if (algorithm.equals("coreGuided")) {
+            return true;
+        }
+        throw new UserError("Unknown MaxSAT algorithm: " + algorithm + ". Use linear or coreGuided.");
+    }
+
+    /**
+     * Solves the clauses with the linear search of sat4j, and returns the model, or null if the
+     * hard clauses are unsatisfiable.
+     */
+    private int[] solveLinear() throws ContradictionException, TimeoutException {
+        final WeightedMaxSatDecorator solver = new WeightedMaxSatDecorator(
+                org.sat4j.pb.SolverFactory.newBoth());
+        configureSatSolver(solver);
+        runningSolver = solver;
+        addClausesToSolver(solver);
+        softClauses.release();
+        softClauseWeights.clear();
+        if (interrupted) {
+            throw new TimeoutException("MaxSAT solving was interrupted.");
+        }
+
+        this.solvingStart = System.currentTimeMillis();
+        boolean isSatisfiable = solver.isSatisfiable();
+        this.solvingEnd = System.currentTimeMillis();
+        return isSatisfiable ? solver.model() : null;
+    }
+
+    /**
+     * Solves the clauses with {@link CoreGuidedMaxSat}, and returns the best model found within
+     * the time budget, or null if the hard clauses are unsatisfiable. If the budget runs out
+     * before the first model, the model of the hard clauses alone is returned.
+     */
+    private int[] solveCoreGuided() throws ContradictionException, TimeoutException {
+        final IPBSolver solver = org.sat4j.pb.SolverFactory.newDefault();
+        configureSatSolver(solver);
+        runningSolver = solver;
+        final IVecInt clause = new VecInt();
+        for (int i = 0; i < hardClauses.size(); i++) {
+            solver.addClause(hardClauses.copyTo(i, clause));
+        }
+        for (int i = 0; i < wellFormednessClauses.size(); i++) {
+            solver.addClause(wellFormednessClauses.copyTo(i, clause));
+        }
+        CoreGuidedMaxSat maxSat = new CoreGuidedMaxSat(solver, slotManager.getNumberOfSlots() * lattice.numTypes);
+        runningMaxSat = maxSat;
+        if (interrupted) {
+            maxSat.interrupt();
+        }
+        for (int i = 0; i < softClauses.size(); i++) {
+            maxSat.addSoftClause(softClauseWeights.get(i), softClauses.copyTo(i, clause));
+        }
+        softClauses.release();
+        softClauseWeights.clear();
+
+        this.solvingStart = System.currentTimeMillis();
+        int[] model = maxSat.solve(getTimeoutMs());
+        this.solvingEnd = System.currentTimeMillis();
+
+        Statistics.addOrIncrementEntry("maxsat_cores", maxSat.getCores());
+        if (model != null) {
+            Statistics.addOrIncrementEntry("maxsat_cost", maxSat.getCost());
+            if (!maxSat.isOptimal()) {
+                Statistics.addOrIncrementEntry("maxsat_suboptimal_solves", 1);
+                InferenceMain.getInstance().logger.warning("MaxSAT time budget exhausted, using a solution of cost "
+                        + maxSat.getCost() + " (lower bound " + maxSat.getLowerBound() + ").");
+            }
+        } else if (!maxSat.isOptimal()) {
+            throw new TimeoutException("MaxSAT solving was interrupted.");
+        }
+        return model;
+    }
+
+    private long getTimeoutMs() {
+        return solverEnvironment.getIntArg(MaxSatSolverArg.maxsatTimeout, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * Prepares {@link #explainUnsatisfiable()} after the hard clauses were found unsatisfiable.
+     */
+    protected void markUnsatisfiable() {
+        // Lazily initialize unsatisfiableConstraintExplainer when there is no solution
+        unsatisfiableConstraintExplainer = new MaxSATUnsatisfiableConstraintExplainer();
+    }
+
+    @Override
+    public boolean isUnsatisfiable() {
+        return unsatisfiableConstraintExplainer != null;
+    }
+
+    @Override
+    public void interrupt() {
+        interrupted = true;
+        CoreGuidedMaxSat maxSat = runningMaxSat;
+        if (maxSat != null) {
+            maxSat.interrupt();
+        }
+        ISolver solver = runningSolver;
+        if (solver != null) {
+            solver.expireTimeout();
+        }
+    }
+
     /**
      * Convert constraints to list of VecInt.
      */
@@ -145,8 +296,10 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
                 if (res != null && res.size() != 0) {
                     if (constraint instanceof PreferenceConstraint) {
                         softClauses.add(res);
+                        softClauseWeights.add(((PreferenceConstraint) constraint).getWeight());
                     } else {
                         hardClauses.add(res);
+                        hardClauseConstraints.add(constraint);
                     }
                 }
             }
@@ -164,7 +317,7 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
      *
      * @param solver
      */
-    private void configureSatSolver(WeightedMaxSatDecorator solver) {
+    private void configureSatSolver(ISolver solver) {
 
         final int totalVars = (slotManager.getNumberOfSlots() * lattice.numTypes);
         final int totalClauses = hardClauses.size() + wellFormednessClauses.size() + softClauses.size();
@@ -173,27 +326,31 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
         solver.setExpectedNumberOfClauses(totalClauses);
         Statistics.addOrIncrementEntry("cnf_clause_size", totalClauses);
         countVariables();
-        solver.setTimeoutMs(1000000);
+        solver.setTimeoutMs(getTimeoutMs());
     }
 
     private void addClausesToSolver(WeightedMaxSatDecorator solver) throws ContradictionException {
-        for (VecInt hardClause : hardClauses) {
-            solver.addHardClause(hardClause);
+        // Sat4j copies the literals of each clause, so one vector is reused for all of them.
+        final IVecInt clause = new VecInt();
+        for (int i = 0; i < hardClauses.size(); i++) {
+            solver.addHardClause(hardClauses.copyTo(i, clause));
         }
 
-        for (VecInt wellFormednessClause: wellFormednessClauses) {
-            solver.addHardClause(wellFormednessClause);
+        for (int i = 0; i < wellFormednessClauses.size(); i++) {
+            solver.addHardClause(wellFormednessClauses.copyTo(i, clause));
         }
 
-        for (VecInt softclause : softClauses) {
-            solver.addSoftClause(softclause);
+        for (int i = 0; i < softClauses.size(); i++) {
+            solver.addSoftClause(softClauseWeights.get(i), softClauses.copyTo(i, clause));
         }
     }
 
     private void cleanUpClauses() {
-        hardClauses.clear();
-        wellFormednessClauses.clear();
-        softClauses.clear();
+        hardClauses.release();
+        wellFormednessClauses.release();
+        softClauses.release();
+        softClauseWeights.clear();
+        hardClauseConstraints.clear();
     }
 
     protected Map<Integer, AnnotationMirror> decode(int[] solution) {
@@ -210,15 +367,9 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
     }
 
     protected void countVariables() {
-
-        Set<Integer> vars = new HashSet<Integer>();
-
-        for (VecInt vi : hardClauses) {
-            for (int i : vi.toArray()) {
-                vars.add(i);
-            }
-        }
-        Statistics.addOrIncrementEntry("cnf_variable_size", vars.size());
+        BitSet vars = new BitSet(slotManager.getNumberOfSlots() * lattice.numTypes + 1);
+        hardClauses.collectVariables(vars);
+        Statistics.addOrIncrementEntry("cnf_variable_size", vars.cardinality());
     }
 
     protected boolean shouldOutputCNF() {
@@ -226,43 +377,38 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
     }
 
     /**
-     * Write CNF clauses into a string.
+     * Dumps the CNF clauses to a new file of {@link SolverDumps}, by default in
+     * {@link #CNFData}.
      */
-    protected void buildCNFInput() {
-
-        final int totalClauses = hardClauses.size()+ wellFormednessClauses.size();
-        final int totalVars = slotManager.getNumberOfSlots() * lattice.numTypes;
-
-        CNFInput.append("c This is the CNF input\n");
-        CNFInput.append("p cnf ");
-        CNFInput.append(totalVars);
-        CNFInput.append(" ");
-        CNFInput.append(totalClauses);
-        CNFInput.append("\n");
-
-        for (VecInt hardClause : hardClauses) {
-            buildCNFInputHelper(hardClause);
-        }
-        for (VecInt wellFormedNessClause: wellFormednessClauses) {
-            buildCNFInputHelper(wellFormedNessClause);
-        }
+    protected void writeCNFInput() {
+        SolverDumps.write(solverEnvironment, CNFData, "cnfdata", "txt", this::writeCNFInput);
     }
 
-    private void buildCNFInputHelper(VecInt clause) {
-        int[] literals = clause.toArray();
-        for (int i = 0; i < literals.length; i++) {
-            CNFInput.append(literals[i]);
-            CNFInput.append(" ");
+    /**
+     * Writes the CNF clauses to the given file in {@link #CNFData}.
+     */
+    protected void writeCNFInput(String file) {
+        CNFData.mkdir();
+        File cnfFile = new File(CNFData.getAbsolutePath() + "/" + file);
+        try (Writer writer = new BufferedWriter(new FileWriter(cnfFile))) {
+            writeCNFInput(writer);
+        } catch (IOException e) {
+            throw new BugInCF("Failed to write CNF input to " + cnfFile, e);
         }
-        CNFInput.append("0\n");
     }
 
-    protected void writeCNFInput() {
-        writeCNFInput("cnfdata.txt");
-    }
+    /**
+     * Writes the hard and well-formedness clauses in DIMACS format. The clauses are streamed
+     * from their arenas, without building the whole content in memory.
+     */
+    protected void writeCNFInput(Writer writer) throws IOException {
+        final int totalClauses = hardClauses.size() + wellFormednessClauses.size();
+        final int totalVars = slotManager.getNumberOfSlots() * lattice.numTypes;
 
-    protected void writeCNFInput(String file) {
-        FileUtils.writeFile(new File(CNFData.getAbsolutePath() + "/" + file), CNFInput.toString());
+        writer.write("c This is the CNF input\n");
+        writer.write("p cnf " + totalVars + " " + totalClauses + "\n");
+        hardClauses.writeDimacs(writer);
+        wellFormednessClauses.writeDimacs(writer);
     }
 
     /**
@@ -270,19 +416,11 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
      */
     protected void printClauses() {
         System.out.println("Hard clauses: ");
-        for (VecInt hardClause : hardClauses) {
-            System.out.println(hardClause);
-        }
-        System.out.println();
+        System.out.println(hardClauses);
         System.out.println("WellFormedness clauses: ");
-        for (VecInt wellFormednessClause: wellFormednessClauses) {
-            System.out.println(wellFormednessClause);
-        }
-        System.out.println();
+        System.out.println(wellFormednessClauses);
         System.out.println("Soft clauses: ");
-        for (VecInt softClause : softClauses) {
-            System.out.println(softClause);
-        }
+        System.out.println(softClauses);
     }
 
     @Override
@@ -293,48 +431,19 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
     class MaxSATUnsatisfiableConstraintExplainer {
 
         /**
-         * A mapping from VecInt to Constraint.
-         * */
-        private final Map<VecInt, Constraint> vecIntConstraintMap;
-
-        /**
-         * A mapping from IConstr to VecInt. IConstr is the result of adding VecInt to solver.
+         * A mapping from IConstr to the index of the clause it was added from. IConstr is the
+         * result of adding a clause to solver. Indices of well-formedness clauses follow the
+         * indices of hard clauses.
          */
-
-        private final Map<IConstr, VecInt> iConstrVecIntMap;
+        private final Map<IConstr, Integer> iConstrClauseMap;
 
         private MaxSATUnsatisfiableConstraintExplainer() {
-            // Using IdentityHashMap because different VecInts can share the same hash code,
-            // one VecInt might be overriden by a different VecInt.But VecInt has one-to-one
-            // relation to Constraint. Therefore, IdentityHashMap is used.
-            vecIntConstraintMap = new IdentityHashMap<>();
-            iConstrVecIntMap = new IdentityHashMap<>();
-            cleanUpClauses();
-            // Fill up hardClauses and wellFormednessClauses again(cleared before) to feed into
-            // explanation solver
-            fillHardClauses();
-            encodeWellFormednessRestriction();
-
-        }
-
-        // Compared to encodeAllConstrains(), this method doesn't format translate soft clauses,
-        // and additionally stores the mapping from VecInt to Constraint, so that Constraint can
-        // be reversly looked up by VecInt
-        private void fillHardClauses() {
-            // Fill up vecIntConstraintMap to reversely lookup Constraint from VecInt
-            for (Constraint constraint : constraints) {
-                VecInt[] encoding = constraint.serialize(formatTranslator);
-                if (encoding == null) {
-                    // Happens for unsupported Constraints. Already warned in encodeAllConstraints()
-                    continue;
-                }
-                for (VecInt e : encoding) {
-                    if (e != null && e.size() != 0 && !(constraint instanceof PreferenceConstraint)) {
-                        hardClauses.add(e);
-                        vecIntConstraintMap.put(e, constraint);
-                    }
-                }
-            }
+            // Using IdentityHashMap because IConstr doesn't override equals and hashCode.
+            iConstrClauseMap = new IdentityHashMap<>();
+            // hardClauses, hardClauseConstraints and wellFormednessClauses are still filled from
+            // the solve phase, so constraints don't need to be encoded again.
+            softClauses.release();
+            softClauseWeights.clear();
         }
 
         public Collection<Constraint> minimumUnsatisfiableConstraints() {
@@ -343,7 +452,7 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
             Set<Constraint> mus = new HashSet<>();
             // Explainer solver that is used
             Xplain<IPBSolver> explanationSolver = new Xplain<>(SolverFactory.newDefault());
-            configureExplanationSolver(hardClauses, wellFormednessClauses, slotManager, lattice, explanationSolver);
+            configureExplanationSolver(slotManager, lattice, explanationSolver);
             try {
                 addClausesToExplanationSolver(explanationSolver);
                 assert !explanationSolver.isSatisfiable();
@@ -351,12 +460,12 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
                 Collection<IConstr> explanation = explanationSolver.explain();
 
                 for (IConstr i : explanation) {
-                    VecInt vecInt = iConstrVecIntMap.get(i);
-                    if (vecIntConstraintMap.get(vecInt) != null) {
-                        // This case is reached if vecInt is from Constraint
-                        mus.add(vecIntConstraintMap.get(vecInt));
+                    Integer clause = iConstrClauseMap.get(i);
+                    if (clause != null && clause < hardClauseConstraints.size()) {
+                        // This case is reached if the clause is from Constraint
+                        mus.add(hardClauseConstraints.get(clause));
                     } else {
-                        // This case indicates vecInt is well-formedness restriction
+                        // This case indicates the clause is well-formedness restriction
                         // TODO Instead of printing it, can we have a dedicated type, e.g. WellFormednessConstraint <: Constraint
                         // TODO so that we can also add it to the result set?
                         System.out.println("Explanation hits well-formedness restriction: " + i);
@@ -364,15 +473,17 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
                 }
             } catch (Exception e) {
                 throw new BugInCF("Explanation solver encountered not-expected exception: ", e);
+            } finally {
+                cleanUpClauses();
             }
             return mus;
         }
 
-        private void configureExplanationSolver(final List<VecInt> hardClauses, final List<VecInt> wellformedness,
-                final SlotManager slotManager, final Lattice lattice, final Xplain<IPBSolver> explainer) {
+        private void configureExplanationSolver(final SlotManager slotManager, final Lattice lattice,
+                final Xplain<IPBSolver> explainer) {
             int numberOfNewVars = slotManager.getNumberOfSlots() * lattice.numTypes;
             System.out.println("Number of variables: " + numberOfNewVars);
-            int numberOfClauses = hardClauses.size() + wellformedness.size();
+            int numberOfClauses = hardClauses.size() + wellFormednessClauses.size();
             System.out.println("Number of clauses: " + numberOfClauses);
             explainer.setMinimizationStrategy(new DeletionStrategy());
             explainer.newVar(numberOfNewVars);
@@ -380,14 +491,15 @@ public class MaxSatSolver extends Solver<MaxSatFormatTranslator> {
         }
 
         private void addClausesToExplanationSolver(Xplain<IPBSolver> explanationSolver) throws ContradictionException {
-            for (VecInt clause : hardClauses) {
-                IConstr iConstr = explanationSolver.addClause(clause);
-                iConstrVecIntMap.put(iConstr, clause);
-
+            final IVecInt clause = new VecInt();
+            for (int i = 0; i < hardClauses.size(); i++) {
+                IConstr iConstr = explanationSolver.addClause(hardClauses.copyTo(i, clause));
+                iConstrClauseMap.put(iConstr, i);
             }
-            for (VecInt clause : wellFormednessClauses) {
-                IConstr iConstr = explanationSolver.addClause(clause);
-                iConstrVecIntMap.put(iConstr, clause);
+            int offset = hardClauses.size();
+            for (int i = 0; i < wellFormednessClauses.size(); i++) {
+                IConstr iConstr = explanationSolver.addClause(wellFormednessClauses.copyTo(i, clause));
+                iConstrClauseMap.put(iConstr, offset + i);
             }
         }
     }
@@ -1,8 +1,10 @@
 package checkers.inference.solver.backend.maxsat.encoder;
 
 import checkers.inference.solver.backend.encoder.AbstractConstraintEncoder;
+import checkers.inference.solver.backend.maxsat.MaxSatClauseTemplates;
 import checkers.inference.solver.backend.maxsat.VectorUtils;
 import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.frontend.LatticeEncoding;
 import org.sat4j.core.VecInt;
 
 import javax.lang.model.element.AnnotationMirror;
@@ -27,8 +29,30 @@ public abstract class MaxSATAbstractConstraintEncoder extends AbstractConstraint
      */
     protected final Map<AnnotationMirror, Integer> typeToInt;
 
+    /**
+     * Integer encoding of the lattice, shared by all solvers of the lattice.
+     */
+    protected final LatticeEncoding encoding;
+
+    /**
+     * Precomputed clauses of binary constraints, shared by all solvers of the lattice.
+     */
+    protected final MaxSatClauseTemplates templates;
+
     public MaxSATAbstractConstraintEncoder(Lattice lattice, Map<AnnotationMirror, Integer> typeToInt) {
         super(lattice, EMPTY_CLAUSE, CONTRADICTORY_CLAUSES);
         this.typeToInt = typeToInt;
+        this.encoding = lattice.getEncoding();
+        this.templates = MaxSatClauseTemplates.of(encoding);
+    }
+
+    /**
+     * Instantiates the given template of {@link #templates} with the given slot ids.
+     */
+    protected VecInt[] instantiate(int[][] template, int firstSlotId, int secondSlotId) {
+        if (template.length == 0) {
+            return emptyValue;
+        }
+        return templates.instantiate(template, firstSlotId, secondSlotId);
     }
 }
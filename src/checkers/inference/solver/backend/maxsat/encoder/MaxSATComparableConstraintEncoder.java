@@ -22,24 +22,16 @@ public class MaxSATComparableConstraintEncoder extends MaxSATAbstractConstraintE
     @Override
     public VecInt[] encodeVariable_Variable(VariableSlot fst, VariableSlot snd) {
         // a <=> !b which is the same as (!a v !b) & (b v a)
-        List<VecInt> list = new ArrayList<VecInt>();
-        for (AnnotationMirror type : lattice.allTypes) {
-            if (lattice.incomparableType.keySet().contains(type)) {
-                for (AnnotationMirror notComparable : lattice.incomparableType.get(type)) {
-                    list.add(VectorUtils.asVec(
-                            -MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice),
-                            -MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(notComparable), lattice),
-                            MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(notComparable), lattice),
-                            MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice)));
-                }
-            }
-        }
-        VecInt[] result = list.toArray(new VecInt[list.size()]);
-        return result;
+        return instantiate(templates.getComparableVariableVariable(), fst.getId(), snd.getId());
     }
 
     @Override
     public VecInt[] encodeVariable_Constant(VariableSlot fst, ConstantSlot snd) {
+        int constant = encoding.indexOf(snd.getValue());
+        if (constant >= 0) {
+            return instantiate(templates.getComparableVariableConstant(constant), fst.getId(), 0);
+        }
+
         if (lattice.incomparableType.keySet().contains(snd.getValue())) {
             List<VecInt> resultList = new ArrayList<>();
             for (AnnotationMirror incomparable : lattice.incomparableType.get(snd.getValue())) {
@@ -20,19 +20,7 @@ public class MaxSATEqualityConstraintEncoder extends MaxSATAbstractConstraintEnc
     @Override
     public VecInt[] encodeVariable_Variable(VariableSlot fst, VariableSlot snd) {
         // a <=> b which is the same as (!a v b) & (!b v a)
-        VecInt[] result = new VecInt[lattice.numTypes * 2];
-        int i = 0;
-        for (AnnotationMirror type : lattice.allTypes) {
-            if (lattice.allTypes.contains(type)) {
-                result[i++] = VectorUtils.asVec(
-                        -MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice),
-                        MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(type), lattice));
-                result[i++] = VectorUtils.asVec(
-                        -MathUtils.mapIdToMatrixEntry(snd.getId(), typeToInt.get(type), lattice),
-                        MathUtils.mapIdToMatrixEntry(fst.getId(), typeToInt.get(type), lattice));
-            }
-        }
-        return result;
+        return instantiate(templates.getEqualityVariableVariable(), fst.getId(), snd.getId());
     }
 
     @Override
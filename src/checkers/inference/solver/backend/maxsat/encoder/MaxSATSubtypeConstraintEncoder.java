@@ -12,7 +12,6 @@ import org.sat4j.core.VecInt;
 
 import javax.lang.model.element.AnnotationMirror;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -50,51 +49,18 @@ public class MaxSATSubtypeConstraintEncoder extends MaxSATAbstractConstraintEnco
         return emptyValue;
     }
 
-    protected int[] getMaybe(AnnotationMirror type, Slot knownType, Slot unknownType,
-                             Collection<AnnotationMirror> maybeSet) {
-        int[] maybeArray = new int[maybeSet.size() + 1];
-        int i = 1;
-        maybeArray[0] = -MathUtils.mapIdToMatrixEntry(knownType.getId(), typeToInt.get(type), lattice);
-        for (AnnotationMirror sup : maybeSet) {
-            maybeArray[i] = MathUtils.mapIdToMatrixEntry(unknownType.getId(), typeToInt.get(sup), lattice);
-            i++;
-        }
-        return maybeArray;
-    }
-
     @Override
     public VecInt[] encodeVariable_Variable(VariableSlot subtype, VariableSlot supertype) {
-        // if subtype is top, then supertype is top.
-        // if supertype is bottom, then subtype is bottom.
-        VecInt supertypeOfTop = VectorUtils.asVec(
-                -MathUtils.mapIdToMatrixEntry(subtype.getId(), typeToInt.get(lattice.top), lattice),
-                MathUtils.mapIdToMatrixEntry(supertype.getId(), typeToInt.get(lattice.top), lattice));
-        VecInt subtypeOfBottom = VectorUtils.asVec(
-                -MathUtils.mapIdToMatrixEntry(supertype.getId(), typeToInt.get(lattice.bottom), lattice),
-                MathUtils.mapIdToMatrixEntry(subtype.getId(), typeToInt.get(lattice.bottom), lattice));
-
-        List<VecInt> resultList = new ArrayList<VecInt>();
-        for (AnnotationMirror type : lattice.allTypes) {
-            // if we know subtype
-            if (!AnnotationUtils.areSame(type, lattice.top)) {
-                resultList.add(VectorUtils
-                        .asVec(getMaybe(type, subtype, supertype, lattice.superType.get(type))));
-            }
-
-            // if we know supertype
-            if (!AnnotationUtils.areSame(type, lattice.bottom)) {
-                resultList.add(VectorUtils
-                        .asVec(getMaybe(type, supertype, subtype, lattice.subType.get(type))));
-            }
-        }
-        resultList.add(supertypeOfTop);
-        resultList.add(subtypeOfBottom);
-        VecInt[] result = resultList.toArray(new VecInt[resultList.size()]);
-        return result;
+        return instantiate(templates.getSubtypeVariableVariable(), subtype.getId(), supertype.getId());
     }
 
     @Override
     public VecInt[] encodeVariable_Constant(VariableSlot subtype, ConstantSlot supertype) {
+        int constant = encoding.indexOf(supertype.getValue());
+        if (constant >= 0) {
+            return instantiate(templates.getSubtypeVariableConstant(constant), subtype.getId(), 0);
+        }
+
         final Set<AnnotationMirror> mustNotBe = new HashSet<>();
         if (AnnotationUtils.areSame(supertype.getValue(), lattice.bottom)) {
             return VectorUtils.asVecArray(
@@ -112,6 +78,11 @@ public class MaxSATSubtypeConstraintEncoder extends MaxSATAbstractConstraintEnco
 
     @Override
     public VecInt[] encodeConstant_Variable(ConstantSlot subtype, VariableSlot supertype) {
+        int constant = encoding.indexOf(subtype.getValue());
+        if (constant >= 0) {
+            return instantiate(templates.getSubtypeConstantVariable(constant), supertype.getId(), 0);
+        }
+
         final Set<AnnotationMirror> mustNotBe = new HashSet<>();
         if (AnnotationUtils.areSame(subtype.getValue(), lattice.top)) {
             return VectorUtils.asVecArray(
@@ -68,6 +68,11 @@ public class Z3Solver extends Solver<Z3BitVectorFormatTranslator>{
         return result;
     }
 
+    @Override
+    public void interrupt() {
+        context.interrupt();
+    }
+
     @Override
     public Collection<Constraint> explainUnsatisfiable() {
         return new HashSet<>();// Doesn't support right now
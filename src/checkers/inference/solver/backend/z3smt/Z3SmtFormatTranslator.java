@@ -14,10 +14,18 @@ import checkers.inference.solver.backend.z3smt.encoder.Z3SmtSoftConstraintEncode
 import checkers.inference.solver.frontend.Lattice;
 import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.FuncDecl;
+import com.microsoft.z3.IntNum;
+import com.microsoft.z3.Model;
+import com.microsoft.z3.enumerations.Z3_decl_kind;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 
@@ -90,4 +98,77 @@ public abstract class Z3SmtFormatTranslator<SlotEncodingT, SlotSolutionT>
 
     public abstract Map<Integer, AnnotationMirror> decodeSolution(
             List<String> model, ProcessingEnvironment processingEnv);
+
+    /**
+     * Decodes a model of the in-process Z3 solver.
+     *
+     * Each constant of the encodings of the given slots in {@link #serializedSlots} is evaluated
+     * with model completion, i.e. {@code model.eval(constant, true)}, and the values are decoded
+     * by {@link #decodeSolution(List, ProcessingEnvironment)}, as "name value" lines like the
+     * model of the external z3 program. So other constants of the model, e.g. the literals
+     * tracking the constraints, are never decoded. Encodings that are not a Z3 expression, e.g.
+     * an object holding several expressions, are decoded from all constants of the model other
+     * than the tracking literals, as the external z3 program prints them. Translators can
+     * override this method to decode the model directly.
+     *
+     * @param model the model of the solver
+     * @param slotIds the ids of the slots to decode
+     * @param processingEnv the processing environment
+     * @return a map from the id of each decoded slot to its annotation
+     */
+    public Map<Integer, AnnotationMirror> decodeSolution(
+            Model model, Collection<Integer> slotIds, ProcessingEnvironment processingEnv) {
+        Set<Expr<?>> constants = new LinkedHashSet<>();
+        boolean allConstants = false;
+        for (Integer slotId : slotIds) {
+            SlotEncodingT encoding = serializedSlots.get(slotId);
+            if (encoding instanceof Expr) {
+                collectConstants((Expr<?>) encoding, constants);
+            } else if (encoding != null) {
+                allConstants = true;
+            }
+        }
+        if (allConstants) {
+            for (FuncDecl<?> decl : model.getConstDecls()) {
+                if (!decl.getName().toString().startsWith(Z3SmtSolver.TRACKING_LITERAL_PREFIX)) {
+                    constants.add(ctx.mkConst(decl));
+                }
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (Expr<?> constant : constants) {
+            lines.add(constant.getFuncDecl().getName() + " " + formatValue(model.eval(constant, true)));
+        }
+        return decodeSolution(lines, processingEnv);
+    }
+
+    /**
+     * Adds the uninterpreted constants of the given expression to the given set.
+     */
+    private static void collectConstants(Expr<?> expr, Set<Expr<?>> constants) {
+        if (!expr.isApp()) {
+            return;
+        }
+        if (expr.isConst()) {
+            if (expr.getFuncDecl().getDeclKind() == Z3_decl_kind.Z3_OP_UNINTERPRETED) {
+                constants.add(expr);
+            }
+            return;
+        }
+        for (Expr<?> arg : expr.getArgs()) {
+            collectConstants(arg, constants);
+        }
+    }
+
+    /**
+     * Formats a value of a model as the external z3 program prints it after parsing, e.g.
+     * {@code -3} rather than {@code (- 3)}.
+     */
+    private static String formatValue(Expr<?> value) {
+        if (value instanceof IntNum) {
+            return ((IntNum) value).getBigInteger().toString();
+        }
+        return value.toString();
+    }
 }
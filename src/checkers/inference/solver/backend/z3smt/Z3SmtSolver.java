@@ -13,11 +13,13 @@ import checkers.inference.solver.frontend.Lattice;
 import checkers.inference.solver.util.ExternalSolverUtils;
 import checkers.inference.solver.util.FileUtils;
 import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverDumps;
 import checkers.inference.solver.util.SolverEnvironment;
 import checkers.inference.solver.util.Statistics;
 import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
+import com.microsoft.z3.Status;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -36,11 +38,20 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
 
     public enum Z3SolverEngineArg implements SolverArg {
         /** option to use optimizing mode or not */
-        optimizingMode
+        optimizingMode,
+
+        /** option to solve with the Z3 Java API instead of the external z3 program */
+        inProcess,
+
+        /** option to dump the SMT formula of every solve, see {@link SolverDumps} */
+        dumpSMT
     }
 
     private static final Logger logger = Logger.getLogger(Z3SmtSolver.class.getName());
 
+    /** The prefix of the names of the literals tracking the constraints in in-process mode. */
+    public static final String TRACKING_LITERAL_PREFIX = "track!";
+
     protected final Context ctx;
     protected com.microsoft.z3.Optimize solver;
 
@@ -53,6 +64,17 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
     /** This field indicates that whether we are going to explain unsatisfiable.*/
     protected boolean explainUnsat;
 
+    /** This field indicates whether the constraints are solved with the Z3 Java API. */
+    protected boolean inProcess;
+
+    /**
+     * In in-process mode, each constraint is asserted as an implication from a fresh boolean
+     * literal, and all these literals are passed to the solver as assumptions. When the
+     * constraints are unsatisfiable, the unsat core of the same solver is a subset of these
+     * literals, which are mapped back to constraints through {@link #serializedConstraints}.
+     */
+    protected final List<BoolExpr> trackingLiterals = new ArrayList<>();
+
     /**
      * This fields store the mapping from the constraint string ID to the constraint.
      * In non-optimizing mode, all ID-constraint mappings are cached during encoding,
@@ -60,13 +82,21 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
      */
     protected final Map<String, Constraint> serializedConstraints = new HashMap<>();
 
-    // file is written at projectRootFolder/constraints.smt
+    // files are written at projectRootFolder/z3Constraints<n>.smt
     // TODO: Clean up the string concatenations in here as well as the whole project
     protected static final String pathToProject = new File("").getAbsolutePath();
-    protected static final String constraintsFile = pathToProject + "/z3Constraints.smt";
-    protected static final String constraintsUnsatCoreFile =
-            pathToProject + "/z3ConstraintsUnsatCore.smt";
-    protected static final String constraintsStatsFile = pathToProject + "/z3ConstraintsGlob.smt";
+
+    /**
+     * The input file of the running external z3 process. Each solve writes a new file, so that
+     * solvers running in parallel, e.g. in a portfolio, never overwrite each other's input.
+     */
+    protected File constraintsFile;
+
+    /**
+     * Whether the last solve found the constraints unsatisfiable, see {@link #isUnsatisfiable()}.
+     * Written by the thread reading the output of the external z3 process.
+     */
+    private volatile boolean unsatisfiable;
 
     // timing statistics variables
     protected long serializationStart;
@@ -99,7 +129,13 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
     public Map<Integer, AnnotationMirror> solve() {
         // serialize based on user choice of running in optimizing or non-optimizing mode
         optimizingMode = solverEnvironment.getBoolArg(Z3SolverEngineArg.optimizingMode);
+        inProcess = solverEnvironment.getBoolArg(Z3SolverEngineArg.inProcess);
         explainUnsat = false;
+        unsatisfiable = false;
+
+        if (inProcess) {
+            return solveInProcess();
+        }
 
         if (optimizingMode) {
             logger.fine("Encoding for optimizing mode");
@@ -129,8 +165,72 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
                         results, solverEnvironment.processingEnvironment);
     }
 
+    /**
+     * Solves the constraints on {@link #ctx} without serializing them, and reads the solution
+     * from the model of the solver.
+     */
+    protected Map<Integer, AnnotationMirror> solveInProcess() {
+        solver = ctx.mkOptimize();
+        trackingLiterals.clear();
+        serializedConstraints.clear();
+
+        serializationStart = System.currentTimeMillis();
+        encodeAllSlots();
+        encodeAllConstraints();
+        if (optimizingMode) {
+            formatTranslator.createSoftConstraintEncoder().encodeSoftConstraints(constraints, solver);
+        }
+        serializationEnd = System.currentTimeMillis();
+
+        if (solverEnvironment.getBoolArg(Z3SolverEngineArg.dumpSMT)) {
+            dumpSMT(solver.toString());
+        }
+
+        solvingStart = System.currentTimeMillis();
+        Status status = solver.Check(trackingLiterals.toArray(new BoolExpr[0]));
+        solvingEnd = System.currentTimeMillis();
+
+        Statistics.addOrIncrementEntry(
+                "smt_serialization_time(millisec)", serializationEnd - serializationStart);
+        Statistics.addOrIncrementEntry("smt_solving_time(millisec)", solvingEnd - solvingStart);
+
+        switch (status) {
+            case SATISFIABLE:
+                return formatTranslator.decodeSolution(
+                        solver.getModel(), varSlotIds, solverEnvironment.processingEnvironment);
+            case UNSATISFIABLE:
+                logger.fine("!!! The set of constraints is unsatisfiable! !!!");
+                unsatisfiable = true;
+                return null;
+            default:
+                throw new BugInCF("Z3 failed to solve the constraints: " + solver.getReasonUnknown());
+        }
+    }
+
+    @Override
+    public boolean isUnsatisfiable() {
+        return unsatisfiable;
+    }
+
+    @Override
+    public void interrupt() {
+        ctx.interrupt();
+    }
+
     @Override
     public Collection<Constraint> explainUnsatisfiable() {
+        if (inProcess) {
+            // The core of the last check is available on the same solver, no need to solve again.
+            List<Constraint> unsatConstraints = new ArrayList<>();
+            for (BoolExpr literal : solver.getUnsatCore()) {
+                Constraint c = serializedConstraints.get(literal.getFuncDecl().getName().toString());
+                if (c != null) {
+                    unsatConstraints.add(c);
+                }
+            }
+            return unsatConstraints;
+        }
+
         optimizingMode = false;
         explainUnsat = true;
 
@@ -187,8 +287,6 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         } else {
             smtFileContents.append("(get-model)\n");
         }
-        
-        logger.fine("Writing constraints to file: " + constraintsFile);
 
         writeConstraintsToSMTFile();
     }
@@ -196,15 +294,26 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
     private void writeConstraintsToSMTFile() {
         String fileContents = smtFileContents.toString();
 
-        if (!explainUnsat) {
-            // write the constraints to the file for external solver use
-            FileUtils.writeFile(new File(constraintsFile), fileContents);
-        } else {
-            // write the unsat core constraints to the file for external solver use
-            FileUtils.writeFile(new File(constraintsUnsatCoreFile), fileContents);
+        // write the constraints, or the unsat core constraints, to a new file for external solver use
+        try {
+            constraintsFile = File.createTempFile(explainUnsat ? "z3ConstraintsUnsatCore" : "z3Constraints",
+                    ".smt", new File(pathToProject));
+        } catch (IOException e) {
+            throw new BugInCF("Cannot create the SMT constraints file", e);
+        }
+        logger.fine("Writing constraints to file: " + constraintsFile);
+        FileUtils.writeFile(constraintsFile, fileContents);
+        if (solverEnvironment.getBoolArg(Z3SolverEngineArg.dumpSMT)) {
+            dumpSMT(fileContents);
         }
-        // write a copy in append mode to stats file for later bulk analysis
-        FileUtils.appendFile(new File(constraintsStatsFile), fileContents);
+    }
+
+    /**
+     * Writes a copy of the given SMT formula to a new dump file for later bulk analysis.
+     */
+    private void dumpSMT(String fileContents) {
+        SolverDumps.write(solverEnvironment, new File(pathToProject), "z3Constraints", "smt",
+                writer -> writer.write(fileContents));
     }
 
     protected void encodeAllSlots() {
@@ -214,6 +323,7 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         // generate slot constraints
         for (Slot slot : slots) {
             if (slot instanceof VariableSlot) {
+                varSlotIds.add(slot.getId());
                 BoolExpr wfConstraint = formatTranslator.encodeSlotWellformednessConstraint((VariableSlot) slot);
 
                 if (!wfConstraint.simplify().isTrue()) {
@@ -225,6 +335,10 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
             }
         }
 
+        if (inProcess) {
+            return;
+        }
+
         // solver.toString() also includes "(check-sat)" as the last line,
         // remove it
         String slotDefinitionsAndConstraints = solver.toString();
@@ -240,6 +354,7 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
         int current = 1;
 
         StringBuilder constraintSmtFileContents = new StringBuilder();
+        List<BoolExpr> trackedConstraints = new ArrayList<>();
 
         for (Constraint constraint : constraints) {
             BoolExpr serializedConstraint = constraint.serialize(formatTranslator);
@@ -276,6 +391,18 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
                                 + serializedConstraint);
             }
 
+            if (inProcess) {
+                // track the constraint with a literal, for unsat core of the same solver
+                BoolExpr literal =
+                        ctx.mkBoolConst(
+                                TRACKING_LITERAL_PREFIX + constraint.getClass().getSimpleName() + current);
+                trackedConstraints.add(ctx.mkImplies(literal, (BoolExpr) simplifiedConstraint));
+                trackingLiterals.add(literal);
+                serializedConstraints.put(literal.getFuncDecl().getName().toString(), constraint);
+                current++;
+                continue;
+            }
+
             String clause = simplifiedConstraint.toString();
 
             if (!optimizingMode && explainUnsat) {
@@ -298,7 +425,11 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
             current++;
         }
 
-        smtFileContents.append(constraintSmtFileContents);
+        if (inProcess) {
+            solver.Assert(trackedConstraints.toArray(new BoolExpr[0]));
+        } else {
+            smtFileContents.append(constraintSmtFileContents);
+        }
     }
 
     protected void encodeAllSoftConstraints() {
@@ -322,20 +453,22 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
     private boolean runZ3Solver(List<String> results) {
         assert results != null;
         // TODO: add z3 stats?
-        String[] command;
-        if (!explainUnsat) {
-            command = new String[] {z3Program, constraintsFile};
-        } else {
-            command = new String[] {z3Program, constraintsUnsatCoreFile};
-        }
+        String[] command = new String[] {z3Program, constraintsFile.getPath()};
 
         // Run command
         // TODO: check that stdErr has no errors
-        int exitStatus =
-                ExternalSolverUtils.runExternalSolver(
-                        command,
-                        stdOut -> parseStdOut(stdOut, results),
-                        stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr));
+        int exitStatus;
+        try {
+            exitStatus =
+                    ExternalSolverUtils.runExternalSolver(
+                            command,
+                            stdOut -> parseStdOut(stdOut, results),
+                            stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr));
+        } finally {
+            if (!constraintsFile.delete()) {
+                logger.warning("Cannot delete SMT constraints file " + constraintsFile);
+            }
+        }
         // if exit status from z3 is not 0, then it is unsat
         return exitStatus == 0;
     }
@@ -378,6 +511,10 @@ public class Z3SmtSolver<SlotEncodingT, SlotSolutionT>
                     }
                 }
             } else {
+                if (line.contentEquals("unsat")) {
+                    unsatisfiable = true;
+                    continue;
+                }
                 // SAT Cases =======================
                 // processing define-fun lines
                 if (declarationLine && line.startsWith("(define-fun")) {
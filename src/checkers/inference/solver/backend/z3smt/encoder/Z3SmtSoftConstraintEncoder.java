@@ -2,8 +2,10 @@ package checkers.inference.solver.backend.z3smt.encoder;
 
 import java.util.Collection;
 
+import com.microsoft.z3.BoolExpr;
 import com.microsoft.z3.Context;
 import com.microsoft.z3.Expr;
+import com.microsoft.z3.Optimize;
 
 import checkers.inference.model.ArithmeticConstraint;
 import checkers.inference.model.CombineConstraint;
@@ -23,6 +25,11 @@ public abstract class Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT>
 
     protected final StringBuilder softConstraints;
 
+    /**
+     * If not null, soft constraints are asserted on this solver instead of being serialized.
+     */
+    private Optimize targetSolver;
+
     public Z3SmtSoftConstraintEncoder(
             Lattice lattice,
             Context ctx,
@@ -32,10 +39,31 @@ public abstract class Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT>
     }
 
     protected void addSoftConstraint(Expr serializedConstraint, int weight) {
-        softConstraints.append("(assert-soft " + serializedConstraint + " :weight " + weight + ")\n");
+        if (targetSolver != null) {
+            targetSolver.AssertSoft((BoolExpr) serializedConstraint, weight, "");
+        } else {
+            softConstraints.append("(assert-soft " + serializedConstraint + " :weight " + weight + ")\n");
+        }
     }
-    
+
     public String encodeAndGetSoftConstraints(Collection<Constraint> constraints) {
+        encodeSoftConstraints(constraints);
+        return softConstraints.toString();
+    }
+
+    /**
+     * Encodes the soft constraints and asserts them directly on the given solver.
+     */
+    public void encodeSoftConstraints(Collection<Constraint> constraints, Optimize solver) {
+        targetSolver = solver;
+        try {
+            encodeSoftConstraints(constraints);
+        } finally {
+            targetSolver = null;
+        }
+    }
+
+    private void encodeSoftConstraints(Collection<Constraint> constraints) {
         for (Constraint constraint : constraints) {
             // Generate a soft constraint for subtype constraint
             if (constraint instanceof SubtypeConstraint) {
@@ -74,6 +102,5 @@ public abstract class Z3SmtSoftConstraintEncoder<SlotEncodingT, SlotSolutionT>
                 encodePreferenceConstraint((PreferenceConstraint) constraint);
             }
         }
-        return softConstraints.toString();
     }
 }
@@ -0,0 +1,178 @@
+package checkers.inference.solver.constraintgraph;
+
+import java.util.Arrays;
+
+/**
+ * ConstantPathSearch finds, for every vertex of a directed graph, the set of source vertices
+ * that reach it, for all sources at once.
+ *
+ * Vertices are int indices and arcs are given in compressed sparse row form: the targets of
+ * vertex {@code v} are at {@code [arcStart[v], arcStart[v + 1])} of arcTarget. A source reaches
+ * itself, and a vertex that is not enterable is only reached by itself, so arcs into it are not
+ * followed.
+ *
+ * The strongly connected components of the followed arcs are computed with an iterative
+ * Tarjan's algorithm. All vertices of a component are reached by the same sources, so each
+ * component gets one bit set of {@code (sources + 63) / 64} longs. Tarjan's algorithm finds the
+ * components in reverse topological order, so one sweep over the components in the opposite
+ * order ors the bit set of each component into its successors after all its predecessors are
+ * done. This takes time linear in the size of the graph times the number of words, instead of
+ * one search per source.
+ */
+final class ConstantPathSearch {
+
+    private ConstantPathSearch() {
+    }
+
+    /**
+     * Returns, for each vertex, the bits of the sources that reach it, where source
+     * {@code sources[i]} is bit i. Vertices reached by no source get null. Vertices of the same
+     * component share their array, which must therefore not be modified.
+     */
+    static long[][] reachingSources(int vertexCount, int[] arcStart, int[] arcTarget, boolean[] enterable,
+            int[] sources) {
+        // Only keep the arcs that are followed.
+        int[] succStart = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            for (int arc = arcStart[v]; arc < arcStart[v + 1]; arc++) {
+                int w = arcTarget[arc];
+                if (w != v && enterable[w]) {
+                    succStart[v + 1]++;
+                }
+            }
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            succStart[v + 1] += succStart[v];
+        }
+        int[] succ = new int[succStart[vertexCount]];
+        int fill = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            for (int arc = arcStart[v]; arc < arcStart[v + 1]; arc++) {
+                int w = arcTarget[arc];
+                if (w != v && enterable[w]) {
+                    succ[fill++] = w;
+                }
+            }
+        }
+
+        int[] component = new int[vertexCount];
+        int componentCount = stronglyConnectedComponents(vertexCount, succStart, succ, component);
+
+        // Group the vertices by component.
+        int[] componentStart = new int[componentCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            componentStart[component[v] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            componentStart[c + 1] += componentStart[c];
+        }
+        int[] members = new int[vertexCount];
+        int[] next = Arrays.copyOf(componentStart, componentCount);
+        for (int v = 0; v < vertexCount; v++) {
+            members[next[component[v]]++] = v;
+        }
+
+        int words = Math.max(1, (sources.length + 63) >>> 6);
+        long[][] componentLabels = new long[componentCount][];
+        for (int i = 0; i < sources.length; i++) {
+            int c = component[sources[i]];
+            if (componentLabels[c] == null) {
+                componentLabels[c] = new long[words];
+            }
+            componentLabels[c][i >>> 6] |= 1L << i;
+        }
+
+        // Components in topological order: every predecessor has a larger index.
+        for (int c = componentCount - 1; c >= 0; c--) {
+            long[] label = componentLabels[c];
+            if (label == null) {
+                continue;
+            }
+            for (int m = componentStart[c]; m < componentStart[c + 1]; m++) {
+                int v = members[m];
+                for (int s = succStart[v]; s < succStart[v + 1]; s++) {
+                    int target = component[succ[s]];
+                    if (target == c) {
+                        continue;
+                    }
+                    long[] targetLabel = componentLabels[target];
+                    if (targetLabel == null) {
+                        componentLabels[target] = label.clone();
+                    } else {
+                        for (int word = 0; word < words; word++) {
+                            targetLabel[word] |= label[word];
+                        }
+                    }
+                }
+            }
+        }
+
+        long[][] labels = new long[vertexCount][];
+        for (int v = 0; v < vertexCount; v++) {
+            labels[v] = componentLabels[component[v]];
+        }
+        return labels;
+    }
+
+    /**
+     * Stores the component index of each vertex in component, with components numbered in the
+     * order Tarjan's algorithm finds them, and returns the number of components.
+     */
+    private static int stronglyConnectedComponents(int vertexCount, int[] succStart, int[] succ, int[] component) {
+        int[] index = new int[vertexCount];
+        Arrays.fill(index, -1);
+        int[] low = new int[vertexCount];
+        boolean[] onStack = new boolean[vertexCount];
+        int[] stack = new int[vertexCount];
+        int stackSize = 0;
+        // The explicit call stack: the vertex and the position of its next successor.
+        int[] callVertex = new int[vertexCount];
+        int[] callPosition = new int[vertexCount];
+        int callSize = 0;
+        int counter = 0;
+        int componentCount = 0;
+
+        for (int root = 0; root < vertexCount; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            index[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callVertex[callSize] = root;
+            callPosition[callSize++] = succStart[root];
+
+            while (callSize > 0) {
+                int v = callVertex[callSize - 1];
+                if (callPosition[callSize - 1] < succStart[v + 1]) {
+                    int w = succ[callPosition[callSize - 1]++];
+                    if (index[w] == -1) {
+                        index[w] = low[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callVertex[callSize] = w;
+                        callPosition[callSize++] = succStart[w];
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    callSize--;
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            component[w] = componentCount;
+                        } while (w != v);
+                        componentCount++;
+                    }
+                    if (callSize > 0) {
+                        int parent = callVertex[callSize - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+        }
+        return componentCount;
+    }
+}
@@ -1,9 +1,10 @@
 package checkers.inference.solver.constraintgraph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -11,50 +12,99 @@ import java.util.Set;
 
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
-import checkers.inference.model.SubtypeConstraint;
 
 /**
  * ConstraintGraph represents constraints in a graph form. Each constraint is an
  * edge, and each slot is a vertex. ConstraintGraph is used for separating
  * constraint into different components by running graph traversal algorithm on
- * it. Normal edges in this graph are bi-directional edges, except SubtypeEdge
- * is single-directed from subtype vertex to supertype vertex.
- * 
+ * it. Normal edges in this graph are undirected hyperedges between all slots of
+ * their constraint, except subtype edges are single-directed from subtype vertex
+ * to supertype vertex.
+ *
+ * Vertices and edges are int indices. Vertices are keyed by slot id, and the
+ * members of each edge and the edges of each vertex are stored in compressed
+ * sparse row form: the members of edge {@code e} are at positions
+ * {@code [getMemberStart(e), getMemberEnd(e))}, and the edges of vertex
+ * {@code v} at positions {@code [getIncidenceStart(v), getIncidenceEnd(v))}.
+ * The edges of the vertices are only available after {@link #buildIncidence()}.
+ *
  * @author jianchu
  *
  */
 public class ConstraintGraph {
 
-    private final Set<Edge> edges;
-    private final Set<Vertex> constantVerticies;
+    private final Map<Integer, Integer> vertexIndices;
+    private final List<Slot> vertexSlots;
+
+    private final List<Constraint> edgeConstraints;
+    private boolean[] subtypeEdges;
+    private int[] memberStart;
+    private int[] members;
+    private int memberCount;
+
+    private int[] incidenceStart;
+    private int[] incidence;
+
     private final Map<Vertex, Set<Constraint>> constantPath;
-    private final Map<Integer, Vertex> verticies;
     private final List<Set<Constraint>> independentPath;
 
     protected ConstraintGraph() {
-        this.edges = new HashSet<Edge>();
-        this.constantVerticies = new HashSet<Vertex>();
+        this.vertexIndices = new HashMap<Integer, Integer>();
+        this.vertexSlots = new ArrayList<Slot>();
+        this.edgeConstraints = new ArrayList<Constraint>();
+        this.subtypeEdges = new boolean[16];
+        this.memberStart = new int[17];
+        this.members = new int[32];
         this.constantPath = new HashMap<Vertex, Set<Constraint>>();
-        this.verticies = new HashMap<Integer, Vertex>();
         this.independentPath = new LinkedList<Set<Constraint>>();
     }
 
-    protected void addEdge(Edge edge) {
-        if (!this.edges.contains(edge)) {
-            this.edges.add(edge);
-        }
+    protected int getVertexCount() {
+        return vertexSlots.size();
+    }
+
+    protected Slot getSlot(int vertex) {
+        return vertexSlots.get(vertex);
+    }
+
+    protected int getEdgeCount() {
+        return edgeConstraints.size();
+    }
+
+    protected Constraint getConstraint(int edge) {
+        return edgeConstraints.get(edge);
+    }
+
+    /**
+     * Returns whether the edge is the edge of a subtype constraint, whose
+     * first member is the subtype and second member the supertype.
+     */
+    protected boolean isSubtypeEdge(int edge) {
+        return subtypeEdges[edge];
     }
 
-    protected List<Vertex> getVerticies() {
-        return new ArrayList<Vertex>(this.verticies.values());
+    protected int getMemberStart(int edge) {
+        return memberStart[edge];
     }
 
-    protected Set<Edge> getEdges() {
-        return Collections.unmodifiableSet(edges);
+    protected int getMemberEnd(int edge) {
+        return memberStart[edge + 1];
     }
 
-    protected Set<Vertex> getConstantVerticies() {
-        return Collections.unmodifiableSet(constantVerticies);
+    protected int getMember(int position) {
+        return members[position];
+    }
+
+    protected int getIncidenceStart(int vertex) {
+        return incidenceStart[vertex];
+    }
+
+    protected int getIncidenceEnd(int vertex) {
+        return incidenceStart[vertex + 1];
+    }
+
+    protected int getIncidentEdge(int position) {
+        return incidence[position];
     }
 
     public Map<Vertex, Set<Constraint>> getConstantPath() {
@@ -81,40 +131,78 @@ public class ConstraintGraph {
         this.independentPath.add(independentPath);
     }
 
-    protected void addConstant(Vertex vertex) {
-        if (!this.constantVerticies.contains(vertex)) {
-            this.constantVerticies.add(vertex);
+    /**
+     * Adds an undirected edge between all the given slots.
+     */
+    protected void createEdge(Collection<Slot> slots, Constraint constraint) {
+        int edge = edgeConstraints.size();
+        edgeConstraints.add(constraint);
+        if (edge + 1 == subtypeEdges.length) {
+            subtypeEdges = Arrays.copyOf(subtypeEdges, 2 * subtypeEdges.length);
+            memberStart = Arrays.copyOf(memberStart, subtypeEdges.length + 1);
+        }
+        for (Slot slot : slots) {
+            if (memberCount == members.length) {
+                members = Arrays.copyOf(members, 2 * members.length);
+            }
+            members[memberCount++] = vertexIndex(slot);
         }
+        memberStart[edge + 1] = memberCount;
     }
 
-    protected void createEdge(Slot slot1, Slot slot2, Constraint constraint) {
-        Integer slot1Id = slot1.getId();
-        Integer slot2Id = slot2.getId();
-        Vertex vertex1;
-        Vertex vertex2;
+    /**
+     * Adds a directed edge from the subtype to the supertype.
+     */
+    protected void createSubtypeEdge(Slot subtype, Slot supertype, Constraint constraint) {
+        createEdge(Arrays.asList(subtype, supertype), constraint);
+        subtypeEdges[edgeConstraints.size() - 1] = true;
+    }
 
-        if (this.verticies.keySet().contains(slot1Id)) {
-            vertex1 = this.verticies.get(slot1Id);
-        } else {
-            vertex1 = new Vertex(slot1);
-            this.verticies.put(slot1Id, vertex1);
+    private int vertexIndex(Slot slot) {
+        Integer index = vertexIndices.get(slot.getId());
+        if (index == null) {
+            index = vertexSlots.size();
+            vertexIndices.put(slot.getId(), index);
+            vertexSlots.add(slot);
         }
+        return index;
+    }
 
-        if (this.verticies.keySet().contains(slot2Id)) {
-            vertex2 = this.verticies.get(slot2Id);
-        } else {
-            vertex2 = new Vertex(slot2);
-            this.verticies.put(slot2Id, vertex2);
+    /**
+     * Builds the edges of each vertex from the members of the edges. A vertex
+     * that is a member of an edge more than once gets the edge once.
+     */
+    protected void buildIncidence() {
+        int vertexCount = vertexSlots.size();
+        int edgeCount = edgeConstraints.size();
+        incidenceStart = new int[vertexCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            for (int position = memberStart[edge]; position < memberStart[edge + 1]; position++) {
+                if (isFirstOccurrence(edge, position)) {
+                    incidenceStart[members[position] + 1]++;
+                }
+            }
         }
-
-        Edge edge;
-
-        if (constraint instanceof SubtypeConstraint) {
-            edge = new SubtypeEdge(vertex1, vertex2, (SubtypeConstraint) constraint);
-        } else {
-            edge = new Edge(vertex1, vertex2, constraint);
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            incidenceStart[vertex + 1] += incidenceStart[vertex];
         }
+        incidence = new int[incidenceStart[vertexCount]];
+        int[] fill = Arrays.copyOf(incidenceStart, vertexCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            for (int position = memberStart[edge]; position < memberStart[edge + 1]; position++) {
+                if (isFirstOccurrence(edge, position)) {
+                    incidence[fill[members[position]]++] = edge;
+                }
+            }
+        }
+    }
 
-        this.addEdge(edge);
+    private boolean isFirstOccurrence(int edge, int position) {
+        for (int earlier = memberStart[edge]; earlier < position; earlier++) {
+            if (members[earlier] == members[position]) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -3,11 +3,10 @@ package checkers.inference.solver.constraintgraph;
 import org.checkerframework.javacutil.AnnotationUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.List;
 import java.util.Set;
 
 import javax.lang.model.element.AnnotationMirror;
@@ -49,122 +48,266 @@ public class GraphBuilder {
             } else if (constraint instanceof ExistentialConstraint) {
                 continue;
             } else {
-                ArrayList<Slot> slots = new ArrayList<Slot>();
-                slots.addAll(constraint.getSlots());
-                addEdges(slots, constraint);
+                addEdge(constraint);
             }
         }
-        addConstant();
+        this.graph.buildIncidence();
         calculateIndependentPath();
         calculateConstantPath();
-        // printEdges();
-        // printGraph();
         return getGraph();
     }
 
     /**
-     * Find all constant vertices.
+     * This method runs a union-find over the members of every edge, and
+     * calculates all independent components. Components are in the order of
+     * their first constraint.
      */
-    private void addConstant() {
-        for (Vertex vertex : graph.getVerticies()) {
-            if (vertex.isConstant()) {
-                this.graph.addConstant(vertex);
+    private void calculateIndependentPath() {
+        int[] parent = new int[this.graph.getVertexCount()];
+        int[] size = new int[parent.length];
+        for (int vertex = 0; vertex < parent.length; vertex++) {
+            parent[vertex] = vertex;
+            size[vertex] = 1;
+        }
+        for (int edge = 0; edge < this.graph.getEdgeCount(); edge++) {
+            int first = this.graph.getMember(this.graph.getMemberStart(edge));
+            for (int position = this.graph.getMemberStart(edge) + 1; position < this.graph.getMemberEnd(edge); position++) {
+                union(parent, size, first, this.graph.getMember(position));
+            }
+        }
+
+        // Index of the independent path of each root, or -1.
+        int[] pathIndex = new int[parent.length];
+        Arrays.fill(pathIndex, -1);
+        List<Set<Constraint>> independentPaths = new ArrayList<Set<Constraint>>();
+        for (int edge = 0; edge < this.graph.getEdgeCount(); edge++) {
+            int root = find(parent, this.graph.getMember(this.graph.getMemberStart(edge)));
+            if (pathIndex[root] == -1) {
+                pathIndex[root] = independentPaths.size();
+                independentPaths.add(new HashSet<Constraint>());
             }
+            independentPaths.get(pathIndex[root]).add(this.graph.getConstraint(edge));
+        }
+        for (Set<Constraint> independentPath : independentPaths) {
+            this.graph.addIndependentPath(independentPath);
         }
     }
 
+    private static int find(int[] parent, int vertex) {
+        while (parent[vertex] != vertex) {
+            parent[vertex] = parent[parent[vertex]];
+            vertex = parent[vertex];
+        }
+        return vertex;
+    }
+
+    private static void union(int[] parent, int[] size, int first, int second) {
+        int firstRoot = find(parent, first);
+        int secondRoot = find(parent, second);
+        if (firstRoot == secondRoot) {
+            return;
+        }
+        if (size[firstRoot] < size[secondRoot]) {
+            int swap = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = swap;
+        }
+        parent[secondRoot] = firstRoot;
+        size[firstRoot] += size[secondRoot];
+    }
+
     /**
-     * This method runs BFS based algorithm, and calculates all independent
-     * components.
+     * For each constant vertex, this method puts all edges that can be reached
+     * by the vertex into one set. The constant paths of all constants are
+     * computed at once by {@link ConstantPathSearch}, on the arcs of the
+     * vertices, i.e. their edges in the direction they may be traversed. An
+     * edge with more than two members is one extra search vertex, with an arc
+     * from and to each of its members, instead of arcs between every pair of
+     * members.
      */
-    private void calculateIndependentPath() {
-        Set<Vertex> visited = new HashSet<Vertex>();
-        for (Vertex vertex : this.graph.getVerticies()) {
-            if (!visited.contains(vertex)) {
-                Set<Constraint> independentPath = new HashSet<Constraint>();
-                Queue<Vertex> queue = new LinkedList<Vertex>();
-                queue.add(vertex);
-                while (!queue.isEmpty()) {
-                    Vertex current = queue.remove();
-                    visited.add(current);
-                    for (Edge edge : current.getEdges()) {
-                        independentPath.add(edge.getConstraint());
-                        Vertex next = edge.getFromVertex().equals(current) ? edge.getToVertex() : edge
-                                .getFromVertex();
-                        if (!visited.contains(next)) {
-                            queue.add(next);
-                        }
+    private void calculateConstantPath() {
+        final int vertexCount = this.graph.getVertexCount();
+        final int edgeCount = this.graph.getEdgeCount();
+
+        // The search vertex of each hyperedge, or -1.
+        int[] edgeVertex = new int[edgeCount];
+        int searchVertexCount = vertexCount;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            edgeVertex[edge] = isHyperedge(edge) ? searchVertexCount++ : -1;
+        }
+
+        // Count the arcs of each search vertex, then fill them in.
+        int[] arcStart = new int[searchVertexCount + 1];
+        int[] arcTarget = null;
+        for (int pass = 0; pass < 2; pass++) {
+            if (pass == 1) {
+                arcTarget = new int[arcStart[searchVertexCount]];
+            }
+            int arcs = 0;
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                for (int position = this.graph.getIncidenceStart(vertex); position < this.graph.getIncidenceEnd(vertex); position++) {
+                    int edge = this.graph.getIncidentEdge(position);
+                    if (!isTraversableFrom(edge, vertex)) {
+                        continue;
+                    }
+                    if (arcTarget != null) {
+                        arcTarget[arcs] = edgeVertex[edge] != -1 ? edgeVertex[edge] : otherMember(edge, vertex);
                     }
+                    arcs++;
                 }
-                this.graph.addIndependentPath(independentPath);
+                arcStart[vertex + 1] = arcs;
+            }
+            for (int edge = 0; edge < edgeCount; edge++) {
+                if (edgeVertex[edge] == -1) {
+                    continue;
+                }
+                for (int position = this.graph.getMemberStart(edge); position < this.graph.getMemberEnd(edge); position++) {
+                    if (arcTarget != null) {
+                        arcTarget[arcs] = this.graph.getMember(position);
+                    }
+                    arcs++;
+                }
+                arcStart[edgeVertex[edge] + 1] = arcs;
             }
         }
+
+        computeConstantPaths(searchVertexCount, arcStart, arcTarget);
     }
 
-    /**
-     * For each constant vertex, this method run BFS based algorithm on it, and
-     * and put all edges that can be reached by the vertex into one set.
-     */
-    private void calculateConstantPath() {
-        for (Vertex vertex : this.graph.getConstantVerticies()) {
-            Set<Constraint> constantPathConstraints = BFSSearch(vertex);
-            this.graph.addConstantPath(vertex, constantPathConstraints);
-        }
-    }
-
-    private Set<Constraint> BFSSearch(Vertex vertex) {
-        Set<Constraint> constantPathConstraints = new HashSet<Constraint>();
-        Queue<Vertex> queue = new LinkedList<Vertex>();
-        queue.add(vertex);
-        Set<Vertex> visited = new HashSet<Vertex>();
-        while (!queue.isEmpty()) {
-            Vertex current = queue.remove();
-            visited.add(current);
-            for (Edge edge : current.getEdges()) {
-                if ((edge instanceof SubtypeEdge) && current.equals(edge.to)) {
+    private void computeConstantPaths(int searchVertexCount, int[] arcStart, int[] arcTarget) {
+        final int vertexCount = this.graph.getVertexCount();
+
+        // Whether a search may continue into each vertex, and which
+        // vertices with a missing location it may not.
+        final boolean isDataflow = isDataflow();
+        boolean[] enterable = new boolean[searchVertexCount];
+        boolean[] missingLocation = new boolean[vertexCount];
+        List<Integer> constants = new ArrayList<Integer>();
+        for (int vertex = 0; vertex < searchVertexCount; vertex++) {
+            if (vertex >= vertexCount) {
+                enterable[vertex] = true;
+                continue;
+            }
+            Slot current = this.graph.getSlot(vertex);
+            if (current instanceof ConstantSlot) {
+                constants.add(vertex);
+                enterable[vertex] = !isStopConstant(((ConstantSlot) current).getValue(), isDataflow);
+            } else {
+                VariableSlot slot = (VariableSlot) current;
+                missingLocation[vertex] = slot.getLocation() != null
+                        && slot.getLocation().getKind().equals(Kind.MISSING);
+                enterable[vertex] = !missingLocation[vertex];
+            }
+        }
+
+        int[] sources = new int[constants.size()];
+        List<Set<Constraint>> constantPaths = new ArrayList<Set<Constraint>>();
+        for (int i = 0; i < constants.size(); i++) {
+            sources[i] = constants.get(i);
+            constantPaths.add(new HashSet<Constraint>());
+        }
+
+        long[][] reachingConstants = ConstantPathSearch.reachingSources(searchVertexCount, arcStart, arcTarget,
+                enterable, sources);
+
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            long[] reaching = reachingConstants[vertex];
+            if (reaching == null) {
+                continue;
+            }
+            for (int position = this.graph.getIncidenceStart(vertex); position < this.graph.getIncidenceEnd(vertex); position++) {
+                int edge = this.graph.getIncidentEdge(position);
+                if (!isTraversableFrom(edge, vertex)) {
                     continue;
                 }
-                Vertex next = current.equals(edge.getToVertex()) ? edge.getFromVertex() : edge.getToVertex();
-                constantPathConstraints.add(edge.getConstraint());
-                if (!visited.contains(next)) {
-                    if (next.isConstant()) {
-                        if (AnnotationUtils.areSame(top, next.getValue())) {
-                            continue;
-                        } else {
-                            if (InferenceMain.getInstance().getVisitor() instanceof DataflowVisitor) {
-                                String[] typeNames = DataflowUtils.getTypeNames(next.getValue());
-                                if (typeNames.length == 1 && typeNames[0].length() == 0) {
-                                    continue;
-                                }
-                            }
-                        }
-                    } else {
-                        VariableSlot slot = (VariableSlot) next.getSlot();
-                        if (slot.getLocation() != null && slot.getLocation().getKind().equals(Kind.MISSING)) {
-                            if (InferenceMain.isHackMode()) {
-                                continue;
-                            } else {
-                                throw new BugInCF("In GraphBuilder.BFSSearch: find a slot of which " +
-                                        "the location is either null or MISSING_LOCATION!");
-                            }
-                        }
+                if (!InferenceMain.isHackMode() && reachesMissingLocation(edge, vertex, missingLocation)) {
+                    throw new BugInCF("In GraphBuilder.calculateConstantPath: find a slot of which " +
+                            "the location is either null or MISSING_LOCATION!");
+                }
+                Constraint constraint = this.graph.getConstraint(edge);
+                for (int word = 0; word < reaching.length; word++) {
+                    long bits = reaching[word];
+                    while (bits != 0) {
+                        constantPaths.get((word << 6) + Long.numberOfTrailingZeros(bits)).add(constraint);
+                        bits &= bits - 1;
                     }
-                    queue.add(next);
                 }
             }
         }
-        return constantPathConstraints;
+
+        for (int i = 0; i < constants.size(); i++) {
+            this.graph.addConstantPath(new Vertex(this.graph.getSlot(constants.get(i))), constantPaths.get(i));
+        }
     }
 
-    private void addEdges(ArrayList<Slot> slots, Constraint constraint) {
-        Slot first = slots.remove(0);
-        for (int i = 0; i < slots.size(); i++) {
-            Slot next = slots.get(i);
-            if (first instanceof ConstantSlot && next instanceof ConstantSlot) {
-                continue;
+    private boolean isHyperedge(int edge) {
+        return this.graph.getMemberEnd(edge) - this.graph.getMemberStart(edge) > 2;
+    }
+
+    /**
+     * Subtype edges may only be traversed from the subtype to the supertype.
+     */
+    private boolean isTraversableFrom(int edge, int vertex) {
+        return !(this.graph.isSubtypeEdge(edge)
+                && this.graph.getMember(this.graph.getMemberStart(edge) + 1) == vertex);
+    }
+
+    /**
+     * Returns the member of a two-member edge that is not the given vertex, or
+     * the vertex itself if both members are the vertex.
+     */
+    private int otherMember(int edge, int vertex) {
+        int first = this.graph.getMember(this.graph.getMemberStart(edge));
+        return first != vertex ? first : this.graph.getMember(this.graph.getMemberStart(edge) + 1);
+    }
+
+    private boolean reachesMissingLocation(int edge, int vertex, boolean[] missingLocation) {
+        for (int position = this.graph.getMemberStart(edge); position < this.graph.getMemberEnd(edge); position++) {
+            int member = this.graph.getMember(position);
+            if (member != vertex && missingLocation[member]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the constraints are those of the dataflow type system,
+     * whose constants with an empty type name also stop a constant path.
+     */
+    protected boolean isDataflow() {
+        return InferenceMain.getInstance().getVisitor() instanceof DataflowVisitor;
+    }
+
+    /**
+     * Returns whether a search for constant paths stops at the given constant,
+     * i.e. it is the top, or a dataflow type with an empty type name.
+     */
+    private boolean isStopConstant(AnnotationMirror value, boolean isDataflow) {
+        if (AnnotationUtils.areSame(top, value)) {
+            return true;
+        }
+        if (isDataflow) {
+            String[] typeNames = DataflowUtils.getTypeNames(value);
+            return typeNames.length == 1 && typeNames[0].length() == 0;
+        }
+        return false;
+    }
+
+    /**
+     * Adds one edge between all slots of the constraint, unless all of them
+     * are constants or the constraint has a single slot.
+     */
+    private void addEdge(Constraint constraint) {
+        List<Slot> slots = new ArrayList<Slot>(constraint.getSlots());
+        if (slots.size() < 2) {
+            return;
+        }
+        for (Slot slot : slots) {
+            if (!(slot instanceof ConstantSlot)) {
+                this.graph.createEdge(slots, constraint);
+                return;
             }
-            this.graph.createEdge(first, next, constraint);
-            addEdges(slots, constraint);
         }
     }
 
@@ -180,31 +323,10 @@ public class GraphBuilder {
         if (subtype instanceof ConstantSlot && supertype instanceof ConstantSlot) {
             return;
         }
-        this.graph.createEdge(subtype, supertype, subtypeConstraint);
+        this.graph.createSubtypeEdge(subtype, supertype, subtypeConstraint);
     }
 
     public ConstraintGraph getGraph() {
         return this.graph;
     }
-
-    private void printEdges() {
-        System.out.println("new graph!");
-        for (Map.Entry<Vertex, Set<Constraint>> entry : this.graph.getConstantPath().entrySet()) {
-            System.out.println(entry.getKey().getSlot());
-            for (Constraint constraint : entry.getValue()) {
-                System.out.println(constraint);
-            }
-            System.out.println("**************");
-        }
-    }
-
-    private void printGraph() {
-        for (Edge edge : this.graph.getEdges()) {
-            System.out.println(edge);
-        }
-
-        for (Vertex vertex : this.graph.getVerticies()) {
-            System.out.println(vertex.getId());
-        }
-    }
 }
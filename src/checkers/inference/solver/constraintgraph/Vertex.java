@@ -1,8 +1,5 @@
 package checkers.inference.solver.constraintgraph;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import javax.lang.model.element.AnnotationMirror;
 
 import checkers.inference.model.ConstantSlot;
@@ -10,19 +7,19 @@ import checkers.inference.model.Slot;
 
 /**
  * Vertex represents a slot. Two vertices are same if they have same slot id.
+ * The graph itself refers to vertices by int index, see {@link ConstraintGraph};
+ * Vertex is the key of the constant paths.
  * 
  * @author jianchu
  *
  */
 public class Vertex {
 
-    private Set<Edge> edges;
     private Slot slot;
     private int id;
     private AnnotationMirror value;
 
     protected Vertex(Slot slot) {
-        this.edges = new HashSet<Edge>();
         this.slot = slot;
 
         this.id = slot.getId();
@@ -38,12 +35,6 @@ public class Vertex {
         return (this.slot instanceof ConstantSlot);
     }
 
-    protected void addEdge(Edge edge) {
-        if (!edges.contains(edge)) {
-            edges.add(edge);
-        }
-    }
-
     public Slot getSlot() {
         return this.slot;
     }
@@ -52,10 +43,6 @@ public class Vertex {
         return this.id;
     }
 
-    protected Set<Edge> getEdges() {
-        return this.edges;
-    }
-
     public AnnotationMirror getValue() {
         return this.value;
     }
@@ -0,0 +1,524 @@
+package checkers.inference.solver.frontend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import checkers.inference.DefaultInferenceResult;
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceResult;
+import checkers.inference.model.AlwaysFalseConstraint;
+import checkers.inference.model.AlwaysTrueConstraint;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintFactory;
+import checkers.inference.model.ConstraintManager;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialVariableSlot;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * ConstraintSimplifier shrinks a constraint set before it is handed to a solving strategy, and
+ * expands the solution of the smaller set back to every slot of the original one.
+ *
+ * Simplification:
+ * <ol>
+ * <li>Variables related by an {@link EqualityConstraint} are merged, using union-find.</li>
+ * <li>Variables on a cycle of {@link SubtypeConstraint}s are merged, as the cycle forces them to
+ * be equal. Cycles are the strongly connected components of the subtype graph between the merged
+ * variables of step 1.</li>
+ * <li>Every constraint on a merged variable is rewritten to the representative of its class,
+ * i.e. its variable with the smallest id. Rewritten constraints are normalized, so e.g. a subtype
+ * constraint inside a class disappears, and duplicates are dropped. Preference constraints that
+ * end up on the same variable and goal each keep counting, so they are replaced by one preference
+ * constraint with the sum of their weights.</li>
+ * <li>A subtype constraint of a variable to the top of the lattice, or from the bottom, holds for
+ * every value and is dropped, unless it is the last constraint on its variable; a variable
+ * without constraints would get no solution.</li>
+ * </ol>
+ *
+ * Only variables that solely occur in subtype, equality, inequality, comparable and preference
+ * constraints are merged. Other constraints, e.g. combine, existential or implication
+ * constraints, are passed on unchanged, and their variables keep their own solution. If merging
+ * makes a constraint unsatisfiable, e.g. an inequality between merged variables, the constraint
+ * set is not simplified, so the backend can explain it in terms of the original constraints.
+ *
+ * An explanation of unsatisfiable simplified constraints is expanded to the original constraints
+ * each of its constraints was created from, and to the equality and subtype constraints that
+ * merged the classes of their variables.
+ */
+public class ConstraintSimplifier {
+
+    private static final Logger logger = Logger.getLogger(ConstraintSimplifier.class.getName());
+
+    private final Lattice lattice;
+    private final ConstraintManager constraintManager;
+
+    /** Maps the id of each merged away variable to the id of the representative of its class. */
+    private final Map<Integer, Integer> reconstruction = new HashMap<>();
+
+    /** Maps each rewritten constraint to the original constraints it was created from. */
+    private final Map<Constraint, Set<Constraint>> originals = new HashMap<>();
+
+    /**
+     * Maps the id of the representative of each class of merged variables to the constraints
+     * that merged the class.
+     */
+    private final Map<Integer, List<Constraint>> mergingConstraints = new HashMap<>();
+
+    private Collection<Slot> simplifiedSlots;
+    private Collection<Constraint> simplifiedConstraints;
+
+    public ConstraintSimplifier(Lattice lattice) {
+        this(lattice, InferenceMain.getInstance().getConstraintManager());
+    }
+
+    public ConstraintSimplifier(Lattice lattice, ConstraintManager constraintManager) {
+        this.lattice = lattice;
+        this.constraintManager = constraintManager;
+    }
+
+    /**
+     * Simplifies the given slots and constraints. The results are returned by
+     * {@link #getSlots()} and {@link #getConstraints()}.
+     */
+    public void simplify(Collection<Slot> slots, Collection<Constraint> constraints) {
+        long start = System.currentTimeMillis();
+        reset();
+        simplifiedSlots = slots;
+        simplifiedConstraints = constraints;
+
+        int maxId = 0;
+        for (Slot slot : slots) {
+            maxId = Math.max(maxId, slot.getId());
+        }
+        for (Constraint constraint : constraints) {
+            for (Slot slot : constraint.getSlots()) {
+                maxId = Math.max(maxId, slot.getId());
+            }
+        }
+
+        boolean[] mergeable = findMergeableVariables(constraints, maxId);
+        UnionFind classes = new UnionFind(maxId + 1);
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof EqualityConstraint) {
+                EqualityConstraint equality = (EqualityConstraint) constraint;
+                int first = equality.getFirst().getId();
+                int second = equality.getSecond().getId();
+                if (mergeable[first] && mergeable[second]) {
+                    classes.union(first, second);
+                }
+            }
+        }
+        mergeSubtypeCycles(constraints, mergeable, classes, maxId);
+
+        final Map<Integer, Slot> representatives = new HashMap<>();
+        for (Slot slot : slots) {
+            if (classes.find(slot.getId()) == slot.getId()) {
+                representatives.put(slot.getId(), slot);
+            }
+        }
+        for (Constraint constraint : constraints) {
+            for (Slot slot : constraint.getSlots()) {
+                if (classes.find(slot.getId()) == slot.getId()) {
+                    representatives.putIfAbsent(slot.getId(), slot);
+                }
+            }
+        }
+        for (int id = 0; id <= maxId; id++) {
+            int representative = classes.find(id);
+            if (representative != id) {
+                reconstruction.put(id, representative);
+            }
+        }
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof EqualityConstraint || constraint instanceof SubtypeConstraint) {
+                List<Slot> operands = constraint.getSlots();
+                int first = operands.get(0).getId();
+                int second = operands.get(1).getId();
+                if (first != second && mergeable[first] && mergeable[second]
+                        && classes.find(first) == classes.find(second)) {
+                    mergingConstraints.computeIfAbsent(classes.find(first), id -> new ArrayList<>()).add(constraint);
+                }
+            }
+        }
+
+        // Rewrite the constraints on merged variables.
+        Set<Constraint> rewritten = new LinkedHashSet<>();
+        Map<List<Slot>, PreferenceGroup> preferences = new LinkedHashMap<>();
+        for (Constraint constraint : constraints) {
+            Constraint simplified = constraint;
+            if (needsRewrite(constraint)) {
+                simplified = constraintManager.copyConstraint(constraint,
+                        slot -> representatives.get(classes.find(slot.getId())));
+                if (simplified instanceof AlwaysFalseConstraint) {
+                    logger.fine("Not simplifying constraints: merging variables makes " + constraint
+                            + " unsatisfiable");
+                    reset();
+                    return;
+                }
+                if (simplified instanceof AlwaysTrueConstraint) {
+                    continue;
+                }
+                originals.computeIfAbsent(simplified, key -> new LinkedHashSet<>()).add(constraint);
+            }
+            if (simplified instanceof PreferenceConstraint) {
+                preferences.computeIfAbsent(simplified.getSlots(), key -> new PreferenceGroup())
+                        .add((PreferenceConstraint) simplified, constraint);
+            } else {
+                rewritten.add(simplified);
+            }
+        }
+        for (PreferenceGroup group : preferences.values()) {
+            rewritten.add(group.sum());
+        }
+
+        // Drop constraints to top and from bottom on variables that have other constraints.
+        Map<Constraint, Slot> trivial = new LinkedHashMap<>();
+        int[] occurrences = new int[maxId + 1];
+        for (Constraint constraint : rewritten) {
+            Slot variable = trivialVariable(constraint);
+            if (variable != null) {
+                trivial.put(constraint, variable);
+            } else {
+                for (Slot slot : constraint.getSlots()) {
+                    occurrences[slot.getId()]++;
+                }
+            }
+        }
+        for (Map.Entry<Constraint, Slot> entry : trivial.entrySet()) {
+            int id = entry.getValue().getId();
+            if (occurrences[id] > 0) {
+                rewritten.remove(entry.getKey());
+            } else {
+                // Keep one constraint on the variable, so it still gets a solution.
+                occurrences[id]++;
+            }
+        }
+
+        List<Slot> keptSlots = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            if (!reconstruction.containsKey(slot.getId())) {
+                keptSlots.add(slot);
+            }
+        }
+        simplifiedSlots = keptSlots;
+        simplifiedConstraints = rewritten;
+
+        Statistics.addOrIncrementEntry("simplifier_merged_slots", reconstruction.size());
+        Statistics.addOrIncrementEntry("simplifier_removed_constraints", constraints.size() - rewritten.size());
+        Statistics.addOrIncrementEntry("simplifier_time(ms)", System.currentTimeMillis() - start);
+        logger.fine("Simplified " + slots.size() + " slots and " + constraints.size() + " constraints to "
+                + keptSlots.size() + " slots and " + rewritten.size() + " constraints");
+    }
+
+    private void reset() {
+        reconstruction.clear();
+        originals.clear();
+        mergingConstraints.clear();
+    }
+
+    /**
+     * Returns the slots left after simplification.
+     */
+    public Collection<Slot> getSlots() {
+        return simplifiedSlots;
+    }
+
+    /**
+     * Returns the constraints left after simplification.
+     */
+    public Collection<Constraint> getConstraints() {
+        return simplifiedConstraints;
+    }
+
+    /**
+     * Returns the reconstruction map of the last simplification: the id of each merged away
+     * variable mapped to the id of the variable whose solution it takes.
+     */
+    public Map<Integer, Integer> getReconstruction() {
+        return reconstruction;
+    }
+
+    /**
+     * Expands a result for the simplified constraints to the original ones: merged variables get
+     * the solution of their representative, and unsatisfiable constraints are replaced by the
+     * constraints they were created from and the constraints that merged their variables.
+     */
+    public InferenceResult expand(InferenceResult result) {
+        if (reconstruction.isEmpty() && originals.isEmpty() && mergingConstraints.isEmpty()) {
+            return result;
+        }
+
+        if (result.hasSolution()) {
+            Map<Integer, AnnotationMirror> solutions = new HashMap<>(result.getSolutions());
+            for (Map.Entry<Integer, Integer> entry : reconstruction.entrySet()) {
+                AnnotationMirror solution = solutions.get(entry.getValue());
+                if (solution != null) {
+                    solutions.put(entry.getKey(), solution);
+                }
+            }
+            return new DefaultInferenceResult(solutions);
+        }
+
+        Set<Constraint> unsatisfiable = new LinkedHashSet<>();
+        for (Constraint constraint : result.getUnsatisfiableConstraints()) {
+            Set<Constraint> sources = originals.getOrDefault(constraint, Collections.singleton(constraint));
+            unsatisfiable.addAll(sources);
+            for (Constraint source : sources) {
+                for (Slot slot : source.getSlots()) {
+                    int representative = reconstruction.getOrDefault(slot.getId(), slot.getId());
+                    unsatisfiable.addAll(mergingConstraints.getOrDefault(representative, Collections.emptyList()));
+                }
+            }
+        }
+        return new DefaultInferenceResult(unsatisfiable);
+    }
+
+    private static boolean isSimpleConstraint(Constraint constraint) {
+        return constraint instanceof SubtypeConstraint
+                || constraint instanceof EqualityConstraint
+                || constraint instanceof InequalityConstraint
+                || constraint instanceof ComparableConstraint
+                || constraint instanceof PreferenceConstraint;
+    }
+
+    /**
+     * Returns, indexed by slot id, whether the slot is a variable that may be merged.
+     */
+    private static boolean[] findMergeableVariables(Collection<Constraint> constraints, int maxId) {
+        boolean[] mergeable = new boolean[maxId + 1];
+        boolean[] pinned = new boolean[maxId + 1];
+        for (Constraint constraint : constraints) {
+            boolean simple = isSimpleConstraint(constraint);
+            for (Slot slot : constraint.getSlots()) {
+                if (!simple || !(slot instanceof VariableSlot) || slot instanceof ExistentialVariableSlot) {
+                    pinned[slot.getId()] = true;
+                } else {
+                    mergeable[slot.getId()] = true;
+                }
+            }
+        }
+        for (int id = 0; id <= maxId; id++) {
+            mergeable[id] &= !pinned[id];
+        }
+        return mergeable;
+    }
+
+    private boolean needsRewrite(Constraint constraint) {
+        if (!isSimpleConstraint(constraint)) {
+            return false;
+        }
+        for (Slot slot : constraint.getSlots()) {
+            if (reconstruction.containsKey(slot.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the classes of the variables on each cycle of subtype constraints, found with an
+     * iterative version of Tarjan's strongly connected components algorithm.
+     */
+    private static void mergeSubtypeCycles(Collection<Constraint> constraints, boolean[] mergeable,
+            UnionFind classes, int maxId) {
+        // Build the subtype graph between classes in compressed sparse row form.
+        int nodes = maxId + 1;
+        int[] degree = new int[nodes + 1];
+        List<int[]> edges = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint) {
+                SubtypeConstraint subtype = (SubtypeConstraint) constraint;
+                int sub = subtype.getSubtype().getId();
+                int sup = subtype.getSupertype().getId();
+                if (mergeable[sub] && mergeable[sup]) {
+                    int from = classes.find(sub);
+                    int to = classes.find(sup);
+                    if (from != to) {
+                        edges.add(new int[] {from, to});
+                        degree[from + 1]++;
+                    }
+                }
+            }
+        }
+        if (edges.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < nodes; i++) {
+            degree[i + 1] += degree[i];
+        }
+        int[] targets = new int[edges.size()];
+        int[] fill = Arrays.copyOf(degree, nodes);
+        for (int[] edge : edges) {
+            targets[fill[edge[0]]++] = edge[1];
+        }
+
+        int[] index = new int[nodes];
+        int[] lowLink = new int[nodes];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[nodes];
+        int[] stack = new int[nodes];
+        int stackSize = 0;
+        int[] callStack = new int[nodes];
+        int[] nextEdge = new int[nodes];
+        int nextIndex = 0;
+
+        for (int root = 0; root < nodes; root++) {
+            if (index[root] != -1 || degree[root] == degree[root + 1]) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            nextEdge[root] = degree[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+                if (nextEdge[node] < degree[node + 1]) {
+                    int target = targets[nextEdge[node]++];
+                    if (index[target] == -1) {
+                        index[target] = lowLink[target] = nextIndex++;
+                        nextEdge[target] = degree[target];
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        callStack[depth++] = target;
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        classes.union(node, member);
+                    } while (member != node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the variable of a subtype constraint that holds for every value of it, i.e. a
+     * constraint to the top of the lattice or from its bottom, or null for other constraints.
+     */
+    private Slot trivialVariable(Constraint constraint) {
+        if (!(constraint instanceof SubtypeConstraint)) {
+            return null;
+        }
+        Slot subtype = ((SubtypeConstraint) constraint).getSubtype();
+        Slot supertype = ((SubtypeConstraint) constraint).getSupertype();
+        if (subtype instanceof VariableSlot && isConstant(supertype, lattice.top)) {
+            return subtype;
+        }
+        if (supertype instanceof VariableSlot && isConstant(subtype, lattice.bottom)) {
+            return supertype;
+        }
+        return null;
+    }
+
+    private static boolean isConstant(Slot slot, AnnotationMirror value) {
+        return slot instanceof ConstantSlot && AnnotationUtils.areSame(((ConstantSlot) slot).getValue(), value);
+    }
+
+    /**
+     * The preference constraints on one variable for one goal after rewriting, and the original
+     * constraints they were created from.
+     */
+    private class PreferenceGroup {
+        private PreferenceConstraint first;
+        private int count;
+        private int weight;
+        private final Set<Constraint> sources = new LinkedHashSet<>();
+
+        void add(PreferenceConstraint preference, Constraint source) {
+            if (first == null) {
+                first = preference;
+            }
+            count++;
+            weight += preference.getWeight();
+            sources.add(source);
+        }
+
+        /**
+         * Returns the preference constraint with the sum of the weights of the group.
+         */
+        PreferenceConstraint sum() {
+            if (count == 1) {
+                return first;
+            }
+            PreferenceConstraint summed = new ConstraintFactory(null, first.getLocation())
+                    .createPreferenceConstraint(first.getVariable(), first.getGoal(), weight);
+            originals.put(summed, sources);
+            return summed;
+        }
+    }
+
+    /**
+     * Union-find over slot ids. The root of a class is always its smallest id.
+     */
+    private static class UnionFind {
+        private final int[] parent;
+
+        UnionFind(int size) {
+            parent = new int[size];
+            for (int i = 0; i < size; i++) {
+                parent[i] = i;
+            }
+        }
+
+        int find(int id) {
+            if (id >= parent.length) {
+                return id;
+            }
+            int root = id;
+            while (parent[root] != root) {
+                root = parent[root];
+            }
+            while (parent[id] != root) {
+                int next = parent[id];
+                parent[id] = root;
+                id = next;
+            }
+            return root;
+        }
+
+        void union(int first, int second) {
+            int firstRoot = find(first);
+            int secondRoot = find(second);
+            if (firstRoot < secondRoot) {
+                parent[secondRoot] = firstRoot;
+            } else if (secondRoot < firstRoot) {
+                parent[firstRoot] = secondRoot;
+            }
+        }
+    }
+}
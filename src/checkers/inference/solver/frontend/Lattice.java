@@ -73,6 +73,11 @@ public class Lattice {
     /* @Nullable */
     private final QualifierHierarchy underlyingQualifierHierarchy;
 
+    /**
+     * Integer encoding of this lattice, computed on first use.
+     */
+    private volatile LatticeEncoding encoding;
+
     public Lattice(Map<AnnotationMirror, Collection<AnnotationMirror>> subType,
             Map<AnnotationMirror, Collection<AnnotationMirror>> superType,
             Map<AnnotationMirror, Collection<AnnotationMirror>> incomparableType,
@@ -89,6 +94,64 @@ public class Lattice {
         this.allAnnotations = runtimeAMs;
     }
 
+    /**
+     * Creates a lattice whose relations are computed on demand from the given qualifier
+     * hierarchy and memoized by its {@link LatticeEncoding}. The relation maps are views of
+     * the encoding, so looking up a qualifier in them only computes the relations of that
+     * qualifier.
+     */
+    Lattice(Set<? extends AnnotationMirror> allTypes, AnnotationMirror top, AnnotationMirror bottom,
+            QualifierHierarchy qualifierHierarchy) {
+        LatticeEncoding lazyEncoding = new LatticeEncoding(allTypes, top, bottom, qualifierHierarchy::isSubtype);
+        this.subType = new LatticeRelationMap(lazyEncoding, LatticeRelationMap.Relation.SUBTYPES);
+        this.superType = new LatticeRelationMap(lazyEncoding, LatticeRelationMap.Relation.SUPERTYPES);
+        this.incomparableType = new LatticeRelationMap(lazyEncoding, LatticeRelationMap.Relation.INCOMPARABLES);
+        this.allTypes = Collections.unmodifiableSet(allTypes);
+        this.top = top;
+        this.bottom = bottom;
+        this.numTypes = allTypes.size();
+        this.underlyingQualifierHierarchy = qualifierHierarchy;
+        this.allAnnotations = Collections.emptySet();
+        this.encoding = lazyEncoding;
+    }
+
+    /**
+     * Creates a lattice with the same qualifiers, relations and encoding as the given lattice,
+     * but with the given runtime annotation mirrors.
+     */
+    Lattice(Lattice qualifiers, Collection<AnnotationMirror> runtimeAMs) {
+        this.subType = qualifiers.subType;
+        this.superType = qualifiers.superType;
+        this.incomparableType = qualifiers.incomparableType;
+        this.allTypes = qualifiers.allTypes;
+        this.top = qualifiers.top;
+        this.bottom = qualifiers.bottom;
+        this.numTypes = qualifiers.numTypes;
+        this.underlyingQualifierHierarchy = qualifiers.underlyingQualifierHierarchy;
+        this.allAnnotations = runtimeAMs;
+        this.encoding = qualifiers.getEncoding();
+    }
+
+    /**
+     * Returns the integer encoding of this lattice. It is created once and then shared by
+     * every caller. The encoding of a lattice with computed relation maps only reads these
+     * maps, so it is precomputed right away and may be used by any thread.
+     */
+    public LatticeEncoding getEncoding() {
+        LatticeEncoding result = encoding;
+        if (result == null) {
+            synchronized (this) {
+                result = encoding;
+                if (result == null) {
+                    result = new LatticeEncoding(this);
+                    result.precompute();
+                    encoding = result;
+                }
+            }
+        }
+        return result;
+    }
+
     public boolean isSubtype(AnnotationMirror a1, AnnotationMirror a2) {
         return underlyingQualifierHierarchy.isSubtype(a1, a2);
 
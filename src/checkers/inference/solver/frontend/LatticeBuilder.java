@@ -3,7 +3,6 @@ package checkers.inference.solver.frontend;
 import java.lang.annotation.Annotation;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,6 +18,22 @@ import checkers.inference.model.Slot;
 
 public class LatticeBuilder {
 
+    /**
+     * The qualifier hierarchy of {@link #cachedQualifierLattice}.
+     */
+    private static QualifierHierarchy cachedHierarchy;
+
+    /**
+     * The lattice last built by {@link #buildLattice(QualifierHierarchy, Collection)}, without
+     * runtime annotation mirrors. Its encoding memoizes the subtype relation of the hierarchy,
+     * so each pair of qualifiers is only queried once per hierarchy, e.g. when several solver
+     * engines run in the same inference run. The cache is keyed by the identity of the hierarchy,
+     * as the hierarchy and its annotation mirrors belong to one javac run, so the lattice of an
+     * earlier run, e.g. of the {@link checkers.inference.InferenceDaemon}, is never reused. Only
+     * the last hierarchy is kept, so the cache does not grow.
+     */
+    private static Lattice cachedQualifierLattice;
+
     /**
      * subType maps each type qualifier to its sub types.
      */
@@ -80,6 +95,27 @@ public class LatticeBuilder {
      * @return a new Lattice instance.
      */
     public Lattice buildLattice(QualifierHierarchy qualHierarchy, Collection<Slot> slots) {
+        Lattice qualifiers;
+        synchronized (LatticeBuilder.class) {
+            if (cachedHierarchy != qualHierarchy) {
+                cachedQualifierLattice = buildQualifierLattice(qualHierarchy);
+                cachedHierarchy = qualHierarchy;
+            }
+            qualifiers = cachedQualifierLattice;
+        }
+
+        clear();
+        collectConstantAnnotationMirrors(slots);
+        return new Lattice(qualifiers, allAnnotations);
+    }
+
+    /**
+     * Build the part of a lattice that only depends on the qualifier hierarchy. The returned
+     * lattice has no runtime annotation mirrors and doesn't share state with this builder. Its
+     * relations are computed when first used, and memoized for every later lattice of the same
+     * hierarchy.
+     */
+    private Lattice buildQualifierLattice(QualifierHierarchy qualHierarchy) {
         clear();
 
         Set<AnnotationMirror> supportedAnnos = AnnotationUtils.createAnnotationSet();
@@ -101,39 +137,8 @@ public class LatticeBuilder {
         allTypes = Collections.unmodifiableSet(supportedAnnos);
         numTypes = supportedAnnos.size();
 
-        // Calculate subtypes map and supertypes map
-        for (AnnotationMirror i : allTypes) {
-            Set<AnnotationMirror> subtypeOfi = new HashSet<AnnotationMirror>();
-            Set<AnnotationMirror> supertypeOfi = new HashSet<AnnotationMirror>();
-            for (AnnotationMirror j : allTypes) {
-                if (qualHierarchy.isSubtype(j, i)) {
-                    subtypeOfi.add(j);
-                }
-                if (qualHierarchy.isSubtype(i, j)) {
-                    supertypeOfi.add(j);
-                }
-            }
-            subType.put(i, subtypeOfi);
-            superType.put(i, supertypeOfi);
-        }
-
-        // Calculate incomparable types map
-        for (AnnotationMirror i : allTypes) {
-            Set<AnnotationMirror> incomparableOfi = new HashSet<AnnotationMirror>();
-            for (AnnotationMirror j : allTypes) {
-                if (!subType.get(i).contains(j) && !subType.get(j).contains(i)) {
-                    incomparableOfi.add(j);
-                }
-            }
-            if (!incomparableOfi.isEmpty()) {
-                incomparableType.put(i, incomparableOfi);
-            }
-        }
-
-        collectConstantAnnotationMirrors(slots);
-
-        return new Lattice(subType, superType, incomparableType, allTypes, top,
-                bottom, numTypes, allAnnotations, qualHierarchy);
+        // The relations between the qualifiers are computed on demand by the lattice encoding.
+        return new Lattice(allTypes, top, bottom, qualHierarchy);
     }
 
     /**
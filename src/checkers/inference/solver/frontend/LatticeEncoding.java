@@ -0,0 +1,272 @@
+package checkers.inference.solver.frontend;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.IntStream;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * LatticeEncoding numbers the type qualifiers of a {@link Lattice} and stores its subtype
+ * relation as a bit matrix over these numbers.
+ *
+ * Qualifiers are numbered from 0 in the iteration order of {@link Lattice#allTypes}. Backends
+ * that encode qualifiers as integers, e.g. MaxSAT, can use the index of a qualifier directly
+ * instead of looking it up in an annotation map for every constraint.
+ *
+ * The subtype relation is computed on demand: each pair of qualifiers is looked up in the
+ * underlying relation, usually the qualifier hierarchy, the first time it is asked for, and
+ * memoized in the matrix, so users on one thread only pay for the pairs they use.
+ *
+ * The qualifier hierarchy is not thread safe, so the relation is only computed on demand by the
+ * thread that created the encoding. Before the encoding is shared with other threads, e.g. the
+ * component solvers of a graph solving strategy, that thread calls {@link #precompute()}, after
+ * which the encoding is immutable and read by every thread without locking. The
+ * {@link checkers.inference.solver.SolverEngine} does so before solving. Get the encoding of a
+ * lattice with {@link Lattice#getEncoding()}.
+ */
+public final class LatticeEncoding {
+
+    private final AnnotationMirror[] qualifiers;
+
+    private final Map<AnnotationMirror, Integer> indices;
+
+    private final Map<Integer, AnnotationMirror> qualifierMap;
+
+    /**
+     * Decides whether the first qualifier is a subtype of the second. Only called once per pair,
+     * by the owner thread.
+     */
+    private final BiPredicate<AnnotationMirror, AnnotationMirror> relation;
+
+    /**
+     * The thread that created this encoding, the only one computing relations before
+     * {@link #precompute()}.
+     */
+    private final Thread owner;
+
+    /**
+     * The memoized subtype relation, two bits per ordered pair of qualifiers: whether the pair
+     * is known, and whether the first qualifier is a subtype of the second. The bits of the pair
+     * (sub, sup) are at bit {@code 2 * (sup * size + sub)}.
+     */
+    private final long[] matrix;
+
+    private final int[][] subtypeIndices;
+    private final int[][] supertypeIndices;
+    private final int[][] incomparableIndices;
+
+    /**
+     * Whether the whole relation and all arrays are computed. Written once by the owner thread
+     * after filling them, so that a thread reading true also sees their contents.
+     */
+    private volatile boolean precomputed = false;
+
+    private final int top;
+    private final int bottom;
+
+    /**
+     * Creates the encoding of the given qualifiers, with the subtype relation of the given
+     * predicate.
+     */
+    LatticeEncoding(Collection<? extends AnnotationMirror> allTypes, AnnotationMirror top, AnnotationMirror bottom,
+            BiPredicate<AnnotationMirror, AnnotationMirror> relation) {
+        final int size = allTypes.size();
+        qualifiers = new AnnotationMirror[size];
+        Map<AnnotationMirror, Integer> indicesRes = AnnotationUtils.createAnnotationMap();
+        Map<Integer, AnnotationMirror> qualifierMapRes = new HashMap<>();
+
+        int index = 0;
+        for (AnnotationMirror qualifier : allTypes) {
+            qualifiers[index] = qualifier;
+            indicesRes.put(qualifier, index);
+            qualifierMapRes.put(index, qualifier);
+            index++;
+        }
+        indices = Collections.unmodifiableMap(indicesRes);
+        qualifierMap = Collections.unmodifiableMap(qualifierMapRes);
+
+        this.relation = relation;
+        this.owner = Thread.currentThread();
+        long pairs = (long) size * size;
+        if (pairs > (long) Integer.MAX_VALUE * 32) {
+            throw new BugInCF("Too many qualifiers to encode: " + size);
+        }
+        matrix = new long[(int) ((pairs + 31) / 32)];
+        subtypeIndices = new int[size][];
+        supertypeIndices = new int[size][];
+        incomparableIndices = new int[size][];
+
+        this.top = indexOf(top);
+        this.bottom = indexOf(bottom);
+    }
+
+    /**
+     * Creates the encoding of a lattice whose relation maps are already computed.
+     */
+    LatticeEncoding(Lattice lattice) {
+        this(lattice.allTypes, lattice.top, lattice.bottom, (sub, sup) -> {
+            Collection<AnnotationMirror> subtypesOfSup = lattice.subType.get(sup);
+            if (subtypesOfSup == null) {
+                return false;
+            }
+            for (AnnotationMirror subtype : subtypesOfSup) {
+                if (AnnotationUtils.areSame(subtype, sub)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Returns the number of qualifiers.
+     */
+    public int size() {
+        return qualifiers.length;
+    }
+
+    /**
+     * Returns the index of the given qualifier, or -1 if it is not in the lattice.
+     */
+    public int indexOf(AnnotationMirror qualifier) {
+        Integer index = indices.get(qualifier);
+        return index == null ? -1 : index;
+    }
+
+    public AnnotationMirror getQualifier(int index) {
+        return qualifiers[index];
+    }
+
+    /**
+     * Returns the read-only map from each qualifier to its index.
+     */
+    public Map<AnnotationMirror, Integer> getIndexMap() {
+        return indices;
+    }
+
+    /**
+     * Returns the read-only map from each index to its qualifier.
+     */
+    public Map<Integer, AnnotationMirror> getQualifierMap() {
+        return qualifierMap;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    /**
+     * Returns whether qualifier {@code sub} is a subtype of qualifier {@code sup}.
+     */
+    public boolean isSubtype(int sub, int sup) {
+        boolean isPrecomputed = precomputed;
+        long bit = 2 * ((long) sup * qualifiers.length + sub);
+        int word = (int) (bit >>> 6);
+        long known = 1L << (bit & 63);
+        long value = known << 1;
+
+        long bits = matrix[word];
+        if (isPrecomputed || (bits & known) != 0) {
+            return (bits & value) != 0;
+        }
+
+        checkOwner();
+        boolean result = relation.test(qualifiers[sub], qualifiers[sup]);
+        matrix[word] = bits | (result ? known | value : known);
+        return result;
+    }
+
+    /**
+     * Returns the indices of all subtypes of the given qualifier, including itself, in
+     * ascending order. The returned array must not be modified.
+     */
+    public int[] getSubtypes(int index) {
+        if (!precomputed && subtypeIndices[index] == null) {
+            checkOwner();
+            subtypeIndices[index] = IntStream.range(0, size()).filter(other -> isSubtype(other, index)).toArray();
+        }
+        return subtypeIndices[index];
+    }
+
+    /**
+     * Returns the indices of all supertypes of the given qualifier, including itself, in
+     * ascending order. The returned array must not be modified.
+     */
+    public int[] getSupertypes(int index) {
+        if (!precomputed && supertypeIndices[index] == null) {
+            checkOwner();
+            supertypeIndices[index] = IntStream.range(0, size()).filter(other -> isSubtype(index, other)).toArray();
+        }
+        return supertypeIndices[index];
+    }
+
+    /**
+     * Returns the indices of all qualifiers that are neither subtypes nor supertypes of the
+     * given qualifier, in ascending order. The returned array must not be modified.
+     */
+    public int[] getIncomparables(int index) {
+        if (!precomputed && incomparableIndices[index] == null) {
+            checkOwner();
+            incomparableIndices[index] = IntStream.range(0, size())
+                    .filter(other -> !isSubtype(other, index) && !isSubtype(index, other))
+                    .toArray();
+        }
+        return incomparableIndices[index];
+    }
+
+    /**
+     * Returns the set of the qualifiers with the given indices, in the order of the indices.
+     */
+    Set<AnnotationMirror> getQualifiers(int[] qualifierIndices) {
+        Set<AnnotationMirror> result = new LinkedHashSet<>();
+        for (int index : qualifierIndices) {
+            result.add(qualifiers[index]);
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Computes the whole subtype relation and the subtype, supertype and incomparable arrays of
+     * every qualifier now, on the thread that created this encoding. Afterwards the encoding
+     * never changes, and may be shared with other threads.
+     */
+    public void precompute() {
+        if (precomputed) {
+            return;
+        }
+        checkOwner();
+        for (int i = 0; i < size(); i++) {
+            getSubtypes(i);
+            getSupertypes(i);
+            getIncomparables(i);
+        }
+        precomputed = true;
+    }
+
+    /**
+     * Returns whether {@link #precompute()} was called, i.e. whether this encoding may be shared
+     * with other threads.
+     */
+    public boolean isPrecomputed() {
+        return precomputed;
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new BugInCF("The lattice encoding is used by another thread before it is precomputed.");
+        }
+    }
+}
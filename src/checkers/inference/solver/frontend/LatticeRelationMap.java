@@ -0,0 +1,129 @@
+package checkers.inference.solver.frontend;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.lang.model.element.AnnotationMirror;
+
+/**
+ * Read-only view of one relation of a {@link LatticeEncoding} as a map from each qualifier to the
+ * qualifiers related to it, for the relation maps of {@link Lattice}. The related qualifiers of a
+ * qualifier are computed by the encoding when first looked up.
+ *
+ * Like the maps built eagerly before, the incomparable relation only has entries for qualifiers
+ * with incomparable qualifiers.
+ */
+class LatticeRelationMap extends AbstractMap<AnnotationMirror, Collection<AnnotationMirror>> {
+
+    enum Relation {
+        SUBTYPES,
+        SUPERTYPES,
+        INCOMPARABLES
+    }
+
+    private final LatticeEncoding encoding;
+    private final Relation relation;
+    private final AtomicReferenceArray<Collection<AnnotationMirror>> values;
+
+    LatticeRelationMap(LatticeEncoding encoding, Relation relation) {
+        this.encoding = encoding;
+        this.relation = relation;
+        this.values = new AtomicReferenceArray<>(encoding.size());
+    }
+
+    private int[] related(int index) {
+        switch (relation) {
+            case SUBTYPES:
+                return encoding.getSubtypes(index);
+            case SUPERTYPES:
+                return encoding.getSupertypes(index);
+            default:
+                return encoding.getIncomparables(index);
+        }
+    }
+
+    /**
+     * Returns the related qualifiers of the qualifier with the given index, or null if it has no
+     * entry.
+     */
+    private Collection<AnnotationMirror> valueAt(int index) {
+        Collection<AnnotationMirror> value = values.get(index);
+        if (value == null) {
+            int[] related = related(index);
+            if (relation == Relation.INCOMPARABLES && related.length == 0) {
+                return null;
+            }
+            value = encoding.getQualifiers(related);
+            values.compareAndSet(index, null, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Collection<AnnotationMirror> get(Object key) {
+        if (!(key instanceof AnnotationMirror)) {
+            return null;
+        }
+        int index = encoding.indexOf((AnnotationMirror) key);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<AnnotationMirror, Collection<AnnotationMirror>>> entrySet() {
+        return new AbstractSet<Entry<AnnotationMirror, Collection<AnnotationMirror>>>() {
+            @Override
+            public Iterator<Entry<AnnotationMirror, Collection<AnnotationMirror>>> iterator() {
+                return new Iterator<Entry<AnnotationMirror, Collection<AnnotationMirror>>>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        while (from < encoding.size() && valueAt(from) == null) {
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < encoding.size();
+                    }
+
+                    @Override
+                    public Entry<AnnotationMirror, Collection<AnnotationMirror>> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<AnnotationMirror, Collection<AnnotationMirror>> entry =
+                                new SimpleImmutableEntry<>(encoding.getQualifier(next), valueAt(next));
+                        next = advance(next + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                if (relation != Relation.INCOMPARABLES) {
+                    return encoding.size();
+                }
+                int size = 0;
+                for (int i = 0; i < encoding.size(); i++) {
+                    if (valueAt(i) != null) {
+                        size++;
+                    }
+                }
+                return size;
+            }
+        };
+    }
+}
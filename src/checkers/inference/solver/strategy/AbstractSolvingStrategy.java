@@ -1,6 +1,16 @@
 package checkers.inference.solver.strategy;
 
+import java.util.Collection;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.backend.Solver;
 import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.TimeBudget;
 
 /**
  * Abstract base class for all concrete {@link SolvingStrategy} implementation. *
@@ -17,4 +27,40 @@ public abstract class AbstractSolvingStrategy implements SolvingStrategy {
         this.solverFactory = solverFactory;
     }
 
+    /**
+     * Creates the underlying solver of the given constraints with {@link #solverFactory},
+     * bounded by the time budget of the solver environment if there is one.
+     */
+    protected Solver<?> createSolver(SolverEnvironment solverEnvironment, Collection<Slot> slots,
+            Collection<Constraint> constraints, Lattice lattice) {
+        Solver<?> solver = solverFactory.createSolver(solverEnvironment, slots, constraints, lattice);
+        return boundByTimeBudget(solverEnvironment, solver, lattice);
+    }
+
+    /**
+     * Wraps the given solver in a {@link TimeBoundedSolver} if the solver environment has a
+     * {@link TimeBudget}, and returns it unchanged otherwise.
+     */
+    protected Solver<?> boundByTimeBudget(SolverEnvironment solverEnvironment, Solver<?> solver, Lattice lattice) {
+        TimeBudget timeBudget = solverEnvironment.getTimeBudget();
+        if (timeBudget == null) {
+            return solver;
+        }
+        return new TimeBoundedSolver(solverEnvironment, lattice, solver, timeBudget,
+                getParallelism(solverEnvironment), getDefaultAnnotation(lattice));
+    }
+
+    /**
+     * Returns the number of underlying solvers this strategy runs at the same time.
+     */
+    protected int getParallelism(SolverEnvironment solverEnvironment) {
+        return 1;
+    }
+
+    /**
+     * Returns the annotation of the variables of a component that runs out of time.
+     */
+    protected AnnotationMirror getDefaultAnnotation(Lattice lattice) {
+        return lattice.top;
+    }
 }
@@ -8,11 +8,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
@@ -22,7 +18,6 @@ import checkers.inference.InferenceMain;
 import checkers.inference.InferenceResult;
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
-import checkers.inference.solver.SolverEngine.SolverEngineArg;
 import checkers.inference.solver.backend.Solver;
 import checkers.inference.solver.backend.SolverFactory;
 import checkers.inference.solver.constraintgraph.ConstraintGraph;
@@ -33,6 +28,7 @@ import checkers.inference.solver.util.SolverEnvironment;
 import checkers.inference.solver.util.Statistics;
 import com.sun.tools.javac.util.Pair;
 import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.BugInCF;
 
 /**
  * GraphSolvingStrategy solves a given set of constraints by a divide-and-conquer way:
@@ -48,9 +44,29 @@ import org.checkerframework.framework.type.QualifierHierarchy;
 public class GraphSolvingStrategy extends AbstractSolvingStrategy {
 
     enum GraphSolveStrategyArg implements SolverArg {
-        solveInParallel;
+        solveInParallel,
+
+        /**
+         * Number of worker threads used when solving in parallel. Defaults to the number of
+         * available processors.
+         */
+        solverThreads,
+
+        /**
+         * Sub-graphs with no more constraints than this value are batched into one task when
+         * solving in parallel.
+         */
+        smallComponentSize,
+
+        /**
+         * The number of constraints each batch of small sub-graphs is filled up to.
+         */
+        batchSize;
     }
 
+    private static final int DEFAULT_SMALL_COMPONENT_SIZE = 16;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
     public GraphSolvingStrategy(SolverFactory solverFactory) {
         super(solverFactory);
     }
@@ -59,9 +75,7 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
     public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
                                  Collection<Constraint> constraints, Lattice lattice) {
 
-        //TODO: Remove the coupling of using SolverEngineArg.
-        final boolean solveInParallel = !"lingeling".equals(solverEnvironment.getArg(SolverEngineArg.solver))
-                && solverEnvironment.getBoolArg(GraphSolveStrategyArg.solveInParallel);
+        final boolean solveInParallel = solverEnvironment.getBoolArg(GraphSolveStrategyArg.solveInParallel);
 
         // Build graph
         final long graphBuildingStart = System.currentTimeMillis();
@@ -78,9 +92,14 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
         if (separatedGraphSolvers.size() > 0) {
             if (solveInParallel) {
                 try {
-                    inferenceResults = solveInparallel(separatedGraphSolvers);
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
+                    inferenceResults = solveInparallel(solverEnvironment, separatedGraphSolvers);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BugInCF("Parallel graph solving was interrupted.", e);
+                } catch (ExecutionException e) {
+                    // The failed component is logged by the scheduler, and no partial solution
+                    // of the other components is returned.
+                    throw new BugInCF("Solving a component of the constraint graph failed.", e.getCause());
                 }
             } else {
                 inferenceResults = solveInSequential(separatedGraphSolvers);
@@ -110,6 +129,23 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
         return qualHierarchy.getTopAnnotations().iterator().next();
     }
 
+    /**
+     * Components that run out of time default to {@link #getGraphTopAnnotation()}.
+     */
+    @Override
+    protected AnnotationMirror getDefaultAnnotation(Lattice lattice) {
+        return getGraphTopAnnotation();
+    }
+
+    @Override
+    protected int getParallelism(SolverEnvironment solverEnvironment) {
+        if (!solverEnvironment.getBoolArg(GraphSolveStrategyArg.solveInParallel)) {
+            return 1;
+        }
+        return solverEnvironment.getIntArg(GraphSolveStrategyArg.solverThreads,
+                Runtime.getRuntime().availableProcessors());
+    }
+
     protected ConstraintGraph generateGraph(Collection<Slot> slots, Collection<Constraint> constraints,
             ProcessingEnvironment processingEnvironment) {
         GraphBuilder graphBuilder = new GraphBuilder(slots, constraints, getGraphTopAnnotation());
@@ -130,45 +166,44 @@ public class GraphSolvingStrategy extends AbstractSolvingStrategy {
         List<Solver<?>> separatedGraphSovlers = new ArrayList<>();
 
         for (Set<Constraint> independentConstraints : constraintGraph.getIndependentPath()) {
-            separatedGraphSovlers.add(solverFactory.createSolver(solverEnvironment, slots, independentConstraints, lattice));
+            separatedGraphSovlers.add(createSolver(solverEnvironment, slots, independentConstraints, lattice));
         }
 
         return separatedGraphSovlers;
     }
 
+    /**
+     * Create the scheduler used for solving sub-graphs in parallel. Sub-class may plug in
+     * its own scheduling policy by overriding this method.
+     *
+     * @param solverEnvironment the solver environment providing the scheduling arguments
+     * @return a scheduler for the underlying solvers
+     */
+    protected SubGraphScheduler createScheduler(SolverEnvironment solverEnvironment) {
+        int parallelism = solverEnvironment.getIntArg(GraphSolveStrategyArg.solverThreads,
+                Runtime.getRuntime().availableProcessors());
+        int smallComponentSize = solverEnvironment.getIntArg(GraphSolveStrategyArg.smallComponentSize,
+                DEFAULT_SMALL_COMPONENT_SIZE);
+        int batchSize = solverEnvironment.getIntArg(GraphSolveStrategyArg.batchSize, DEFAULT_BATCH_SIZE);
+        return new SubGraphScheduler(parallelism, smallComponentSize, batchSize);
+    }
+
     /**
      * This method is called if user wants to call all underlying solvers in parallel.
      *
+     * @param solverEnvironment
      * @param underlyingSolvers
      * @return A list of Map that contains solutions from all underlying solvers.
      * @throws InterruptedException
-     * @throws ExecutionException
+     * @throws ExecutionException if an underlying solver failed
      */
-    protected List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solveInparallel(List<Solver<?>> underlyingSolvers)
+    protected List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solveInparallel(
+            SolverEnvironment solverEnvironment, List<Solver<?>> underlyingSolvers)
             throws InterruptedException, ExecutionException {
 
-        ExecutorService service = Executors.newFixedThreadPool(30);
-        List<Future<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>>> futures = new ArrayList<>();
-
         long solvingStart = System.currentTimeMillis();
-        for (final Solver<?> underlyingSolver : underlyingSolvers) {
-            Callable<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> callable = () -> {
-                Map<Integer, AnnotationMirror> solution = underlyingSolver.solve();
-                if (solution != null) {
-                    return new Pair<>(solution, new HashSet<>());
-                } else {
-                    return new Pair<>(solution, underlyingSolver.explainUnsatisfiable());
-                }
-            };
-            futures.add(service.submit(callable));
-        }
-        service.shutdown();
-
-        List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> results = new ArrayList<>();
-
-        for (Future<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> future : futures) {
-            results.add(future.get());
-        }
+        List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> results =
+                createScheduler(solverEnvironment).solve(underlyingSolvers);
         long solvingEnd = System.currentTimeMillis();
 
         Statistics.addOrIncrementEntry("overall_parallel_solving_time(ms)", (solvingEnd - solvingStart));
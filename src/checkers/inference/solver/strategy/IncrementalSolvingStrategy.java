@@ -0,0 +1,204 @@
+package checkers.inference.solver.strategy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceResult;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.SolverEngine.SolverEngineArg;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.constraintgraph.ConstraintGraph;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.ComponentFingerprinter;
+import checkers.inference.solver.util.ComponentFingerprinter.Fingerprint;
+import checkers.inference.solver.util.SolutionCache;
+import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+import com.sun.tools.javac.util.Pair;
+
+/**
+ * IncrementalSolvingStrategy is a {@link GraphSolvingStrategy} that reuses the solutions of a
+ * previous run for independent components that did not change.
+ *
+ * Every independent component of the constraint graph is fingerprinted by
+ * {@link ComponentFingerprinter}, which identifies slots by their {@code AnnotationLocation}
+ * rather than by their id. Components whose fingerprint is found in the on-disk
+ * {@link SolutionCache} are not handed to the underlying solver; their cached solution is
+ * remapped to the slot ids of the current run instead. Only the remaining components are solved,
+ * and their solutions are written back to the cache.
+ *
+ * The cache file is given by the solver argument {@code solutionCache}, and defaults to
+ * {@value #DEFAULT_CACHE_FILE} in the working directory.
+ */
+public class IncrementalSolvingStrategy extends GraphSolvingStrategy {
+
+    enum IncrementalSolvingStrategyArg implements SolverArg {
+        /**
+         * Path of the file that stores solutions between runs.
+         */
+        solutionCache;
+    }
+
+    public static final String DEFAULT_CACHE_FILE = "solutionCache.json";
+
+    private SolutionCache solutionCache;
+
+    /**
+     * All qualifiers of the lattice, keyed by their string representation.
+     */
+    private final Map<String, AnnotationMirror> annotationsByName = new HashMap<>();
+
+    /**
+     * Fingerprints of the components handed to underlying solvers, in the same order as the
+     * solvers. An element is null if the component cannot be fingerprinted.
+     */
+    private final List<Fingerprint> solvedFingerprints = new ArrayList<>();
+
+    /**
+     * The underlying solvers of the components of {@link #solvedFingerprints}, in the same order.
+     */
+    private final List<Solver<?>> componentSolvers = new ArrayList<>();
+
+    /**
+     * Solutions of all components reused from the cache, keyed by slot ids of this run.
+     */
+    private final Map<Integer, AnnotationMirror> reusedSolutions = new HashMap<>();
+
+    public IncrementalSolvingStrategy(SolverFactory solverFactory) {
+        super(solverFactory);
+    }
+
+    @Override
+    public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
+                                 Collection<Constraint> constraints, Lattice lattice) {
+        String cacheFile = solverEnvironment.getArg(IncrementalSolvingStrategyArg.solutionCache);
+        if (cacheFile == null) {
+            cacheFile = DEFAULT_CACHE_FILE;
+        }
+
+        for (AnnotationMirror anno : lattice.allTypes) {
+            annotationsByName.put(anno.toString(), anno);
+        }
+        for (AnnotationMirror anno : lattice.allAnnotations) {
+            annotationsByName.put(anno.toString(), anno);
+        }
+
+        solutionCache = new SolutionCache(new File(cacheFile), createCacheContext(solverEnvironment));
+        solutionCache.load();
+
+        InferenceResult result = super.solve(solverEnvironment, slots, constraints, lattice);
+
+        if (result.hasSolution()) {
+            solutionCache.save();
+        }
+        return result;
+    }
+
+    /**
+     * Returns a string identifying everything besides the constraints that a cached solution
+     * depends on. Cache files written under a different context are discarded.
+     */
+    protected String createCacheContext(SolverEnvironment solverEnvironment) {
+        Set<String> qualifiers = new TreeSet<>(annotationsByName.keySet());
+        return solverEnvironment.getArg(SolverEngineArg.solver) + ";" + qualifiers;
+    }
+
+    @Override
+    protected List<Solver<?>> separateGraph(SolverEnvironment solverEnvironment, ConstraintGraph constraintGraph,
+            Collection<Slot> slots, Collection<Constraint> constraints, Lattice lattice) {
+        ComponentFingerprinter fingerprinter = new ComponentFingerprinter();
+        List<Solver<?>> separatedGraphSolvers = new ArrayList<>();
+        long reusedComponents = 0;
+
+        for (Set<Constraint> independentConstraints : constraintGraph.getIndependentPath()) {
+            Fingerprint fingerprint = fingerprinter.fingerprint(independentConstraints);
+            if (fingerprint != null) {
+                Map<Integer, AnnotationMirror> cached = remap(fingerprint, solutionCache.lookup(fingerprint.digest));
+                if (cached != null) {
+                    reusedSolutions.putAll(cached);
+                    reusedComponents++;
+                    continue;
+                }
+            }
+
+            Solver<?> solver = createSolver(solverEnvironment, slots, independentConstraints, lattice);
+            solvedFingerprints.add(fingerprint);
+            componentSolvers.add(solver);
+            separatedGraphSolvers.add(solver);
+        }
+
+        Statistics.addOrIncrementEntry("incremental_reused_components", reusedComponents);
+        Statistics.addOrIncrementEntry("incremental_solved_components", separatedGraphSolvers.size());
+        return separatedGraphSolvers;
+    }
+
+    /**
+     * Maps a cached solution of a component to the slot ids of the given fingerprint.
+     *
+     * @return the remapped solution, or null if the cached solution cannot be used
+     */
+    private Map<Integer, AnnotationMirror> remap(Fingerprint fingerprint, Map<String, String> cachedSolution) {
+        if (cachedSolution == null) {
+            return null;
+        }
+
+        Map<String, Integer> idsByKey = new HashMap<>();
+        for (Map.Entry<Integer, String> entry : fingerprint.slotKeys.entrySet()) {
+            idsByKey.put(entry.getValue(), entry.getKey());
+        }
+
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        for (Map.Entry<String, String> entry : cachedSolution.entrySet()) {
+            Integer slotId = idsByKey.get(entry.getKey());
+            AnnotationMirror anno = annotationsByName.get(entry.getValue());
+            if (slotId == null || anno == null) {
+                return null;
+            }
+            solution.put(slotId, anno);
+        }
+        return solution;
+    }
+
+    @Override
+    protected InferenceResult mergeInferenceResults(List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> inferenceResults) {
+        for (int i = 0; i < inferenceResults.size(); i++) {
+            Map<Integer, AnnotationMirror> solution = inferenceResults.get(i).fst;
+            Fingerprint fingerprint = solvedFingerprints.get(i);
+            if (solution == null || fingerprint == null) {
+                continue;
+            }
+            Solver<?> solver = componentSolvers.get(i);
+            if (solver instanceof TimeBoundedSolver && ((TimeBoundedSolver) solver).hasTimedOut()) {
+                // Default solutions of timed out components are not worth reusing.
+                continue;
+            }
+
+            Map<String, String> cachedSolution = new HashMap<>();
+            for (Map.Entry<Integer, String> entry : fingerprint.slotKeys.entrySet()) {
+                AnnotationMirror anno = solution.get(entry.getKey());
+                if (anno != null) {
+                    cachedSolution.put(entry.getValue(), anno.toString());
+                }
+            }
+            solutionCache.store(fingerprint.digest, cachedSolution);
+        }
+
+        // Reused solutions go last, so that they are not overwritten by values an underlying
+        // solver assigned to slots outside of its own component.
+        List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> allResults = new ArrayList<>(inferenceResults);
+        allResults.add(new Pair<>(reusedSolutions, new HashSet<>()));
+        return super.mergeInferenceResults(allResults);
+    }
+}
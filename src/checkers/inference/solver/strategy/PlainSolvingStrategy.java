@@ -24,7 +24,7 @@ public class PlainSolvingStrategy extends AbstractSolvingStrategy{
     public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
                                  Collection<Constraint> constraints, Lattice lattice) {
 
-        Solver<?> underlyingSolver = solverFactory.createSolver(solverEnvironment, slots, constraints, lattice);
+        Solver<?> underlyingSolver = createSolver(solverEnvironment, slots, constraints, lattice);
 
         Map<Integer, AnnotationMirror> solutions = underlyingSolver.solve();
 
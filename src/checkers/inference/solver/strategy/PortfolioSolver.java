@@ -0,0 +1,164 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.model.Constraint;
+import checkers.inference.solver.backend.FormatTranslator;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * PortfolioSolver races several underlying solvers on the same constraints.
+ *
+ * All candidates are started at the same time. The first one that finishes with a verdict,
+ * i.e. a solution, or null together with {@link Solver#isUnsatisfiable()}, wins, and all other
+ * candidates are cancelled: their threads are interrupted, which kills external solver
+ * processes, and {@link Solver#interrupt()} is called to stop in-process searches. A candidate
+ * that fails with an exception, or returns null without proving the constraints unsatisfiable,
+ * is ignored as long as another candidate can still answer. If no candidate gives a verdict, the
+ * first inconclusive null result is taken, as the candidate would have returned it alone.
+ *
+ * Each candidate records its statistics to a {@link Statistics.Buffer}, and only the statistics
+ * of the winner are kept. The name of the winning solver is recorded in {@link Statistics} under
+ * {@code portfolio_wins_<solver name>}.
+ *
+ * @see PortfolioSolvingStrategy
+ */
+public class PortfolioSolver extends Solver<FormatTranslator<?, ?, ?>> {
+
+    private final List<Solver<?>> candidates;
+    private final List<String> candidateNames;
+    private final ExecutorService executor;
+
+    /**
+     * The candidate whose verdict was taken, or null before {@link #solve()} returned.
+     */
+    private Solver<?> winner;
+
+    /**
+     * @param candidates the solvers to race, all created for the given constraints
+     * @param candidateNames names of the candidates, used for statistics
+     * @param executor the executor to run the candidates on. It must be able to run all
+     * candidates at the same time.
+     */
+    public PortfolioSolver(SolverEnvironment solverEnvironment, Collection<Constraint> constraints,
+            Lattice lattice, List<Solver<?>> candidates, List<String> candidateNames, ExecutorService executor) {
+        super(solverEnvironment, new ArrayList<>(), constraints, null, lattice);
+        if (candidates.isEmpty() || candidates.size() != candidateNames.size()) {
+            throw new BugInCF("Portfolio needs at least one solver, and one name for each solver.");
+        }
+        this.candidates = candidates;
+        this.candidateNames = candidateNames;
+        this.executor = executor;
+    }
+
+    @Override
+    public Map<Integer, AnnotationMirror> solve() {
+        if (candidates.size() == 1) {
+            winner = candidates.get(0);
+            return winner.solve();
+        }
+
+        CompletionService<Map<Integer, AnnotationMirror>> completionService =
+                new ExecutorCompletionService<>(executor);
+        Map<Future<Map<Integer, AnnotationMirror>>, Integer> futures = new HashMap<>();
+        List<Statistics.Buffer> buffers = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            final Solver<?> candidate = candidates.get(i);
+            final Statistics.Buffer buffer = new Statistics.Buffer();
+            buffers.add(buffer);
+            futures.put(completionService.submit(() -> Statistics.recordTo(buffer, candidate::solve)), i);
+        }
+
+        Throwable firstFailure = null;
+        int firstInconclusive = -1;
+        try {
+            for (int remaining = candidates.size(); remaining > 0; remaining--) {
+                Future<Map<Integer, AnnotationMirror>> done = completionService.take();
+                int index = futures.get(done);
+                try {
+                    Map<Integer, AnnotationMirror> solution = done.get();
+                    if (solution != null || candidates.get(index).isUnsatisfiable()) {
+                        return win(index, buffers.get(index), solution);
+                    }
+                    InferenceMain.getInstance().logger.warning("Portfolio solver " + candidateNames.get(index)
+                            + " returned no solution without proving the constraints unsatisfiable.");
+                    if (firstInconclusive == -1) {
+                        firstInconclusive = index;
+                    }
+                } catch (ExecutionException e) {
+                    InferenceMain.getInstance().logger.warning("Portfolio solver "
+                            + candidateNames.get(index) + " failed: " + e.getCause());
+                    if (firstFailure == null) {
+                        firstFailure = e.getCause();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BugInCF("Portfolio solving was interrupted.", e);
+        } finally {
+            for (Map.Entry<Future<Map<Integer, AnnotationMirror>>, Integer> entry : futures.entrySet()) {
+                Solver<?> candidate = candidates.get(entry.getValue());
+                if (candidate != winner && !entry.getKey().isDone()) {
+                    entry.getKey().cancel(true);
+                    candidate.interrupt();
+                }
+            }
+        }
+
+        if (firstInconclusive != -1) {
+            return win(firstInconclusive, buffers.get(firstInconclusive), null);
+        }
+        throw new BugInCF("All solvers of the portfolio failed.", firstFailure);
+    }
+
+    /**
+     * Takes the result of the candidate at the given index, and keeps its statistics.
+     */
+    private Map<Integer, AnnotationMirror> win(int index, Statistics.Buffer buffer,
+            Map<Integer, AnnotationMirror> solution) {
+        winner = candidates.get(index);
+        buffer.commit();
+        Statistics.addOrIncrementEntry("portfolio_wins_" + candidateNames.get(index), 1);
+        return solution;
+    }
+
+    @Override
+    public Collection<Constraint> explainUnsatisfiable() {
+        return winner.explainUnsatisfiable();
+    }
+
+    @Override
+    public boolean isUnsatisfiable() {
+        return winner != null && winner.isUnsatisfiable();
+    }
+
+    @Override
+    public void interrupt() {
+        for (Solver<?> candidate : candidates) {
+            candidate.interrupt();
+        }
+    }
+
+    @Override
+    protected void encodeAllConstraints() {
+        // Each candidate encodes the constraints itself.
+    }
+}
@@ -0,0 +1,135 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.checkerframework.javacutil.UserError;
+
+import checkers.inference.InferenceResult;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.SolverEngine;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.backend.maxsat.MaxSatSolverFactory;
+import checkers.inference.solver.constraintgraph.ConstraintGraph;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.NameUtils;
+import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverEnvironment;
+
+/**
+ * PortfolioSolvingStrategy is a {@link GraphSolvingStrategy} that races several backends on
+ * every component of the constraint graph, and takes the verdict of whichever finishes first.
+ *
+ * The portfolio consists of the solver given by the {@code solver} argument, plus the solvers
+ * listed in the {@code portfolioSolvers} argument, separated by {@value #SOLVER_SEPARATOR}, e.g.
+ * {@code portfolioSolvers=MaxSat+Lingeling}. Each name is resolved like the {@code solver}
+ * argument, see {@link SolverEngine#loadSolverFactory(String)}. If {@code portfolioSolvers} is
+ * not given, MaxSat is added to the portfolio.
+ *
+ * @see PortfolioSolver
+ */
+public class PortfolioSolvingStrategy extends GraphSolvingStrategy {
+
+    enum PortfolioSolvingStrategyArg implements SolverArg {
+        /**
+         * Names of the additional solvers to race, separated by {@value #SOLVER_SEPARATOR}.
+         */
+        portfolioSolvers;
+    }
+
+    /**
+     * Separates solver names in the {@code portfolioSolvers} argument. A comma cannot be used,
+     * since it already separates the solver arguments.
+     */
+    public static final String SOLVER_SEPARATOR = "+";
+
+    private final List<SolverFactory> solverFactories = new ArrayList<>();
+
+    private ExecutorService executor;
+
+    public PortfolioSolvingStrategy(SolverFactory solverFactory) {
+        super(solverFactory);
+    }
+
+    @Override
+    public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
+                                 Collection<Constraint> constraints, Lattice lattice) {
+        solverFactories.clear();
+        solverFactories.add(solverFactory);
+        solverFactories.addAll(createPortfolioFactories(solverEnvironment));
+
+        // Every component solved at the same time needs one thread per backend. Candidates of
+        // the next component wait in the queue while losing backends react to being cancelled.
+        final AtomicInteger threadCount = new AtomicInteger();
+        int threads = solverFactories.size() * Math.max(1, getParallelism(solverEnvironment));
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-solver-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            return super.solve(solverEnvironment, slots, constraints, lattice);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the factories of the solvers raced against the solver given by the {@code solver}
+     * argument. Sub-class may override this method to use solver factories that don't follow
+     * the naming convention.
+     */
+    protected List<SolverFactory> createPortfolioFactories(SolverEnvironment solverEnvironment) {
+        String solverNames = solverEnvironment.getArg(PortfolioSolvingStrategyArg.portfolioSolvers);
+        List<SolverFactory> factories = new ArrayList<>();
+
+        if (solverNames == null) {
+            if (!(solverFactory instanceof MaxSatSolverFactory)) {
+                factories.add(new MaxSatSolverFactory());
+            }
+            return factories;
+        }
+
+        for (String solverName : solverNames.split("\\" + SOLVER_SEPARATOR)) {
+            solverName = solverName.trim();
+            if (solverName.isEmpty()) {
+                throw new UserError("Empty solver name in portfolioSolvers: " + solverNames);
+            }
+            factories.add(SolverEngine.loadSolverFactory(solverName));
+        }
+        return factories;
+    }
+
+    @Override
+    protected List<Solver<?>> separateGraph(SolverEnvironment solverEnvironment, ConstraintGraph constraintGraph,
+            Collection<Slot> slots, Collection<Constraint> constraints, Lattice lattice) {
+        List<Solver<?>> separatedGraphSolvers = new ArrayList<>();
+
+        for (Set<Constraint> independentConstraints : constraintGraph.getIndependentPath()) {
+            List<Solver<?>> candidates = new ArrayList<>();
+            List<String> candidateNames = new ArrayList<>();
+            for (SolverFactory factory : solverFactories) {
+                Solver<?> candidate = factory.createSolver(solverEnvironment, slots, independentConstraints, lattice);
+                candidates.add(candidate);
+                candidateNames.add(getSolverName(candidate));
+            }
+            separatedGraphSolvers.add(boundByTimeBudget(solverEnvironment, new PortfolioSolver(solverEnvironment,
+                    independentConstraints, lattice, candidates, candidateNames, executor), lattice));
+        }
+
+        return separatedGraphSolvers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String getSolverName(Solver<?> solver) {
+        return NameUtils.getSolverName((Class<? extends Solver<?>>) solver.getClass());
+    }
+}
@@ -0,0 +1,142 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.DefaultInferenceResult;
+import checkers.inference.InferenceResult;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.backend.SolverFactory;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+
+/**
+ * PropagationSolvingStrategy solves the constraints of two qualifier type systems by unit
+ * propagation, see {@link TwoQualifierPropagator}, and only hands the rest to the underlying
+ * solver:
+ *
+ * 1. Split the constraints into components connected by shared variables.
+ * 2. Solve each component by propagation.
+ * 3. Solve each component propagation cannot decide, e.g. because it has constraints other than
+ *    subtype, equality, inequality, comparable and preference constraints, with the underlying
+ *    solver.
+ * 4. Merge the solutions of all components.
+ *
+ * For lattices with more than two qualifiers, all constraints are solved by the underlying
+ * solver, as by {@link PlainSolvingStrategy}.
+ */
+public class PropagationSolvingStrategy extends AbstractSolvingStrategy {
+
+    public PropagationSolvingStrategy(SolverFactory solverFactory) {
+        super(solverFactory);
+    }
+
+    @Override
+    public InferenceResult solve(SolverEnvironment solverEnvironment, Collection<Slot> slots,
+                                 Collection<Constraint> constraints, Lattice lattice) {
+        if (lattice.numTypes != 2) {
+            return new PlainSolvingStrategy(solverFactory).solve(solverEnvironment, slots, constraints, lattice);
+        }
+
+        long start = System.currentTimeMillis();
+        Map<Integer, AnnotationMirror> solutions = new HashMap<>();
+        List<Collection<Constraint>> undecided = new ArrayList<>();
+        int decided = 0;
+
+        for (Collection<Constraint> component : splitComponents(constraints)) {
+            TwoQualifierPropagator propagator = new TwoQualifierPropagator(component, lattice.top, lattice.bottom);
+            switch (propagator.solve()) {
+                case SOLVED:
+                    solutions.putAll(propagator.getSolutions());
+                    decided++;
+                    break;
+                case UNSATISFIABLE:
+                    Statistics.addOrIncrementEntry("propagation_time(ms)", System.currentTimeMillis() - start);
+                    return new DefaultInferenceResult(propagator.getUnsatisfiableConstraints());
+                default:
+                    undecided.add(component);
+            }
+        }
+        Statistics.addOrIncrementEntry("propagation_time(ms)", System.currentTimeMillis() - start);
+        Statistics.addOrIncrementEntry("propagation_solved_components", decided);
+        Statistics.addOrIncrementEntry("propagation_fallback_components", undecided.size());
+
+        for (Collection<Constraint> component : undecided) {
+            Solver<?> underlyingSolver = createSolver(solverEnvironment, slots, component, lattice);
+            Map<Integer, AnnotationMirror> componentSolutions = underlyingSolver.solve();
+            if (componentSolutions == null) {
+                return new DefaultInferenceResult(underlyingSolver.explainUnsatisfiable());
+            }
+            solutions.putAll(componentSolutions);
+        }
+
+        return new DefaultInferenceResult(solutions);
+    }
+
+    /**
+     * Splits the constraints into components of constraints connected by shared variables,
+     * using union-find over slot ids. Constants do not connect constraints.
+     */
+    private static Collection<Collection<Constraint>> splitComponents(Collection<Constraint> constraints) {
+        Map<Integer, Integer> parent = new HashMap<>();
+        for (Constraint constraint : constraints) {
+            int first = -1;
+            for (Slot slot : constraint.getSlots()) {
+                if (slot instanceof VariableSlot) {
+                    int root = find(parent, slot.getId());
+                    if (first == -1) {
+                        first = root;
+                    } else if (root != first) {
+                        parent.put(root, first);
+                    }
+                }
+            }
+        }
+
+        Map<Integer, Collection<Constraint>> components = new LinkedHashMap<>();
+        List<Constraint> constantOnly = new ArrayList<>();
+        for (Constraint constraint : constraints) {
+            Integer root = null;
+            for (Slot slot : constraint.getSlots()) {
+                if (slot instanceof VariableSlot) {
+                    root = find(parent, slot.getId());
+                    break;
+                }
+            }
+            if (root == null) {
+                constantOnly.add(constraint);
+            } else {
+                components.computeIfAbsent(root, key -> new ArrayList<>()).add(constraint);
+            }
+        }
+
+        List<Collection<Constraint>> result = new ArrayList<>(components.values());
+        if (!constantOnly.isEmpty()) {
+            result.add(constantOnly);
+        }
+        return result;
+    }
+
+    private static int find(Map<Integer, Integer> parent, int id) {
+        int root = id;
+        Integer next;
+        while ((next = parent.get(root)) != null) {
+            root = next;
+        }
+        while ((next = parent.get(id)) != null && next != root) {
+            parent.put(id, root);
+            id = next;
+        }
+        return root;
+    }
+}
@@ -0,0 +1,198 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.model.Constraint;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.util.Statistics;
+import com.sun.tools.javac.util.Pair;
+
+/**
+ * SubGraphScheduler runs the underlying solvers of separated sub-graphs on a work-stealing
+ * {@link ForkJoinPool}.
+ *
+ * Sub-graphs are scheduled largest-first by their number of constraints, so that a giant
+ * component starts as early as possible instead of leaving the other cores idle at the end.
+ * Sub-graphs with at most {@link #smallComponentSize} constraints are grouped into batches of
+ * roughly {@link #batchSize} constraints, and each batch is solved by a single task.
+ *
+ * The statistics of each sub-graph are recorded once all sub-graphs are solved, in the order of
+ * the given solvers. If a sub-graph fails, the others are stopped and the solve fails, rather
+ * than returning the solutions of the remaining sub-graphs.
+ *
+ * Subclasses of {@link GraphSolvingStrategy} may plug in their own scheduler by overriding
+ * {@link GraphSolvingStrategy#createScheduler(checkers.inference.solver.util.SolverEnvironment)}.
+ */
+public class SubGraphScheduler {
+
+    /**
+     * Number of worker threads of the pool.
+     */
+    protected final int parallelism;
+
+    /**
+     * Sub-graphs with no more constraints than this value are batched together.
+     */
+    protected final int smallComponentSize;
+
+    /**
+     * The total number of constraints a batch of small sub-graphs is filled up to.
+     */
+    protected final int batchSize;
+
+    public SubGraphScheduler(int parallelism, int smallComponentSize, int batchSize) {
+        this.parallelism = Math.max(1, parallelism);
+        this.smallComponentSize = smallComponentSize;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Solves all given underlying solvers on the pool.
+     *
+     * @param underlyingSolvers solvers of the separated sub-graphs
+     * @return a list of pairs of solution and unsatisfiable constraints, in the same order as
+     * the given solvers
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws ExecutionException if solving a sub-graph failed, with the failure as its cause
+     */
+    public List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> solve(List<Solver<?>> underlyingSolvers)
+            throws InterruptedException, ExecutionException {
+
+        final int size = underlyingSolvers.size();
+        final AtomicReferenceArray<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> results =
+                new AtomicReferenceArray<>(size);
+        final AtomicLongArray queueWaits = new AtomicLongArray(size);
+        final AtomicLongArray wallTimes = new AtomicLongArray(size);
+
+        List<List<Integer>> tasks = partition(underlyingSolvers);
+        Statistics.addOrIncrementEntry("graph_solving_tasks", tasks.size());
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<ForkJoinTask<?>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (final List<Integer> task : tasks) {
+                final long submitted = System.currentTimeMillis();
+                futures.add(pool.submit(() -> {
+                    for (Integer index : task) {
+                        long start = System.currentTimeMillis();
+                        queueWaits.set(index, start - submitted);
+                        results.set(index, solveComponent(index, underlyingSolvers.get(index)));
+                        wallTimes.set(index, System.currentTimeMillis() - start);
+                    }
+                }));
+            }
+
+            for (ForkJoinTask<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            // Stops the other components if one of them failed.
+            pool.shutdownNow();
+        }
+
+        List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> resultList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            resultList.add(results.get(i));
+            recordComponentStatistics(i, underlyingSolvers.get(i), queueWaits.get(i), wallTimes.get(i));
+        }
+        return resultList;
+    }
+
+    /**
+     * Solves one sub-graph. If the underlying solver throws, the failure is logged and counted
+     * as {@code failed_components} in {@link Statistics}, and rethrown to fail the whole solve.
+     *
+     * @param component the index of the sub-graph among all sub-graphs
+     * @param underlyingSolver the solver of the sub-graph
+     */
+    protected Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>> solveComponent(int component,
+            Solver<?> underlyingSolver) {
+        try {
+            Map<Integer, AnnotationMirror> solution = underlyingSolver.solve();
+            if (solution != null) {
+                return new Pair<>(solution, new HashSet<>());
+            }
+            return new Pair<>(solution, underlyingSolver.explainUnsatisfiable());
+        } catch (RuntimeException e) {
+            Statistics.addOrIncrementEntry("failed_components", 1);
+            InferenceMain.getInstance().logger.log(Level.SEVERE, "Solving component " + component + " with "
+                    + underlyingSolver.getConstraints().size() + " constraints failed.", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Records the size, queue wait and wall time of one sub-graph under
+     * {@code component_<n>_constraints}, {@code component_<n>_queue_wait(ms)} and
+     * {@code component_<n>_solving_time(ms)}, and adds them to the totals and maxima over all
+     * sub-graphs. The queue wait of a sub-graph in a batch includes the solving time of the
+     * sub-graphs before it in the batch.
+     */
+    protected void recordComponentStatistics(int component, Solver<?> underlyingSolver, long queueWait,
+            long wallTime) {
+        Statistics.addOrIncrementEntry("component_" + component + "_constraints",
+                underlyingSolver.getConstraints().size());
+        Statistics.addOrIncrementEntry("component_" + component + "_queue_wait(ms)", queueWait);
+        Statistics.addOrIncrementEntry("component_" + component + "_solving_time(ms)", wallTime);
+
+        Statistics.addOrIncrementEntry("component_queue_wait_total(ms)", queueWait);
+        Statistics.addOrMaxEntry("component_queue_wait_max(ms)", queueWait);
+        Statistics.addOrIncrementEntry("component_solving_time_total(ms)", wallTime);
+        Statistics.addOrMaxEntry("component_solving_time_max(ms)", wallTime);
+    }
+
+    /**
+     * Orders the solvers largest-first and groups small ones into batches.
+     *
+     * @return a list of tasks, each task is a list of indices into the given solvers
+     */
+    protected List<List<Integer>> partition(List<Solver<?>> underlyingSolvers) {
+        List<Integer> order = new ArrayList<>(underlyingSolvers.size());
+        for (int i = 0; i < underlyingSolvers.size(); i++) {
+            order.add(i);
+        }
+        order.sort((i1, i2) -> Integer.compare(
+                underlyingSolvers.get(i2).getConstraints().size(),
+                underlyingSolvers.get(i1).getConstraints().size()));
+
+        List<List<Integer>> tasks = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        int batchConstraints = 0;
+
+        for (Integer index : order) {
+            int componentSize = underlyingSolvers.get(index).getConstraints().size();
+            if (componentSize > smallComponentSize) {
+                List<Integer> single = new ArrayList<>(1);
+                single.add(index);
+                tasks.add(single);
+                continue;
+            }
+
+            batch.add(index);
+            batchConstraints += componentSize;
+            if (batchConstraints >= batchSize) {
+                tasks.add(batch);
+                batch = new ArrayList<>();
+                batchConstraints = 0;
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            tasks.add(batch);
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,155 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.model.Constraint;
+import checkers.inference.solver.backend.FormatTranslator;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.frontend.Lattice;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
+import checkers.inference.solver.util.TimeBudget;
+
+/**
+ * TimeBoundedSolver runs an underlying solver with a share of a {@link TimeBudget}.
+ *
+ * The underlying solver runs on the calling thread. When its share of the budget is used up,
+ * the solver is stopped like a losing candidate of a {@link PortfolioSolver}: the solving
+ * thread is interrupted, which kills external solver processes, and {@link Solver#interrupt()}
+ * stops in-process searches. Instead of its result, every variable of the component is then
+ * assigned the given default annotation, usually the top of the type hierarchy.
+ *
+ * Each timed out component is reported in {@link Statistics}, under
+ * {@code timed_out_components} and {@code timed_out_component_<n>_constraints} with its number
+ * of constraints, and in the log with its variables.
+ */
+public class TimeBoundedSolver extends Solver<FormatTranslator<?, ?, ?>> {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "solver-time-budget");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int TIMED_OUT = 2;
+
+    private final Solver<?> underlyingSolver;
+    private final TimeBudget timeBudget;
+    private final int parallelism;
+    private final AnnotationMirror defaultAnnotation;
+
+    /**
+     * Guarded by this.
+     */
+    private int state = RUNNING;
+
+    /**
+     * @param underlyingSolver the solver of the component
+     * @param parallelism the number of components solved at the same time as this one
+     * @param defaultAnnotation the annotation of every variable if the component times out
+     */
+    public TimeBoundedSolver(SolverEnvironment solverEnvironment, Lattice lattice, Solver<?> underlyingSolver,
+            TimeBudget timeBudget, int parallelism, AnnotationMirror defaultAnnotation) {
+        super(solverEnvironment, new ArrayList<>(), underlyingSolver.getConstraints(), null, lattice);
+        this.underlyingSolver = underlyingSolver;
+        this.timeBudget = timeBudget;
+        this.parallelism = parallelism;
+        this.defaultAnnotation = defaultAnnotation;
+        timeBudget.register(constraints.size());
+    }
+
+    @Override
+    public Map<Integer, AnnotationMirror> solve() {
+        long share = timeBudget.allocate(constraints.size(), parallelism);
+        final Thread solvingThread = Thread.currentThread();
+        ScheduledFuture<?> timer = TIMER.schedule(() -> timeOut(solvingThread), share, TimeUnit.MILLISECONDS);
+
+        Map<Integer, AnnotationMirror> solution = null;
+        RuntimeException failure = null;
+        try {
+            solution = underlyingSolver.solve();
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            timer.cancel(false);
+        }
+
+        synchronized (this) {
+            if (state == RUNNING) {
+                state = DONE;
+                if (failure != null) {
+                    throw failure;
+                }
+                return solution;
+            }
+            // Clear the interrupt of timeOut, which has completed as it holds the same lock.
+            Thread.interrupted();
+        }
+        return fallback(share);
+    }
+
+    private synchronized void timeOut(Thread solvingThread) {
+        if (state == RUNNING) {
+            state = TIMED_OUT;
+            underlyingSolver.interrupt();
+            solvingThread.interrupt();
+        }
+    }
+
+    private Map<Integer, AnnotationMirror> fallback(long share) {
+        for (Constraint constraint : constraints) {
+            collectVarSlots(constraint);
+        }
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        for (Integer varSlotId : varSlotIds) {
+            solution.put(varSlotId, defaultAnnotation);
+        }
+
+        int component = timeBudget.recordTimeOut();
+        Statistics.addOrIncrementEntry("timed_out_components", 1);
+        Statistics.addOrIncrementEntry("timed_out_component_" + component + "_constraints", constraints.size());
+        InferenceMain.getInstance().logger.warning("Component with " + constraints.size()
+                + " constraints timed out after " + share + " ms, defaulting its variables to "
+                + defaultAnnotation + ": " + varSlotIds);
+        return solution;
+    }
+
+    /**
+     * Returns whether the last {@link #solve()} timed out and returned the default solution.
+     */
+    public synchronized boolean hasTimedOut() {
+        return state == TIMED_OUT;
+    }
+
+    @Override
+    public Collection<Constraint> explainUnsatisfiable() {
+        return underlyingSolver.explainUnsatisfiable();
+    }
+
+    @Override
+    public synchronized boolean isUnsatisfiable() {
+        return state == DONE && underlyingSolver.isUnsatisfiable();
+    }
+
+    @Override
+    public void interrupt() {
+        underlyingSolver.interrupt();
+    }
+
+    @Override
+    protected void encodeAllConstraints() {
+        // The underlying solver encodes the constraints itself.
+    }
+}
@@ -0,0 +1,409 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * TwoQualifierPropagator solves the constraints of a two qualifier type system by unit
+ * propagation, without a SAT solver.
+ *
+ * With only top and bottom, each variable is a boolean, and subtype, equality and inequality
+ * constraints are implications between two literals (e.g. {@code a <: b} is
+ * {@code top(a) -> top(b)} and {@code bottom(b) -> bottom(a)}), i.e. a 2-SAT problem. The
+ * implications are stored as int adjacency arrays indexed by literal, and propagated with an
+ * array worklist (the assignment trail):
+ * <ol>
+ * <li>Literals forced by constraints against constants are propagated. A conflict means the
+ * constraints are unsatisfiable.</li>
+ * <li>Preferences are tried in order of decreasing weight, then remaining variables are set to
+ * top. If propagating a choice conflicts, it is undone and its opposite is propagated, which for
+ * 2-SAT is forced. If both conflict, the constraints are unsatisfiable.</li>
+ * </ol>
+ * Without inequalities propagation never conflicts after step 1, so solving takes time linear in
+ * the number of constraints.
+ *
+ * The result is exact for the hard constraints. It is optimal for the preferences if every
+ * preference is satisfied or only violated by step 1; otherwise a better trade-off between
+ * preferences may exist, and {@link #solve()} reports the constraints as undecided. Constraints
+ * of other kinds also make the constraints undecided.
+ */
+class TwoQualifierPropagator {
+
+    /** Outcome of {@link #solve()}. */
+    enum Outcome {
+        SOLVED,
+        UNSATISFIABLE,
+        UNDECIDED
+    }
+
+    private static final int UNASSIGNED = -1;
+    /** Reason of a literal set by a decision instead of a constraint. */
+    private static final int DECISION = -1;
+
+    private final List<Constraint> constraints;
+    private final AnnotationMirror top;
+    private final AnnotationMirror bottom;
+
+    /** Maps slot ids to dense variable indices. */
+    private final Map<Integer, Integer> variableIndices = new HashMap<>();
+    private final List<Slot> variables = new ArrayList<>();
+
+    /**
+     * Implications in compressed sparse row form: the implications of literal {@code l} are at
+     * {@code [edgeStart[l], edgeStart[l + 1])} of edgeTarget and edgeReason. Literal
+     * {@code 2 * v} is "variable v is top", literal {@code 2 * v + 1} "variable v is bottom".
+     */
+    private int[] edgeStart;
+    private int[] edgeTarget;
+    private int[] edgeReason;
+
+    /** Unit literals and the index of the constraint forcing each of them. */
+    private final List<int[]> units = new ArrayList<>();
+    /** Indices of the preference constraints. */
+    private final List<Integer> preferences = new ArrayList<>();
+
+    /** The true literal of each variable, or UNASSIGNED. */
+    private int[] assignment;
+    /** Index of the constraint that set each variable, or DECISION. */
+    private int[] reason;
+    /** The variable whose literal implied each variable, or -1. */
+    private int[] source;
+    /** Assigned variables in assignment order; its tail is the propagation worklist. */
+    private int[] trail;
+    private int trailSize;
+
+    private int conflictVariable;
+    private int conflictOtherVariable;
+    private int conflictReason;
+
+    private Collection<Constraint> unsatisfiableConstraints;
+
+    TwoQualifierPropagator(Collection<Constraint> constraints, AnnotationMirror top, AnnotationMirror bottom) {
+        this.constraints = new ArrayList<>(constraints);
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    /**
+     * Returns whether the given constraint is one this class can solve.
+     */
+    static boolean isSupported(Constraint constraint) {
+        return constraint instanceof SubtypeConstraint
+                || constraint instanceof EqualityConstraint
+                || constraint instanceof InequalityConstraint
+                || constraint instanceof ComparableConstraint
+                || constraint instanceof PreferenceConstraint;
+    }
+
+    Outcome solve() {
+        for (Constraint constraint : constraints) {
+            if (!isSupported(constraint)) {
+                return Outcome.UNDECIDED;
+            }
+        }
+        if (!encode()) {
+            return Outcome.UNSATISFIABLE;
+        }
+
+        for (int[] unit : units) {
+            if (!assignAndPropagate(unit[0], unit[1], -1)) {
+                unsatisfiableConstraints = explainConflict();
+                return Outcome.UNSATISFIABLE;
+            }
+        }
+
+        // Preferences by decreasing weight; the sort is stable, so ties keep constraint order.
+        preferences.sort((first, second) -> Integer.compare(
+                ((PreferenceConstraint) constraints.get(second)).getWeight(),
+                ((PreferenceConstraint) constraints.get(first)).getWeight()));
+        int forcedTrailSize = trailSize;
+        boolean[] forced = new boolean[variables.size()];
+        for (int i = 0; i < forcedTrailSize; i++) {
+            forced[trail[i]] = true;
+        }
+        for (int preferenceIndex : preferences) {
+            PreferenceConstraint preference = (PreferenceConstraint) constraints.get(preferenceIndex);
+            int variable = variableIndices.get(preference.getVariable().getId());
+            int preferred = literal(variable, preference.getGoal().getValue());
+            if (assignment[variable] == UNASSIGNED) {
+                if (!decide(preferred)) {
+                    return Outcome.UNSATISFIABLE;
+                }
+            }
+            if (assignment[variable] != preferred && !forced[variable]) {
+                // An earlier preference, not the hard constraints, decided against this one.
+                return Outcome.UNDECIDED;
+            }
+        }
+
+        for (int variable = 0; variable < variables.size(); variable++) {
+            if (assignment[variable] == UNASSIGNED && !decide(2 * variable)) {
+                return Outcome.UNSATISFIABLE;
+            }
+        }
+        return Outcome.SOLVED;
+    }
+
+    /**
+     * Returns the value of every variable of the constraints, after {@link #solve()} returned
+     * {@link Outcome#SOLVED}.
+     */
+    Map<Integer, AnnotationMirror> getSolutions() {
+        Map<Integer, AnnotationMirror> solutions = new HashMap<>();
+        for (int variable = 0; variable < variables.size(); variable++) {
+            solutions.put(variables.get(variable).getId(), assignment[variable] % 2 == 0 ? top : bottom);
+        }
+        return solutions;
+    }
+
+    /**
+     * Returns the constraints that conflict, after {@link #solve()} returned
+     * {@link Outcome#UNSATISFIABLE}.
+     */
+    Collection<Constraint> getUnsatisfiableConstraints() {
+        return unsatisfiableConstraints;
+    }
+
+    /**
+     * Builds the implication arrays and unit literals.
+     *
+     * @return false if a constraint between constants does not hold
+     */
+    private boolean encode() {
+        List<int[]> edges = new ArrayList<>();
+        for (int index = 0; index < constraints.size(); index++) {
+            Constraint constraint = constraints.get(index);
+            if (constraint instanceof PreferenceConstraint) {
+                variableIndex(((PreferenceConstraint) constraint).getVariable());
+                preferences.add(index);
+                continue;
+            }
+            if (constraint instanceof ComparableConstraint) {
+                // Top and bottom are always comparable.
+                continue;
+            }
+
+            Slot first;
+            Slot second;
+            if (constraint instanceof SubtypeConstraint) {
+                first = ((SubtypeConstraint) constraint).getSubtype();
+                second = ((SubtypeConstraint) constraint).getSupertype();
+            } else if (constraint instanceof EqualityConstraint) {
+                first = ((EqualityConstraint) constraint).getFirst();
+                second = ((EqualityConstraint) constraint).getSecond();
+            } else {
+                first = ((InequalityConstraint) constraint).getFirst();
+                second = ((InequalityConstraint) constraint).getSecond();
+            }
+
+            if (first instanceof ConstantSlot && second instanceof ConstantSlot) {
+                if (!holds(constraint, isTop(first), isTop(second))) {
+                    unsatisfiableConstraints = new LinkedHashSet<>(Arrays.asList(constraint));
+                    return false;
+                }
+            } else if (first instanceof ConstantSlot || second instanceof ConstantSlot) {
+                boolean constantIsFirst = first instanceof ConstantSlot;
+                int variable = variableIndex(constantIsFirst ? second : first);
+                boolean constantValue = isTop(constantIsFirst ? first : second);
+                boolean topHolds = constantIsFirst ? holds(constraint, constantValue, true)
+                        : holds(constraint, true, constantValue);
+                boolean bottomHolds = constantIsFirst ? holds(constraint, constantValue, false)
+                        : holds(constraint, false, constantValue);
+                if (!topHolds && !bottomHolds) {
+                    unsatisfiableConstraints = new LinkedHashSet<>(Arrays.asList(constraint));
+                    return false;
+                } else if (!bottomHolds) {
+                    units.add(new int[] {2 * variable, index});
+                } else if (!topHolds) {
+                    units.add(new int[] {2 * variable + 1, index});
+                }
+            } else {
+                int a = variableIndex(first);
+                int b = variableIndex(second);
+                if (constraint instanceof SubtypeConstraint) {
+                    edges.add(new int[] {2 * a, 2 * b, index});
+                    edges.add(new int[] {2 * b + 1, 2 * a + 1, index});
+                } else if (constraint instanceof EqualityConstraint) {
+                    edges.add(new int[] {2 * a, 2 * b, index});
+                    edges.add(new int[] {2 * b, 2 * a, index});
+                    edges.add(new int[] {2 * a + 1, 2 * b + 1, index});
+                    edges.add(new int[] {2 * b + 1, 2 * a + 1, index});
+                } else {
+                    edges.add(new int[] {2 * a, 2 * b + 1, index});
+                    edges.add(new int[] {2 * b, 2 * a + 1, index});
+                    edges.add(new int[] {2 * a + 1, 2 * b, index});
+                    edges.add(new int[] {2 * b + 1, 2 * a, index});
+                }
+            }
+        }
+
+        int literals = 2 * variables.size();
+        edgeStart = new int[literals + 1];
+        for (int[] edge : edges) {
+            edgeStart[edge[0] + 1]++;
+        }
+        for (int i = 0; i < literals; i++) {
+            edgeStart[i + 1] += edgeStart[i];
+        }
+        edgeTarget = new int[edges.size()];
+        edgeReason = new int[edges.size()];
+        int[] fill = Arrays.copyOf(edgeStart, literals);
+        for (int[] edge : edges) {
+            int position = fill[edge[0]]++;
+            edgeTarget[position] = edge[1];
+            edgeReason[position] = edge[2];
+        }
+
+        assignment = new int[variables.size()];
+        Arrays.fill(assignment, UNASSIGNED);
+        reason = new int[variables.size()];
+        source = new int[variables.size()];
+        trail = new int[variables.size()];
+        trailSize = 0;
+        return true;
+    }
+
+    private int variableIndex(Slot slot) {
+        Integer index = variableIndices.get(slot.getId());
+        if (index == null) {
+            index = variables.size();
+            variableIndices.put(slot.getId(), index);
+            variables.add(slot);
+        }
+        return index;
+    }
+
+    private boolean isTop(Slot constant) {
+        return AnnotationUtils.areSame(((ConstantSlot) constant).getValue(), top);
+    }
+
+    private int literal(int variable, AnnotationMirror value) {
+        return AnnotationUtils.areSame(value, top) ? 2 * variable : 2 * variable + 1;
+    }
+
+    private static boolean holds(Constraint constraint, boolean firstIsTop, boolean secondIsTop) {
+        if (constraint instanceof SubtypeConstraint) {
+            return !firstIsTop || secondIsTop;
+        } else if (constraint instanceof EqualityConstraint) {
+            return firstIsTop == secondIsTop;
+        } else {
+            return firstIsTop != secondIsTop;
+        }
+    }
+
+    /**
+     * Sets the given literal, or if that conflicts, its opposite.
+     *
+     * @return false if both conflict
+     */
+    private boolean decide(int literal) {
+        int mark = trailSize;
+        if (assignAndPropagate(literal, DECISION, -1)) {
+            return true;
+        }
+        Set<Constraint> explanation = new LinkedHashSet<>(explainConflict());
+        undo(mark);
+        if (assignAndPropagate(literal ^ 1, DECISION, -1)) {
+            return true;
+        }
+        explanation.addAll(explainConflict());
+        unsatisfiableConstraints = explanation;
+        return false;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            assignment[trail[--trailSize]] = UNASSIGNED;
+        }
+    }
+
+    /**
+     * Sets the given literal and everything it implies.
+     *
+     * @return false on a conflict, which is recorded for {@link #explainConflict()}
+     */
+    private boolean assignAndPropagate(int literal, int why, int from) {
+        int variable = literal >> 1;
+        if (assignment[variable] != UNASSIGNED) {
+            if (assignment[variable] == literal) {
+                return true;
+            }
+            recordConflict(variable, from, why);
+            return false;
+        }
+        assign(literal, why, from);
+
+        for (int next = trailSize - 1; next < trailSize; next++) {
+            int current = trail[next];
+            int currentLiteral = assignment[current];
+            for (int edge = edgeStart[currentLiteral]; edge < edgeStart[currentLiteral + 1]; edge++) {
+                int target = edgeTarget[edge];
+                int targetVariable = target >> 1;
+                if (assignment[targetVariable] == UNASSIGNED) {
+                    assign(target, edgeReason[edge], current);
+                } else if (assignment[targetVariable] != target) {
+                    recordConflict(targetVariable, current, edgeReason[edge]);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void assign(int literal, int why, int from) {
+        int variable = literal >> 1;
+        assignment[variable] = literal;
+        reason[variable] = why;
+        source[variable] = from;
+        trail[trailSize++] = variable;
+    }
+
+    private void recordConflict(int variable, int otherVariable, int why) {
+        conflictVariable = variable;
+        conflictOtherVariable = otherVariable;
+        conflictReason = why;
+    }
+
+    /**
+     * Returns the constraints that led to the last conflict: the conflicting constraint and the
+     * constraints that set both of its variables, transitively.
+     */
+    private Collection<Constraint> explainConflict() {
+        Set<Constraint> explanation = new LinkedHashSet<>();
+        if (conflictReason >= 0) {
+            explanation.add(constraints.get(conflictReason));
+        }
+        collectReasons(conflictVariable, explanation);
+        collectReasons(conflictOtherVariable, explanation);
+        return explanation;
+    }
+
+    private void collectReasons(int variable, Set<Constraint> explanation) {
+        while (variable >= 0 && assignment[variable] != UNASSIGNED) {
+            if (reason[variable] >= 0) {
+                explanation.add(constraints.get(reason[variable]));
+            }
+            variable = source[variable];
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package checkers.inference.solver.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.ArithmeticConstraint;
+import checkers.inference.model.CombVariableSlot;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.ExistentialVariableSlot;
+import checkers.inference.model.ImplicationConstraint;
+import checkers.inference.model.LubVariableSlot;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.RefinementVariableSlot;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * ComponentFingerprinter computes id-independent fingerprints of sets of constraints.
+ *
+ * Slot ids are assigned in generation order, so they change whenever an earlier file changes.
+ * Instead, every slot is identified by a stable key derived from its {@link AnnotationLocation},
+ * the value of a constant, or the stable keys of the slots it is built from. Two constraint
+ * components with the same fingerprint are the same problem up to renaming of slot ids.
+ *
+ * A component is not fingerprintable if one of its slots has no stable key, or if two of its
+ * slots share the same key. Such components have to be solved every time.
+ */
+public class ComponentFingerprinter {
+
+    /**
+     * Memoized stable keys of slots, null values mark slots without a stable key.
+     */
+    private final Map<Slot, String> slotKeys = new HashMap<>();
+
+    /**
+     * Fingerprint of a component, together with the stable keys of all its slots.
+     */
+    public static class Fingerprint {
+        public final String digest;
+
+        /**
+         * Maps the id of each slot in the component to its stable key.
+         */
+        public final Map<Integer, String> slotKeys;
+
+        private Fingerprint(String digest, Map<Integer, String> slotKeys) {
+            this.digest = digest;
+            this.slotKeys = Collections.unmodifiableMap(slotKeys);
+        }
+    }
+
+    /**
+     * Fingerprints the given component.
+     *
+     * @param constraints the constraints of an independent component
+     * @return the fingerprint, or null if the component cannot be fingerprinted
+     */
+    public Fingerprint fingerprint(Collection<Constraint> constraints) {
+        Map<Integer, String> componentSlotKeys = new LinkedHashMap<>();
+        Map<String, Integer> seenKeys = new HashMap<>();
+        List<String> constraintStrings = new ArrayList<>(constraints.size());
+
+        for (Constraint constraint : constraints) {
+            String constraintString = constraintKey(constraint);
+            if (constraintString == null) {
+                return null;
+            }
+            constraintStrings.add(constraintString);
+
+            for (Slot slot : constraint.getSlots()) {
+                String key = slotKey(slot);
+                if (key == null) {
+                    return null;
+                }
+                Integer previous = seenKeys.put(key, slot.getId());
+                if (previous != null && previous != slot.getId()) {
+                    // Two different slots share one location, the solution cannot be remapped.
+                    return null;
+                }
+                componentSlotKeys.put(slot.getId(), key);
+            }
+        }
+
+        // Constraint iteration order is not stable across runs.
+        Collections.sort(constraintStrings);
+        return new Fingerprint(digest(constraintStrings), componentSlotKeys);
+    }
+
+    /**
+     * Returns the stable key of the given slot, or null if it has none.
+     */
+    public String slotKey(Slot slot) {
+        if (slotKeys.containsKey(slot)) {
+            return slotKeys.get(slot);
+        }
+
+        String key = computeSlotKey(slot);
+        slotKeys.put(slot, key);
+        return key;
+    }
+
+    private String computeSlotKey(Slot slot) {
+        if (slot instanceof ConstantSlot) {
+            return "C:" + ((ConstantSlot) slot).getValue();
+        }
+
+        if (slot instanceof VariableSlot) {
+            AnnotationLocation location = ((VariableSlot) slot).getLocation();
+            if (location != null && location.getKind() != AnnotationLocation.Kind.MISSING) {
+                return slot.getKind() + ":" + location;
+            }
+        }
+
+        // Slots without a location are identified by the slots they are derived from.
+        if (slot instanceof CombVariableSlot) {
+            CombVariableSlot comb = (CombVariableSlot) slot;
+            return derivedKey(slot, comb.getFirst(), comb.getSecond());
+        } else if (slot instanceof LubVariableSlot) {
+            LubVariableSlot lub = (LubVariableSlot) slot;
+            return derivedKey(slot, lub.getLeft(), lub.getRight());
+        } else if (slot instanceof ExistentialVariableSlot) {
+            ExistentialVariableSlot existential = (ExistentialVariableSlot) slot;
+            return derivedKey(slot, existential.getPotentialSlot(), existential.getAlternativeSlot());
+        } else if (slot instanceof RefinementVariableSlot) {
+            return derivedKey(slot, ((RefinementVariableSlot) slot).getRefined());
+        }
+
+        return null;
+    }
+
+    private String derivedKey(Slot slot, Slot... components) {
+        StringBuilder key = new StringBuilder(slot.getKind().toString()).append('(');
+        for (int i = 0; i < components.length; i++) {
+            String componentKey = slotKey(components[i]);
+            if (componentKey == null) {
+                return null;
+            }
+            if (i > 0) {
+                key.append(',');
+            }
+            key.append(componentKey);
+        }
+        return key.append(')').toString();
+    }
+
+    private String constraintKey(Constraint constraint) {
+        StringBuilder key = new StringBuilder(constraint.getClass().getSimpleName()).append('(');
+
+        if (constraint instanceof PreferenceConstraint) {
+            key.append(((PreferenceConstraint) constraint).getWeight()).append(';');
+        } else if (constraint instanceof ArithmeticConstraint) {
+            key.append(((ArithmeticConstraint) constraint).getOperation()).append(';');
+        } else if (constraint instanceof ImplicationConstraint) {
+            ImplicationConstraint implication = (ImplicationConstraint) constraint;
+            List<String> assumptions = new ArrayList<>();
+            for (Constraint assumption : implication.getAssumptions()) {
+                String assumptionKey = constraintKey(assumption);
+                if (assumptionKey == null) {
+                    return null;
+                }
+                assumptions.add(assumptionKey);
+            }
+            Collections.sort(assumptions);
+            String conclusion = constraintKey(implication.getConclusion());
+            if (conclusion == null) {
+                return null;
+            }
+            return key.append(assumptions).append("=>").append(conclusion).append(')').toString();
+        } else if (constraint instanceof ExistentialConstraint) {
+            ExistentialConstraint existential = (ExistentialConstraint) constraint;
+            String potential = slotKey(existential.getPotentialVariable());
+            String potentials = constraintListKey(existential.potentialConstraints());
+            String alternates = constraintListKey(existential.getAlternateConstraints());
+            if (potential == null || potentials == null || alternates == null) {
+                return null;
+            }
+            return key.append(potential).append('?').append(potentials).append(':').append(alternates)
+                    .append(')').toString();
+        }
+
+        boolean first = true;
+        for (Slot slot : constraint.getSlots()) {
+            String slotKey = slotKey(slot);
+            if (slotKey == null) {
+                return null;
+            }
+            if (!first) {
+                key.append(',');
+            }
+            key.append(slotKey);
+            first = false;
+        }
+        return key.append(')').toString();
+    }
+
+    private String constraintListKey(List<Constraint> constraints) {
+        List<String> keys = new ArrayList<>(constraints.size());
+        for (Constraint constraint : constraints) {
+            String constraintKey = constraintKey(constraint);
+            if (constraintKey == null) {
+                return null;
+            }
+            keys.add(constraintKey);
+        }
+        return keys.toString();
+    }
+
+    /**
+     * Hashes the given strings into a hexadecimal SHA-256 digest.
+     */
+    public static String digest(Collection<String> strings) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BugInCF("SHA-256 is not supported by this JVM.", e);
+        }
+
+        for (String string : strings) {
+            messageDigest.update(string.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update((byte) '\n');
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : messageDigest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,187 @@
+package checkers.inference.solver.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import org.checkerframework.javacutil.UserError;
+
+import checkers.inference.solver.util.ExternalSolverUtils.StdInHandler;
+
+/**
+ * ExternalSolverPool runs an external solver program that reads its problem from stdin, keeping
+ * processes of the program started ahead of time.
+ *
+ * Solvers like lingeling read one problem until end of input and exit after answering, so a
+ * process cannot be reused for a second problem. Instead, the pool keeps up to {@code size}
+ * processes that are already started and wait for their input. A run takes one of them, and a
+ * replacement is started in the background while the taken process solves, so the startup cost
+ * of the program is not paid by the solving thread.
+ *
+ * At most {@code size} runs are executed at the same time; further runs wait for a free slot.
+ * So one pool can be shared by solvers running in parallel, see
+ * {@link checkers.inference.solver.strategy.SubGraphScheduler}.
+ *
+ * Pools are shared per command line and size, see {@link #getPool(String[], int)}, and live as
+ * long as the JVM, so that later solving runs, e.g. of the
+ * {@link checkers.inference.InferenceDaemon}, find their processes already started. The process
+ * of a run that is cancelled or fails is killed at once, and the waiting processes are killed
+ * when the JVM exits.
+ */
+public class ExternalSolverPool {
+
+    private static final Map<String, ExternalSolverPool> pools = new HashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ExternalSolverPool::shutdownAll));
+    }
+
+    private final String[] command;
+
+    /**
+     * Bounds the number of processes solving at the same time.
+     */
+    private final Semaphore running;
+
+    /**
+     * Started processes waiting for their input.
+     */
+    private final Queue<Process> idleProcesses = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Starts the replacements of taken processes.
+     */
+    private final ExecutorService starter;
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * Returns the pool of the given command and size, creating it on first use.
+     *
+     * @param command the external solver command, which must read its problem from stdin
+     * @param size the number of processes kept started, and the number of runs executed at the
+     * same time
+     */
+    public static ExternalSolverPool getPool(String[] command, int size) {
+        final int poolSize = Math.max(size, 1);
+        synchronized (pools) {
+            return pools.computeIfAbsent(poolSize + " " + String.join(" ", command),
+                    key -> new ExternalSolverPool(command, poolSize));
+        }
+    }
+
+    /**
+     * Shuts down all pools and kills their waiting processes. Called when the JVM exits; later
+     * calls of {@link #getPool(String[], int)} create new pools. Runs must not be in progress.
+     */
+    public static void shutdownAll() {
+        List<ExternalSolverPool> closed;
+        synchronized (pools) {
+            closed = new ArrayList<>(pools.values());
+            pools.clear();
+        }
+        for (ExternalSolverPool pool : closed) {
+            pool.shutdown();
+        }
+    }
+
+    private ExternalSolverPool(String[] command, int size) {
+        this.command = command.clone();
+        this.running = new Semaphore(size);
+        this.starter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "external-solver-starter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < size; i++) {
+            starter.execute(this::startIdleProcess);
+        }
+    }
+
+    /**
+     * Runs the external solver on the input written by stdInHandler, and uses the given
+     * stdOutHandler and stdErrHandler lambdas to process stdOut and stdErr, see
+     * {@link ExternalSolverUtils#runExternalSolver(String[], Consumer, Consumer)}.
+     *
+     * @return the exit status code of the external solver
+     * @throws CancellationException if the calling thread is interrupted while waiting for or
+     *            running the external solver
+     */
+    public int run(StdInHandler stdInHandler, Consumer<BufferedReader> stdOutHandler,
+            Consumer<BufferedReader> stdErrHandler) {
+        try {
+            running.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The external solver \"" + command[0] + "\" was cancelled.");
+        }
+
+        try {
+            Process process = idleProcesses.poll();
+            if (process == null || !process.isAlive()) {
+                if (process != null) {
+                    process.destroy();
+                }
+                Statistics.addOrIncrementEntry("external_solver_cold_starts", 1);
+                process = startProcess();
+            }
+            if (!shutdown) {
+                starter.execute(this::startIdleProcess);
+            }
+            try {
+                return ExternalSolverUtils.runExternalSolver(process, command[0], stdInHandler,
+                        stdOutHandler, stdErrHandler);
+            } catch (RuntimeException | Error e) {
+                // Don't leave the process of a cancelled or failed run behind.
+                process.destroyForcibly();
+                throw e;
+            }
+        } finally {
+            running.release();
+        }
+    }
+
+    private void startIdleProcess() {
+        try {
+            idleProcesses.add(startProcess());
+            if (shutdown) {
+                // The pool was shut down while the process was starting.
+                killIdleProcesses();
+            }
+        } catch (UserError e) {
+            // The run that takes this slot starts the process itself and reports the error.
+            ExternalSolverUtils.logger.warning("Could not start external solver \"" + command[0] + "\" ahead of time.");
+        }
+    }
+
+    private Process startProcess() {
+        try {
+            return new ProcessBuilder(command).start();
+        } catch (IOException e) {
+            throw new UserError("Could not run external solver.");
+        }
+    }
+
+    private void shutdown() {
+        shutdown = true;
+        starter.shutdownNow();
+        killIdleProcesses();
+    }
+
+    private void killIdleProcesses() {
+        Process process;
+        while ((process = idleProcesses.poll()) != null) {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package checkers.inference.solver.util;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
@@ -20,6 +25,8 @@ public class ExternalSolverUtils {
 
     public static final Logger logger = Logger.getLogger(ExternalSolverUtils.class.getName());
 
+    private static final int STDIN_BUFFER_SIZE = 1 << 16;
+
     /**
      * Runs the external solver as given by command and uses the given
      * stdOutHandler and stdErrHandler lambdas to process stdOut and stdErr.
@@ -34,6 +41,8 @@ public class ExternalSolverUtils {
      *            a lambda which takes a {@link BufferedReader} providing the
      *            stdErr of the external solver and handles the stdErr.
      * @return the exit status code of the external command.
+     * @throws CancellationException if the calling thread is interrupted while the external
+     *            solver is running. The external solver process is killed in this case.
      */
     public static int runExternalSolver(String[] command, Consumer<BufferedReader> stdOutHandler,
             Consumer<BufferedReader> stdErrHandler) {
@@ -48,6 +57,32 @@ public class ExternalSolverUtils {
             throw new UserError("Could not run external solver.");
         }
 
+        return runExternalSolver(process, command[0], null, stdOutHandler, stdErrHandler);
+    }
+
+    /**
+     * Feeds the given external solver process with the input written by stdInHandler, and uses
+     * the given stdOutHandler and stdErrHandler lambdas to process stdOut and stdErr.
+     *
+     * @param process
+     *            a started external solver process.
+     * @param name
+     *            the name of the external solver, used in messages.
+     * @param stdInHandler
+     *            writes the input of the external solver, or null if the
+     *            external solver does not read stdIn. stdIn is closed after
+     *            the input was written.
+     * @param stdOutHandler
+     *            a lambda which handles the stdOut of the external solver.
+     * @param stdErrHandler
+     *            a lambda which handles the stdErr of the external solver.
+     * @return the exit status code of the external solver.
+     * @throws CancellationException if the calling thread is interrupted while the external
+     *            solver is running. The external solver process is killed in this case.
+     */
+    public static int runExternalSolver(Process process, String name, StdInHandler stdInHandler,
+            Consumer<BufferedReader> stdOutHandler, Consumer<BufferedReader> stdErrHandler) {
+
         // Create threads to handle stdOut and stdErr
         StdHandlerThread stdOutHandlerThread = new StdHandlerThread(process.getInputStream(),
                 stdOutHandler);
@@ -56,26 +91,29 @@ public class ExternalSolverUtils {
         stdOutHandlerThread.start();
         stdErrHandlerThread.start();
 
-        // Wait for external solver threads to finish
-        try {
-            stdOutHandlerThread.join();
-        } catch (InterruptedException e) {
-            throw new BugInCF(
-                    "The threads for handling stdOut of the external solver was interrupted.");
-        }
-
-        try {
-            stdErrHandlerThread.join();
-        } catch (InterruptedException e) {
-            throw new BugInCF(
-                    "The threads for handling stdErr of the external solver was interrupted.");
+        if (stdInHandler != null) {
+            try (Writer stdIn = new BufferedWriter(
+                    new OutputStreamWriter(process.getOutputStream(), StandardCharsets.US_ASCII), STDIN_BUFFER_SIZE)) {
+                stdInHandler.write(stdIn);
+            } catch (IOException e) {
+                process.destroyForcibly();
+                throw new BugInCF("Could not write the input of external solver \"" + name + "\".", e);
+            }
         }
 
+        // Wait for external solver threads to finish. Being interrupted here means the caller
+        // is no longer interested in the result, e.g. another solver has already answered.
         int exitStatus;
         try {
+            stdOutHandlerThread.join();
+            stdErrHandlerThread.join();
             exitStatus = process.waitFor();
         } catch (InterruptedException e) {
-            throw new BugInCF("The threads for the external solver was interrupted.");
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            logger.info("External solver process was cancelled");
+            throw new CancellationException(
+                    "The external solver \"" + name + "\" was cancelled.");
         }
 
         logger.info("External solver process finished");
@@ -83,6 +121,14 @@ public class ExternalSolverUtils {
         return exitStatus;
     }
 
+    /**
+     * Writes the input of an external solver.
+     */
+    @FunctionalInterface
+    public interface StdInHandler {
+        void write(Writer stdIn) throws IOException;
+    }
+
     /**
      * A thread which wraps an InputStream in a BufferedReader and tasks the
      * lambda function to handle the outputs.
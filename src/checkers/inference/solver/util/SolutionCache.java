@@ -0,0 +1,139 @@
+package checkers.inference.solver.util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import checkers.inference.InferenceMain;
+
+/**
+ * SolutionCache persists solutions of constraint components between inference runs.
+ *
+ * Each entry maps the fingerprint digest of a component (see {@link ComponentFingerprinter})
+ * to the solution of that component, keyed by stable slot keys instead of slot ids.
+ * Annotations are stored by their string representation.
+ *
+ * The whole cache is tagged with a context string (e.g. the solver and the qualifiers of the
+ * lattice). A cache file written under a different context is ignored.
+ *
+ * The file format is JSON:
+ * <pre>{@code
+ * {
+ *   "version": "1",
+ *   "context": "...",
+ *   "components": {
+ *     "<digest>": { "<slot key>": "<annotation>", ... },
+ *     ...
+ *   }
+ * }
+ * }</pre>
+ */
+public class SolutionCache {
+
+    public static final String VERSION = "1";
+    private static final String VERSION_KEY = "version";
+    private static final String CONTEXT_KEY = "context";
+    private static final String COMPONENTS_KEY = "components";
+
+    private final File file;
+    private final String context;
+
+    /**
+     * Solutions loaded from the cache file, keyed by component digest.
+     */
+    private final Map<String, Map<String, String>> previous = new HashMap<>();
+
+    /**
+     * Solutions of the current run, keyed by component digest. Only these are written back,
+     * so components that disappeared from the program are evicted.
+     */
+    private final Map<String, Map<String, String>> current = new HashMap<>();
+
+    public SolutionCache(File file, String context) {
+        this.file = file;
+        this.context = context;
+    }
+
+    /**
+     * Loads the cache file if it exists and was written under the same context. A missing,
+     * stale or corrupt cache file is treated as an empty cache.
+     */
+    public void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (Reader reader = new FileReader(file)) {
+            JSONObject root = (JSONObject) new JSONParser().parse(reader);
+            if (!VERSION.equals(root.get(VERSION_KEY)) || !context.equals(root.get(CONTEXT_KEY))) {
+                return;
+            }
+
+            JSONObject components = (JSONObject) root.get(COMPONENTS_KEY);
+            for (Object entryObj : components.entrySet()) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) entryObj;
+                Map<String, String> solution = new HashMap<>();
+                for (Object slotObj : ((JSONObject) entry.getValue()).entrySet()) {
+                    Map.Entry<?, ?> slotEntry = (Map.Entry<?, ?>) slotObj;
+                    solution.put((String) slotEntry.getKey(), (String) slotEntry.getValue());
+                }
+                previous.put((String) entry.getKey(), solution);
+            }
+        } catch (IOException | ParseException | ClassCastException e) {
+            InferenceMain.getInstance().logger.warning("Ignoring unreadable solution cache " + file + ": " + e);
+            previous.clear();
+        }
+    }
+
+    /**
+     * Returns the cached solution of the component with the given digest, or null if there is
+     * none. A returned solution is kept for the next run.
+     */
+    public Map<String, String> lookup(String digest) {
+        Map<String, String> solution = previous.get(digest);
+        if (solution != null) {
+            current.put(digest, solution);
+        }
+        return solution;
+    }
+
+    /**
+     * Records the solution of the component with the given digest.
+     */
+    public void store(String digest, Map<String, String> solution) {
+        current.put(digest, solution);
+    }
+
+    /**
+     * Writes all solutions recorded in this run to the cache file.
+     */
+    @SuppressWarnings("unchecked")
+    public void save() {
+        JSONObject root = new JSONObject();
+        root.put(VERSION_KEY, VERSION);
+        root.put(CONTEXT_KEY, context);
+
+        JSONObject components = new JSONObject();
+        for (Map.Entry<String, Map<String, String>> entry : current.entrySet()) {
+            JSONObject solution = new JSONObject();
+            solution.putAll(entry.getValue());
+            components.put(entry.getKey(), solution);
+        }
+        root.put(COMPONENTS_KEY, components);
+
+        try (Writer writer = new FileWriter(file)) {
+            root.writeJSONString(writer);
+        } catch (IOException e) {
+            InferenceMain.getInstance().logger.warning("Could not write solution cache " + file + ": " + e);
+        }
+    }
+}
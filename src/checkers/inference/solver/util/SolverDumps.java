@@ -0,0 +1,123 @@
+package checkers.inference.solver.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import org.checkerframework.javacutil.BugInCF;
+
+/**
+ * SolverDumps writes the encodings handed to underlying solvers, e.g. CNF or SMT formulas, to
+ * files for debugging and later analysis.
+ *
+ * Dumps are written through a buffered stream, optionally gzip-compressed, instead of being
+ * built in memory first. Each dump gets its own file, named after the kind of the dump, the
+ * thread that writes it, and a sequence number that is unique in the process, e.g.
+ * {@code cnfdata-portfolio-solver-2-17.txt}. So solvers running in parallel never write to the
+ * same file.
+ *
+ * Dumps are written to the directory given by the {@code dumpDir} argument, or to a default
+ * directory chosen by the caller. With {@code dumpCompress=true} files are gzip-compressed. With
+ * {@code dumpMaxFiles=N} only the last N dumps completed in this process are kept, older ones are
+ * deleted. A dump only counts once it is completely written, so a dump that is still being
+ * written is never deleted.
+ *
+ * Whether a solver dumps at all is decided by its own argument, e.g. {@code outputCNF} for
+ * MaxSAT and {@code dumpSMT} for Z3 SMT; dumping is off by default.
+ */
+public class SolverDumps {
+
+    public enum SolverDumpsArg implements SolverArg {
+        /**
+         * Directory dumps are written to.
+         */
+        dumpDir,
+
+        /**
+         * Whether to gzip dump files.
+         */
+        dumpCompress,
+
+        /**
+         * The maximum number of dump files to keep. Unlimited by default.
+         */
+        dumpMaxFiles;
+    }
+
+    private static final Logger logger = Logger.getLogger(SolverDumps.class.getName());
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final AtomicInteger sequence = new AtomicInteger(0);
+
+    /**
+     * Dump files written by this process, oldest first. Guarded by itself.
+     */
+    private static final Deque<File> writtenFiles = new ArrayDeque<>();
+
+    /**
+     * Writes the content of a dump.
+     */
+    @FunctionalInterface
+    public interface DumpWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Writes a new dump file.
+     *
+     * @param solverEnvironment the environment providing the dump arguments
+     * @param defaultDir the directory used if {@code dumpDir} is not given
+     * @param kind the kind of the dump, used as file name prefix, e.g. "cnfdata"
+     * @param extension the file extension without compression suffix, e.g. "txt"
+     * @param content writes the content of the dump to a buffered writer
+     */
+    public static void write(SolverEnvironment solverEnvironment, File defaultDir, String kind, String extension,
+            DumpWriter content) {
+        String dirArg = solverEnvironment.getArg(SolverDumpsArg.dumpDir);
+        File dir = dirArg == null ? defaultDir : new File(dirArg);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new BugInCF("Cannot create dump directory " + dir);
+        }
+
+        boolean compress = solverEnvironment.getBoolArg(SolverDumpsArg.dumpCompress);
+        String fileName = kind + "-" + Thread.currentThread().getName() + "-" + sequence.incrementAndGet()
+                + "." + extension + (compress ? ".gz" : "");
+        File file = new File(dir, fileName.replaceAll("[^A-Za-z0-9._-]", "_"));
+
+        try (OutputStream raw = new FileOutputStream(file);
+                OutputStream stream = compress ? new GZIPOutputStream(raw, BUFFER_SIZE) : raw;
+                Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8),
+                        BUFFER_SIZE)) {
+            content.write(writer);
+        } catch (IOException e) {
+            throw new BugInCF("Cannot write dump file " + file, e);
+        }
+        rotate(file, solverEnvironment.getIntArg(SolverDumpsArg.dumpMaxFiles, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Records the given completely written file, and deletes the oldest files if more than maxFiles are kept.
+     */
+    private static void rotate(File newFile, int maxFiles) {
+        synchronized (writtenFiles) {
+            writtenFiles.addLast(newFile);
+            while (writtenFiles.size() > Math.max(maxFiles, 1)) {
+                File oldest = writtenFiles.removeFirst();
+                if (!oldest.delete()) {
+                    logger.warning("Cannot delete old dump file " + oldest);
+                }
+            }
+        }
+    }
+}
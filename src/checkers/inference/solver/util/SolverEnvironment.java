@@ -5,6 +5,8 @@ import java.util.Map;
 
 import javax.annotation.processing.ProcessingEnvironment;
 
+import org.checkerframework.javacutil.UserError;
+
 /**
  * SolverEnvironment encapsulates general context that used
  * for all phases during solving.
@@ -25,11 +27,30 @@ public class SolverEnvironment {
      */
     public final ProcessingEnvironment processingEnvironment;
 
+    /**
+     * The time budget of all solves, or null if solving time is not limited.
+     */
+    private volatile TimeBudget timeBudget;
+
     public SolverEnvironment(final Map<String, String> configuration, ProcessingEnvironment processingEnvironment) {
         this.options = Collections.unmodifiableMap(configuration);
         this.processingEnvironment = processingEnvironment;
     }
 
+    /**
+     * Returns the time budget of all solves, or null if solving time is not limited.
+     */
+    public TimeBudget getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Limits the wall time of all solves from now on to the given number of milliseconds.
+     */
+    public void startTimeBudget(long budgetMs) {
+        this.timeBudget = new TimeBudget(budgetMs);
+    }
+
     /**
      * Get the value for a given argument name.
      * @param argName the name of the given argument.
@@ -50,4 +71,25 @@ public class SolverEnvironment {
         String argValue = options.get(arg.name());
         return argValue != null && argValue.toLowerCase().equals("true");
     }
+
+    /**
+     * Get the integer value for a given argument name.
+     *
+     * @param arg the given argument.
+     * @param defaultValue the value returned if the argument is absent.
+     * @return the integer value of this argument, or defaultValue if the argument is not given.
+     * @throws UserError if the argument value is not an integer.
+     */
+    public int getIntArg(SolverArg arg, int defaultValue) {
+        String argValue = options.get(arg.name());
+        if (argValue == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(argValue.trim());
+        } catch (NumberFormatException e) {
+            throw new UserError("Solver argument " + arg.name() + " expects an integer, but got: " + argValue);
+        }
+    }
 }
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
@@ -17,6 +18,72 @@ public class Statistics {
     // statistics are sorted by insertion order
     private final static Map<String, Long> statistics = new LinkedHashMap<>();
 
+    /**
+     * The buffer the statistics of the current thread are recorded to instead, see
+     * {@link #recordTo(Buffer, Callable)}.
+     */
+    private final static ThreadLocal<Buffer> currentBuffer = new ThreadLocal<>();
+
+    /**
+     * Statistics that are kept aside, and only added to the recorded statistics on
+     * {@link #commit()}. E.g. several solvers may race on the same constraints, and only the
+     * statistics of the one whose result is taken should be recorded.
+     */
+    public static final class Buffer {
+        private final Map<String, Long> increments = new LinkedHashMap<>();
+        private final Map<String, Long> maxima = new LinkedHashMap<>();
+
+        /**
+         * Adds the statistics of this buffer to the recorded statistics, or to the buffer the
+         * current thread records to, if any.
+         */
+        public void commit() {
+            Map<String, Long> incrementsCopy;
+            Map<String, Long> maximaCopy;
+            synchronized (this) {
+                incrementsCopy = new LinkedHashMap<>(increments);
+                maximaCopy = new LinkedHashMap<>(maxima);
+            }
+            for (Entry<String, Long> entry : incrementsCopy.entrySet()) {
+                addOrIncrementEntry(entry.getKey(), entry.getValue());
+            }
+            for (Entry<String, Long> entry : maximaCopy.entrySet()) {
+                addOrMaxEntry(entry.getKey(), entry.getValue());
+            }
+        }
+
+        private synchronized void increment(String key, long value) {
+            increments.merge(key, value, Long::sum);
+        }
+
+        private synchronized void max(String key, long value) {
+            maxima.merge(key, value, Math::max);
+        }
+    }
+
+    /**
+     * Runs the given task on the current thread, and records all statistics it adds on this
+     * thread to the given buffer instead.
+     *
+     * @param buffer the buffer to record to
+     * @param task the task to run
+     * @return the result of the task
+     * @throws Exception if the task throws
+     */
+    public static <T> T recordTo(Buffer buffer, Callable<T> task) throws Exception {
+        Buffer previous = currentBuffer.get();
+        currentBuffer.set(buffer);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                currentBuffer.remove();
+            } else {
+                currentBuffer.set(previous);
+            }
+        }
+    }
+
     /**
      * Adds or increments the given value to the statistics for the given key.
      *
@@ -27,10 +94,16 @@ public class Statistics {
      *            a value
      */
     public static void addOrIncrementEntry(String key, long value) {
-        synchronized (statistics) {
-            // always use the lower-case version of the given key
-            key = key.toLowerCase();
+        // always use the lower-case version of the given key
+        key = key.toLowerCase();
 
+        Buffer buffer = currentBuffer.get();
+        if (buffer != null) {
+            buffer.increment(key, value);
+            return;
+        }
+
+        synchronized (statistics) {
             if (statistics.get(key) == null) {
                 statistics.put(key, value);
             } else {
@@ -39,6 +112,33 @@ public class Statistics {
         }
     }
 
+    /**
+     * Records the given value for the given key if it is larger than the value currently
+     * recorded, or if there is no value recorded for the key yet.
+     *
+     * @param key
+     *            a statistic key. The key is treated case-insensitive in the same way as
+     *            {@link #addOrIncrementEntry(String, long)}.
+     * @param value
+     *            a value
+     */
+    public static void addOrMaxEntry(String key, long value) {
+        key = key.toLowerCase();
+
+        Buffer buffer = currentBuffer.get();
+        if (buffer != null) {
+            buffer.max(key, value);
+            return;
+        }
+
+        synchronized (statistics) {
+            Long current = statistics.get(key);
+            if (current == null || current < value) {
+                statistics.put(key, value);
+            }
+        }
+    }
+
     /**
      * Adds a count of each kind of slot to the statistics.
      *
@@ -0,0 +1,74 @@
+package checkers.inference.solver.util;
+
+/**
+ * TimeBudget is the wall time all solves of one inference run may take together, see the
+ * solver argument {@code timeBudget}.
+ *
+ * The budget is split across components by their number of constraints: every component is
+ * registered with its size when its solver is created, and when it starts solving it gets the
+ * share of the remaining time that its size has among the components not started yet. Time a
+ * component does not use is thus left to the components after it. Components solved in parallel
+ * get a share as large as if they were solved one after another by each thread, but never more
+ * than the remaining time.
+ */
+public class TimeBudget {
+
+    /**
+     * Time every component gets at least, so that trivial components do not time out just
+     * because their share rounds down to nothing.
+     */
+    private static final long MIN_SHARE_MS = 100;
+
+    private final long deadline;
+
+    /**
+     * The total size of the registered components that have not started solving yet.
+     */
+    private long pendingSize;
+
+    /**
+     * The number of components that ran out of time.
+     */
+    private int timedOutComponents;
+
+    public TimeBudget(long budgetMs) {
+        this.deadline = System.currentTimeMillis() + budgetMs;
+    }
+
+    /**
+     * Returns the time left until the whole budget is used up, which is not negative.
+     */
+    public long remainingMs() {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    /**
+     * Registers a component of the given size that will be solved with this budget.
+     */
+    public synchronized void register(int size) {
+        pendingSize += Math.max(1, size);
+    }
+
+    /**
+     * Takes the share of the remaining time for a registered component of the given size that
+     * starts solving now, with the given number of components solved at the same time.
+     */
+    public synchronized long allocate(int size, int parallelism) {
+        size = Math.max(1, size);
+        long remaining = remainingMs();
+        long share = remaining;
+        if (pendingSize > size) {
+            share = (long) (remaining * Math.min(1.0, (double) size * Math.max(1, parallelism) / pendingSize));
+        }
+        pendingSize = Math.max(0, pendingSize - size);
+        return Math.max(Math.min(MIN_SHARE_MS, remaining), share);
+    }
+
+    /**
+     * Counts a component that ran out of time, and returns its number among the timed out
+     * components of this budget, starting at 1.
+     */
+    public synchronized int recordTimeOut() {
+        return ++timedOutComponents;
+    }
+}
@@ -18,7 +18,7 @@ public class ConstantToVariableAnnotator extends AnnotatedTypeScanner<Void, Void
 
     private final AnnotationMirror realTop;
     private final AnnotationMirror varAnnot;
-    private static final SlotManager slotManager = InferenceMain.getInstance().getSlotManager();
+    private final SlotManager slotManager = InferenceMain.getInstance().getSlotManager();
 
     public ConstantToVariableAnnotator(AnnotationMirror realTop, AnnotationMirror varAnnot) {
         this.realTop = realTop;
@@ -0,0 +1,143 @@
+package checkers.inference.util;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive {@code long} keys to primitive {@code int} values.
+ *
+ * This avoids allocating a boxed key, a boxed value and a map entry for each mapping, which
+ * matters for caches that are keyed by pairs of slot ids: two 32-bit ids can be packed into one
+ * long with {@link #pack(int, int)}.
+ *
+ * Mappings cannot be removed. The map is not thread-safe.
+ */
+public class LongIntHashMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The marker of an empty bucket. A mapping for this key is stored separately.
+     */
+    private static final long EMPTY_KEY = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    private boolean hasEmptyKey;
+    private int emptyKeyValue;
+
+    public LongIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize * 2) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Packs two ints into one long, with {@code high} in the upper 32 bits.
+     */
+    public static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the value mapped to the given key, or {@code defaultValue} if there is none.
+     */
+    public int get(long key, int defaultValue) {
+        if (key == EMPTY_KEY) {
+            return hasEmptyKey ? emptyKeyValue : defaultValue;
+        }
+
+        int index = indexOf(key);
+        return keys[index] == key ? values[index] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY_KEY) {
+            return hasEmptyKey;
+        }
+        return keys[indexOf(key)] == key;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous value.
+     */
+    public void put(long key, int value) {
+        if (key == EMPTY_KEY) {
+            if (!hasEmptyKey) {
+                hasEmptyKey = true;
+                size++;
+            }
+            emptyKeyValue = value;
+            return;
+        }
+
+        int index = indexOf(key);
+        if (keys[index] != key) {
+            keys[index] = key;
+            size++;
+        }
+        values[index] = value;
+
+        // Keep the load factor at or below 1/2.
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        size = 0;
+        hasEmptyKey = false;
+    }
+
+    /**
+     * Returns the bucket holding the given key, or the empty bucket where it would be inserted.
+     */
+    private int indexOf(long key) {
+        int index = mix(key) & mask;
+        while (keys[index] != EMPTY_KEY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[newCapacity];
+        values = new int[newCapacity];
+        mask = newCapacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of the key, since packed ids differ mostly in their low bits.
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,158 @@
+package checkers.inference.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.checkerframework.javacutil.BugInCF;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * SlotStore stores slots in an array indexed by slot id.
+ *
+ * Slot ids are dense and start at 1, so a lookup by id is a single array access. The store also
+ * keeps the ids of variable slots and constant slots in separate int arrays, which lets
+ * {@link #getSlots()}, {@link #getVariableSlots()} and {@link #getConstantSlots()} return
+ * read-only views instead of copying all slots on every call.
+ *
+ * The views are live: slots added after a view was obtained are visible through it.
+ */
+public class SlotStore {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Slots indexed by id. Index 0 is never used.
+     */
+    private Slot[] slots;
+
+    /**
+     * The largest id of a stored slot.
+     */
+    private int maxId;
+
+    private int[] variableIds;
+    private int numberOfVariables;
+
+    private int[] constantIds;
+    private int numberOfConstants;
+
+    private final List<Slot> slotsView = new SlotsView();
+    private final List<VariableSlot> variableSlotsView = new IdListView<>(true);
+    private final List<ConstantSlot> constantSlotsView = new IdListView<>(false);
+
+    public SlotStore() {
+        slots = new Slot[DEFAULT_CAPACITY];
+        variableIds = new int[DEFAULT_CAPACITY];
+        constantIds = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Adds the given slot. Its id must not be used by a stored slot.
+     */
+    public void add(Slot slot) {
+        final int id = slot.getId();
+        if (id <= 0) {
+            throw new BugInCF("Slot ids start at 1, but got slot " + slot);
+        }
+        if (id >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slots.length * 2, id + 1));
+        }
+        if (slots[id] != null) {
+            throw new BugInCF("Slot id " + id + " is already used by " + slots[id]);
+        }
+
+        slots[id] = slot;
+        maxId = Math.max(maxId, id);
+
+        if (slot instanceof VariableSlot) {
+            if (numberOfVariables == variableIds.length) {
+                variableIds = Arrays.copyOf(variableIds, variableIds.length * 2);
+            }
+            variableIds[numberOfVariables++] = id;
+        } else if (slot instanceof ConstantSlot) {
+            if (numberOfConstants == constantIds.length) {
+                constantIds = Arrays.copyOf(constantIds, constantIds.length * 2);
+            }
+            constantIds[numberOfConstants++] = id;
+        }
+    }
+
+    /**
+     * Returns the slot with the given id, or null if there is none.
+     */
+    public Slot get(int id) {
+        if (id <= 0 || id > maxId) {
+            return null;
+        }
+        return slots[id];
+    }
+
+    /**
+     * Returns a read-only view of all slots, ordered by id.
+     */
+    public List<Slot> getSlots() {
+        return slotsView;
+    }
+
+    /**
+     * Returns a read-only view of all variable slots, ordered by id.
+     */
+    public List<VariableSlot> getVariableSlots() {
+        return variableSlotsView;
+    }
+
+    /**
+     * Returns a read-only view of all constant slots, ordered by id.
+     */
+    public List<ConstantSlot> getConstantSlots() {
+        return constantSlotsView;
+    }
+
+    /**
+     * View over the slot array. Since ids are dense, index i holds the slot with id i + 1.
+     */
+    private class SlotsView extends AbstractList<Slot> implements RandomAccess {
+        @Override
+        public Slot get(int index) {
+            if (index < 0 || index >= maxId) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + maxId);
+            }
+            return slots[index + 1];
+        }
+
+        @Override
+        public int size() {
+            return maxId;
+        }
+    }
+
+    /**
+     * View over the variable or constant id array.
+     */
+    private class IdListView<T extends Slot> extends AbstractList<T> implements RandomAccess {
+        private final boolean variables;
+
+        private IdListView(boolean variables) {
+            this.variables = variables;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return (T) slots[variables ? variableIds[index] : constantIds[index]];
+        }
+
+        @Override
+        public int size() {
+            return variables ? numberOfVariables : numberOfConstants;
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package dataflow.solvers.classic;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import javax.annotation.processing.ProcessingEnvironment;
@@ -16,58 +16,86 @@ import checkers.inference.solver.util.PrintUtils;
 import dataflow.DataflowAnnotatedTypeFactory;
 import dataflow.util.DataflowUtils;
 
+/**
+ * The result of {@link DataflowSolver}. Solutions of datatypes may be merged concurrently with
+ * {@link #mergeSolution(DatatypeSolution)}, and the annotations are created once
+ * {@link #finishMerging()} is called.
+ */
 public class DataflowResult extends DefaultInferenceResult {
     private final Map<Integer, Set<String>> typeNameResults;
     private final Map<Integer, Set<String>> typeRootResults;
     private final Map<Integer, Boolean> idToExistance;
-    private final DataflowAnnotatedTypeFactory realTypeFactory;
+    private final ProcessingEnvironment processingEnv;
 
     public DataflowResult(Collection<DatatypeSolution> solutions, ProcessingEnvironment processingEnv) {
+        this(processingEnv);
+        mergeSolutions(solutions);
+        finishMerging();
+    }
+
+    /**
+     * Creates an empty result, to merge solutions into before calling {@link #finishMerging()}.
+     */
+    public DataflowResult(ProcessingEnvironment processingEnv) {
         // Legacy solver doesn't support explanation
         super();
-        this.typeNameResults = new HashMap<>();
-        this.typeRootResults = new HashMap<>();
-        this.idToExistance = new HashMap<>();
-        this.realTypeFactory = (DataflowAnnotatedTypeFactory)InferenceMain.getInstance().getRealTypeFactory();
-        mergeSolutions(solutions);
-        createAnnotations(processingEnv);
-        simplifyAnnotation();
-        PrintUtils.printSolutions(varIdToAnnotation);
+        this.typeNameResults = new ConcurrentHashMap<>();
+        this.typeRootResults = new ConcurrentHashMap<>();
+        this.idToExistance = new ConcurrentHashMap<>();
+        this.processingEnv = processingEnv;
     }
 
     public void mergeSolutions(Collection<DatatypeSolution> solutions) {
         for (DatatypeSolution solution : solutions) {
-            mergeSingleSolution(solution);
-            mergeIdToExistance(solution);
+            mergeSolution(solution);
         }
     }
 
+    /**
+     * Merges the solution of one datatype. This method may be called from several threads.
+     */
+    public void mergeSolution(DatatypeSolution solution) {
+        mergeSingleSolution(solution);
+        mergeIdToExistance(solution);
+    }
+
+    /**
+     * Creates the annotations of the merged solutions. No solution may be merged afterwards.
+     */
+    public void finishMerging() {
+        createAnnotations(processingEnv);
+        simplifyAnnotation();
+        PrintUtils.printSolutions(varIdToAnnotation);
+    }
+
     private void mergeSingleSolution(DatatypeSolution solution) {
         for (Map.Entry<Integer, Boolean> entry : solution.getResult().entrySet()) {
             boolean shouldContainDatatype = shouldContainDatatype(entry);
             String datatype = solution.getDatatype();
-            if (solution.isRoot()) {
-                Set<String> dataRoots = typeRootResults.get(entry.getKey());
-                if (dataRoots == null) {
-                    dataRoots = new TreeSet<>();
-                    typeRootResults.put(entry.getKey(), dataRoots);
-                }
-                if (shouldContainDatatype) {
-                    dataRoots.add(datatype);
-                }
-            } else {
-                Set<String> datatypes = typeNameResults.get(entry.getKey());
-                if (datatypes == null) {
-                    datatypes = new TreeSet<>();
-                    typeNameResults.put(entry.getKey(), datatypes);
-                }
-                if (shouldContainDatatype) {
+            Map<Integer, Set<String>> results = solution.isRoot() ? typeRootResults : typeNameResults;
+            Set<String> datatypes = results.computeIfAbsent(entry.getKey(), id -> new TreeSet<>());
+            if (shouldContainDatatype) {
+                synchronized (datatypes) {
                     datatypes.add(datatype);
                 }
             }
         }
     }
 
+    /**
+     * Returns the type names, or the type name roots if isRoot is true, merged so far for the
+     * variable, or null if no solution of that kind mentions it.
+     */
+    Set<String> getMergedDatatypes(int varId, boolean isRoot) {
+        Set<String> datatypes = (isRoot ? typeRootResults : typeNameResults).get(varId);
+        if (datatypes == null) {
+            return null;
+        }
+        synchronized (datatypes) {
+            return new TreeSet<>(datatypes);
+        }
+    }
+
     protected boolean shouldContainDatatype(Map.Entry<Integer, Boolean> entry) {
         return entry.getValue();
     }
@@ -99,8 +127,10 @@ public class DataflowResult extends DefaultInferenceResult {
     }
 
     private void simplifyAnnotation() {
+        DataflowAnnotatedTypeFactory realTypeFactory =
+                (DataflowAnnotatedTypeFactory) InferenceMain.getInstance().getRealTypeFactory();
         for (Map.Entry<Integer, AnnotationMirror> entry : varIdToAnnotation.entrySet()) {
-            AnnotationMirror refinedDataflow = this.realTypeFactory.refineDataflow(entry.getValue());
+            AnnotationMirror refinedDataflow = realTypeFactory.refineDataflow(entry.getValue());
             entry.setValue(refinedDataflow);
         }
     }
@@ -109,13 +139,9 @@ public class DataflowResult extends DefaultInferenceResult {
         for (Map.Entry<Integer, Boolean> entry : solution.getResult().entrySet()) {
             int id = entry.getKey();
             boolean existsDatatype = entry.getValue();
-            if (idToExistance.containsKey(id)) {
-                boolean alreadyExists = idToExistance.get(id);
-                if (alreadyExists ^ existsDatatype) {
-                    InferenceMain.getInstance().logger.log(Level.INFO, "Mismatch between existance of annotation");
-                }
-            } else {
-                idToExistance.put(id, existsDatatype);
+            Boolean alreadyExists = idToExistance.putIfAbsent(id, existsDatatype);
+            if (alreadyExists != null && alreadyExists ^ existsDatatype) {
+                InferenceMain.getInstance().logger.log(Level.INFO, "Mismatch between existance of annotation");
             }
         }
     }
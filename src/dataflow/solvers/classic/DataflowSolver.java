@@ -2,14 +2,15 @@ package dataflow.solvers.classic;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
@@ -27,17 +28,31 @@ import checkers.inference.model.Slot;
 import checkers.inference.solver.constraintgraph.ConstraintGraph;
 import checkers.inference.solver.constraintgraph.GraphBuilder;
 import checkers.inference.solver.constraintgraph.Vertex;
+import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverEnvironment;
 import dataflow.qual.DataFlow;
 import dataflow.util.DataflowUtils;
 
 /**
  * A solver for dataflow type system that is independent from GeneralSolver.
  *
+ * One {@link DatatypeSolver} solves the constant paths of each datatype, on a pool of
+ * {@code solverThreads} threads, and its solution is merged into the {@link DataflowResult} as
+ * soon as it is found.
+ *
  * @author jianchu
  *
  */
 public class DataflowSolver implements InferenceSolver {
 
+    enum DataflowSolverArg implements SolverArg {
+        /**
+         * Number of datatypes solved at the same time. Defaults to the number of available
+         * processors.
+         */
+        solverThreads;
+    }
+
     protected AnnotationMirror DATAFLOW;
 
     @Override
@@ -52,66 +67,103 @@ public class DataflowSolver implements InferenceSolver {
         GraphBuilder graphBuilder = new GraphBuilder(slots, constraints, dataflowTop);
         ConstraintGraph constraintGraph = graphBuilder.buildGraph();
 
-        List<DatatypeSolver> dataflowSolvers = new ArrayList<>();
-
-        // Configure datatype solvers
+        // Group the constant paths by datatype, so each datatype is solved once.
+        Map<String, Set<Constraint>> typeNamePaths = new LinkedHashMap<>();
+        Map<String, Set<Constraint>> typeRootPaths = new LinkedHashMap<>();
         for (Map.Entry<Vertex, Set<Constraint>> entry : constraintGraph.getConstantPath().entrySet()) {
             AnnotationMirror anno = entry.getKey().getValue();
             if (AnnotationUtils.areSameByName(anno, DATAFLOW)) {
                 String[] dataflowValues = DataflowUtils.getTypeNames(anno);
                 String[] dataflowRoots = DataflowUtils.getTypeNameRoots(anno);
                 if (dataflowValues.length == 1) {
-                    DatatypeSolver solver = new DatatypeSolver(dataflowValues[0], entry.getValue(),getSerializer(dataflowValues[0], false));
-                    dataflowSolvers.add(solver);
+                    DataflowUtils.addConstantPath(typeNamePaths, dataflowValues[0], entry.getValue());
                 } else if (dataflowRoots.length == 1) {
-                    DatatypeSolver solver = new DatatypeSolver(dataflowRoots[0], entry.getValue(),getSerializer(dataflowRoots[0], true));
-                    dataflowSolvers.add(solver);
+                    DataflowUtils.addConstantPath(typeRootPaths, dataflowRoots[0], entry.getValue());
                 }
             }
         }
 
-        List<DatatypeSolution> solutions = new ArrayList<>();
+        // Configure datatype solvers
+        List<DatatypeSolver> dataflowSolvers = new ArrayList<>();
+        for (Map.Entry<String, Set<Constraint>> entry : typeNamePaths.entrySet()) {
+            dataflowSolvers.add(new DatatypeSolver(entry.getKey(), entry.getValue(), getSerializer(entry.getKey(), false)));
+        }
+        for (Map.Entry<String, Set<Constraint>> entry : typeRootPaths.entrySet()) {
+            dataflowSolvers.add(new DatatypeSolver(entry.getKey(), entry.getValue(), getSerializer(entry.getKey(), true)));
+        }
+
+        SolverEnvironment solverEnvironment = new SolverEnvironment(configuration, processingEnvironment);
+        int threads = solverEnvironment.getIntArg(DataflowSolverArg.solverThreads,
+                Runtime.getRuntime().availableProcessors());
+
+        DataflowResult result = createResult(processingEnvironment);
         try {
             if (dataflowSolvers.size() > 0) {
-                solutions = solveInparallel(dataflowSolvers);
+                solveInparallel(dataflowSolvers, threads, result);
             }
         } catch (InterruptedException | ExecutionException e) {
             e.printStackTrace();
         }
+        result.finishMerging();
 
-        return getMergedResultFromSolutions(processingEnvironment, solutions);
+        return result;
     }
 
-    private List<DatatypeSolution> solveInparallel(List<DatatypeSolver> dataflowSolvers)
+    /**
+     * Solves the datatype solvers on a pool of at most the given number of threads. Each
+     * solution is merged into the result as soon as it is found.
+     */
+    private void solveInparallel(List<DatatypeSolver> dataflowSolvers, int threads, final DataflowResult result)
             throws InterruptedException, ExecutionException {
-        ExecutorService service = Executors.newFixedThreadPool(dataflowSolvers.size());
+        if (threads <= 1 || dataflowSolvers.size() == 1) {
+            for (DatatypeSolver solver : dataflowSolvers) {
+                result.mergeSolution(solver.solve());
+            }
+            return;
+        }
 
-        List<Future<DatatypeSolution>> futures = new ArrayList<Future<DatatypeSolution>>();
+        ExecutorService service = Executors.newFixedThreadPool(Math.min(threads, dataflowSolvers.size()));
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
 
         for (final DatatypeSolver solver : dataflowSolvers) {
-            Callable<DatatypeSolution> callable = new Callable<DatatypeSolution>() {
+            service.execute(new Runnable() {
                 @Override
-                public DatatypeSolution call() throws Exception {
-                    return solver.solve();
+                public void run() {
+                    if (failure.get() != null) {
+                        return;
+                    }
+                    try {
+                        result.mergeSolution(solver.solve());
+                    } catch (Throwable th) {
+                        failure.compareAndSet(null, th);
+                    }
                 }
-            };
-            futures.add(service.submit(callable));
+            });
         }
         service.shutdown();
+        try {
+            service.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            service.shutdownNow();
+        }
 
-        List<DatatypeSolution> solutions = new ArrayList<>();
-        for (Future<DatatypeSolution> future : futures) {
-            solutions.add(future.get());
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
         }
-        return solutions;
     }
 
     protected DataflowSerializer getSerializer(String datatype, boolean isRoot) {
         return new DataflowSerializer(datatype, isRoot);
     }
 
-    protected InferenceResult getMergedResultFromSolutions(ProcessingEnvironment processingEnvironment,
-                                                           List<DatatypeSolution> solutions) {
-        return new DataflowResult(solutions, processingEnvironment);
+    /**
+     * Creates the result the solutions of the datatype solvers are merged into. Subclasses that
+     * merge solutions differently return a subclass of {@link DataflowResult} here, e.g. one
+     * overriding {@link DataflowResult#shouldContainDatatype}. This replaces the former
+     * {@code getMergedResultFromSolutions} hook, as the solutions are now merged as they are
+     * found rather than collected first.
+     */
+    protected DataflowResult createResult(ProcessingEnvironment processingEnvironment) {
+        return new DataflowResult(processingEnvironment);
     }
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -63,25 +64,35 @@ public class DataflowGraphSolvingStrategy extends GraphSolvingStrategy {
         List<Solver<?>> solvers = new ArrayList<>();
         Statistics.addOrIncrementEntry("graph_size", constraintGraph.getConstantPath().size());
 
+        // Group the constant paths by datatype, so each datatype is solved once.
+        Map<String, Set<Constraint>> typeNamePaths = new LinkedHashMap<>();
+        Map<String, Set<Constraint>> typeRootPaths = new LinkedHashMap<>();
         for (Map.Entry<Vertex, Set<Constraint>> entry : constraintGraph.getConstantPath().entrySet()) {
             AnnotationMirror anno = entry.getKey().getValue();
             if (AnnotationUtils.areSameByName(anno, DATAFLOW)) {
                 String[] dataflowValues = DataflowUtils.getTypeNames(anno);
                 String[] dataflowRoots = DataflowUtils.getTypeNameRoots(anno);
                 if (dataflowValues.length == 1) {
-                    AnnotationMirror DATAFLOWTOP = DataflowUtils.createDataflowAnnotation(
-                            DataflowUtils.convert(dataflowValues), processingEnvironment);
-                    TwoQualifiersLattice latticeFor2 = new LatticeBuilder().buildTwoTypeLattice(DATAFLOWTOP, DATAFLOWBOTTOM);
-                    solvers.add(solverFactory.createSolver(solverEnvironment, slots, entry.getValue(), latticeFor2));
+                    DataflowUtils.addConstantPath(typeNamePaths, dataflowValues[0], entry.getValue());
                 } else if (dataflowRoots.length == 1) {
-                    AnnotationMirror DATAFLOWTOP = DataflowUtils.createDataflowAnnotationForByte(
-                            DataflowUtils.convert(dataflowRoots), processingEnvironment);
-                    TwoQualifiersLattice latticeFor2 = new LatticeBuilder().buildTwoTypeLattice(DATAFLOWTOP, DATAFLOWBOTTOM);
-                    solvers.add(solverFactory.createSolver(solverEnvironment, slots, entry.getValue(), latticeFor2));
+                    DataflowUtils.addConstantPath(typeRootPaths, dataflowRoots[0], entry.getValue());
                 }
             }
         }
 
+        for (Map.Entry<String, Set<Constraint>> entry : typeNamePaths.entrySet()) {
+            AnnotationMirror DATAFLOWTOP = DataflowUtils.createDataflowAnnotation(
+                    DataflowUtils.convert(entry.getKey()), processingEnvironment);
+            TwoQualifiersLattice latticeFor2 = new LatticeBuilder().buildTwoTypeLattice(DATAFLOWTOP, DATAFLOWBOTTOM);
+            solvers.add(solverFactory.createSolver(solverEnvironment, slots, entry.getValue(), latticeFor2));
+        }
+        for (Map.Entry<String, Set<Constraint>> entry : typeRootPaths.entrySet()) {
+            AnnotationMirror DATAFLOWTOP = DataflowUtils.createDataflowAnnotationForByte(
+                    DataflowUtils.convert(entry.getKey()), processingEnvironment);
+            TwoQualifiersLattice latticeFor2 = new LatticeBuilder().buildTwoTypeLattice(DATAFLOWTOP, DATAFLOWBOTTOM);
+            solvers.add(solverFactory.createSolver(solverEnvironment, slots, entry.getValue(), latticeFor2));
+        }
+
         return solvers;
     }
 
@@ -1,7 +1,9 @@
 package dataflow.util;
 
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.processing.ProcessingEnvironment;
@@ -15,6 +17,7 @@ import org.checkerframework.javacutil.BugInCF;
 
 import com.sun.source.tree.LiteralTree;
 
+import checkers.inference.model.Constraint;
 import dataflow.qual.DataFlow;
 
 /**
@@ -199,4 +202,20 @@ public class DataflowUtils {
         AnnotationMirror am = DataflowUtils.createDataflowAnnotation(typeNames, processingEnv);
         return am;
     }
+
+    /**
+     * Adds the constant path of a datatype to the paths grouped by datatype, taking the union
+     * with the paths of other constants of the same datatype.
+     */
+    public static void addConstantPath(Map<String, Set<Constraint>> paths, String datatype,
+            Set<Constraint> constantPath) {
+        Set<Constraint> path = paths.get(datatype);
+        if (path == null) {
+            paths.put(datatype, constantPath);
+        } else {
+            Set<Constraint> union = new LinkedHashSet<>(path);
+            union.addAll(constantPath);
+            paths.put(datatype, union);
+        }
+    }
 }
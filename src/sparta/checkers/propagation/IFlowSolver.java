@@ -2,33 +2,22 @@ package sparta.checkers.propagation;
 
 import checkers.inference.DefaultInferenceResult;
 import checkers.inference.InferenceResult;
-import checkers.inference.model.VariableSlot;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.javacutil.AnnotationBuilder;
 
 import java.lang.annotation.Annotation;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.logging.Logger;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
-import javax.lang.model.element.AnnotationValue;
-import javax.lang.model.element.ExecutableElement;
 
 import checkers.inference.InferenceSolver;
-import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
-import checkers.inference.model.EqualityConstraint;
 import checkers.inference.model.Slot;
-import checkers.inference.model.Slot.Kind;
-import checkers.inference.model.SubtypeConstraint;
 import sparta.checkers.qual.Sink;
 import sparta.checkers.qual.Source;
 
@@ -51,27 +40,19 @@ import sparta.checkers.qual.Source;
  * For both modes, an equality constraint causes the Sets for both involved Slots
  * to be equal and include all Strings from either set.
  *
- * The algorithm processes list of constraints, adding the Strings to the inferredValues
- * map as needed. The entire list of constraints is processed repeatedly until the inferredValues map
- * no longer changes.
+ * The Strings of all slots are propagated at once as bit sets by {@link PermissionBitSetPropagator},
+ * until they no longer change. They are converted to annotations only at the end.
  *
  * @author mcarthur
  */
 public abstract class IFlowSolver implements InferenceSolver {
 
-    private static final Logger logger = Logger.getLogger(Logger.class.getName());
-
     private static final String PRINT_EMPTY_SINKS_KEY="print-empty-sinks";
     private static final String PRINT_EMPTY_SOURCES_KEY="print-empty-sources";
 
     private ProcessingEnvironment processingEnvironment;
     private Map<String, String> configuration;
 
-    /**
-     * Map of inferred Strings for an VariableSlot's id.
-     */
-    private final Map<Integer, Set<String>> inferredValues = new HashMap<>();
-
     // private final Map<String, Set<String>> flowPolicy = new HashMap<>();
 
     @Override
@@ -85,54 +66,15 @@ public abstract class IFlowSolver implements InferenceSolver {
         this.processingEnvironment = processingEnvironment;
         this.configuration = configuration;
 
-        // Fixed point
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-
-            for (Constraint constraint : constraints) {
-                if (constraint instanceof SubtypeConstraint) {
-                    Slot subtype = ((SubtypeConstraint)constraint).getSubtype();
-                    Slot supertype = ((SubtypeConstraint)constraint).getSupertype();
-
-                    Set<String> subtypePerms = getInferredSlotPermissions(subtype);
-                    Set<String> supertypePerms = getInferredSlotPermissions(supertype);
-
-                    if (isSinkSolver()) {
-                        if (subtype instanceof VariableSlot) {
-                            changed |= subtypePerms.addAll(supertypePerms);
-                        }
-                    } else {
-                        if (supertype instanceof VariableSlot) {
-                            changed |= supertypePerms.addAll(subtypePerms);
-                        }
-                    }
-                } else if (constraint instanceof EqualityConstraint) {
-                    Slot first = ((EqualityConstraint)constraint).getFirst();
-                    Slot second = ((EqualityConstraint)constraint).getSecond();
-
-                    Set<String> firstPerms = getInferredSlotPermissions(first);
-                    Set<String> secondPerms = getInferredSlotPermissions(second);
-
-                    if (first instanceof VariableSlot) {
-                        changed |= firstPerms.addAll(secondPerms);
-                    }
-
-                    if (second instanceof VariableSlot) {
-                        changed |= secondPerms.addAll(firstPerms);
-                    }
-                } else {
-                    logger.info("Ignoring constraint type: " + constraint.getClass());
-                }
-            }
-        }
+        Map<Integer, Set<String>> inferredValues =
+                new PermissionBitSetPropagator(constraints, isSinkSolver()).solve();
 
-        Map<Integer, AnnotationMirror> solutions = createAnnotations();
+        Map<Integer, AnnotationMirror> solutions = createAnnotations(inferredValues);
 
         return new DefaultInferenceResult(solutions);
     }
 
-    private Map<Integer, AnnotationMirror> createAnnotations() {
+    private Map<Integer, AnnotationMirror> createAnnotations(Map<Integer, Set<String>> inferredValues) {
         // Create annotations of the inferred sets.
         Map<Integer, AnnotationMirror> solutions = new HashMap<>();
         for (Entry<Integer, Set<String>> inferredEntry : inferredValues.entrySet()) {
@@ -158,69 +100,12 @@ public abstract class IFlowSolver implements InferenceSolver {
     }
 
 
-    /**
-     * Look up the set of inferred Strings for a Slot.
-     *
-     * If the Slot is a VariableSlot, return its entry in inferredValues.
-     *
-     * If the Slot is a ConstantSlot, return an unmodifiable set based
-     * on the Strings used in the constant slots value.
-     *
-     * @param slot The slot to lookup
-     * @return The slots current Set of Strings.
-     */
-    private Set<String> getInferredSlotPermissions(Slot slot) {
-        if (slot instanceof VariableSlot) {
-            if (slot.getKind() == Kind.EXISTENTIAL_VARIABLE) {
-                throw new IllegalArgumentException("Unexpected variable type:" + slot);
-            }
-            return getFlowSet(slot.getId());
-
-        } else if (slot instanceof ConstantSlot) {
-            Set<String> constantSet = new HashSet<>();
-            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
-                    ((ConstantSlot) slot).getValue().getElementValues().entrySet()) {
-                if (entry.getKey().getSimpleName().toString().equals("value")) {
-                    List<?> values = (List<?>) entry.getValue().getValue();
-                    for (Object elem : values) {
-                        String flowPermString = elem.toString();
-                        flowPermString = flowPermString.substring(flowPermString.lastIndexOf(".") + 1);
-                        flowPermString = flowPermString.replace("\"", "");
-                        constantSet.add(String.valueOf(flowPermString).intern());
-                    }
-                }
-            }
-            // The set of constants should not be modified
-            return Collections.unmodifiableSet(constantSet);
-        } else {
-            return new HashSet<>();
-//            throw new BugInCF("Found slot that was neither a variable or a constant: " + slot);
-        }
-    }
-
     private AnnotationMirror createAnnotationMirror(Set<String> strings, Class<? extends Annotation> clazz) {
         AnnotationBuilder builder = new AnnotationBuilder( processingEnvironment, clazz);
         builder.setValue("value", strings.toArray());
         return builder.build();
     }
 
-    /**
-     * Get the Set of Strings in aggregatedValues map for the given id.
-     * Create the Set and add it to the map if it does not already exist.
-     *
-     * @param id The id of the VariableSlot
-     * @return The set of Strings for the id
-     */
-    private Set<String> getFlowSet(int id) {
-        if (inferredValues.containsKey(id)) {
-            return inferredValues.get(id);
-        } else {
-            Set<String> newSet = new HashSet<>();
-            inferredValues.put(id, newSet);
-            return newSet;
-        }
-    }
-
     /**
      * Configure the mode of the solver.
      *
@@ -0,0 +1,257 @@
+package sparta.checkers.propagation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.Slot.Kind;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * PermissionBitSetPropagator computes the permission Strings of the variables of
+ * {@link IFlowSolver} for all permissions at once.
+ *
+ * Every permission String used by a constant gets a bit index, and the permissions of every slot
+ * are a bit set of {@code words} longs, stored in one flat long array at {@code node * words}.
+ * The constraints become edges from the slot whose permissions are added to the variable slot
+ * that receives them, stored in compressed sparse row form. The edges are then propagated with a
+ * worklist: when the bits of a slot change, its edges are or-ed word by word into their targets,
+ * and the targets that change are queued in turn. Each slot is thus only revisited when a
+ * predecessor gained a permission, and the Strings are only built back for the result.
+ */
+class PermissionBitSetPropagator {
+
+    private static final Logger logger = Logger.getLogger(Logger.class.getName());
+
+    private final Collection<Constraint> constraints;
+    private final boolean isSinkSolver;
+
+    /** Maps permission Strings to bit indices. */
+    private final Map<String, Integer> permissionBits = new HashMap<>();
+    private final List<String> permissions = new ArrayList<>();
+
+    /** Maps slot ids to dense node indices. */
+    private final Map<Integer, Integer> nodeIndices = new HashMap<>();
+    private final List<Slot> nodes = new ArrayList<>();
+    /** The permission bit indices of each constant node, or null for variable nodes. */
+    private final List<int[]> constantPermissions = new ArrayList<>();
+
+    /**
+     * Edges in compressed sparse row form: the targets of node {@code n} are at
+     * {@code [edgeStart[n], edgeStart[n + 1])} of edgeTarget.
+     */
+    private int[] edgeStart;
+    private int[] edgeTarget;
+
+    private int words;
+    private long[] bits;
+
+    PermissionBitSetPropagator(Collection<Constraint> constraints, boolean isSinkSolver) {
+        this.constraints = constraints;
+        this.isSinkSolver = isSinkSolver;
+    }
+
+    /**
+     * Propagates the permissions to a fixed point, and returns the inferred permission Strings
+     * of every variable slot of a subtype or equality constraint, by slot id.
+     */
+    Map<Integer, Set<String>> solve() {
+        encode();
+        propagate();
+
+        Map<Integer, Set<String>> inferredValues = new HashMap<>();
+        for (int node = 0; node < nodes.size(); node++) {
+            if (constantPermissions.get(node) == null) {
+                inferredValues.put(nodes.get(node).getId(), toStrings(node));
+            }
+        }
+        return inferredValues;
+    }
+
+    /**
+     * Builds the nodes, the edges and the initial bits of the constants.
+     */
+    private void encode() {
+        List<int[]> edges = new ArrayList<>();
+        Set<Class<?>> ignoredConstraintTypes = new HashSet<>();
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint) {
+                int subtype = nodeIndex(((SubtypeConstraint) constraint).getSubtype());
+                int supertype = nodeIndex(((SubtypeConstraint) constraint).getSupertype());
+
+                if (isSinkSolver) {
+                    addEdge(edges, supertype, subtype);
+                } else {
+                    addEdge(edges, subtype, supertype);
+                }
+            } else if (constraint instanceof EqualityConstraint) {
+                int first = nodeIndex(((EqualityConstraint) constraint).getFirst());
+                int second = nodeIndex(((EqualityConstraint) constraint).getSecond());
+
+                addEdge(edges, second, first);
+                addEdge(edges, first, second);
+            } else if (ignoredConstraintTypes.add(constraint.getClass())) {
+                logger.info("Ignoring constraint type: " + constraint.getClass());
+            }
+        }
+
+        edgeStart = new int[nodes.size() + 1];
+        for (int[] edge : edges) {
+            edgeStart[edge[0] + 1]++;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            edgeStart[i + 1] += edgeStart[i];
+        }
+        edgeTarget = new int[edges.size()];
+        int[] fill = Arrays.copyOf(edgeStart, nodes.size());
+        for (int[] edge : edges) {
+            edgeTarget[fill[edge[0]]++] = edge[1];
+        }
+
+        words = Math.max(1, (permissions.size() + 63) >>> 6);
+        bits = new long[nodes.size() * words];
+        for (int node = 0; node < nodes.size(); node++) {
+            int[] constant = constantPermissions.get(node);
+            if (constant != null) {
+                for (int bit : constant) {
+                    bits[node * words + (bit >>> 6)] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an edge that adds the permissions of source to target, if target is a variable.
+     * A node index of -1 stands for a slot that is neither a variable nor a constant, which
+     * has no permissions.
+     */
+    private void addEdge(List<int[]> edges, int source, int target) {
+        if (source >= 0 && target >= 0 && source != target && constantPermissions.get(target) == null) {
+            edges.add(new int[] {source, target});
+        }
+    }
+
+    private void propagate() {
+        // Each node is queued at most once at a time, so a ring buffer of nodes.size() suffices.
+        int[] queue = new int[Math.max(1, nodes.size())];
+        boolean[] queued = new boolean[nodes.size()];
+        int head = 0;
+        int size = 0;
+        for (int node = 0; node < nodes.size(); node++) {
+            if (constantPermissions.get(node) != null) {
+                queue[(head + size++) % queue.length] = node;
+                queued[node] = true;
+            }
+        }
+
+        while (size > 0) {
+            int source = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+            queued[source] = false;
+
+            int sourceOffset = source * words;
+            for (int edge = edgeStart[source]; edge < edgeStart[source + 1]; edge++) {
+                int target = edgeTarget[edge];
+                int targetOffset = target * words;
+                long changed = 0;
+                for (int word = 0; word < words; word++) {
+                    long before = bits[targetOffset + word];
+                    long after = before | bits[sourceOffset + word];
+                    bits[targetOffset + word] = after;
+                    changed |= before ^ after;
+                }
+                if (changed != 0 && !queued[target]) {
+                    queue[(head + size++) % queue.length] = target;
+                    queued[target] = true;
+                }
+            }
+        }
+    }
+
+    private Set<String> toStrings(int node) {
+        Set<String> strings = new LinkedHashSet<>();
+        int offset = node * words;
+        for (int word = 0; word < words; word++) {
+            long value = bits[offset + word];
+            while (value != 0) {
+                strings.add(permissions.get((word << 6) + Long.numberOfTrailingZeros(value)));
+                value &= value - 1;
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Returns the node index of a slot, or -1 if the slot is neither a variable nor a constant.
+     */
+    private int nodeIndex(Slot slot) {
+        if (slot instanceof VariableSlot) {
+            if (slot.getKind() == Kind.EXISTENTIAL_VARIABLE) {
+                throw new IllegalArgumentException("Unexpected variable type:" + slot);
+            }
+        } else if (!(slot instanceof ConstantSlot)) {
+            return -1;
+        }
+
+        Integer index = nodeIndices.get(slot.getId());
+        if (index == null) {
+            index = nodes.size();
+            nodeIndices.put(slot.getId(), index);
+            nodes.add(slot);
+            constantPermissions.add(slot instanceof ConstantSlot ? permissionBits((ConstantSlot) slot) : null);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the bit indices of the Strings used in the value of a constant slot.
+     */
+    private int[] permissionBits(ConstantSlot slot) {
+        Set<Integer> constantBits = new LinkedHashSet<>();
+        for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                slot.getValue().getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().toString().equals("value")) {
+                List<?> values = (List<?>) entry.getValue().getValue();
+                for (Object elem : values) {
+                    String flowPermString = elem.toString();
+                    flowPermString = flowPermString.substring(flowPermString.lastIndexOf(".") + 1);
+                    flowPermString = flowPermString.replace("\"", "");
+                    constantBits.add(permissionBit(flowPermString));
+                }
+            }
+        }
+        int[] result = new int[constantBits.size()];
+        int next = 0;
+        for (int bit : constantBits) {
+            result[next++] = bit;
+        }
+        return result;
+    }
+
+    private int permissionBit(String permission) {
+        Integer bit = permissionBits.get(permission);
+        if (bit == null) {
+            bit = permissions.size();
+            permissionBits.put(permission, bit);
+            permissions.add(permission);
+        }
+        return bit;
+    }
+}
@@ -1,17 +1,44 @@
 package sparta.checkers.sat;
 
 import checkers.inference.InferenceMain;
+import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.serialization.CnfVecIntSerializer;
 import sparta.checkers.iflow.util.PFPermission;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Created by smillst on 9/16/15.
  */
 public abstract class IFlowSerializer extends CnfVecIntSerializer {
     protected PFPermission permission;
 
+    /**
+     * Whether each constant slot, by id, is top for the permission, see {@link #cacheTops(Iterable)}.
+     */
+    private final Map<Integer, Boolean> tops = new HashMap<>();
+
     public IFlowSerializer(PFPermission permission) {
         super(InferenceMain.getInstance().getSlotManager());
         this.permission = permission;
     }
+
+    /**
+     * Decides now whether each of the given constants is top for the permission. Constraints on
+     * these constants can then be serialized on another thread, without reading annotations.
+     */
+    public void cacheTops(Iterable<ConstantSlot> constantSlots) {
+        for (ConstantSlot constantSlot : constantSlots) {
+            tops.put(constantSlot.getId(), isTopForPermission(constantSlot));
+        }
+    }
+
+    @Override
+    public boolean isTop(ConstantSlot constantSlot) {
+        Boolean top = tops.get(constantSlot.getId());
+        return top != null ? top : isTopForPermission(constantSlot);
+    }
+
+    protected abstract boolean isTopForPermission(ConstantSlot constantSlot);
 }
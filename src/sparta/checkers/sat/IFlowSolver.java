@@ -5,44 +5,109 @@ import checkers.inference.InferenceSolver;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
+import checkers.inference.solver.util.SolverArg;
+import checkers.inference.solver.util.SolverEnvironment;
+import checkers.inference.solver.util.Statistics;
 import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.BugInCF;
 import sparta.checkers.iflow.util.PFPermission;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by smillst on 9/17/15.
+ *
+ * Solves one MaxSAT problem per permission used. The constraints without constants are encoded
+ * once for all permissions, see {@link SharedIFlowEncoding}, and the permissions are encoded and
+ * solved in parallel on a pool of {@code permissionThreads} threads.
  */
 public abstract class IFlowSolver implements InferenceSolver {
 
+    enum IFlowSolverArg implements SolverArg {
+        /**
+         * Number of permissions solved at the same time. Defaults to the number of available
+         * processors.
+         */
+        permissionThreads,
+
+        /**
+         * Whether to skip the permissions of constants that are not in any constraint with a
+         * variable, which then get no variable. ANY is never skipped.
+         */
+        skipUnreachablePermissions;
+    }
 
     public InferenceResult solve(Map<String, String> configuration,
                                  Collection<Slot> slots,
                                  Collection<Constraint> constraints,
                                  QualifierHierarchy qualHierarchy,
                                  ProcessingEnvironment processingEnvironment) {
+        SolverEnvironment solverEnvironment = new SolverEnvironment(configuration, processingEnvironment);
         Collection<PFPermission> permissionsUsed = getPermissionsUsed(slots);
+        SharedIFlowEncoding encoding = new SharedIFlowEncoding(constraints);
+
+        if (solverEnvironment.getBoolArg(IFlowSolverArg.skipUnreachablePermissions)) {
+            Collection<PFPermission> reachable = getPermissionsUsed(encoding.getReachingConstantSlots());
+            Statistics.addOrIncrementEntry("iflow_skipped_permissions", permissionsUsed.size() - reachable.size());
+            permissionsUsed = reachable;
+        }
+
         List<PermissionSolver> permissionSolvers = new ArrayList<>();
 
         // Configure permission solvers
         for (PFPermission permission : permissionsUsed) {
             PermissionSolver solver = new PermissionSolver(permission);
-            solver.configure(constraints, getSerializer(permission));
+            solver.configure(encoding, getSerializer(permission));
             permissionSolvers.add(solver);
         }
 
         // Solve
+        int threads = solverEnvironment.getIntArg(IFlowSolverArg.permissionThreads,
+                Runtime.getRuntime().availableProcessors());
+        List<PermissionSolution> solutions = solveAll(permissionSolvers, threads);
+
+        return getMergedResultFromSolutions(processingEnvironment, solutions);
+    }
+
+    private List<PermissionSolution> solveAll(List<PermissionSolver> permissionSolvers, int threads) {
         List<PermissionSolution> solutions = new ArrayList<>();
-        for (PermissionSolver solver : permissionSolvers) {
-            solutions.add(solver.solve());
+        if (threads <= 1 || permissionSolvers.size() <= 1) {
+            for (PermissionSolver solver : permissionSolvers) {
+                solutions.add(solver.solve());
+            }
+            return solutions;
         }
 
-        return getMergedResultFromSolutions(processingEnvironment, solutions);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, permissionSolvers.size()));
+        try {
+            List<Future<PermissionSolution>> futures = new ArrayList<>();
+            for (PermissionSolver solver : permissionSolvers) {
+                futures.add(executor.submit(solver::solve));
+            }
+            for (Future<PermissionSolution> future : futures) {
+                solutions.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BugInCF("Interrupted while solving permissions.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BugInCF("Exception while solving permissions.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return solutions;
     }
 
-    private Collection<PFPermission> getPermissionsUsed(Collection<Slot> solts) {
+    private Collection<PFPermission> getPermissionsUsed(Collection<? extends Slot> solts) {
         Set<PFPermission> permissions = new TreeSet<>();
         for (Slot slot : solts) {
             if (slot instanceof ConstantSlot) {
@@ -2,8 +2,10 @@ package sparta.checkers.sat;
 
 import checkers.inference.*;
 import checkers.inference.model.Constraint;
+import checkers.inference.solver.backend.maxsat.ClauseArena;
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
+import org.sat4j.specs.IVecInt;
 import sparta.checkers.iflow.util.PFPermission;
 
 import java.util.Collection;
@@ -18,6 +20,16 @@ public class PermissionSolver {
     private IFlowSerializer serializer;
     List<VecInt> clauses;
 
+    /**
+     * Clauses shared with the solvers of other permissions, see {@link SharedIFlowEncoding}.
+     */
+    private ClauseArena sharedClauses = new ClauseArena();
+
+    /**
+     * Constraints still to be encoded into {@link #clauses} when solving, or null.
+     */
+    private Collection<Constraint> pendingConstraints;
+
     public PermissionSolver(PFPermission permission) {
         this.permission = permission;
     }
@@ -28,6 +40,19 @@ public class PermissionSolver {
         this.clauses = convertToCNF(constraints);
     }
 
+    /**
+     * Configures this solver with an encoding shared with the solvers of other permissions. Only
+     * the constraints on constants are encoded for this permission, when {@link #solve()} is
+     * called, so that the solvers of different permissions can encode and solve in parallel.
+     */
+    public void configure(SharedIFlowEncoding encoding, IFlowSerializer serializer) {
+        this.serializer = serializer;
+        this.slotManager = InferenceMain.getInstance().getSlotManager();
+        this.sharedClauses = encoding.getSharedClauses();
+        this.pendingConstraints = encoding.getPermissionConstraints();
+        serializer.cacheTops(encoding.getConstantSlots());
+    }
+
     private List<VecInt> convertToCNF(Collection<Constraint> constraints) {
         return serializer.convertAll(constraints);
     }
@@ -38,8 +63,13 @@ public class PermissionSolver {
         Map<Integer, Boolean> result = new HashMap<>();
 
 
+        if (pendingConstraints != null) {
+            clauses = convertToCNF(pendingConstraints);
+            pendingConstraints = null;
+        }
+
         final int totalVars = slotManager.getNumberOfSlots();
-        final int totalClauses = clauses.size();
+        final int totalClauses = sharedClauses.size() + clauses.size();
 
         try {
             // **** Prep Solver ****
@@ -50,6 +80,10 @@ public class PermissionSolver {
             solver.setExpectedNumberOfClauses(totalClauses);
             // Arbitrary timeout
             solver.setTimeoutMs(1000000);
+            final IVecInt sharedClause = new VecInt();
+            for (int i = 0; i < sharedClauses.size(); i++) {
+                solver.addSoftClause(sharedClauses.copyTo(i, sharedClause));
+            }
             for (VecInt clause : clauses) {
                 solver.addSoftClause(clause);
             }
@@ -79,7 +113,7 @@ public class PermissionSolver {
             }
 
         } catch (Throwable th) {
-            VecInt lastClause = clauses.get(clauses.size() - 1);
+            VecInt lastClause = clauses.isEmpty() ? null : clauses.get(clauses.size() - 1);
             throw new RuntimeException("Error MAX-SAT solving! " + lastClause, th);
         }
 
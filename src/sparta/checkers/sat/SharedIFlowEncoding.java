@@ -0,0 +1,113 @@
+package sparta.checkers.sat;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.solver.backend.maxsat.ClauseArena;
+import org.checkerframework.javacutil.BugInCF;
+import org.sat4j.core.VecInt;
+import sparta.checkers.iflow.util.PFPermission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The part of the CNF encoding of the constraints that is the same for every permission, shared
+ * by all {@link PermissionSolver}s.
+ *
+ * Only constraints on constant slots depend on the permission, through
+ * {@link IFlowSerializer#isTop(ConstantSlot)}. All other constraints are encoded once here, and
+ * each permission solver only encodes the constraints on constants. Existential constraints are
+ * always left to the permission solvers, as their serializer numbers the existential variables.
+ */
+public class SharedIFlowEncoding {
+
+    private final ClauseArena sharedClauses = new ClauseArena();
+
+    private final List<Constraint> permissionConstraints = new ArrayList<>();
+
+    /**
+     * The constant slots of the constraints left to the permission solvers, by id.
+     */
+    private final Map<Integer, ConstantSlot> constantSlots = new LinkedHashMap<>();
+
+    /**
+     * The constant slots that are in a constraint with a variable slot, by id.
+     */
+    private final Map<Integer, ConstantSlot> reachingConstantSlots = new LinkedHashMap<>();
+
+    public SharedIFlowEncoding(Collection<Constraint> constraints) {
+        IFlowSerializer serializer = new IFlowSerializer(PFPermission.ANY) {
+            @Override
+            protected boolean isTopForPermission(ConstantSlot constantSlot) {
+                throw new BugInCF("Constraints on constants depend on the permission: " + constantSlot);
+            }
+        };
+
+        for (Constraint constraint : constraints) {
+            List<ConstantSlot> constants = new ArrayList<>();
+            boolean hasVariable = false;
+            for (Slot slot : constraint.getSlots()) {
+                if (slot instanceof ConstantSlot) {
+                    constants.add((ConstantSlot) slot);
+                } else {
+                    hasVariable = true;
+                }
+            }
+
+            if (hasVariable) {
+                for (ConstantSlot constant : constants) {
+                    reachingConstantSlots.put(constant.getId(), constant);
+                }
+            }
+
+            if (!constants.isEmpty() || constraint instanceof ExistentialConstraint) {
+                permissionConstraints.add(constraint);
+                for (ConstantSlot constant : constants) {
+                    constantSlots.put(constant.getId(), constant);
+                }
+            } else {
+                for (VecInt clause : constraint.serialize(serializer)) {
+                    if (clause.size() != 0) {
+                        sharedClauses.add(clause);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the clauses of the constraints that do not depend on the permission. Use
+     * {@link ClauseArena#copyTo(int, org.sat4j.specs.IVecInt)} to feed a clause to a solver.
+     */
+    public ClauseArena getSharedClauses() {
+        return sharedClauses;
+    }
+
+    /**
+     * Returns the constraints each permission solver encodes itself.
+     */
+    public List<Constraint> getPermissionConstraints() {
+        return Collections.unmodifiableList(permissionConstraints);
+    }
+
+    /**
+     * Returns the constant slots of {@link #getPermissionConstraints()}.
+     */
+    public Collection<ConstantSlot> getConstantSlots() {
+        return Collections.unmodifiableCollection(constantSlots.values());
+    }
+
+    /**
+     * Returns the constant slots that are in a constraint with a variable slot. Permissions that
+     * none of them has cannot reach a variable.
+     */
+    public Collection<ConstantSlot> getReachingConstantSlots() {
+        return Collections.unmodifiableCollection(reachingConstantSlots.values());
+    }
+}
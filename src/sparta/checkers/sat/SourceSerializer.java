@@ -18,7 +18,7 @@ public class SourceSerializer extends IFlowSerializer {
     }
 
     @Override
-    public boolean isTop(ConstantSlot constantSlot) {
+    protected boolean isTopForPermission(ConstantSlot constantSlot) {
         AnnotationMirror anno = constantSlot.getValue();
         return annoHasPermission(anno);
     }
@@ -0,0 +1,46 @@
+package checkers.inference;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class InferenceDaemonTest extends TestCase {
+
+    @Test
+    public void testInvalidRequestsKeepTheDaemonAlive() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            int port = serverSocket.getLocalPort();
+            Thread daemon = new Thread(() -> {
+                try {
+                    new InferenceDaemon(serverSocket).serve();
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+            daemon.start();
+
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                int status = InferenceDaemon.sendRequest(port,
+                        Arrays.asList("--mode", "BOGUS", "--checker", "ostrusted.OsTrustedChecker"),
+                        new PrintStream(response, true, "UTF-8"));
+                assertEquals(1, status);
+                assertTrue(new String(response.toByteArray(), StandardCharsets.UTF_8)
+                        .contains("Could not recognize mode: BOGUS"));
+            }
+
+            assertEquals(0, InferenceDaemon.sendRequest(port,
+                    Collections.singletonList(InferenceDaemon.SHUTDOWN), new PrintStream(new ByteArrayOutputStream())));
+            daemon.join(10000);
+            assertFalse(daemon.isAlive());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package checkers.inference.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ConstraintManagerTest extends TestCase {
+
+    private static SourceVariableSlot variable(int id) {
+        return new SourceVariableSlot(id, AnnotationLocation.MISSING_LOCATION, null, true);
+    }
+
+    @Test
+    public void testListenersAreNotifiedOnFirstAdd() {
+        ConstraintManager constraintManager = new ConstraintManager();
+        List<Constraint> notified = new ArrayList<>();
+        constraintManager.addConstraintListener(notified::add);
+        Slot x = variable(1);
+        Slot y = variable(2);
+        Slot z = variable(3);
+
+        constraintManager.addEqualityConstraint(x, y);
+        constraintManager.addEqualityConstraint(y, x);
+        constraintManager.addInequalityConstraint(x, z);
+        constraintManager.addEqualityConstraint(x, y);
+        // Always true, so never added.
+        constraintManager.addEqualityConstraint(z, z);
+
+        assertEquals(new ArrayList<>(constraintManager.getConstraints()), notified);
+        assertEquals(2, notified.size());
+        assertSame(constraintManager.createEqualityConstraint(y, x), notified.get(0));
+    }
+
+    @Test
+    public void testCreatedConstraintsAreNotNotified() {
+        ConstraintManager constraintManager = new ConstraintManager();
+        List<Constraint> notified = new ArrayList<>();
+        constraintManager.addConstraintListener(notified::add);
+        Slot x = variable(1);
+        Slot y = variable(2);
+
+        // The assumption is created but only the implication is added.
+        Constraint assumption = constraintManager.createEqualityConstraint(x, y);
+        constraintManager.addImplicationConstraint(Arrays.asList(assumption),
+                constraintManager.createInequalityConstraint(x, y));
+
+        assertEquals(1, notified.size());
+        assertTrue(notified.get(0) instanceof ImplicationConstraint);
+    }
+
+    @Test
+    public void testRemovedListenersAreNotNotified() {
+        ConstraintManager constraintManager = new ConstraintManager();
+        List<Constraint> notified = new ArrayList<>();
+        ConstraintListener listener = notified::add;
+        constraintManager.addConstraintListener(listener);
+        constraintManager.removeConstraintListener(listener);
+
+        constraintManager.addEqualityConstraint(variable(1), variable(2));
+
+        assertEquals(Collections.emptyList(), notified);
+        assertEquals(1, constraintManager.getConstraints().size());
+    }
+}
@@ -0,0 +1,96 @@
+package checkers.inference.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import checkers.inference.model.ConstraintStore.BinaryKind;
+import junit.framework.TestCase;
+
+public class ConstraintStoreTest extends TestCase {
+
+    private static SourceVariableSlot variable(int id) {
+        return new SourceVariableSlot(id, AnnotationLocation.MISSING_LOCATION, null, true);
+    }
+
+    @Test
+    public void testAddDeduplicates() {
+        ConstraintStore store = new ConstraintStore();
+        Slot x = variable(1);
+        Slot y = variable(2);
+
+        Constraint first = SubtypeConstraint.create(x, y, AnnotationLocation.MISSING_LOCATION, null);
+        Constraint second = SubtypeConstraint.create(x, y, AnnotationLocation.MISSING_LOCATION, null);
+        assertNotSame(first, second);
+
+        assertSame(first, store.add(first));
+        assertNull(store.add(second));
+        assertTrue(store.isAdded(second));
+        assertSame(first, store.canonicalize(second));
+        assertEquals(1, store.getAddedConstraints().size());
+        assertEquals(1, store.getNumberOfBinaryConstraints(BinaryKind.SUBTYPE));
+    }
+
+    @Test
+    public void testSubtypeIsDirected() {
+        ConstraintStore store = new ConstraintStore();
+        Slot x = variable(1);
+        Slot y = variable(2);
+
+        store.add(SubtypeConstraint.create(x, y, AnnotationLocation.MISSING_LOCATION, null));
+        assertNull(store.lookup(BinaryKind.SUBTYPE, y, x));
+        assertNotNull(store.add(SubtypeConstraint.create(y, x, AnnotationLocation.MISSING_LOCATION, null)));
+        assertEquals(2, store.getAddedConstraints().size());
+    }
+
+    @Test
+    public void testEqualityIsSymmetric() {
+        ConstraintStore store = new ConstraintStore();
+        Slot x = variable(1);
+        Slot y = variable(2);
+
+        Constraint equality = EqualityConstraint.create(x, y, AnnotationLocation.MISSING_LOCATION);
+        store.add(equality);
+
+        assertSame(equality, store.lookup(BinaryKind.EQUALITY, y, x));
+        assertNull(store.add(EqualityConstraint.create(y, x, AnnotationLocation.MISSING_LOCATION)));
+        assertEquals(1, store.getNumberOfBinaryConstraints(BinaryKind.EQUALITY));
+    }
+
+    @Test
+    public void testCreatedConstraintsAreNotRetained() {
+        ConstraintStore store = new ConstraintStore();
+        Slot x = variable(1);
+        Slot y = variable(2);
+
+        Constraint created = SubtypeConstraint.create(x, y, AnnotationLocation.MISSING_LOCATION, null);
+        assertSame(created, store.canonicalize(created));
+        assertNull(store.lookup(BinaryKind.SUBTYPE, x, y));
+        assertFalse(store.isAdded(created));
+        assertTrue(store.getAddedConstraints().isEmpty());
+        assertEquals(0, store.getNumberOfBinaryConstraints(BinaryKind.SUBTYPE));
+
+        // A later, equal constraint is not replaced by the one that was only created.
+        Constraint later = SubtypeConstraint.create(x, y, AnnotationLocation.MISSING_LOCATION, null);
+        assertSame(later, store.add(later));
+    }
+
+    @Test
+    public void testColumns() {
+        ConstraintStore store = new ConstraintStore();
+        List<Slot> slots = new ArrayList<>();
+        for (int id = 1; id <= 100; id++) {
+            slots.add(variable(id));
+        }
+        for (int i = 0; i + 1 < slots.size(); i++) {
+            store.add(SubtypeConstraint.create(slots.get(i), slots.get(i + 1), AnnotationLocation.MISSING_LOCATION, null));
+        }
+
+        assertEquals(99, store.getNumberOfBinaryConstraints(BinaryKind.SUBTYPE));
+        for (int i = 0; i < 99; i++) {
+            assertEquals(i + 1, store.getFirstSlotId(BinaryKind.SUBTYPE, i));
+            assertEquals(i + 2, store.getSecondSlotId(BinaryKind.SUBTYPE, i));
+        }
+    }
+}
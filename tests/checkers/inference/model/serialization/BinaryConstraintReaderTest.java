@@ -0,0 +1,213 @@
+package checkers.inference.model.serialization;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.junit.Test;
+
+import com.sun.source.tree.Tree;
+
+import scenelib.annotations.io.ASTPath;
+import scenelib.annotations.io.ASTRecord;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceResult;
+import checkers.inference.InferenceSolver;
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.AnnotationLocation.AstPathLocation;
+import checkers.inference.model.AnnotationLocation.ClassDeclLocation;
+import checkers.inference.model.ArithmeticConstraint;
+import checkers.inference.model.ArithmeticConstraint.ArithmeticOperationKind;
+import checkers.inference.model.ArithmeticVariableSlot;
+import checkers.inference.model.CombVariableSlot;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintFactory;
+import checkers.inference.model.ConstraintManager;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.ExistentialVariableSlot;
+import checkers.inference.model.LubVariableSlot;
+import checkers.inference.model.RefinementVariableSlot;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.test.AnnotationMirrors;
+import junit.framework.TestCase;
+
+public class BinaryConstraintReaderTest extends TestCase {
+
+    private static final AnnotationLocation PLUS_LOCATION = new AstPathLocation(new ASTRecord(null, "C", "m()V", null,
+            ASTPath.empty().extend(new ASTPath.ASTEntry(Tree.Kind.METHOD, ASTPath.BODY))
+                    .extend(new ASTPath.ASTEntry(Tree.Kind.BLOCK, ASTPath.STATEMENT, 2))));
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private AnnotationMirrorSerializer annotationSerializer;
+    private File file;
+
+    private List<Slot> slots;
+    private List<Constraint> constraints;
+
+    @Override
+    protected void setUp() throws IOException {
+        InferenceMain.resetInstance();
+        List<AnnotationMirror> qualifiers = AnnotationMirrors.qualifiers(AnnotationMirrors.TOP_AND_BOTTOM);
+        top = qualifiers.get(0);
+        bottom = qualifiers.get(1);
+        annotationSerializer = new SimpleAnnotationMirrorSerializer(top, bottom);
+        file = File.createTempFile("constraints", ".bin");
+
+        AnnotationLocation location = AnnotationLocation.MISSING_LOCATION;
+        SourceVariableSlot x = new SourceVariableSlot(1, location, null, true);
+        SourceVariableSlot y = new SourceVariableSlot(2, location, null, false);
+        ConstantSlot topSlot = new ConstantSlot(3, top);
+        ConstantSlot bottomSlot = new ConstantSlot(4, bottom);
+        RefinementVariableSlot refinement = new RefinementVariableSlot(5, location, x);
+        CombVariableSlot comb = new CombVariableSlot(6, location, x, y);
+        LubVariableSlot lub = new LubVariableSlot(7, location, x, refinement);
+        ExistentialVariableSlot existential = new ExistentialVariableSlot(8, y, x);
+        ArithmeticVariableSlot arithmetic = new ArithmeticVariableSlot(9, new ClassDeclLocation("Sum"));
+        slots = Arrays.asList(x, y, topSlot, bottomSlot, refinement, comb, lub, existential, arithmetic);
+
+        ConstraintManager constraintManager = new ConstraintManager();
+        constraints = Arrays.asList(
+                constraintManager.createSubtypeConstraint(x, y),
+                constraintManager.createEqualityConstraint(refinement, x),
+                constraintManager.createInequalityConstraint(y, bottomSlot),
+                constraintManager.createComparableConstraint(x, y),
+                constraintManager.createCombineConstraint(x, y, comb),
+                constraintManager.createPreferenceConstraint(x, bottomSlot, 7),
+                constraintManager.createExistentialConstraint(y,
+                        Arrays.asList(constraintManager.createEqualityConstraint(y, lub)),
+                        Arrays.asList(constraintManager.createSubtypeConstraint(x, existential))),
+                constraintManager.createImplicationConstraint(
+                        Arrays.asList(constraintManager.createEqualityConstraint(x, topSlot)),
+                        constraintManager.createEqualityConstraint(y, topSlot)),
+                new ConstraintFactory(null, PLUS_LOCATION)
+                        .createArithmeticConstraint(ArithmeticOperationKind.PLUS, x, y, arithmetic));
+        new BinaryConstraintWriter(annotationSerializer).write(file, slots, constraints);
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private BinaryConstraintReader read() throws IOException {
+        return new BinaryConstraintReader(file, annotationSerializer, null);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        BinaryConstraintReader reader = read();
+
+        assertEquals(slots, reader.getSlots());
+        for (int i = 0; i < slots.size(); i++) {
+            assertEquals(slots.get(i).getKind(), reader.getSlots().get(i).getKind());
+        }
+        assertTrue(reader.getSlot(1).isInsertable());
+        assertFalse(reader.getSlot(2).isInsertable());
+        assertSame(top, ((ConstantSlot) reader.getSlot(3)).getValue());
+        assertSame(bottom, ((ConstantSlot) reader.getSlot(4)).getValue());
+        assertEquals(reader.getSlot(1), ((RefinementVariableSlot) reader.getSlot(5)).getRefined());
+        assertEquals(new ClassDeclLocation("Sum"), ((ArithmeticVariableSlot) reader.getSlot(9)).getLocation());
+
+        assertConstraintsEqual(constraints, reader.getConstraints());
+        ArithmeticConstraint arithmetic = (ArithmeticConstraint) reader.getConstraints().get(8);
+        assertEquals(ArithmeticOperationKind.PLUS, arithmetic.getOperation());
+        assertEquals(PLUS_LOCATION, arithmetic.getLocation());
+    }
+
+    /**
+     * Asserts that the constraints are equal; existential constraints, which are compared by
+     * identity, are compared by their parts.
+     */
+    private static void assertConstraintsEqual(List<Constraint> expected, List<Constraint> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i) instanceof ExistentialConstraint) {
+                ExistentialConstraint expectedExistential = (ExistentialConstraint) expected.get(i);
+                ExistentialConstraint actualExistential = (ExistentialConstraint) actual.get(i);
+                assertEquals(expectedExistential.getPotentialVariable(), actualExistential.getPotentialVariable());
+                assertConstraintsEqual(expectedExistential.potentialConstraints(),
+                        actualExistential.potentialConstraints());
+                assertConstraintsEqual(expectedExistential.getAlternateConstraints(),
+                        actualExistential.getAlternateConstraints());
+            } else {
+                assertEquals(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testConstraintsAreCreatedOnAccess() throws IOException {
+        BinaryConstraintReader reader = read();
+        Constraint first = reader.getConstraints().get(0);
+        Constraint again = reader.getConstraints().get(0);
+
+        assertEquals(first, again);
+        assertNotSame(first, again);
+        // Slots are shared by the constraints read.
+        assertSame(first.getSlots().get(0), again.getSlots().get(0));
+    }
+
+    @Test
+    public void testUnsupportedVersion() throws IOException {
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(Integer.BYTES);
+            raw.writeInt(BinaryConstraintWriter.VERSION + 1);
+        }
+        try {
+            read();
+            fail("A file of another version was read.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("version"));
+        }
+    }
+
+    /**
+     * Records the slots and constraints it is given.
+     */
+    public static class RecordingSolver implements InferenceSolver {
+        static Map<String, String> configuration;
+        static List<Slot> slots;
+        static List<Constraint> constraints;
+
+        @Override
+        public InferenceResult solve(Map<String, String> configuration, Collection<Slot> slots,
+                Collection<Constraint> constraints, QualifierHierarchy qualHierarchy,
+                ProcessingEnvironment processingEnvironment) {
+            RecordingSolver.configuration = configuration;
+            RecordingSolver.slots = new ArrayList<>(slots);
+            RecordingSolver.constraints = new ArrayList<>(constraints);
+            return null;
+        }
+    }
+
+    @Test
+    public void testDeserializerSolverSolvesTheFile() {
+        QualifierHierarchy qualHierarchy = AnnotationMirrors.topAndBottomHierarchy(top, bottom);
+
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put("constraint-file", file.getPath());
+        configuration.put("backend", RecordingSolver.class.getName());
+        configuration.put("option", "value");
+        new BinaryDeserializerSolver().solve(configuration, Collections.emptyList(), Collections.emptyList(),
+                qualHierarchy, null);
+
+        assertEquals(Collections.singletonMap("option", "value"), RecordingSolver.configuration);
+        assertEquals(slots, RecordingSolver.slots);
+        assertConstraintsEqual(constraints, RecordingSolver.constraints);
+    }
+}
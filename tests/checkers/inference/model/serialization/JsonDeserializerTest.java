@@ -0,0 +1,95 @@
+package checkers.inference.model.serialization;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.SubtypeConstraint;
+import junit.framework.TestCase;
+
+public class JsonDeserializerTest extends TestCase {
+
+    private static final String JSON = "{\n"
+            + "  \"version\": \"2\",\n"
+            + "  \"variables\": {\n"
+            + "    \"var:1\": {\"type_value\": \"type:0\"},\n"
+            + "    \"var:2\": \"type:1\"\n"
+            + "  },\n"
+            + "  \"constraints\": [\n"
+            + "    \"var:1 <= var:2\",\n"
+            + "    {\"constraint\": \"subtype\", \"sub\": \"var:2\", \"sup\": \"var:3\"},\n"
+            + "    {\"constraint\": \"equality\", \"lhs\": \"var:1\", \"rhs\": \"var:4\"},\n"
+            + "    {\"constraint\": \"inequality\", \"lhs\": \"var:2\", \"rhs\": \"var:4\"},\n"
+            + "    {\"constraint\": \"comparable\", \"lhs\": \"var:3\", \"rhs\": \"var:4\"},\n"
+            + "    {\"constraint\": \"enabled_check\", \"id\": \"var:5\",\n"
+            + "     \"then\": [{\"constraint\": \"equality\", \"lhs\": \"var:5\", \"rhs\": \"var:1\"}],\n"
+            + "     \"else\": [{\"constraint\": \"enabled_check\", \"id\": \"var:6\", \"then\": [], \"else\": []}]}\n"
+            + "  ]\n"
+            + "}\n";
+
+    @Override
+    protected void setUp() {
+        InferenceMain.resetInstance();
+    }
+
+    @Test
+    public void testStreamedConstraintsMatchTree() throws Exception {
+        List<Constraint> fromTree = new JsonDeserializer(null, JSON).parseConstraints();
+        List<Constraint> streamed = new ArrayList<>();
+        JsonDeserializer deserializer = new JsonDeserializer(null, new StringReader(JSON), streamed::add);
+
+        assertEquals(6, fromTree.size());
+        assertEquals(fromTree.size(), streamed.size());
+        List<Class<?>> kinds = Arrays.asList(SubtypeConstraint.class, SubtypeConstraint.class,
+                EqualityConstraint.class, InequalityConstraint.class, ComparableConstraint.class,
+                ExistentialConstraint.class);
+        for (int i = 0; i < kinds.size(); i++) {
+            assertEquals(kinds.get(i), fromTree.get(i).getClass());
+            assertEquals(kinds.get(i), streamed.get(i).getClass());
+            assertEquals(fromTree.get(i).getSlots(), streamed.get(i).getSlots());
+        }
+
+        ExistentialConstraint existential = (ExistentialConstraint) streamed.get(5);
+        assertEquals(5, existential.getPotentialVariable().getId());
+        assertEquals(1, existential.potentialConstraints().size());
+        assertEquals(1, existential.getAlternateConstraints().size());
+
+        try {
+            deserializer.parseConstraints();
+            fail("The constraints of a streamed file were passed to the consumer.");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    @Test
+    public void testPotentialVariablesAndValues() throws Exception {
+        // Without a consumer, only the other sections are read.
+        JsonDeserializer deserializer = new JsonDeserializer(null, new StringReader(JSON), null);
+
+        assertEquals(Arrays.asList("5", "6"), deserializer.getPotentialVariables());
+        Map<String, String> values = deserializer.getAnnotationValues();
+        assertEquals(2, values.size());
+        assertEquals("0", values.get("1"));
+        assertEquals("1", values.get("2"));
+    }
+
+    @Test
+    public void testInvalidConstraint() throws Exception {
+        String json = "{\"constraints\": [\"var:1 == var:2\"]}";
+        try {
+            new JsonDeserializer(null, json).parseConstraints();
+            fail("Only subtype constraints have a string format.");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
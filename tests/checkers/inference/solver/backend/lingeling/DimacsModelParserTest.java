@@ -0,0 +1,77 @@
+package checkers.inference.solver.backend.lingeling;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class DimacsModelParserTest extends TestCase {
+
+    private static BitSet variables(int... ids) {
+        BitSet variables = new BitSet();
+        for (int id : ids) {
+            variables.set(id);
+        }
+        return variables;
+    }
+
+    private static int[] parse(String output, BitSet variables) throws IOException {
+        return DimacsModelParser.parse(new StringReader(output), variables);
+    }
+
+    @Test
+    public void testSatisfiable() throws IOException {
+        String output = "c comment\ns SATISFIABLE\nv 1 -2 3\nv -4 5 12 0\n";
+        int[] model = parse(output, variables(1, 2, 3, 4, 12));
+        assertTrue(Arrays.equals(new int[] {1, 3, 12}, model));
+    }
+
+    @Test
+    public void testLastLiteralWithoutNewline() throws IOException {
+        int[] model = parse("s SATISFIABLE\nv -1 2", variables(1, 2));
+        assertTrue(Arrays.equals(new int[] {2}, model));
+    }
+
+    @Test
+    public void testLongModel() throws IOException {
+        StringBuilder output = new StringBuilder("s SATISFIABLE\n");
+        BitSet relevant = new BitSet();
+        for (int i = 1; i <= 100000; i++) {
+            if (i % 10 == 1) {
+                output.append("\nv");
+            }
+            output.append(' ').append(i % 2 == 0 ? i : -i);
+            relevant.set(i);
+        }
+        output.append(" 0\n");
+
+        int[] model = parse(output.toString(), relevant);
+        assertEquals(50000, model.length);
+        assertEquals(2, model[0]);
+        assertEquals(100000, model[model.length - 1]);
+    }
+
+    @Test
+    public void testUnsatisfiable() throws IOException {
+        assertNull(parse("c lingeling\ns UNSATISFIABLE\n", variables(1)));
+    }
+
+    @Test
+    public void testNoAnswer() throws IOException {
+        try {
+            parse("c lingeling crashed\n", variables(1));
+            fail("Output without a status line should be rejected.");
+        } catch (BugInCF e) {
+        }
+        try {
+            parse("s UNKNOWN\n", variables(1));
+            fail("An unknown status should be rejected.");
+        } catch (BugInCF e) {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package checkers.inference.solver.backend.logiql.datalog;
+
+import static checkers.inference.solver.backend.logiql.datalog.Rule.var;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import checkers.inference.solver.backend.logiql.datalog.Rule.Atom;
+import junit.framework.TestCase;
+
+public class DatalogEngineTest extends TestCase {
+
+    /**
+     * Computes the transitive closure of random graphs and compares it with Floyd-Warshall.
+     */
+    @Test
+    public void testTransitiveClosure() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            int nodes = 2 + random.nextInt(30);
+            boolean[][] reach = new boolean[nodes][nodes];
+
+            for (int parallelism : new int[] {1, 4}) {
+                DatalogEngine engine = new DatalogEngine(parallelism);
+                Relation edge = engine.relation("edge", 2);
+                Relation path = engine.relation("path", 2);
+                Random edges = new Random(round);
+                for (int i = 0; i < 2 * nodes; i++) {
+                    int from = edges.nextInt(nodes);
+                    int to = edges.nextInt(nodes);
+                    engine.addFact(edge, from, to);
+                    reach[from][to] = true;
+                }
+                engine.addRule(new Rule(new Atom(path, var(0), var(1)), new Atom(edge, var(0), var(1))));
+                engine.addRule(new Rule(new Atom(path, var(0), var(2)),
+                        new Atom(path, var(0), var(1)), new Atom(edge, var(1), var(2))));
+                engine.run();
+
+                for (int k = 0; k < nodes; k++) {
+                    for (int i = 0; i < nodes; i++) {
+                        for (int j = 0; j < nodes; j++) {
+                            reach[i][j] |= reach[i][k] && reach[k][j];
+                        }
+                    }
+                }
+                int expected = 0;
+                for (int i = 0; i < nodes; i++) {
+                    for (int j = 0; j < nodes; j++) {
+                        assertEquals(reach[i][j], path.contains(i, j));
+                        expected += reach[i][j] ? 1 : 0;
+                    }
+                }
+                assertEquals(expected, path.size());
+            }
+        }
+    }
+
+    @Test
+    public void testConstantsAndRepeatedVariables() {
+        DatalogEngine engine = new DatalogEngine(1);
+        Relation pair = engine.relation("pair", 2);
+        Relation loop = engine.relation("loop", 1);
+        Relation fromZero = engine.relation("fromZero", 1);
+        engine.addFact(pair, 0, 1);
+        engine.addFact(pair, 2, 2);
+        engine.addFact(pair, 0, 3);
+        engine.addRule(new Rule(new Atom(loop, var(0)), new Atom(pair, var(0), var(0))));
+        engine.addRule(new Rule(new Atom(fromZero, var(0)), new Atom(pair, 0, var(0))));
+        engine.run();
+
+        assertEquals(1, loop.size());
+        assertTrue(loop.contains(2));
+        assertEquals(2, fromZero.size());
+        assertTrue(fromZero.contains(1) && fromZero.contains(3));
+    }
+
+    @Test
+    public void testRoundsStopAtFixedPoint() {
+        DatalogEngine engine = new DatalogEngine(1);
+        Relation next = engine.relation("next", 2);
+        Relation reachable = engine.relation("reachable", 1);
+        for (int i = 0; i < 10; i++) {
+            engine.addFact(next, i, i + 1);
+        }
+        engine.addFact(reachable, 0);
+        engine.addRule(new Rule(new Atom(reachable, var(1)),
+                new Atom(reachable, var(0)), new Atom(next, var(0), var(1))));
+        engine.run();
+
+        assertEquals(11, reachable.size());
+        // One round per step of the chain, and a last round deriving nothing new.
+        assertEquals(11, engine.getRounds());
+    }
+
+    @Test
+    public void testInvalidPrograms() {
+        DatalogEngine engine = new DatalogEngine(1);
+        Relation unary = engine.relation("unary", 1);
+        try {
+            engine.relation("unary", 2);
+            fail("A predicate has one arity.");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new Atom(unary, 1, 2);
+            fail("An atom has the arity of its predicate.");
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            new Rule(new Atom(unary, var(1)), new Atom(unary, var(0)));
+            fail("Head variables must occur in the body.");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package checkers.inference.solver.backend.maxsat;
+
+import java.io.StringWriter;
+import java.util.BitSet;
+
+import org.junit.Test;
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.IVecInt;
+
+import junit.framework.TestCase;
+
+public class ClauseArenaTest extends TestCase {
+
+    @Test
+    public void testAddAndRead() {
+        ClauseArena arena = new ClauseArena();
+        assertTrue(arena.isEmpty());
+
+        assertEquals(0, arena.add(1, -2));
+        assertEquals(1, arena.add(new VecInt(new int[] {3})));
+        assertEquals(2, arena.add());
+
+        assertEquals(3, arena.size());
+        assertEquals(2, arena.clauseLength(0));
+        assertEquals(-2, arena.literal(0, 1));
+        assertEquals(3, arena.literal(1, 0));
+        assertEquals(0, arena.clauseLength(2));
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() {
+        ClauseArena arena = new ClauseArena();
+        for (int i = 1; i <= 1000; i++) {
+            arena.add(i, -i, i + 1);
+        }
+
+        assertEquals(1000, arena.size());
+        for (int i = 1; i <= 1000; i++) {
+            assertEquals(3, arena.clauseLength(i - 1));
+            assertEquals(i, arena.literal(i - 1, 0));
+            assertEquals(-i, arena.literal(i - 1, 1));
+            assertEquals(i + 1, arena.literal(i - 1, 2));
+        }
+    }
+
+    @Test
+    public void testCopyToReusesTarget() {
+        ClauseArena arena = new ClauseArena();
+        arena.add(1, 2, 3);
+        arena.add(-4);
+
+        IVecInt target = new VecInt();
+        assertSame(target, arena.copyTo(0, target));
+        assertEquals(3, target.size());
+        // A solver may modify the vector without affecting the arena.
+        target.push(5);
+        target.set(0, 7);
+        assertEquals(1, arena.literal(0, 0));
+
+        arena.copyTo(1, target);
+        assertEquals(1, target.size());
+        assertEquals(-4, target.get(0));
+    }
+
+    @Test
+    public void testCollectVariablesAndDimacs() throws Exception {
+        ClauseArena arena = new ClauseArena();
+        arena.add(1, -3);
+        arena.add(-7);
+
+        BitSet variables = new BitSet();
+        arena.collectVariables(variables);
+        assertEquals(3, variables.cardinality());
+        assertTrue(variables.get(1) && variables.get(3) && variables.get(7));
+
+        StringWriter writer = new StringWriter();
+        arena.writeDimacs(writer);
+        assertEquals("1 -3 0\n-7 0\n", writer.toString());
+    }
+
+    @Test
+    public void testClearAndRelease() {
+        ClauseArena arena = new ClauseArena();
+        arena.add(1, 2);
+        arena.clear();
+        assertTrue(arena.isEmpty());
+        arena.add(3);
+        assertEquals(1, arena.size());
+        assertEquals(3, arena.literal(0, 0));
+
+        arena.release();
+        assertTrue(arena.isEmpty());
+        arena.add(4, 5);
+        assertEquals(5, arena.literal(0, 1));
+    }
+}
@@ -0,0 +1,282 @@
+package checkers.inference.solver.backend.maxsat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sat4j.core.VecInt;
+import org.sat4j.maxsat.WeightedMaxSatDecorator;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.pb.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.TimeoutException;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares CoreGuidedMaxSat, and the linear search MaxSatSolver uses by default, with the optimum
+ * found by trying every assignment, on small random weighted instances.
+ */
+public class CoreGuidedMaxSatTest extends TestCase {
+
+    private static final long TIMEOUT_MS = 10000;
+
+    /** A random weighted partial MaxSAT instance. */
+    private static final class Instance {
+        final int variables;
+        final List<int[]> hardClauses = new ArrayList<>();
+        final List<int[]> softClauses = new ArrayList<>();
+        final List<Long> weights = new ArrayList<>();
+
+        Instance(int variables) {
+            this.variables = variables;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("hard:");
+            for (int[] clause : hardClauses) {
+                result.append(' ').append(Arrays.toString(clause));
+            }
+            result.append(" soft:");
+            for (int i = 0; i < softClauses.size(); i++) {
+                result.append(' ').append(weights.get(i)).append(Arrays.toString(softClauses.get(i)));
+            }
+            return result.toString();
+        }
+    }
+
+    private static int[] randomClause(Random random, int variables, int maxLength) {
+        int[] clause = new int[1 + random.nextInt(maxLength)];
+        for (int i = 0; i < clause.length; i++) {
+            int variable = 1 + random.nextInt(variables);
+            clause[i] = random.nextBoolean() ? variable : -variable;
+        }
+        return clause;
+    }
+
+    private static Instance randomInstance(Random random) {
+        Instance instance = new Instance(2 + random.nextInt(7));
+        int hardClauses = random.nextInt(2 * instance.variables);
+        for (int i = 0; i < hardClauses; i++) {
+            instance.hardClauses.add(randomClause(random, instance.variables, 3));
+        }
+        int softClauses = 1 + random.nextInt(3 * instance.variables);
+        for (int i = 0; i < softClauses; i++) {
+            // Mostly unit clauses, like preference constraints, so that many assumptions conflict.
+            instance.softClauses.add(randomClause(random, instance.variables, random.nextInt(3) == 0 ? 3 : 1));
+            instance.weights.add(1L + random.nextInt(9));
+        }
+        return instance;
+    }
+
+    private static boolean satisfies(int assignment, int[] clause) {
+        for (int literal : clause) {
+            boolean value = (assignment & 1 << (Math.abs(literal) - 1)) != 0;
+            if (value == literal > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the weight of the soft clauses the assignment violates, or -1 if it violates a
+     * hard clause.
+     */
+    private static long cost(Instance instance, int assignment) {
+        for (int[] clause : instance.hardClauses) {
+            if (!satisfies(assignment, clause)) {
+                return -1;
+            }
+        }
+        long cost = 0;
+        for (int i = 0; i < instance.softClauses.size(); i++) {
+            if (!satisfies(assignment, instance.softClauses.get(i))) {
+                cost += instance.weights.get(i);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the minimum cost of an assignment, or -1 if the hard clauses are unsatisfiable.
+     */
+    private static long bruteForceOptimum(Instance instance) {
+        long optimum = -1;
+        for (int assignment = 0; assignment < 1 << instance.variables; assignment++) {
+            long cost = cost(instance, assignment);
+            if (cost >= 0 && (optimum < 0 || cost < optimum)) {
+                optimum = cost;
+            }
+        }
+        return optimum;
+    }
+
+    /**
+     * Returns the assignment of the model to the variables of the instance, leaving out e.g. the
+     * selector variables of the linear search.
+     */
+    private static int toAssignment(Instance instance, int[] model) {
+        int assignment = 0;
+        for (int literal : model) {
+            if (literal > 0 && literal <= instance.variables) {
+                assignment |= 1 << (literal - 1);
+            }
+        }
+        return assignment;
+    }
+
+    /**
+     * Returns the search for the instance, or null if adding its hard clauses already shows
+     * them unsatisfiable.
+     */
+    private static CoreGuidedMaxSat createMaxSat(Instance instance) {
+        IPBSolver solver = SolverFactory.newDefault();
+        solver.newVar(instance.variables);
+        try {
+            for (int[] clause : instance.hardClauses) {
+                solver.addClause(new VecInt(clause));
+            }
+        } catch (ContradictionException e) {
+            return null;
+        }
+        CoreGuidedMaxSat maxSat = new CoreGuidedMaxSat(solver, instance.variables);
+        try {
+            for (int i = 0; i < instance.softClauses.size(); i++) {
+                maxSat.addSoftClause(instance.weights.get(i), new VecInt(instance.softClauses.get(i)));
+            }
+        } catch (ContradictionException e) {
+            throw new AssertionError("Soft clauses are not added as hard clauses.", e);
+        }
+        return maxSat;
+    }
+
+    @Test
+    public void testRandomInstancesReachTheOptimum() {
+        Random random = new Random(19);
+        for (int i = 0; i < 1000; i++) {
+            Instance instance = randomInstance(random);
+            long optimum = bruteForceOptimum(instance);
+
+            CoreGuidedMaxSat maxSat = createMaxSat(instance);
+            int[] model = maxSat == null ? null : maxSat.solve(TIMEOUT_MS);
+            if (optimum < 0) {
+                assertNull(instance.toString(), model);
+                assertTrue(instance.toString(), maxSat == null || maxSat.isOptimal());
+                continue;
+            }
+            assertNotNull(instance.toString(), model);
+            assertTrue(instance.toString(), maxSat.isOptimal());
+            assertEquals(instance.toString(), optimum, maxSat.getCost());
+            assertEquals(instance.toString(), optimum, maxSat.getLowerBound());
+            assertEquals(instance.toString(), optimum, cost(instance, toAssignment(instance, model)));
+            for (int literal : model) {
+                assertTrue(instance.toString(), Math.abs(literal) <= instance.variables);
+            }
+        }
+    }
+
+    @Test
+    public void testLinearSearchReachesTheOptimum() throws TimeoutException {
+        Random random = new Random(19);
+        for (int i = 0; i < 300; i++) {
+            Instance instance = randomInstance(random);
+            long optimum = bruteForceOptimum(instance);
+
+            WeightedMaxSatDecorator solver = new WeightedMaxSatDecorator(SolverFactory.newDefault());
+            solver.newVar(instance.variables);
+            boolean isSatisfiable;
+            try {
+                for (int[] clause : instance.hardClauses) {
+                    solver.addHardClause(new VecInt(clause));
+                }
+                for (int j = 0; j < instance.softClauses.size(); j++) {
+                    solver.addSoftClause(instance.weights.get(j).intValue(), new VecInt(instance.softClauses.get(j)));
+                }
+                isSatisfiable = solver.isSatisfiable();
+            } catch (ContradictionException e) {
+                isSatisfiable = false;
+            }
+            assertEquals(instance.toString(), optimum >= 0, isSatisfiable);
+            if (isSatisfiable) {
+                assertEquals(instance.toString(), optimum, cost(instance, toAssignment(instance, solver.model())));
+            }
+        }
+    }
+
+    @Test
+    public void testWeightsDecideBetweenConflictingPreferences() {
+        Instance instance = new Instance(2);
+        // x1 and x2 differ; x1 is preferred true with weight 5, x2 with weights 2 and 4.
+        instance.hardClauses.add(new int[] {1, 2});
+        instance.hardClauses.add(new int[] {-1, -2});
+        instance.softClauses.add(new int[] {1});
+        instance.weights.add(5L);
+        instance.softClauses.add(new int[] {2});
+        instance.weights.add(2L);
+        instance.softClauses.add(new int[] {2});
+        instance.weights.add(4L);
+
+        CoreGuidedMaxSat maxSat = createMaxSat(instance);
+        int[] model = maxSat.solve(TIMEOUT_MS);
+
+        assertTrue(maxSat.isOptimal());
+        assertEquals(5, maxSat.getCost());
+        assertEquals(2, toAssignment(instance, model));
+    }
+
+    @Test
+    public void testCoresOfRelaxedCoresAreRelaxedAgain() {
+        // At most one of x1 to x6 is true, and each is preferred true with weight 1.
+        Instance instance = new Instance(6);
+        for (int i = 1; i <= 6; i++) {
+            for (int j = i + 1; j <= 6; j++) {
+                instance.hardClauses.add(new int[] {-i, -j});
+            }
+            instance.softClauses.add(new int[] {i});
+            instance.weights.add(1L);
+        }
+
+        CoreGuidedMaxSat maxSat = createMaxSat(instance);
+        int[] model = maxSat.solve(TIMEOUT_MS);
+
+        assertTrue(maxSat.isOptimal());
+        assertEquals(5, maxSat.getCost());
+        assertEquals(5, maxSat.getLowerBound());
+        assertEquals(1, Integer.bitCount(toAssignment(instance, model)));
+    }
+
+    @Test
+    public void testExhaustedBudgetFallsBackToTheHardClauses() {
+        Instance instance = new Instance(2);
+        // x1 or x2; each is preferred false.
+        instance.hardClauses.add(new int[] {1, 2});
+        instance.softClauses.add(new int[] {-1});
+        instance.weights.add(1L);
+        instance.softClauses.add(new int[] {-2});
+        instance.weights.add(1L);
+
+        CoreGuidedMaxSat maxSat = createMaxSat(instance);
+        int[] model = maxSat.solve(0);
+
+        assertNotNull(model);
+        assertFalse(maxSat.isOptimal());
+        assertTrue(cost(instance, toAssignment(instance, model)) >= 0);
+    }
+
+    @Test
+    public void testInterruptedSearchReturnsNoModel() {
+        Instance instance = new Instance(1);
+        instance.softClauses.add(new int[] {1});
+        instance.weights.add(1L);
+
+        CoreGuidedMaxSat maxSat = createMaxSat(instance);
+        maxSat.interrupt();
+
+        assertNull(maxSat.solve(TIMEOUT_MS));
+        assertFalse(maxSat.isOptimal());
+    }
+}
@@ -0,0 +1,337 @@
+package checkers.inference.solver.backend.z3smt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Test;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintFactory;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.solver.backend.encoder.AbstractConstraintEncoderFactory;
+import checkers.inference.solver.backend.encoder.ConstraintEncoderFactory;
+import checkers.inference.solver.backend.encoder.ArithmeticConstraintEncoder;
+import checkers.inference.solver.backend.encoder.binary.ComparableConstraintEncoder;
+import checkers.inference.solver.backend.encoder.binary.EqualityConstraintEncoder;
+import checkers.inference.solver.backend.encoder.binary.InequalityConstraintEncoder;
+import checkers.inference.solver.backend.encoder.binary.SubtypeConstraintEncoder;
+import checkers.inference.solver.backend.encoder.combine.CombineConstraintEncoder;
+import checkers.inference.solver.backend.encoder.existential.ExistentialConstraintEncoder;
+import checkers.inference.solver.backend.encoder.implication.ImplicationConstraintEncoder;
+import checkers.inference.solver.backend.encoder.preference.PreferenceConstraintEncoder;
+import checkers.inference.solver.backend.z3smt.Z3SmtSolver.Z3SolverEngineArg;
+import checkers.inference.solver.backend.z3smt.encoder.Z3SmtSoftConstraintEncoder;
+import checkers.inference.solver.util.SolverEnvironment;
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Context;
+import com.microsoft.z3.IntExpr;
+import com.microsoft.z3.Optimize;
+import com.microsoft.z3.Status;
+import junit.framework.TestCase;
+
+public class Z3SmtFormatTranslatorTest extends TestCase {
+
+    /**
+     * Records the values decoded from "name value" lines, and returns the names that are slot
+     * ids.
+     */
+    private abstract static class LineTranslator<SlotEncodingT> extends Z3SmtFormatTranslator<SlotEncodingT, Integer> {
+        final Map<String, String> decoded = new HashMap<>();
+
+        LineTranslator() {
+            super(null);
+        }
+
+        @Override
+        public AnnotationMirror decodeSolution(Integer solution, ProcessingEnvironment processingEnvironment) {
+            throw new AssertionError("The in-process model is decoded as lines.");
+        }
+
+        @Override
+        public Map<Integer, AnnotationMirror> decodeSolution(List<String> model, ProcessingEnvironment processingEnv) {
+            Map<Integer, AnnotationMirror> result = new HashMap<>();
+            for (String line : model) {
+                String[] parts = line.split(" ");
+                decoded.put(parts[0], parts[1]);
+                result.put(Integer.valueOf(parts[0].replace("'", "")), null);
+            }
+            return result;
+        }
+
+        @Override
+        protected SlotEncodingT serializeConstantSlot(ConstantSlot slot) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected Z3SmtSoftConstraintEncoder<SlotEncodingT, Integer> createSoftConstraintEncoder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BoolExpr encodeSlotPreferenceConstraint(VariableSlot slot) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected ConstraintEncoderFactory<BoolExpr> createConstraintEncoderFactory() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Encodes each variable slot as an integer constant named by its id, between 0 and 2.
+     */
+    private static class IntTranslator extends LineTranslator<IntExpr> {
+
+        @Override
+        protected IntExpr serializeVariableSlot(VariableSlot slot) {
+            return serializedSlots.computeIfAbsent(slot.getId(), id -> ctx.mkIntConst(String.valueOf(id)));
+        }
+
+        @Override
+        public BoolExpr encodeSlotWellformednessConstraint(VariableSlot slot) {
+            IntExpr encoding = serializeVariableSlot(slot);
+            return ctx.mkAnd(ctx.mkGe(encoding, ctx.mkInt(0)), ctx.mkLe(encoding, ctx.mkInt(2)));
+        }
+
+        @Override
+        protected ConstraintEncoderFactory<BoolExpr> createConstraintEncoderFactory() {
+            return new IntEncoderFactory(this);
+        }
+    }
+
+    /**
+     * Encodes each variable slot as a pair of integer constants, named by its id with and
+     * without a prime.
+     */
+    private static class PairTranslator extends LineTranslator<IntExpr[]> {
+
+        @Override
+        protected IntExpr[] serializeVariableSlot(VariableSlot slot) {
+            return serializedSlots.computeIfAbsent(slot.getId(), id -> new IntExpr[] {
+                    ctx.mkIntConst(String.valueOf(id)), ctx.mkIntConst(id + "'")});
+        }
+
+        @Override
+        public BoolExpr encodeSlotWellformednessConstraint(VariableSlot slot) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Encodes equality and inequality constraints between variable slots.
+     */
+    private static class IntEncoderFactory extends AbstractConstraintEncoderFactory<BoolExpr, IntTranslator> {
+
+        IntEncoderFactory(IntTranslator formatTranslator) {
+            super(null, formatTranslator);
+        }
+
+        private BoolExpr equal(VariableSlot fst, VariableSlot snd) {
+            return formatTranslator.ctx.mkEq(formatTranslator.serializeVariableSlot(fst),
+                    formatTranslator.serializeVariableSlot(snd));
+        }
+
+        @Override
+        public EqualityConstraintEncoder<BoolExpr> createEqualityConstraintEncoder() {
+            return new EqualityConstraintEncoder<BoolExpr>() {
+                @Override
+                public BoolExpr encodeVariable_Variable(VariableSlot fst, VariableSlot snd) {
+                    return equal(fst, snd);
+                }
+
+                @Override
+                public BoolExpr encodeVariable_Constant(VariableSlot fst, ConstantSlot snd) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public BoolExpr encodeConstant_Variable(ConstantSlot fst, VariableSlot snd) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public InequalityConstraintEncoder<BoolExpr> createInequalityConstraintEncoder() {
+            return new InequalityConstraintEncoder<BoolExpr>() {
+                @Override
+                public BoolExpr encodeVariable_Variable(VariableSlot fst, VariableSlot snd) {
+                    return formatTranslator.ctx.mkNot(equal(fst, snd));
+                }
+
+                @Override
+                public BoolExpr encodeVariable_Constant(VariableSlot fst, ConstantSlot snd) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public BoolExpr encodeConstant_Variable(ConstantSlot fst, VariableSlot snd) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public SubtypeConstraintEncoder<BoolExpr> createSubtypeConstraintEncoder() {
+            return null;
+        }
+
+        @Override
+        public ComparableConstraintEncoder<BoolExpr> createComparableConstraintEncoder() {
+            return null;
+        }
+
+        @Override
+        public PreferenceConstraintEncoder<BoolExpr> createPreferenceConstraintEncoder() {
+            return null;
+        }
+
+        @Override
+        public CombineConstraintEncoder<BoolExpr> createCombineConstraintEncoder() {
+            return null;
+        }
+
+        @Override
+        public ExistentialConstraintEncoder<BoolExpr> createExistentialConstraintEncoder() {
+            return null;
+        }
+
+        @Override
+        public ImplicationConstraintEncoder<BoolExpr> createImplicationConstraintEncoder() {
+            return null;
+        }
+
+        @Override
+        public ArithmeticConstraintEncoder<BoolExpr> createArithmeticConstraintEncoder() {
+            return null;
+        }
+    }
+
+    private static SourceVariableSlot variable(int id) {
+        return new SourceVariableSlot(id, AnnotationLocation.MISSING_LOCATION, null, true);
+    }
+
+    @Test
+    public void testOnlySlotEncodingsAreDecoded() {
+        try (Context ctx = new Context()) {
+            IntTranslator translator = new IntTranslator();
+            translator.init(ctx);
+            IntExpr slot1 = translator.serializeVariableSlot(variable(1));
+            translator.serializeVariableSlot(variable(2));
+
+            Optimize solver = ctx.mkOptimize();
+            BoolExpr literal = ctx.mkBoolConst(Z3SmtSolver.TRACKING_LITERAL_PREFIX + "SubtypeConstraint1");
+            solver.Assert(new BoolExpr[] {ctx.mkImplies(literal, ctx.mkEq(slot1, ctx.mkInt(-5)))});
+            assertEquals(Status.SATISFIABLE, solver.Check(new BoolExpr[] {literal}));
+
+            // Slot 3 was never serialized, and slot 2 is unconstrained, so it is completed to 0.
+            Map<Integer, AnnotationMirror> solution =
+                    translator.decodeSolution(solver.getModel(), Arrays.asList(1, 2, 3), null);
+
+            assertEquals(new HashSet<>(Arrays.asList(1, 2)), solution.keySet());
+            Map<String, String> expected = new HashMap<>();
+            expected.put("1", "-5");
+            expected.put("2", "0");
+            assertEquals(expected, translator.decoded);
+        }
+    }
+
+    @Test
+    public void testOtherEncodingsAreDecodedFromTheConstantsOfTheModel() {
+        try (Context ctx = new Context()) {
+            PairTranslator translator = new PairTranslator();
+            translator.ctx = ctx;
+            IntExpr[] slot1 = translator.serializeVariableSlot(variable(1));
+
+            Optimize solver = ctx.mkOptimize();
+            BoolExpr literal = ctx.mkBoolConst(Z3SmtSolver.TRACKING_LITERAL_PREFIX + "SubtypeConstraint1");
+            solver.Assert(new BoolExpr[] {ctx.mkImplies(literal,
+                    ctx.mkAnd(ctx.mkEq(slot1[0], ctx.mkInt(3)), ctx.mkEq(slot1[1], ctx.mkInt(-4))))});
+            assertEquals(Status.SATISFIABLE, solver.Check(new BoolExpr[] {literal}));
+
+            translator.decodeSolution(solver.getModel(), Arrays.asList(1), null);
+
+            Map<String, String> expected = new HashMap<>();
+            expected.put("1", "3");
+            expected.put("1'", "-4");
+            assertEquals(expected, translator.decoded);
+        }
+    }
+
+    /**
+     * Returns a solver of the given constraints between the given variables, solving in process.
+     */
+    private static Z3SmtSolver<IntExpr, Integer> inProcessSolver(IntTranslator translator,
+            List<Slot> slots, List<Constraint> constraints) {
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(Z3SolverEngineArg.inProcess.name(), "true");
+        return new Z3SmtSolver<>(new SolverEnvironment(configuration, null), slots, constraints, translator, null);
+    }
+
+    @Test
+    public void testSolvesInProcess() {
+        SourceVariableSlot x = variable(1);
+        SourceVariableSlot y = variable(2);
+        SourceVariableSlot z = variable(3);
+        SourceVariableSlot w = variable(4);
+        ConstraintFactory constraintFactory = new ConstraintFactory(null, AnnotationLocation.MISSING_LOCATION);
+        // x == y, and x, z and w have three distinct values.
+        List<Constraint> constraints = Arrays.asList(
+                constraintFactory.createEqualityConstraint(x, y),
+                constraintFactory.createInequalityConstraint(y, z),
+                constraintFactory.createInequalityConstraint(x, w),
+                constraintFactory.createInequalityConstraint(z, w));
+        IntTranslator translator = new IntTranslator();
+        Z3SmtSolver<IntExpr, Integer> solver = inProcessSolver(translator, Arrays.asList(x, y, z, w), constraints);
+        try {
+            Map<Integer, AnnotationMirror> solution = solver.solve();
+
+            assertNotNull(solution);
+            assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 4)), solution.keySet());
+            Map<String, String> values = translator.decoded;
+            assertEquals(values.get("1"), values.get("2"));
+            assertEquals(3, new HashSet<>(Arrays.asList(values.get("1"), values.get("3"), values.get("4"))).size());
+            assertFalse(solver.isUnsatisfiable());
+        } finally {
+            solver.ctx.close();
+        }
+    }
+
+    @Test
+    public void testExplainsUnsatisfiableInProcess() {
+        List<SourceVariableSlot> variables = Arrays.asList(variable(1), variable(2), variable(3), variable(4));
+        ConstraintFactory constraintFactory = new ConstraintFactory(null, AnnotationLocation.MISSING_LOCATION);
+        // Four distinct values between 0 and 2.
+        List<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < variables.size(); i++) {
+            for (int j = i + 1; j < variables.size(); j++) {
+                constraints.add(constraintFactory.createInequalityConstraint(variables.get(i), variables.get(j)));
+            }
+        }
+        Z3SmtSolver<IntExpr, Integer> solver = inProcessSolver(new IntTranslator(),
+                new ArrayList<Slot>(variables), constraints);
+        try {
+            assertNull(solver.solve());
+            assertTrue(solver.isUnsatisfiable());
+            Collection<Constraint> core = solver.explainUnsatisfiable();
+            assertFalse(core.isEmpty());
+            assertTrue(constraints.containsAll(core));
+        } finally {
+            solver.ctx.close();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package checkers.inference.solver.constraintgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.util.Elements;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Test;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.AnnotationLocation.ClassDeclLocation;
+import checkers.inference.model.CombVariableSlot;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintFactory;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.test.AnnotationMirrors;
+import junit.framework.TestCase;
+
+public class GraphBuilderTest extends TestCase {
+
+    private AnnotationMirror top;
+    private ConstantSlot topSlot;
+    private ConstantSlot intSlot;
+    private ConstantSlot stringSlot;
+    private ConstantSlot emptyNameSlot;
+    private ConstraintFactory constraintFactory;
+    private int nextId = 100;
+
+    @Override
+    protected void setUp() throws Exception {
+        InferenceMain.resetInstance();
+        Elements elements = AnnotationMirrors.compile("@interface Top {} @interface D { String[] typeNames() default {}; } "
+                + "@Top class T {} @D(typeNames = \"int\") class I {} "
+                + "@D(typeNames = \"String\") class S {} @D(typeNames = \"\") class E {}");
+        top = AnnotationMirrors.annotationOf(elements, "T");
+        topSlot = new ConstantSlot(1, top);
+        intSlot = new ConstantSlot(2, AnnotationMirrors.annotationOf(elements, "I"));
+        stringSlot = new ConstantSlot(3, AnnotationMirrors.annotationOf(elements, "S"));
+        emptyNameSlot = new ConstantSlot(4, AnnotationMirrors.annotationOf(elements, "E"));
+        // No constant is top or bottom to the constraints, so none is normalized away.
+        constraintFactory = new ConstraintFactory(AnnotationMirrors.flatHierarchy(), AnnotationLocation.MISSING_LOCATION);
+    }
+
+    private SourceVariableSlot variable() {
+        int id = nextId++;
+        return new SourceVariableSlot(id, new ClassDeclLocation("C" + id), null, true);
+    }
+
+    private ConstraintGraph build(boolean isDataflow, Constraint... constraints) {
+        List<Constraint> constraintList = Arrays.asList(constraints);
+        Set<Slot> slots = new HashSet<>();
+        for (Constraint constraint : constraintList) {
+            slots.addAll(constraint.getSlots());
+        }
+        return new GraphBuilder(slots, constraintList, top) {
+            @Override
+            protected boolean isDataflow() {
+                return isDataflow;
+            }
+        }.buildGraph();
+    }
+
+    private static Set<Constraint> constantPath(ConstraintGraph graph, ConstantSlot constant) {
+        for (Map.Entry<Vertex, Set<Constraint>> entry : graph.getConstantPath().entrySet()) {
+            if (entry.getKey().getSlot().getId() == constant.getId()) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static Set<Constraint> set(Constraint... constraints) {
+        return new HashSet<>(Arrays.asList(constraints));
+    }
+
+    @Test
+    public void testConstantPathsFollowSubtypesUpwards() {
+        SourceVariableSlot x = variable();
+        SourceVariableSlot y = variable();
+        SourceVariableSlot z = variable();
+        // int <: x <: y, z <: y, string <: z
+        Constraint intX = constraintFactory.createSubtypeConstraint(intSlot, x);
+        Constraint xy = constraintFactory.createSubtypeConstraint(x, y);
+        Constraint zy = constraintFactory.createSubtypeConstraint(z, y);
+        Constraint stringZ = constraintFactory.createSubtypeConstraint(stringSlot, z);
+        ConstraintGraph graph = build(false, intX, xy, zy, stringZ);
+
+        // From int, y is reached, but z is not as zy may only be traversed from z.
+        assertEquals(set(intX, xy), constantPath(graph, intSlot));
+        assertEquals(set(stringZ, zy), constantPath(graph, stringSlot));
+    }
+
+    @Test
+    public void testConstantPathsStopAtTop() {
+        SourceVariableSlot x = variable();
+        SourceVariableSlot y = variable();
+        Constraint intX = constraintFactory.createEqualityConstraint(x, intSlot);
+        Constraint xTop = constraintFactory.createEqualityConstraint(x, topSlot);
+        Constraint topY = constraintFactory.createEqualityConstraint(topSlot, y);
+        ConstraintGraph graph = build(false, intX, xTop, topY);
+
+        // The edge to top is on the path, but the path does not go on through top.
+        assertEquals(set(intX, xTop), constantPath(graph, intSlot));
+        assertEquals(set(intX, xTop, topY), constantPath(graph, topSlot));
+    }
+
+    @Test
+    public void testConstantPathsStopAtEmptyTypeNamesOfDataflow() {
+        SourceVariableSlot x = variable();
+        SourceVariableSlot y = variable();
+        Constraint intX = constraintFactory.createEqualityConstraint(x, intSlot);
+        Constraint xEmpty = constraintFactory.createEqualityConstraint(x, emptyNameSlot);
+        Constraint emptyY = constraintFactory.createEqualityConstraint(emptyNameSlot, y);
+
+        ConstraintGraph dataflow = build(true, intX, xEmpty, emptyY);
+        assertEquals(set(intX, xEmpty), constantPath(dataflow, intSlot));
+
+        ConstraintGraph other = build(false, intX, xEmpty, emptyY);
+        assertEquals(set(intX, xEmpty, emptyY), constantPath(other, intSlot));
+    }
+
+    @Test
+    public void testHyperedgesJoinAllTheirMembers() {
+        SourceVariableSlot x = variable();
+        SourceVariableSlot y = variable();
+        CombVariableSlot result = new CombVariableSlot(nextId++, new ClassDeclLocation("Comb"), x, y);
+        SourceVariableSlot z = variable();
+        SourceVariableSlot w = variable();
+        Constraint intX = constraintFactory.createEqualityConstraint(x, intSlot);
+        Constraint combine = constraintFactory.createCombineConstraint(x, y, result);
+        Constraint resultZ = constraintFactory.createSubtypeConstraint(result, z);
+        Constraint wY = constraintFactory.createSubtypeConstraint(w, y);
+        ConstraintGraph graph = build(false, intX, combine, resultZ, wY);
+
+        // Through the combine constraint, int reaches y and the result, but not w below y.
+        assertEquals(set(intX, combine, resultZ), constantPath(graph, intSlot));
+        assertEquals(Collections.singletonList(set(intX, combine, resultZ, wY)), graph.getIndependentPath());
+    }
+
+    @Test
+    public void testIndependentComponents() {
+        SourceVariableSlot x = variable();
+        SourceVariableSlot y = variable();
+        SourceVariableSlot z = variable();
+        SourceVariableSlot w = variable();
+        SourceVariableSlot v = variable();
+        Constraint xy = constraintFactory.createSubtypeConstraint(x, y);
+        Constraint zw = constraintFactory.createEqualityConstraint(z, w);
+        Constraint intY = constraintFactory.createEqualityConstraint(y, intSlot);
+        Constraint vz = constraintFactory.createInequalityConstraint(v, z);
+        Constraint stringW = constraintFactory.createEqualityConstraint(stringSlot, w);
+        ConstraintGraph graph = build(false, xy, zw, intY, vz, stringW);
+
+        // Components are in the order of their first constraint.
+        assertEquals(Arrays.asList(set(xy, intY), set(zw, vz, stringW)), graph.getIndependentPath());
+
+        // A constant shared by two components joins them.
+        Constraint intW = constraintFactory.createEqualityConstraint(intSlot, w);
+        ConstraintGraph joined = build(false, xy, zw, intY, vz, intW);
+        assertEquals(Arrays.asList(set(xy, zw, intY, vz, intW)), joined.getIndependentPath());
+    }
+
+    @Test
+    public void testMissingLocationOnAConstantPath() {
+        SourceVariableSlot x = variable();
+        SourceVariableSlot missing = new SourceVariableSlot(nextId++, AnnotationLocation.MISSING_LOCATION, null, true);
+        Constraint intX = constraintFactory.createEqualityConstraint(x, intSlot);
+        Constraint xMissing = constraintFactory.createEqualityConstraint(x, missing);
+        try {
+            build(false, intX, xMissing);
+            fail("A constant path reached a slot with a missing location.");
+        } catch (BugInCF e) {
+            assertEquals("In GraphBuilder.calculateConstantPath: find a slot of which "
+                    + "the location is either null or MISSING_LOCATION!", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMissingLocationOffConstantPaths() {
+        SourceVariableSlot x = variable();
+        SourceVariableSlot missing = new SourceVariableSlot(nextId++, AnnotationLocation.MISSING_LOCATION, null, true);
+        Constraint intX = constraintFactory.createSubtypeConstraint(intSlot, x);
+        // Only traversable from the missing slot, which no constant reaches.
+        Constraint missingX = constraintFactory.createSubtypeConstraint(missing, x);
+        ConstraintGraph graph = build(false, intX, missingX);
+
+        assertEquals(set(intX), constantPath(graph, intSlot));
+    }
+
+    @Test
+    public void testManyConstantsShareOnePath() {
+        // More constants than fit in one word of the search.
+        SourceVariableSlot x = variable();
+        List<Constraint> constraints = new ArrayList<>();
+        List<ConstantSlot> constants = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            ConstantSlot constant = new ConstantSlot(1000 + i, intSlot.getValue());
+            constants.add(constant);
+            constraints.add(constraintFactory.createSubtypeConstraint(constant, x));
+        }
+        SourceVariableSlot y = variable();
+        Constraint xy = constraintFactory.createSubtypeConstraint(x, y);
+        constraints.add(xy);
+        ConstraintGraph graph = build(false, constraints.toArray(new Constraint[0]));
+
+        for (int i = 0; i < constants.size(); i++) {
+            assertEquals(set(constraints.get(i), xy), constantPath(graph, constants.get(i)));
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package checkers.inference.solver.frontend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Test;
+
+import checkers.inference.DefaultInferenceResult;
+import checkers.inference.InferenceResult;
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintManager;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.test.AnnotationMirrors;
+import junit.framework.TestCase;
+
+public class ConstraintSimplifierTest extends TestCase {
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private ConstantSlot topSlot;
+    private ConstantSlot bottomSlot;
+    private ConstraintManager constraintManager;
+    private ConstraintSimplifier simplifier;
+
+    @Override
+    protected void setUp() throws Exception {
+        List<AnnotationMirror> qualifiers = AnnotationMirrors.qualifiers(AnnotationMirrors.TOP_AND_BOTTOM);
+        top = qualifiers.get(0);
+        bottom = qualifiers.get(1);
+        topSlot = new ConstantSlot(1, top);
+        bottomSlot = new ConstantSlot(2, bottom);
+        constraintManager = new ConstraintManager();
+
+        Map<AnnotationMirror, Collection<AnnotationMirror>> noRelations = Collections.emptyMap();
+        Lattice lattice = new Lattice(noRelations, noRelations, noRelations, new HashSet<>(Arrays.asList(top, bottom)),
+                top, bottom, 2, Collections.emptySet(), null);
+        simplifier = new ConstraintSimplifier(lattice, constraintManager);
+    }
+
+    private static List<SourceVariableSlot> variables(int count) {
+        List<SourceVariableSlot> variables = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            variables.add(new SourceVariableSlot(10 + i, AnnotationLocation.MISSING_LOCATION, null, true));
+        }
+        return variables;
+    }
+
+    private List<Slot> slots(List<SourceVariableSlot> variables) {
+        List<Slot> slots = new ArrayList<>(variables);
+        slots.add(topSlot);
+        slots.add(bottomSlot);
+        return slots;
+    }
+
+    /**
+     * Returns the optimal solution of the constraints in the two qualifier lattice, found by
+     * trying every assignment of the given variables, or null if there is none.
+     */
+    private Map<Integer, AnnotationMirror> optimum(Collection<? extends Slot> slots, Collection<Constraint> constraints) {
+        List<Slot> variables = new ArrayList<>();
+        for (Slot slot : slots) {
+            if (slot instanceof VariableSlot) {
+                variables.add(slot);
+            }
+        }
+        Map<Integer, AnnotationMirror> best = null;
+        int bestWeight = -1;
+        for (int bits = 0; bits < 1 << variables.size(); bits++) {
+            Map<Integer, AnnotationMirror> assignment = new HashMap<>();
+            for (int i = 0; i < variables.size(); i++) {
+                assignment.put(variables.get(i).getId(), (bits & 1 << i) != 0 ? top : bottom);
+            }
+            int weight = weight(assignment, constraints);
+            if (weight > bestWeight) {
+                best = assignment;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the total weight of the preference constraints the assignment satisfies, or -1 if
+     * it violates another constraint.
+     */
+    private int weight(Map<Integer, AnnotationMirror> assignment, Collection<Constraint> constraints) {
+        int weight = 0;
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof PreferenceConstraint) {
+                PreferenceConstraint preference = (PreferenceConstraint) constraint;
+                if (value(assignment, preference.getVariable()) == preference.getGoal().getValue()) {
+                    weight += preference.getWeight();
+                }
+                continue;
+            }
+
+            AnnotationMirror first = value(assignment, constraint.getSlots().get(0));
+            AnnotationMirror second = value(assignment, constraint.getSlots().get(1));
+            boolean holds;
+            if (constraint instanceof SubtypeConstraint) {
+                holds = first == bottom || second == top;
+            } else if (constraint instanceof EqualityConstraint) {
+                holds = first == second;
+            } else if (constraint instanceof InequalityConstraint) {
+                holds = first != second;
+            } else {
+                throw new AssertionError("Unexpected constraint " + constraint);
+            }
+            if (!holds) {
+                return -1;
+            }
+        }
+        return weight;
+    }
+
+    private static AnnotationMirror value(Map<Integer, AnnotationMirror> assignment, Slot slot) {
+        if (slot instanceof ConstantSlot) {
+            return ((ConstantSlot) slot).getValue();
+        }
+        return assignment.get(slot.getId());
+    }
+
+    /**
+     * Asserts that the expanded optimum of the simplified constraints is an optimum of the
+     * original constraints.
+     */
+    private void assertSameOptimum(List<Slot> slots, List<Constraint> constraints) {
+        Map<Integer, AnnotationMirror> expected = optimum(slots, constraints);
+        int expectedWeight = expected == null ? -1 : weight(expected, constraints);
+
+        simplifier.simplify(slots, constraints);
+        Map<Integer, AnnotationMirror> simplified = optimum(simplifier.getSlots(), simplifier.getConstraints());
+        if (expectedWeight < 0) {
+            assertTrue(simplified == null || weight(simplified, simplifier.getConstraints()) < 0);
+            return;
+        }
+        assertEquals(expectedWeight, weight(simplified, simplifier.getConstraints()));
+
+        InferenceResult expanded = simplifier.expand(new DefaultInferenceResult(simplified));
+        Map<Integer, AnnotationMirror> solution = new HashMap<>(expanded.getSolutions());
+        for (Slot slot : slots) {
+            if (slot instanceof VariableSlot) {
+                // Variables without simplified constraints may take any value.
+                solution.putIfAbsent(slot.getId(), expected.get(slot.getId()));
+            }
+        }
+        assertEquals(constraints.toString(), expectedWeight, weight(solution, constraints));
+    }
+
+    @Test
+    public void testMergedPreferencesKeepTheirWeights() {
+        List<SourceVariableSlot> variables = variables(3);
+        SourceVariableSlot x = variables.get(0);
+        SourceVariableSlot y = variables.get(1);
+        SourceVariableSlot z = variables.get(2);
+        // Merged, x and y outweigh z: w < w2 < 2w.
+        List<Constraint> constraints = Arrays.asList(
+                constraintManager.createEqualityConstraint(x, y),
+                constraintManager.createEqualityConstraint(y, z),
+                constraintManager.createPreferenceConstraint(x, topSlot, 3),
+                constraintManager.createPreferenceConstraint(y, topSlot, 3),
+                constraintManager.createPreferenceConstraint(z, bottomSlot, 5));
+
+        assertSameOptimum(slots(variables), constraints);
+        assertEquals(Arrays.asList(x.getId(), x.getId()),
+                Arrays.asList(simplifier.getReconstruction().get(y.getId()), simplifier.getReconstruction().get(z.getId())));
+        int preferences = 0;
+        for (Constraint constraint : simplifier.getConstraints()) {
+            if (constraint instanceof PreferenceConstraint) {
+                PreferenceConstraint preference = (PreferenceConstraint) constraint;
+                assertEquals(preference.getGoal() == topSlot ? 6 : 5, preference.getWeight());
+                preferences++;
+            }
+        }
+        assertEquals(2, preferences);
+    }
+
+    @Test
+    public void testUnsatisfiableConstraintsAreExplainedByTheirSources() {
+        List<SourceVariableSlot> variables = variables(3);
+        SourceVariableSlot x = variables.get(0);
+        SourceVariableSlot y = variables.get(1);
+        SourceVariableSlot z = variables.get(2);
+        Constraint xy = constraintManager.createEqualityConstraint(x, y);
+        Constraint yz = constraintManager.createSubtypeConstraint(y, z);
+        Constraint zy = constraintManager.createSubtypeConstraint(z, y);
+        Constraint xTop = constraintManager.createEqualityConstraint(x, topSlot);
+        Constraint yBottom = constraintManager.createEqualityConstraint(y, bottomSlot);
+        Constraint zBottom = constraintManager.createEqualityConstraint(z, bottomSlot);
+        simplifier.simplify(slots(variables), Arrays.asList(xy, yz, zy, xTop, yBottom, zBottom));
+
+        // y and z are rewritten to x, and both of their constraints to x == bottom.
+        Constraint rewritten = null;
+        for (Constraint constraint : simplifier.getConstraints()) {
+            if (constraint.getSlots().contains(bottomSlot)) {
+                rewritten = constraint;
+            }
+        }
+        assertNotNull(rewritten);
+        assertEquals(Arrays.asList(x, bottomSlot), rewritten.getSlots());
+
+        InferenceResult explained = simplifier.expand(new DefaultInferenceResult(Arrays.asList(xTop, rewritten)));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(xy, yz, zy, xTop, yBottom, zBottom)),
+                new LinkedHashSet<>(explained.getUnsatisfiableConstraints()));
+    }
+
+    @Test
+    public void testRandomConstraintsKeepTheirOptimum() {
+        Random random = new Random(42);
+        for (int instance = 0; instance < 300; instance++) {
+            List<SourceVariableSlot> variables = variables(2 + random.nextInt(5));
+            Set<Constraint> constraints = new LinkedHashSet<>();
+            int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                SourceVariableSlot first = variables.get(random.nextInt(variables.size()));
+                SourceVariableSlot second = variables.get(random.nextInt(variables.size()));
+                ConstantSlot constant = random.nextBoolean() ? topSlot : bottomSlot;
+                Constraint constraint;
+                switch (random.nextInt(5)) {
+                    case 0:
+                        constraint = constraintManager.createEqualityConstraint(first, second);
+                        break;
+                    case 1:
+                        constraint = constraintManager.createSubtypeConstraint(first, second);
+                        break;
+                    case 2:
+                        constraint = constraintManager.createInequalityConstraint(first, second);
+                        break;
+                    case 3:
+                        constraint = constraintManager.createEqualityConstraint(first, constant);
+                        break;
+                    default:
+                        constraint = constraintManager.createPreferenceConstraint(first, constant, 1 + random.nextInt(4));
+                        break;
+                }
+                if (constraint.getSlots().size() == 2 && !constraint.getSlots().get(0).equals(constraint.getSlots().get(1))) {
+                    constraints.add(constraint);
+                }
+            }
+            assertSameOptimum(slots(variables), new ArrayList<>(constraints));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package checkers.inference.solver.frontend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiPredicate;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Test;
+
+import checkers.inference.test.AnnotationMirrors;
+import junit.framework.TestCase;
+
+public class LatticeEncodingTest extends TestCase {
+
+    private static final int QUALIFIERS = 12;
+
+    /** Qualifiers Q0 to Q11, where Qi is a subtype of Qj if i >= j. */
+    private List<AnnotationMirror> qualifiers;
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private final Set<Thread> queryingThreads = ConcurrentHashMap.newKeySet();
+
+    /** The chain relation, recording how it is queried. */
+    private final BiPredicate<AnnotationMirror, AnnotationMirror> relation = (sub, sup) -> {
+        queries.incrementAndGet();
+        queryingThreads.add(Thread.currentThread());
+        return index(sub) >= index(sup);
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < QUALIFIERS; i++) {
+            source.append("@interface Q").append(i).append(" {} ");
+        }
+        for (int i = 0; i < QUALIFIERS; i++) {
+            source.append("@Q").append(i).append(' ');
+        }
+        source.append("class Quals {}");
+        qualifiers = AnnotationMirrors.qualifiers(source);
+    }
+
+    private static int index(AnnotationMirror qualifier) {
+        return Integer.parseInt(qualifier.getAnnotationType().asElement().getSimpleName().toString().substring(1));
+    }
+
+    private LatticeEncoding encoding() {
+        return new LatticeEncoding(qualifiers, qualifiers.get(0), qualifiers.get(QUALIFIERS - 1), relation);
+    }
+
+    @Test
+    public void testEachPairIsQueriedOnce() {
+        LatticeEncoding encoding = encoding();
+        for (int run = 0; run < 2; run++) {
+            for (int sub = 0; sub < QUALIFIERS; sub++) {
+                for (int sup = 0; sup < QUALIFIERS; sup++) {
+                    assertEquals(sub >= sup, encoding.isSubtype(sub, sup));
+                }
+            }
+        }
+        assertEquals(QUALIFIERS * QUALIFIERS, queries.get());
+        assertFalse(encoding.isPrecomputed());
+    }
+
+    @Test
+    public void testPrecomputedEncodingIsSharedWithoutQueries() throws InterruptedException {
+        LatticeEncoding encoding = encoding();
+        encoding.isSubtype(1, 0);
+        encoding.precompute();
+        assertEquals(QUALIFIERS * QUALIFIERS, queries.get());
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int sub = 0; sub < QUALIFIERS; sub++) {
+                        for (int sup = 0; sup < QUALIFIERS; sup++) {
+                            assertEquals(sub >= sup, encoding.isSubtype(sub, sup));
+                        }
+                        assertEquals(sub + 1, encoding.getSupertypes(sub).length);
+                        assertEquals(QUALIFIERS - sub, encoding.getSubtypes(sub).length);
+                        assertEquals(0, encoding.getIncomparables(sub).length);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Collections.emptyList(), failures);
+        assertEquals(Collections.singleton(Thread.currentThread()), queryingThreads);
+        assertEquals(QUALIFIERS * QUALIFIERS, queries.get());
+    }
+
+    @Test
+    public void testOtherThreadsCannotQueryBeforePrecompute() throws InterruptedException {
+        LatticeEncoding encoding = encoding();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                encoding.isSubtype(1, 0);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertTrue(failure.get() instanceof BugInCF);
+        assertEquals(0, queries.get());
+    }
+
+    @Test
+    public void testRelationMapValuesAreSets() {
+        LatticeEncoding encoding = encoding();
+        Collection<AnnotationMirror> supertypes = encoding.getQualifiers(encoding.getSupertypes(2));
+        assertTrue(supertypes instanceof Set);
+        assertEquals(qualifiers.subList(0, 3), new ArrayList<>(supertypes));
+    }
+}
@@ -0,0 +1,143 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Test;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.model.Constraint;
+import checkers.inference.solver.backend.FormatTranslator;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.util.Statistics;
+import junit.framework.TestCase;
+
+public class PortfolioSolverTest extends TestCase {
+
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() {
+        InferenceMain.resetInstance();
+        Statistics.clearStatistics();
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+        Statistics.clearStatistics();
+    }
+
+    /**
+     * A candidate that records a statistic, waits for the given latch, and then returns the
+     * given result.
+     */
+    private static class FakeSolver extends Solver<FormatTranslator<?, ?, ?>> {
+        private final Map<Integer, AnnotationMirror> result;
+        private final boolean unsatisfiable;
+        private final CountDownLatch start;
+
+        FakeSolver(Map<Integer, AnnotationMirror> result, boolean unsatisfiable, CountDownLatch start) {
+            super(null, new ArrayList<>(), new ArrayList<>(), null, null);
+            this.result = result;
+            this.unsatisfiable = unsatisfiable;
+            this.start = start;
+        }
+
+        @Override
+        public Map<Integer, AnnotationMirror> solve() {
+            Statistics.addOrIncrementEntry("fake_solves", 1);
+            try {
+                start.await();
+            } catch (InterruptedException e) {
+                throw new BugInCF("Interrupted", e);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isUnsatisfiable() {
+            return unsatisfiable;
+        }
+
+        @Override
+        public Collection<Constraint> explainUnsatisfiable() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected void encodeAllConstraints() {
+        }
+    }
+
+    private PortfolioSolver portfolio(Solver<?>... candidates) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < candidates.length; i++) {
+            names.add("fake" + i);
+        }
+        return new PortfolioSolver(null, new ArrayList<>(), null, Arrays.asList(candidates), names, executor);
+    }
+
+    @Test
+    public void testInconclusiveNullWaitsForSolution() {
+        CountDownLatch now = new CountDownLatch(0);
+        CountDownLatch later = new CountDownLatch(1);
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        solution.put(1, null);
+
+        PortfolioSolver portfolio = portfolio(new FakeSolver(null, false, now), new FakeSolver(solution, false, later));
+        // Only release the solving candidate once the inconclusive one has surely finished.
+        executor.submit(() -> {
+            Thread.sleep(100);
+            later.countDown();
+            return null;
+        });
+
+        assertSame(solution, portfolio.solve());
+        assertFalse(portfolio.isUnsatisfiable());
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("portfolio_wins_fake1"));
+    }
+
+    @Test
+    public void testExplicitUnsatWins() {
+        CountDownLatch never = new CountDownLatch(1);
+        PortfolioSolver portfolio = portfolio(new FakeSolver(null, true, new CountDownLatch(0)),
+                new FakeSolver(new HashMap<>(), false, never));
+
+        assertNull(portfolio.solve());
+        assertTrue(portfolio.isUnsatisfiable());
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("portfolio_wins_fake0"));
+    }
+
+    @Test
+    public void testOnlyWinnerStatisticsAreKept() {
+        CountDownLatch now = new CountDownLatch(0);
+        PortfolioSolver portfolio = portfolio(new FakeSolver(null, false, now), new FakeSolver(null, false, now),
+                new FakeSolver(null, true, now));
+
+        assertNull(portfolio.solve());
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("fake_solves"));
+    }
+
+    @Test
+    public void testAllInconclusiveFallsBack() {
+        CountDownLatch now = new CountDownLatch(0);
+        PortfolioSolver portfolio = portfolio(new FakeSolver(null, false, now), new FakeSolver(null, false, now));
+
+        assertNull(portfolio.solve());
+        assertFalse(portfolio.isUnsatisfiable());
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("fake_solves"));
+    }
+}
@@ -0,0 +1,132 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Test;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.model.Constraint;
+import checkers.inference.solver.backend.FormatTranslator;
+import checkers.inference.solver.backend.Solver;
+import checkers.inference.solver.util.Statistics;
+import com.sun.tools.javac.util.Pair;
+import junit.framework.TestCase;
+
+public class SubGraphSchedulerTest extends TestCase {
+
+    @Override
+    protected void setUp() {
+        InferenceMain.resetInstance();
+        Statistics.clearStatistics();
+    }
+
+    @Override
+    protected void tearDown() {
+        Statistics.clearStatistics();
+    }
+
+    /**
+     * A solver of a component with the given number of constraints, which returns the given
+     * solution, or throws the given failure.
+     */
+    private static class FakeSolver extends Solver<FormatTranslator<?, ?, ?>> {
+        private final Map<Integer, AnnotationMirror> solution;
+        private final RuntimeException failure;
+
+        FakeSolver(int constraints, Map<Integer, AnnotationMirror> solution, RuntimeException failure) {
+            super(null, new ArrayList<>(), new ArrayList<>(Collections.nCopies(constraints, (Constraint) null)),
+                    null, null);
+            this.solution = solution;
+            this.failure = failure;
+        }
+
+        @Override
+        public Map<Integer, AnnotationMirror> solve() {
+            if (failure != null) {
+                throw failure;
+            }
+            return solution;
+        }
+
+        @Override
+        public Collection<Constraint> explainUnsatisfiable() {
+            return constraints;
+        }
+
+        @Override
+        protected void encodeAllConstraints() {
+        }
+    }
+
+    private static Map<Integer, AnnotationMirror> solution(int id) {
+        Map<Integer, AnnotationMirror> solution = new HashMap<>();
+        solution.put(id, null);
+        return solution;
+    }
+
+    @Test
+    public void testStatisticsArePerComponent() throws Exception {
+        Map<Integer, AnnotationMirror> first = solution(1);
+        Map<Integer, AnnotationMirror> second = solution(2);
+        List<Solver<?>> solvers = Arrays.asList(new FakeSolver(1, first, null), new FakeSolver(3, second, null),
+                new FakeSolver(2, null, null));
+
+        // Every component is a task of its own.
+        List<Pair<Map<Integer, AnnotationMirror>, Collection<Constraint>>> results =
+                new SubGraphScheduler(2, 0, 1).solve(solvers);
+
+        assertSame(first, results.get(0).fst);
+        assertSame(second, results.get(1).fst);
+        assertNull(results.get(2).fst);
+        assertEquals(2, results.get(2).snd.size());
+
+        Map<String, Long> statistics = Statistics.getStatistics();
+        assertEquals(Long.valueOf(3), statistics.get("graph_solving_tasks"));
+        for (int i = 0; i < solvers.size(); i++) {
+            assertEquals(Long.valueOf(solvers.get(i).getConstraints().size()),
+                    statistics.get("component_" + i + "_constraints"));
+            assertNotNull(statistics.get("component_" + i + "_queue_wait(ms)"));
+            assertNotNull(statistics.get("component_" + i + "_solving_time(ms)"));
+        }
+        assertNull(statistics.get("failed_components"));
+    }
+
+    @Test
+    public void testBatchedComponentsHaveTheirOwnStatistics() throws Exception {
+        List<Solver<?>> solvers = Arrays.asList(new FakeSolver(1, solution(1), null),
+                new FakeSolver(2, solution(2), null));
+
+        new SubGraphScheduler(2, 16, 256).solve(solvers);
+
+        Map<String, Long> statistics = Statistics.getStatistics();
+        assertEquals(Long.valueOf(1), statistics.get("graph_solving_tasks"));
+        assertEquals(Long.valueOf(1), statistics.get("component_0_constraints"));
+        assertEquals(Long.valueOf(2), statistics.get("component_1_constraints"));
+    }
+
+    @Test
+    public void testFailedComponentFailsTheSolve() throws Exception {
+        List<Solver<?>> solvers = Arrays.asList(new FakeSolver(1, solution(1), null),
+                new FakeSolver(2, null, new BugInCF("Solver crashed.")));
+
+        try {
+            new SubGraphScheduler(2, 0, 1).solve(solvers);
+            fail("A failed component did not fail the solve.");
+        } catch (ExecutionException e) {
+            // The pool rethrows a copy of the failure of another thread.
+            assertTrue(e.getCause() instanceof BugInCF);
+            assertEquals("Solver crashed.", e.getCause().getMessage());
+        }
+        assertEquals(Long.valueOf(1), Statistics.getStatistics().get("failed_components"));
+    }
+}
@@ -0,0 +1,233 @@
+package checkers.inference.solver.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.Test;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintManager;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.solver.strategy.TwoQualifierPropagator.Outcome;
+import checkers.inference.test.AnnotationMirrors;
+import junit.framework.TestCase;
+
+public class TwoQualifierPropagatorTest extends TestCase {
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private ConstantSlot topSlot;
+    private ConstantSlot bottomSlot;
+    private ConstraintManager constraintManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        List<AnnotationMirror> qualifiers = AnnotationMirrors.qualifiers(AnnotationMirrors.TOP_AND_BOTTOM);
+        top = qualifiers.get(0);
+        bottom = qualifiers.get(1);
+        topSlot = new ConstantSlot(1, top);
+        bottomSlot = new ConstantSlot(2, bottom);
+        constraintManager = new ConstraintManager();
+    }
+
+    private static SourceVariableSlot variable(int id) {
+        return new SourceVariableSlot(id, AnnotationLocation.MISSING_LOCATION, null, true);
+    }
+
+    private TwoQualifierPropagator propagator(Constraint... constraints) {
+        return new TwoQualifierPropagator(Arrays.asList(constraints), top, bottom);
+    }
+
+    @Test
+    public void testPropagatesFromConstants() {
+        SourceVariableSlot x = variable(10);
+        SourceVariableSlot y = variable(11);
+        SourceVariableSlot z = variable(12);
+        TwoQualifierPropagator propagator = propagator(
+                constraintManager.createEqualityConstraint(x, bottomSlot),
+                constraintManager.createSubtypeConstraint(y, x),
+                constraintManager.createSubtypeConstraint(x, z));
+
+        assertEquals(Outcome.SOLVED, propagator.solve());
+        Map<Integer, AnnotationMirror> solutions = propagator.getSolutions();
+        assertSame(bottom, solutions.get(10));
+        assertSame(bottom, solutions.get(11));
+        // Unconstrained variables default to top.
+        assertSame(top, solutions.get(12));
+    }
+
+    @Test
+    public void testConflictIsExplained() {
+        SourceVariableSlot x = variable(10);
+        SourceVariableSlot y = variable(11);
+        SourceVariableSlot z = variable(12);
+        Constraint xTop = constraintManager.createEqualityConstraint(x, topSlot);
+        Constraint xy = constraintManager.createSubtypeConstraint(x, y);
+        Constraint yBottom = constraintManager.createEqualityConstraint(y, bottomSlot);
+        Constraint unrelated = constraintManager.createSubtypeConstraint(z, x);
+        TwoQualifierPropagator propagator = propagator(xTop, unrelated, xy, yBottom);
+
+        assertEquals(Outcome.UNSATISFIABLE, propagator.solve());
+        assertEquals(3, propagator.getUnsatisfiableConstraints().size());
+        assertTrue(propagator.getUnsatisfiableConstraints().containsAll(Arrays.asList(xTop, xy, yBottom)));
+    }
+
+    @Test
+    public void testPreferences() {
+        SourceVariableSlot x = variable(10);
+        SourceVariableSlot y = variable(11);
+        TwoQualifierPropagator propagator = propagator(
+                constraintManager.createSubtypeConstraint(x, y),
+                constraintManager.createPreferenceConstraint(x, bottomSlot, 1));
+
+        assertEquals(Outcome.SOLVED, propagator.solve());
+        assertSame(bottom, propagator.getSolutions().get(10));
+        assertSame(top, propagator.getSolutions().get(11));
+
+        // Two preferences that cannot both hold: the trade-off is left to a complete solver.
+        propagator = propagator(
+                constraintManager.createEqualityConstraint(x, y),
+                constraintManager.createPreferenceConstraint(x, topSlot, 1),
+                constraintManager.createPreferenceConstraint(y, bottomSlot, 2));
+        assertEquals(Outcome.UNDECIDED, propagator.solve());
+    }
+
+    /**
+     * Compares the propagator with an exhaustive search on small random constraint sets.
+     */
+    @Test
+    public void testAgainstBruteForce() {
+        Random random = new Random(1);
+        for (int round = 0; round < 2000; round++) {
+            int numberOfVariables = 1 + random.nextInt(6);
+            List<SourceVariableSlot> variables = new ArrayList<>();
+            for (int i = 0; i < numberOfVariables; i++) {
+                variables.add(variable(10 + i));
+            }
+
+            List<Constraint> constraints = new ArrayList<>();
+            int numberOfConstraints = random.nextInt(8);
+            for (int i = 0; i < numberOfConstraints; i++) {
+                SourceVariableSlot first = variables.get(random.nextInt(numberOfVariables));
+                Slot second = random.nextInt(3) == 0 ? (random.nextBoolean() ? topSlot : bottomSlot)
+                        : variables.get(random.nextInt(numberOfVariables));
+                Constraint constraint;
+                switch (random.nextInt(4)) {
+                    case 0:
+                        constraint = constraintManager.createEqualityConstraint(first, second);
+                        break;
+                    case 1:
+                        constraint = constraintManager.createInequalityConstraint(first, second);
+                        break;
+                    case 2:
+                        constraint = constraintManager.createPreferenceConstraint(first,
+                                random.nextBoolean() ? topSlot : bottomSlot, 1 + random.nextInt(5));
+                        break;
+                    default:
+                        if (second instanceof ConstantSlot) {
+                            continue;
+                        }
+                        constraint = constraintManager.createSubtypeConstraint(first, second);
+                }
+                if (TwoQualifierPropagator.isSupported(constraint)) {
+                    constraints.add(constraint);
+                }
+            }
+
+            TwoQualifierPropagator propagator = new TwoQualifierPropagator(constraints, top, bottom);
+            Outcome outcome = propagator.solve();
+            long optimum = optimum(constraints, variables);
+            String message = "round " + round + ": " + constraints;
+            switch (outcome) {
+                case SOLVED:
+                    Map<Integer, AnnotationMirror> solutions = propagator.getSolutions();
+                    boolean[] assignment = new boolean[numberOfVariables];
+                    for (int i = 0; i < numberOfVariables; i++) {
+                        AnnotationMirror value = solutions.get(10 + i);
+                        assignment[i] = value == null || AnnotationUtils.areSame(value, top);
+                    }
+                    assertEquals(message, optimum, cost(constraints, assignment));
+                    break;
+                case UNSATISFIABLE:
+                    assertEquals(message, -1, optimum);
+                    // The explanation alone is unsatisfiable.
+                    assertEquals(message, -1, optimum(propagator.getUnsatisfiableConstraints(), variables));
+                    break;
+                default:
+                    assertTrue(message, constraints.stream().anyMatch(c -> c instanceof PreferenceConstraint));
+            }
+        }
+    }
+
+    /**
+     * Returns the minimum total weight of the violated preferences, or -1 if the hard
+     * constraints are unsatisfiable.
+     */
+    private long optimum(Collection<Constraint> constraints, List<SourceVariableSlot> variables) {
+        long best = -1;
+        for (int bits = 0; bits < 1 << variables.size(); bits++) {
+            boolean[] assignment = new boolean[variables.size()];
+            for (int i = 0; i < assignment.length; i++) {
+                assignment[i] = (bits & (1 << i)) != 0;
+            }
+            long cost = cost(constraints, assignment);
+            if (cost >= 0 && (best < 0 || cost < best)) {
+                best = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the total weight of the violated preferences, or -1 if a hard constraint is
+     * violated. Variable slot 10 + i is top iff assignment[i].
+     */
+    private long cost(Collection<Constraint> constraints, boolean[] assignment) {
+        long cost = 0;
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof PreferenceConstraint) {
+                PreferenceConstraint preference = (PreferenceConstraint) constraint;
+                if (isTop(preference.getVariable(), assignment) != isTop(preference.getGoal(), assignment)) {
+                    cost += preference.getWeight();
+                }
+            } else if (constraint instanceof SubtypeConstraint) {
+                SubtypeConstraint subtype = (SubtypeConstraint) constraint;
+                if (isTop(subtype.getSubtype(), assignment) && !isTop(subtype.getSupertype(), assignment)) {
+                    return -1;
+                }
+            } else if (constraint instanceof EqualityConstraint) {
+                EqualityConstraint equality = (EqualityConstraint) constraint;
+                if (isTop(equality.getFirst(), assignment) != isTop(equality.getSecond(), assignment)) {
+                    return -1;
+                }
+            } else if (constraint instanceof InequalityConstraint) {
+                InequalityConstraint inequality = (InequalityConstraint) constraint;
+                if (isTop(inequality.getFirst(), assignment) == isTop(inequality.getSecond(), assignment)) {
+                    return -1;
+                }
+            }
+        }
+        return cost;
+    }
+
+    private boolean isTop(Slot slot, boolean[] assignment) {
+        if (slot instanceof ConstantSlot) {
+            return slot == topSlot;
+        }
+        return assignment[slot.getId() - 10];
+    }
+}
@@ -0,0 +1,94 @@
+package checkers.inference.solver.util;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ExternalSolverPoolTest extends TestCase {
+
+    private static final String[] CAT = { "cat" };
+
+    @Override
+    protected void tearDown() {
+        ExternalSolverPool.shutdownAll();
+    }
+
+    @Test
+    public void testPoolsAreKeyedBySize() {
+        ExternalSolverPool one = ExternalSolverPool.getPool(CAT, 1);
+        assertSame(one, ExternalSolverPool.getPool(CAT, 1));
+        assertNotSame(one, ExternalSolverPool.getPool(CAT, 2));
+    }
+
+    @Test
+    public void testShutdownAllCreatesNewPools() {
+        ExternalSolverPool pool = ExternalSolverPool.getPool(CAT, 1);
+        ExternalSolverPool.shutdownAll();
+        assertNotSame(pool, ExternalSolverPool.getPool(CAT, 1));
+    }
+
+    @Test
+    public void testRun() {
+        ExternalSolverPool pool = ExternalSolverPool.getPool(CAT, 2);
+        for (int i = 0; i < 3; i++) {
+            final String input = "run " + i;
+            final AtomicReference<String> output = new AtomicReference<>();
+            int exitStatus = pool.run(stdIn -> stdIn.write(input + "\n"),
+                    stdOut -> {
+                        try {
+                            output.set(stdOut.readLine());
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    },
+                    stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr));
+            assertEquals(0, exitStatus);
+            assertEquals(input, output.get());
+        }
+    }
+
+    @Test
+    public void testFailedRunKillsItsProcess() throws Exception {
+        // Prints its pid, then keeps running whatever its input.
+        ExternalSolverPool pool = ExternalSolverPool.getPool(new String[] {"sh", "-c", "echo $$; exec sleep 60"}, 1);
+        final AtomicReference<String> pid = new AtomicReference<>();
+        final CountDownLatch pidRead = new CountDownLatch(1);
+        try {
+            pool.run(stdIn -> {
+                try {
+                    pidRead.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                throw new IllegalStateException("failed");
+            }, stdOut -> {
+                try {
+                    pid.set(stdOut.readLine());
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                } finally {
+                    pidRead.countDown();
+                }
+            }, stdErr -> ExternalSolverUtils.printStdStream(System.err, stdErr));
+            fail("The run did not fail.");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        assertNotNull(pid.get());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (isAlive(pid.get())) {
+            assertTrue("The process of the failed run was not killed.", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static boolean isAlive(String pid) throws IOException, InterruptedException {
+        return new ProcessBuilder("kill", "-0", pid).start().waitFor() == 0;
+    }
+}
@@ -0,0 +1,89 @@
+package checkers.inference.solver.util;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import checkers.inference.InferenceMain;
+import junit.framework.TestCase;
+
+public class SolutionCacheTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("solution-cache", ".json");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private static Map<String, String> solution(String key, String annotation) {
+        Map<String, String> solution = new HashMap<>();
+        solution.put(key, annotation);
+        return solution;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        SolutionCache cache = new SolutionCache(file, "context");
+        cache.load();
+        assertNull(cache.lookup("a"));
+        cache.store("a", solution("Foo.java:1", "@Top"));
+        cache.save();
+
+        SolutionCache reloaded = new SolutionCache(file, "context");
+        reloaded.load();
+        assertEquals(solution("Foo.java:1", "@Top"), reloaded.lookup("a"));
+    }
+
+    @Test
+    public void testOtherContextIsIgnored() {
+        SolutionCache cache = new SolutionCache(file, "context");
+        cache.store("a", solution("Foo.java:1", "@Top"));
+        cache.save();
+
+        SolutionCache reloaded = new SolutionCache(file, "other context");
+        reloaded.load();
+        assertNull(reloaded.lookup("a"));
+    }
+
+    @Test
+    public void testUnusedComponentsAreEvicted() {
+        SolutionCache cache = new SolutionCache(file, "context");
+        cache.store("a", solution("Foo.java:1", "@Top"));
+        cache.store("b", solution("Foo.java:2", "@Bottom"));
+        cache.save();
+
+        SolutionCache second = new SolutionCache(file, "context");
+        second.load();
+        assertNotNull(second.lookup("a"));
+        second.save();
+
+        SolutionCache third = new SolutionCache(file, "context");
+        third.load();
+        assertNotNull(third.lookup("a"));
+        assertNull(third.lookup("b"));
+    }
+
+    @Test
+    public void testCorruptFileIsEmpty() throws IOException {
+        InferenceMain.resetInstance();
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("{\"version\": \"1\", \"context\": \"context\", \"components\": [");
+        }
+
+        SolutionCache cache = new SolutionCache(file, "context");
+        cache.load();
+        assertNull(cache.lookup("a"));
+    }
+}
@@ -0,0 +1,91 @@
+package checkers.inference.solver.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class SolverDumpsTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("solver-dumps").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private SolverEnvironment environment(String... arguments) {
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put("dumpDir", dir.getPath());
+        for (int i = 0; i < arguments.length; i += 2) {
+            configuration.put(arguments[i], arguments[i + 1]);
+        }
+        return new SolverEnvironment(configuration, null);
+    }
+
+    @Test
+    public void testEachDumpGetsItsOwnFile() {
+        SolverEnvironment environment = environment();
+        SolverDumps.write(environment, null, "cnfdata", "txt", writer -> writer.write("a"));
+        SolverDumps.write(environment, null, "cnfdata", "txt", writer -> writer.write("b"));
+
+        String[] names = dir.list();
+        assertEquals(2, names.length);
+        for (String name : names) {
+            assertTrue(name, name.startsWith("cnfdata-") && name.endsWith(".txt"));
+        }
+    }
+
+    @Test
+    public void testCompress() throws IOException {
+        SolverDumps.write(environment("dumpCompress", "true"), null, "z3Constraints", "smt",
+                writer -> writer.write("(check-sat)\n"));
+
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().endsWith(".smt.gz"));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(files[0])), StandardCharsets.UTF_8))) {
+            assertEquals("(check-sat)", reader.readLine());
+            assertNull(reader.readLine());
+        }
+    }
+
+    @Test
+    public void testDumpBeingWrittenIsNotRotated() {
+        SolverEnvironment environment = environment("dumpMaxFiles", "1");
+        SolverDumps.write(environment, null, "outer", "txt", writer -> {
+            writer.write("outer");
+            // Other dumps complete while this one is still being written.
+            SolverDumps.write(environment, null, "inner", "txt", inner -> inner.write("1"));
+            SolverDumps.write(environment, null, "inner", "txt", inner -> inner.write("2"));
+            assertEquals(2, dir.list().length);
+        });
+
+        // The outer dump completed last, so it is the only one kept.
+        String[] names = dir.list();
+        assertEquals(1, names.length);
+        assertTrue(names[0], names[0].startsWith("outer-"));
+    }
+}
@@ -0,0 +1,111 @@
+package checkers.inference.test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.util.Elements;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import com.sun.source.util.JavacTask;
+
+/**
+ * AnnotationMirrors creates real annotation mirrors for unit tests of solvers and constraint
+ * models, by compiling a source snippet with javac, and a qualifier hierarchy that keeps
+ * constraints between them from being normalized.
+ */
+public class AnnotationMirrors {
+
+    /** Declares the qualifiers {@code @Top} and {@code @Bottom}, in this order on class Quals. */
+    public static final String TOP_AND_BOTTOM = "@interface Top {} @interface Bottom {} @Top @Bottom class Quals {}";
+
+    /**
+     * Compiles the given source, which must declare all its annotations, and returns the
+     * elements of the compilation.
+     */
+    public static Elements compile(final CharSequence source) throws IOException {
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Quals.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        JavacTask task = (JavacTask) ToolProvider.getSystemJavaCompiler().getTask(null, null, null,
+                Arrays.asList("-proc:none"), null, Collections.singletonList(file));
+        task.analyze();
+        return task.getElements();
+    }
+
+    /**
+     * Returns the annotations of the class with the given name, in the order they are written.
+     */
+    public static List<AnnotationMirror> annotationsOf(Elements elements, String className) {
+        return new ArrayList<>(elements.getTypeElement(className).getAnnotationMirrors());
+    }
+
+    /**
+     * Returns the first annotation of the class with the given name.
+     */
+    public static AnnotationMirror annotationOf(Elements elements, String className) {
+        return annotationsOf(elements, className).get(0);
+    }
+
+    /**
+     * Compiles the given source and returns the annotations of its class Quals.
+     */
+    public static List<AnnotationMirror> qualifiers(CharSequence source) throws IOException {
+        return annotationsOf(compile(source), "Quals");
+    }
+
+    /**
+     * Returns a qualifier hierarchy without top or bottom qualifiers, in which every qualifier
+     * is a subtype of every other. Constraints created with it are only normalized when both
+     * slots are constants, e.g. a subtype constraint to a top constant is not dropped. All
+     * other methods throw UnsupportedOperationException.
+     */
+    public static QualifierHierarchy flatHierarchy() {
+        return hierarchy(Collections.emptySet(), Collections.emptySet(), true);
+    }
+
+    /**
+     * Returns a qualifier hierarchy with the given top and bottom qualifiers. All other methods
+     * throw UnsupportedOperationException.
+     */
+    public static QualifierHierarchy topAndBottomHierarchy(AnnotationMirror top, AnnotationMirror bottom) {
+        return hierarchy(Collections.singleton(top), Collections.singleton(bottom), null);
+    }
+
+    /**
+     * Returns a qualifier hierarchy with the given tops and bottoms, whose isSubtype returns the
+     * given result, or throws UnsupportedOperationException if it is null, like all other methods.
+     */
+    private static QualifierHierarchy hierarchy(Set<AnnotationMirror> tops, Set<AnnotationMirror> bottoms,
+            Boolean isSubtype) {
+        return (QualifierHierarchy) Proxy.newProxyInstance(AnnotationMirrors.class.getClassLoader(),
+                new Class<?>[] {QualifierHierarchy.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTopAnnotations":
+                            return tops;
+                        case "getBottomAnnotations":
+                            return bottoms;
+                        case "isSubtype":
+                            if (isSubtype != null) {
+                                return isSubtype;
+                            }
+                            // fall through
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
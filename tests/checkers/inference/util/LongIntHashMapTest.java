@@ -0,0 +1,42 @@
+package checkers.inference.util;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class LongIntHashMapTest extends TestCase {
+
+    @Test
+    public void testPutAndGet() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 1; i <= 1000; i++) {
+            map.put(LongIntHashMap.pack(i, i + 1), i);
+        }
+
+        assertEquals(1000, map.size());
+        for (int i = 1; i <= 1000; i++) {
+            assertEquals(i, map.get(LongIntHashMap.pack(i, i + 1), -1));
+            // The packed order of the two ids matters.
+            assertFalse(map.containsKey(LongIntHashMap.pack(i + 1, i)));
+        }
+    }
+
+    @Test
+    public void testReplaceAndZeroKey() {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put(0L, 7);
+        map.put(42L, 1);
+        map.put(42L, 2);
+
+        assertEquals(2, map.size());
+        assertEquals(7, map.get(0L, -1));
+        assertEquals(2, map.get(42L, -1));
+        assertEquals(-1, map.get(43L, -1));
+    }
+
+    @Test
+    public void testPackNegativeLow() {
+        assertTrue(LongIntHashMap.pack(1, -1) != LongIntHashMap.pack(0, -1));
+        assertEquals(0xFFFFFFFFL, LongIntHashMap.pack(0, -1));
+    }
+}
@@ -0,0 +1,82 @@
+package checkers.inference.util;
+
+import java.util.List;
+
+import org.checkerframework.javacutil.BugInCF;
+import org.junit.Test;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.model.VariableSlot;
+import junit.framework.TestCase;
+
+public class SlotStoreTest extends TestCase {
+
+    private static SourceVariableSlot variable(int id) {
+        return new SourceVariableSlot(id, AnnotationLocation.MISSING_LOCATION, null, true);
+    }
+
+    @Test
+    public void testGetById() {
+        SlotStore store = new SlotStore();
+        for (int id = 1; id <= 200; id++) {
+            store.add(variable(id));
+        }
+
+        for (int id = 1; id <= 200; id++) {
+            assertEquals(id, store.get(id).getId());
+        }
+        assertNull(store.get(0));
+        assertNull(store.get(201));
+        assertNull(store.get(-1));
+    }
+
+    @Test
+    public void testViewsAreLive() {
+        SlotStore store = new SlotStore();
+        List<Slot> slots = store.getSlots();
+        List<VariableSlot> variables = store.getVariableSlots();
+        assertTrue(slots.isEmpty());
+
+        store.add(variable(1));
+        store.add(variable(2));
+
+        assertEquals(2, slots.size());
+        assertEquals(2, variables.size());
+        assertEquals(2, variables.get(1).getId());
+        assertTrue(store.getConstantSlots().isEmpty());
+    }
+
+    @Test
+    public void testViewsAreReadOnly() {
+        SlotStore store = new SlotStore();
+        store.add(variable(1));
+        try {
+            store.getSlots().add(variable(2));
+            fail("The slots view should be read-only.");
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            store.getSlots().get(1);
+            fail("Index 1 is out of bounds.");
+        } catch (IndexOutOfBoundsException e) {
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidIds() {
+        SlotStore store = new SlotStore();
+        store.add(variable(1));
+        try {
+            store.add(variable(1));
+            fail("Slot ids must be unique.");
+        } catch (BugInCF e) {
+        }
+        try {
+            store.add(variable(0));
+            fail("Slot ids start at 1.");
+        } catch (BugInCF e) {
+        }
+    }
+}
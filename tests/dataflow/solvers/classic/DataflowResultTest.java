@@ -0,0 +1,113 @@
+package dataflow.solvers.classic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import checkers.inference.InferenceMain;
+import junit.framework.TestCase;
+
+public class DataflowResultTest extends TestCase {
+
+    private static final int VARIABLES = 200;
+    private static final int DATATYPES = 64;
+
+    @Override
+    protected void setUp() {
+        InferenceMain.resetInstance();
+    }
+
+    /**
+     * Returns the solution of a datatype: the variables whose id is a multiple of the datatype
+     * index plus one contain it.
+     */
+    private static DatatypeSolution solution(int datatype, boolean isRoot) {
+        Map<Integer, Boolean> result = new HashMap<>();
+        for (int id = 0; id < VARIABLES; id += datatype + 1) {
+            result.put(id, true);
+        }
+        return new DatatypeSolution(result, (isRoot ? "root" : "type") + datatype, isRoot);
+    }
+
+    private static Set<String> expectedDatatypes(int id, boolean isRoot) {
+        Set<String> expected = new TreeSet<>();
+        for (int datatype = 0; datatype < DATATYPES; datatype++) {
+            if (id % (datatype + 1) == 0) {
+                expected.add((isRoot ? "root" : "type") + datatype);
+            }
+        }
+        return expected;
+    }
+
+    @Test
+    public void testConcurrentMergesKeepEveryDatatype() throws InterruptedException {
+        List<DatatypeSolution> solutions = new ArrayList<>();
+        for (int datatype = 0; datatype < DATATYPES; datatype++) {
+            solutions.add(solution(datatype, false));
+            solutions.add(solution(datatype, true));
+        }
+        for (int run = 0; run < 20; run++) {
+            DataflowResult result = mergeConcurrently(solutions);
+            for (int id = 0; id < VARIABLES; id++) {
+                assertTrue(result.containsSolutionForVariable(id));
+                assertEquals(expectedDatatypes(id, false), result.getMergedDatatypes(id, false));
+                assertEquals(expectedDatatypes(id, true), result.getMergedDatatypes(id, true));
+            }
+            assertFalse(result.containsSolutionForVariable(VARIABLES));
+        }
+    }
+
+    private static DataflowResult mergeConcurrently(final List<DatatypeSolution> solutions)
+            throws InterruptedException {
+        final DataflowResult result = new DataflowResult(null);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int first = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = first; i < solutions.size(); i += 8) {
+                            result.mergeSolution(solutions.get(i));
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Collections.emptyList(), failures);
+        return result;
+    }
+
+    @Test
+    public void testMergingTwiceChangesNothing() {
+        DataflowResult result = new DataflowResult(null);
+        result.mergeSolutions(Arrays.asList(solution(1, false), solution(2, false)));
+        result.mergeSolution(solution(1, false));
+
+        assertEquals(new TreeSet<>(Arrays.asList("type1", "type2")), result.getMergedDatatypes(0, false));
+        assertEquals(Collections.singleton("type1"), result.getMergedDatatypes(2, false));
+        assertNull(result.getMergedDatatypes(1, false));
+        assertNull(result.getMergedDatatypes(0, true));
+    }
+}
@@ -0,0 +1,265 @@
+package sparta.checkers.propagation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.util.Elements;
+
+import org.junit.Test;
+
+import checkers.inference.model.AnnotationLocation;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintFactory;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SourceVariableSlot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.test.AnnotationMirrors;
+import junit.framework.TestCase;
+
+/**
+ * Compares PermissionBitSetPropagator with the fixed point IFlowSolver computed before it, which
+ * re-ran every constraint on sets of Strings until nothing changed.
+ */
+public class PermissionBitSetPropagatorTest extends TestCase {
+
+    /** More permissions than fit in one word of the bit sets. */
+    private static final int PERMISSIONS = 100;
+    private static final int CONSTANTS = 8;
+
+    private List<ConstantSlot> constants;
+    private ConstraintFactory constraintFactory;
+
+    @Override
+    protected void setUp() throws Exception {
+        Random random = new Random(22);
+        StringBuilder source = new StringBuilder("@interface P { String[] value(); } ");
+        for (int i = 0; i < CONSTANTS; i++) {
+            Set<String> value = new HashSet<>();
+            int size = i == 0 ? 0 : 1 + random.nextInt(5);
+            while (value.size() < size) {
+                value.add("P" + random.nextInt(PERMISSIONS));
+            }
+            source.append("@P({");
+            for (String permission : value) {
+                source.append('"').append(permission).append("\", ");
+            }
+            source.append("}) class C").append(i).append(" {} ");
+        }
+        Elements elements = AnnotationMirrors.compile(source);
+
+        constants = new ArrayList<>();
+        for (int i = 0; i < CONSTANTS; i++) {
+            constants.add(new ConstantSlot(1 + i, AnnotationMirrors.annotationOf(elements, "C" + i)));
+        }
+        // No constant is top or bottom, so subtype constraints are not turned into equalities.
+        constraintFactory = new ConstraintFactory(AnnotationMirrors.flatHierarchy(), AnnotationLocation.MISSING_LOCATION);
+    }
+
+    private static List<SourceVariableSlot> variables(int count) {
+        List<SourceVariableSlot> variables = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            variables.add(new SourceVariableSlot(CONSTANTS + 1 + i, AnnotationLocation.MISSING_LOCATION, null, true));
+        }
+        return variables;
+    }
+
+    /**
+     * Returns the permissions of each variable slot as computed by IFlowSolver before
+     * PermissionBitSetPropagator.
+     */
+    private static Map<Integer, Set<String>> previousFixedPoint(Collection<Constraint> constraints,
+            boolean isSinkSolver) {
+        Map<Integer, Set<String>> inferredValues = new HashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Constraint constraint : constraints) {
+                if (constraint instanceof SubtypeConstraint) {
+                    Slot subtype = ((SubtypeConstraint) constraint).getSubtype();
+                    Slot supertype = ((SubtypeConstraint) constraint).getSupertype();
+                    Set<String> subtypePerms = permissions(inferredValues, subtype);
+                    Set<String> supertypePerms = permissions(inferredValues, supertype);
+                    if (isSinkSolver) {
+                        if (subtype instanceof VariableSlot) {
+                            changed |= subtypePerms.addAll(supertypePerms);
+                        }
+                    } else {
+                        if (supertype instanceof VariableSlot) {
+                            changed |= supertypePerms.addAll(subtypePerms);
+                        }
+                    }
+                } else if (constraint instanceof EqualityConstraint) {
+                    Slot first = ((EqualityConstraint) constraint).getFirst();
+                    Slot second = ((EqualityConstraint) constraint).getSecond();
+                    Set<String> firstPerms = permissions(inferredValues, first);
+                    Set<String> secondPerms = permissions(inferredValues, second);
+                    if (first instanceof VariableSlot) {
+                        changed |= firstPerms.addAll(secondPerms);
+                    }
+                    if (second instanceof VariableSlot) {
+                        changed |= secondPerms.addAll(firstPerms);
+                    }
+                }
+            }
+        }
+        return inferredValues;
+    }
+
+    private static Set<String> permissions(Map<Integer, Set<String>> inferredValues, Slot slot) {
+        if (slot instanceof VariableSlot) {
+            return inferredValues.computeIfAbsent(slot.getId(), id -> new HashSet<>());
+        }
+        Set<String> constantSet = new HashSet<>();
+        for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                ((ConstantSlot) slot).getValue().getElementValues().entrySet()) {
+            for (Object elem : (List<?>) entry.getValue().getValue()) {
+                String flowPermString = elem.toString();
+                flowPermString = flowPermString.substring(flowPermString.lastIndexOf(".") + 1);
+                constantSet.add(flowPermString.replace("\"", ""));
+            }
+        }
+        return Collections.unmodifiableSet(constantSet);
+    }
+
+    private void assertSameFixedPoint(List<Constraint> constraints) {
+        for (boolean isSinkSolver : new boolean[] {true, false}) {
+            assertEquals(constraints + (isSinkSolver ? " sink" : " source"),
+                    previousFixedPoint(constraints, isSinkSolver),
+                    new PermissionBitSetPropagator(constraints, isSinkSolver).solve());
+        }
+    }
+
+    private static Set<String> set(String... strings) {
+        return new HashSet<>(Arrays.asList(strings));
+    }
+
+    private static Set<String> value(ConstantSlot constant) {
+        return permissions(Collections.emptyMap(), constant);
+    }
+
+    @Test
+    public void testSubtypeDirection() {
+        List<SourceVariableSlot> variables = variables(2);
+        SourceVariableSlot x = variables.get(0);
+        SourceVariableSlot y = variables.get(1);
+        ConstantSlot sub = constants.get(1);
+        ConstantSlot sup = constants.get(2);
+        // sub <: x <: y <: sup
+        List<Constraint> constraints = Arrays.asList(
+                constraintFactory.createSubtypeConstraint(sub, x),
+                constraintFactory.createSubtypeConstraint(x, y),
+                constraintFactory.createSubtypeConstraint(y, sup));
+
+        Map<Integer, Set<String>> sinks = new PermissionBitSetPropagator(constraints, true).solve();
+        assertEquals(value(sup), sinks.get(x.getId()));
+        assertEquals(value(sup), sinks.get(y.getId()));
+
+        Map<Integer, Set<String>> sources = new PermissionBitSetPropagator(constraints, false).solve();
+        assertEquals(value(sub), sources.get(x.getId()));
+        assertEquals(value(sub), sources.get(y.getId()));
+
+        assertSameFixedPoint(constraints);
+    }
+
+    @Test
+    public void testEqualityJoinsBothSides() {
+        List<SourceVariableSlot> variables = variables(3);
+        SourceVariableSlot x = variables.get(0);
+        SourceVariableSlot y = variables.get(1);
+        SourceVariableSlot z = variables.get(2);
+        List<Constraint> constraints = Arrays.asList(
+                constraintFactory.createEqualityConstraint(x, constants.get(1)),
+                constraintFactory.createEqualityConstraint(y, x),
+                constraintFactory.createEqualityConstraint(y, z),
+                constraintFactory.createEqualityConstraint(constants.get(2), z));
+
+        Set<String> expected = new HashSet<>(value(constants.get(1)));
+        expected.addAll(value(constants.get(2)));
+        for (boolean isSinkSolver : new boolean[] {true, false}) {
+            Map<Integer, Set<String>> inferred = new PermissionBitSetPropagator(constraints, isSinkSolver).solve();
+            assertEquals(expected, inferred.get(x.getId()));
+            assertEquals(expected, inferred.get(y.getId()));
+            assertEquals(expected, inferred.get(z.getId()));
+        }
+        assertSameFixedPoint(constraints);
+    }
+
+    @Test
+    public void testConstantTargetsAreNotChanged() {
+        List<SourceVariableSlot> variables = variables(2);
+        SourceVariableSlot x = variables.get(0);
+        SourceVariableSlot y = variables.get(1);
+        ConstantSlot constant = constants.get(3);
+        // Permissions flow into the constant in both modes, and must not flow on through it.
+        List<Constraint> constraints = Arrays.asList(
+                constraintFactory.createEqualityConstraint(x, constants.get(4)),
+                constraintFactory.createSubtypeConstraint(x, constant),
+                constraintFactory.createSubtypeConstraint(constant, x),
+                constraintFactory.createEqualityConstraint(constant, y),
+                constraintFactory.createInequalityConstraint(x, y));
+
+        for (boolean isSinkSolver : new boolean[] {true, false}) {
+            Map<Integer, Set<String>> inferred = new PermissionBitSetPropagator(constraints, isSinkSolver).solve();
+            assertEquals(value(constant), inferred.get(y.getId()));
+            Set<String> expected = new HashSet<>(value(constants.get(4)));
+            expected.addAll(value(constant));
+            assertEquals(expected, inferred.get(x.getId()));
+            assertFalse(inferred.containsKey(constant.getId()));
+        }
+        assertSameFixedPoint(constraints);
+    }
+
+    @Test
+    public void testEmptyConstantGivesEmptySet() {
+        SourceVariableSlot x = variables(1).get(0);
+        List<Constraint> constraints = Arrays.asList(constraintFactory.createEqualityConstraint(x, constants.get(0)));
+
+        assertEquals(Collections.singletonMap(x.getId(), set()),
+                new PermissionBitSetPropagator(constraints, true).solve());
+        assertSameFixedPoint(constraints);
+    }
+
+    @Test
+    public void testRandomConstraintsReachTheSameFixedPoint() {
+        Random random = new Random(22);
+        for (int instance = 0; instance < 500; instance++) {
+            List<Slot> slots = new ArrayList<>(variables(2 + random.nextInt(10)));
+            slots.addAll(constants);
+            List<Constraint> constraints = new ArrayList<>();
+            int count = random.nextInt(3 * slots.size());
+            for (int i = 0; i < count; i++) {
+                Slot first = slots.get(random.nextInt(slots.size()));
+                Slot second = slots.get(random.nextInt(slots.size()));
+                if (first instanceof ConstantSlot && second instanceof ConstantSlot) {
+                    continue;
+                }
+                switch (random.nextInt(4)) {
+                    case 0:
+                        constraints.add(constraintFactory.createEqualityConstraint(first, second));
+                        break;
+                    case 1:
+                        constraints.add(constraintFactory.createInequalityConstraint(first, second));
+                        break;
+                    default:
+                        constraints.add(constraintFactory.createSubtypeConstraint(first, second));
+                        break;
+                }
+            }
+            assertSameFixedPoint(constraints);
+        }
+    }
+}